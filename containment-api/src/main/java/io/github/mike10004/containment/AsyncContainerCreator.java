@@ -0,0 +1,31 @@
+package io.github.mike10004.containment;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Interface of a service that creates containers without blocking the caller.
+ * Implementations perform the creation on an executor, so that many containers
+ * can be created concurrently.
+ */
+public interface AsyncContainerCreator extends ContainerCreator {
+
+    /**
+     * Creates a container asynchronously and ignores warnings.
+     * @param parametry container creation parameters
+     * @return a future of the container
+     */
+    default CompletableFuture<StartableContainer> createAsync(ContainerParametry parametry) {
+        return createAsync(parametry, ignore -> {});
+    }
+
+    /**
+     * Creates a container asynchronously. If creation fails, the future completes
+     * exceptionally with a {@link ContainmentException} as its cause.
+     * @param parametry container creation parameters
+     * @param warningListener consumer notified of warnings produced during the creation process
+     * @return a future of the container
+     */
+    CompletableFuture<StartableContainer> createAsync(ContainerParametry parametry, Consumer<? super String> warningListener);
+
+}
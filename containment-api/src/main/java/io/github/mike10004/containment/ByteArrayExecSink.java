@@ -0,0 +1,54 @@
+package io.github.mike10004.containment;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Implementation of a sink that captures all output in memory.
+ */
+public class ByteArrayExecSink implements ExecOutputSink {
+
+    private final ByteArrayOutputStream buffer;
+
+    public ByteArrayExecSink() {
+        buffer = new ByteArrayOutputStream(256);
+    }
+
+    @Override
+    public synchronized void accept(ByteBuffer chunk) {
+        write(buffer, chunk);
+    }
+
+    static void write(ByteArrayOutputStream destination, ByteBuffer chunk) {
+        int length = chunk.remaining();
+        if (chunk.hasArray()) {
+            destination.write(chunk.array(), chunk.arrayOffset() + chunk.position(), length);
+            chunk.position(chunk.limit());
+        } else {
+            byte[] copy = new byte[length];
+            chunk.get(copy);
+            destination.write(copy, 0, length);
+        }
+    }
+
+    /**
+     * Returns the number of bytes captured.
+     * @return size in bytes
+     */
+    public synchronized int size() {
+        return buffer.size();
+    }
+
+    /**
+     * Returns a copy of the bytes captured.
+     * @return captured bytes
+     */
+    public synchronized byte[] toByteArray() {
+        return buffer.toByteArray();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ByteArrayExecSink{size=%d}", size());
+    }
+}
@@ -5,6 +5,10 @@ import com.google.common.collect.Lists;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collection;
 import java.util.EnumSet;
 import java.util.Set;
 
@@ -29,6 +33,22 @@ public interface ContainerCopier {
         FOLLOW_LINK
     }
 
+    /**
+     * Enumeration of directory sync options.
+     */
+    enum SyncOption {
+
+        /**
+         * Delete files in the destination that do not exist in the source.
+         */
+        DELETE_EXTRANEOUS,
+
+        /**
+         * Compare the SHA-256 checksums of files of equal size, instead of their modification times.
+         */
+        CHECKSUM
+    }
+
     /**
      * Copies a file from the local filesystem to the container filesystem.
      * @param sourceFile the source file
@@ -63,7 +83,8 @@ public interface ContainerCopier {
     /**
      * Copies a file from the container filesystem to the local filesystem.
      * @param path the path of the source file within the container filesystem
-     * @param destinationFile the destination path on the local filesystem; must be a file pathname, not a directory
+     * @param destinationFile the destination path on the local filesystem; must be a file pathname, not a directory;
+     *                        if the source is a directory, it is copied recursively to this pathname
      * @param options copy options; depending on the implementation, these may not have any effect
      * @throws IOException
      */
@@ -86,6 +107,88 @@ public interface ContainerCopier {
         copyFromContainer(path, destinationFile, EnumSet.noneOf(Option.class));
     }
 
+    /**
+     * Copies the content of a file from the container filesystem to a stream. The stream is not closed.
+     * This default implementation copies the file to a temporary file on the local filesystem
+     * first; implementations should override this to stream the content directly.
+     * @param path the path of the source file within the container filesystem
+     * @param destination the destination stream
+     * @throws IOException on I/O error
+     * @throws ContainmentException on container error
+     */
+    default void copyFromContainer(String path, OutputStream destination) throws IOException, ContainmentException {
+        File tempFile = File.createTempFile("container-copy", ".tmp");
+        try {
+            copyFromContainer(path, tempFile);
+            java.nio.file.Files.copy(tempFile.toPath(), destination);
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Copies the content of a file from the container filesystem to a channel. The channel is not closed.
+     * @param path the path of the source file within the container filesystem
+     * @param destination the destination channel
+     * @throws IOException on I/O error
+     * @throws ContainmentException on container error
+     * @see #copyFromContainer(String, OutputStream)
+     */
+    default void copyFromContainer(String path, WritableByteChannel destination) throws IOException, ContainmentException {
+        copyFromContainer(path, Channels.newOutputStream(destination));
+    }
+
+    /**
+     * Copies a file or directory from the container filesystem into a directory on the local
+     * filesystem. The copy has the same name as the source and the given directory as its parent.
+     * Directories are copied recursively, and file modes and symbolic links are preserved.
+     * @param path the path of the source file or directory within the container filesystem
+     * @param destinationDirectory the parent directory of the copy on the local filesystem
+     * @param options copy options; depending on the implementation, these may not have any effect
+     * @throws IOException on I/O error
+     * @throws ContainmentException on container error
+     */
+    default void copyIntoDirectoryFromContainer(String path, File destinationDirectory, Set<Option> options) throws IOException, ContainmentException {
+        String name = new File(path).getName();
+        if (name.isEmpty()) {
+            throw new DockerCopyException("source path has no name: " + path);
+        }
+        copyFromContainer(path, new File(destinationDirectory, name), options);
+    }
+
+    /**
+     * Copies multiple files or directories from the container filesystem into a directory
+     * on the local filesystem.
+     * @param paths the paths of the source files or directories within the container filesystem
+     * @param destinationDirectory the parent directory of the copies on the local filesystem
+     * @param options copy options; depending on the implementation, these may not have any effect
+     * @throws IOException on I/O error
+     * @throws ContainmentException on container error
+     * @see #copyIntoDirectoryFromContainer(String, File, Set)
+     */
+    default void copyIntoDirectoryFromContainer(Collection<String> paths, File destinationDirectory, Set<Option> options) throws IOException, ContainmentException {
+        for (String path : paths) {
+            copyIntoDirectoryFromContainer(path, destinationDirectory, options);
+        }
+    }
+
+    /**
+     * Copies new and changed files from a directory on the local filesystem to a directory
+     * within the container filesystem. The destination is listed, and files whose size
+     * and modification time, or checksum, match the source are not copied again.
+     * @param sourceDirectory the source directory
+     * @param destinationDirectory the destination directory; it is created if it does not exist
+     * @param options sync options
+     * @return the sync result
+     * @throws IOException on I/O error
+     * @throws ContainmentException on container error
+     * @see DirectorySync
+     */
+    default DirectorySync.Result syncDirectoryToContainer(File sourceDirectory, String destinationDirectory, Set<SyncOption> options) throws IOException, ContainmentException {
+        throw new DockerCopyException("directory sync is not supported in this copier implementation");
+    }
+
     class DockerCopyException extends IOException {
         public DockerCopyException(String message) {
             super(message);
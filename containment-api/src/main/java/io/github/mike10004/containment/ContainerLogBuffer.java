@@ -0,0 +1,270 @@
+package io.github.mike10004.containment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Buffer that retains the most recent output of a container's standard output and
+ * standard error streams. Each stream is retained in a fixed-size ring of direct memory,
+ * so retaining the output of a long-lived container does not grow the heap.
+ * Attach an instance to a container's log follower with {@link #attach(ContainerLogFollower)}.
+ */
+public final class ContainerLogBuffer {
+
+    /**
+     * Enumeration of container output streams.
+     */
+    public enum Stream {
+        STDOUT, STDERR;
+
+        private String fileSuffix() {
+            return name().toLowerCase() + ".log";
+        }
+    }
+
+    private final Map<Stream, Ring> rings;
+
+    private ContainerLogBuffer(int capacityPerStream) {
+        checkArgument(capacityPerStream > 0, "capacityPerStream must be positive");
+        rings = new EnumMap<>(Stream.class);
+        for (Stream stream : Stream.values()) {
+            rings.put(stream, new Ring(capacityPerStream));
+        }
+    }
+
+    /**
+     * Allocates a new buffer.
+     * @param capacityPerStream maximum number of bytes retained from each stream
+     * @return a new buffer
+     */
+    public static ContainerLogBuffer allocate(int capacityPerStream) {
+        return new ContainerLogBuffer(capacityPerStream);
+    }
+
+    /**
+     * Starts following both streams of a container into this buffer.
+     * @param follower the container's log follower
+     * @return this instance
+     * @throws ContainmentException if following fails
+     */
+    public ContainerLogBuffer attach(ContainerLogFollower follower) throws ContainmentException {
+        follower.followStdout(sink(Stream.STDOUT));
+        follower.followStderr(sink(Stream.STDERR));
+        return this;
+    }
+
+    /**
+     * Returns a consumer that appends to the given stream's ring.
+     * @param stream the stream
+     * @return a consumer of output frames
+     */
+    public Consumer<byte[]> sink(Stream stream) {
+        Ring ring = ring(stream);
+        return ring::write;
+    }
+
+    private Ring ring(Stream stream) {
+        return rings.get(requireNonNull(stream, "stream"));
+    }
+
+    /**
+     * Copies the retained bytes of a stream to a new array.
+     * @param stream the stream
+     * @return the retained bytes, oldest first
+     */
+    public byte[] snapshot(Stream stream) {
+        return ring(stream).snapshot();
+    }
+
+    /**
+     * Decodes the retained bytes of a stream as text. The oldest character may
+     * be malformed if the ring has wrapped in the middle of a multibyte character.
+     * @param stream the stream
+     * @param charset the charset
+     * @return the retained text
+     */
+    public String snapshot(Stream stream, Charset charset) {
+        return new String(snapshot(stream), charset);
+    }
+
+    /**
+     * Searches the retained bytes of a stream without copying them.
+     * @param stream the stream
+     * @param needle the bytes to search for
+     * @return offset of the first occurrence relative to the oldest retained byte, or -1 if not found
+     */
+    public int indexOf(Stream stream, byte[] needle) {
+        return ring(stream).indexOf(requireNonNull(needle, "needle"));
+    }
+
+    /**
+     * Checks whether the retained text of a stream contains a string.
+     * @param stream the stream
+     * @param text the text
+     * @param charset the charset of the stream
+     * @return true if the retained bytes contain the encoded text
+     */
+    public boolean contains(Stream stream, String text, Charset charset) {
+        return indexOf(stream, text.getBytes(charset)) >= 0;
+    }
+
+    /**
+     * Gets the total number of bytes written to a stream, including bytes no longer retained.
+     * @param stream the stream
+     * @return total number of bytes written
+     */
+    public long totalBytes(Stream stream) {
+        return ring(stream).totalBytes();
+    }
+
+    /**
+     * Writes the retained bytes of each stream to files in a directory.
+     * Files are named with the given prefix and the stream name, for example
+     * {@code prefix-stdout.log}. Bytes are written directly from the rings.
+     * @param directory the directory; created if it does not exist
+     * @param prefix file name prefix
+     * @return the files written
+     * @throws IOException on I/O error
+     */
+    public List<Path> dump(Path directory, String prefix) throws IOException {
+        requireNonNull(prefix, "prefix");
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>(rings.size());
+        for (Stream stream : Stream.values()) {
+            Path file = directory.resolve(prefix + "-" + stream.fileSuffix());
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ring(stream).writeTo(channel);
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", ContainerLogBuffer.class.getSimpleName() + "[", "]")
+                .add("stdout=" + ring(Stream.STDOUT))
+                .add("stderr=" + ring(Stream.STDERR))
+                .toString();
+    }
+
+    private static final class Ring {
+
+        private final ByteBuffer storage;
+        private int head;
+        private long totalBytes;
+
+        public Ring(int capacity) {
+            storage = ByteBuffer.allocateDirect(capacity);
+        }
+
+        public synchronized void write(byte[] bytes) {
+            int capacity = storage.capacity();
+            int offset = 0;
+            int length = bytes.length;
+            totalBytes += length;
+            if (length > capacity) {
+                // only the last capacity bytes can survive
+                offset = length - capacity;
+                length = capacity;
+            }
+            int first = Math.min(length, capacity - head);
+            ByteBuffer target = storage.duplicate();
+            target.position(head);
+            target.put(bytes, offset, first);
+            if (length > first) {
+                target.position(0);
+                target.put(bytes, offset + first, length - first);
+            }
+            head = (head + length) % capacity;
+        }
+
+        private int retained() {
+            return (int) Math.min(totalBytes, storage.capacity());
+        }
+
+        private int oldest() {
+            return totalBytes > storage.capacity() ? head : 0;
+        }
+
+        /**
+         * Returns views of the retained bytes in order, oldest first.
+         */
+        private ByteBuffer[] regions() {
+            int retained = retained();
+            int oldest = oldest();
+            int first = Math.min(retained, storage.capacity() - oldest);
+            ByteBuffer older = storage.duplicate();
+            older.limit(oldest + first);
+            older.position(oldest);
+            ByteBuffer newer = storage.duplicate();
+            newer.limit(retained - first);
+            newer.position(0);
+            return new ByteBuffer[]{older, newer};
+        }
+
+        public synchronized byte[] snapshot() {
+            byte[] copy = new byte[retained()];
+            int offset = 0;
+            for (ByteBuffer region : regions()) {
+                int n = region.remaining();
+                region.get(copy, offset, n);
+                offset += n;
+            }
+            return copy;
+        }
+
+        public synchronized int indexOf(byte[] needle) {
+            int retained = retained();
+            if (needle.length == 0) {
+                return 0;
+            }
+            int capacity = storage.capacity();
+            int oldest = oldest();
+            for (int i = 0; i + needle.length <= retained; i++) {
+                int j = 0;
+                while (j < needle.length && storage.get((oldest + i + j) % capacity) == needle[j]) {
+                    j++;
+                }
+                if (j == needle.length) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        public synchronized long totalBytes() {
+            return totalBytes;
+        }
+
+        public synchronized void writeTo(FileChannel channel) throws IOException {
+            ByteBuffer[] regions = regions();
+            while (regions[0].hasRemaining() || regions[1].hasRemaining()) {
+                channel.write(regions);
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            return new StringJoiner(", ", "Ring[", "]")
+                    .add("capacity=" + storage.capacity())
+                    .add("retained=" + retained())
+                    .add("totalBytes=" + totalBytes)
+                    .toString();
+        }
+    }
+}
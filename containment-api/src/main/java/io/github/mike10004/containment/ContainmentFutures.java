@@ -0,0 +1,89 @@
+package io.github.mike10004.containment;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Static utility methods relating to futures of container operations.
+ */
+public final class ContainmentFutures {
+
+    private ContainmentFutures() {}
+
+    /**
+     * Performs an operation on the calling thread and returns a future that is already complete.
+     * @param operation the operation
+     * @param <T> result type
+     * @return a completed future
+     */
+    public static <T> CompletableFuture<T> callNow(Callable<T> operation) {
+        requireNonNull(operation, "operation");
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            future.complete(operation.call());
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Performs an operation on the given executor. If the operation throws an exception,
+     * the future completes exceptionally with that exception as its cause.
+     * @param operation the operation
+     * @param executor executor
+     * @param <T> result type
+     * @return a future
+     */
+    public static <T> CompletableFuture<T> callAsync(Callable<T> operation, Executor executor) {
+        requireNonNull(operation, "operation");
+        requireNonNull(executor, "executor");
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return operation.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    /**
+     * Performs an operation that produces no result on the given executor.
+     * @param operation the operation
+     * @param executor executor
+     * @return a future
+     * @see #callAsync(Callable, Executor)
+     */
+    public static CompletableFuture<Void> runAsync(ContainmentRunnable operation, Executor executor) {
+        requireNonNull(operation, "operation");
+        return callAsync(() -> {
+            operation.run();
+            return null;
+        }, executor);
+    }
+
+    /**
+     * Interface of an operation that produces no result but may throw a checked exception.
+     */
+    public interface ContainmentRunnable {
+
+        /**
+         * Performs the operation.
+         * @throws Exception on error
+         */
+        void run() throws Exception;
+    }
+}
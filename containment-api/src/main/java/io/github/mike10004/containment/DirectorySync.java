@@ -0,0 +1,315 @@
+package io.github.mike10004.containment;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeSet;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Service that brings a directory in a container filesystem up to date with a directory
+ * on the local filesystem. A single process in the container creates the destination
+ * directory if necessary and lists the remote tree with the type, size, and modification
+ * time of each file, and optionally a SHA-256 checksum. The listing is compared with the
+ * local tree, and only new and changed files are uploaded, by an uploader supplied by
+ * the copier implementation. Remote files that do not exist locally may be deleted.
+ *
+ * <p>The container must provide {@code sh}, {@code find}, {@code stat}, and {@code rm},
+ * and {@code sha256sum} if checksums are compared, as busybox and coreutils do.</p>
+ */
+public class DirectorySync {
+
+    static final int MAX_PATHS_PER_DELETION = 256;
+
+    private static final String CHECKSUMS_MARKER = "::checksums::";
+
+    private static final String LIST_SCRIPT = "mkdir -p -- \"$1\" && cd -- \"$1\" || exit 3\n" +
+            "find . -mindepth 1 -exec stat -c '%F|%s|%Y|%n' {} + || exit 4\n" +
+            "if [ \"$2\" = checksum ]; then\n" +
+            "  echo '" + CHECKSUMS_MARKER + "'\n" +
+            "  find . -type f -exec sha256sum {} + || exit 5\n" +
+            "fi\n";
+
+    private final ContainerExecutor executor;
+
+    public DirectorySync(ContainerExecutor executor) {
+        this.executor = requireNonNull(executor, "executor");
+    }
+
+    /**
+     * Interface of a service that uploads files and directories from the source directory
+     * to the destination directory. The parent of each path already exists in the destination.
+     */
+    public interface Uploader {
+
+        /**
+         * Uploads files and directories. Directories are uploaded recursively.
+         * @param relativePaths slash-separated paths relative to the source directory
+         * @throws IOException on I/O error
+         * @throws ContainmentException on container error
+         */
+        void upload(List<String> relativePaths) throws IOException, ContainmentException;
+    }
+
+    /**
+     * Synchronizes a directory.
+     * @param sourceDirectory directory on the local filesystem
+     * @param destinationDirectory directory in the container filesystem; created if it does not exist
+     * @param options sync options
+     * @param uploader service that uploads new and changed files
+     * @return the result
+     * @throws IOException on I/O error
+     * @throws ContainmentException on container error
+     */
+    public Result sync(File sourceDirectory, String destinationDirectory, Set<ContainerCopier.SyncOption> options, Uploader uploader) throws IOException, ContainmentException {
+        requireNonNull(uploader, "uploader");
+        if (!sourceDirectory.isDirectory()) {
+            throw new ContainerCopier.DockerCopyException("not a directory: " + sourceDirectory);
+        }
+        boolean checksum = options.contains(ContainerCopier.SyncOption.CHECKSUM);
+        Map<String, RemoteEntry> remote = listRemote(destinationDirectory, checksum);
+        Plan plan = plan(sourceDirectory.toPath(), remote, checksum, options.contains(ContainerCopier.SyncOption.DELETE_EXTRANEOUS));
+        delete(destinationDirectory, plan.deletions);
+        if (!plan.uploads.isEmpty()) {
+            uploader.upload(plan.uploads);
+        }
+        return new Result(plan.uploads, plan.deletions, plan.unchanged);
+    }
+
+    private Map<String, RemoteEntry> listRemote(String destinationDirectory, boolean checksum) throws IOException, ContainmentException {
+        ContainerSubprocessResult<String> result = executor.execute("sh", "-c", LIST_SCRIPT, "sh", destinationDirectory, checksum ? "checksum" : "");
+        if (result.exitCode() != 0) {
+            throw new ContainerCopier.DockerCopyException(String.format("listing %s failed with exit code %d: %s", destinationDirectory, result.exitCode(), result.stderr()));
+        }
+        return parseListing(result.stdout());
+    }
+
+    /**
+     * Parses the output of the listing script. Lines that cannot be parsed, such as the
+     * fragments of names that contain newlines, are ignored, which causes the files they
+     * describe to be uploaded again.
+     */
+    static Map<String, RemoteEntry> parseListing(String listing) {
+        Map<String, RemoteEntry> entries = new HashMap<>();
+        boolean checksums = false;
+        for (String line : listing.split("\n")) {
+            if (CHECKSUMS_MARKER.equals(line)) {
+                checksums = true;
+            } else if (checksums) {
+                // sha256sum prints the checksum, a space, and a space or asterisk for the mode
+                if (line.length() > 66 && line.startsWith("./", 66)) {
+                    RemoteEntry entry = entries.get(line.substring(68));
+                    if (entry != null) {
+                        entry.checksum = line.substring(0, 64);
+                    }
+                }
+            } else {
+                String[] parts = line.split("\\|", 4);
+                if (parts.length == 4 && parts[3].startsWith("./")) {
+                    try {
+                        entries.put(parts[3].substring(2), new RemoteEntry(toType(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+                    } catch (NumberFormatException ignore) {
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static EntryType toType(String description) {
+        if ("directory".equals(description)) {
+            return EntryType.DIRECTORY;
+        }
+        if (description.startsWith("regular")) {
+            return EntryType.FILE;
+        }
+        return EntryType.OTHER;
+    }
+
+    static Plan plan(Path sourceDirectory, Map<String, RemoteEntry> remote, boolean checksum, boolean deleteExtraneous) throws IOException {
+        Plan plan = new Plan();
+        Set<String> local = new HashSet<>();
+        planContents(sourceDirectory, "", remote, checksum, local, plan);
+        if (deleteExtraneous) {
+            Set<String> deleted = new HashSet<>(plan.deletions);
+            for (String relativePath : new TreeSet<>(remote.keySet())) {
+                if (!local.contains(relativePath) && !isBeneathAny(relativePath, deleted)) {
+                    plan.deletions.add(relativePath);
+                    deleted.add(relativePath);
+                }
+            }
+        }
+        return plan;
+    }
+
+    private static void planContents(Path dir, String relativeDir, Map<String, RemoteEntry> remote, boolean checksum, Set<String> local, Plan plan) throws IOException {
+        List<Path> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            stream.forEach(children::add);
+        }
+        children.sort(Comparator.comparing(p -> p.getFileName().toString()));
+        for (Path child : children) {
+            String relativePath = relativeDir + child.getFileName().toString();
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(child, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                // broken symbolic link
+                continue;
+            }
+            local.add(relativePath);
+            @Nullable RemoteEntry remoteEntry = remote.get(relativePath);
+            EntryType type = attrs.isDirectory() ? EntryType.DIRECTORY : EntryType.FILE;
+            if (remoteEntry == null) {
+                plan.uploads.add(relativePath);
+            } else if (remoteEntry.type != type) {
+                plan.deletions.add(relativePath);
+                plan.uploads.add(relativePath);
+            } else if (type == EntryType.DIRECTORY) {
+                if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    planContents(child, relativePath + "/", remote, checksum, local, plan);
+                }
+            } else if (isUnchanged(child, attrs, remoteEntry, checksum)) {
+                plan.unchanged++;
+            } else {
+                plan.uploads.add(relativePath);
+            }
+        }
+    }
+
+    private static boolean isUnchanged(Path file, BasicFileAttributes attrs, RemoteEntry remoteEntry, boolean checksum) throws IOException {
+        if (attrs.size() != remoteEntry.size) {
+            return false;
+        }
+        if (checksum) {
+            return remoteEntry.checksum != null
+                    && remoteEntry.checksum.equals(sha256(file));
+        }
+        // archives record modification times in whole seconds
+        return attrs.lastModifiedTime().toMillis() / 1000 == remoteEntry.modifiedTime;
+    }
+
+    private static String sha256(Path file) throws IOException {
+        return MoreFiles.asByteSource(file).hash(Hashing.sha256()).toString();
+    }
+
+    private static boolean isBeneathAny(String relativePath, Set<String> ancestors) {
+        for (int slash = relativePath.indexOf('/'); slash >= 0; slash = relativePath.indexOf('/', slash + 1)) {
+            if (ancestors.contains(relativePath.substring(0, slash))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void delete(String destinationDirectory, List<String> relativePaths) throws IOException, ContainmentException {
+        String prefix = destinationDirectory.endsWith("/") ? destinationDirectory : destinationDirectory + "/";
+        for (int from = 0; from < relativePaths.size(); from += MAX_PATHS_PER_DELETION) {
+            List<String> args = new ArrayList<>();
+            args.add("-rf");
+            args.add("--");
+            relativePaths.subList(from, Math.min(relativePaths.size(), from + MAX_PATHS_PER_DELETION))
+                    .forEach(relativePath -> args.add(prefix + relativePath));
+            ContainerSubprocessResult<String> result = executor.execute("rm", args.toArray(new String[0]));
+            if (result.exitCode() != 0) {
+                throw new ContainerCopier.DockerCopyException(String.format("deletion failed with exit code %d: %s", result.exitCode(), result.stderr()));
+            }
+        }
+    }
+
+    enum EntryType {
+        FILE, DIRECTORY, OTHER
+    }
+
+    static final class RemoteEntry {
+
+        public final EntryType type;
+        public final long size;
+        public final long modifiedTime;
+        @Nullable
+        public String checksum;
+
+        public RemoteEntry(EntryType type, long size, long modifiedTime) {
+            this.type = requireNonNull(type);
+            this.size = size;
+            this.modifiedTime = modifiedTime;
+        }
+    }
+
+    static final class Plan {
+
+        public final List<String> uploads = new ArrayList<>();
+        public final List<String> deletions = new ArrayList<>();
+        public int unchanged;
+
+    }
+
+    /**
+     * Value class that represents the result of a sync.
+     */
+    public static final class Result {
+
+        private final List<String> uploaded;
+        private final List<String> deleted;
+        private final int unchanged;
+
+        public Result(List<String> uploaded, List<String> deleted, int unchanged) {
+            this.uploaded = Collections.unmodifiableList(new ArrayList<>(uploaded));
+            this.deleted = Collections.unmodifiableList(new ArrayList<>(deleted));
+            this.unchanged = unchanged;
+        }
+
+        /**
+         * Returns the relative paths of uploaded files and directories. Directories were uploaded recursively.
+         * @return list of relative paths
+         */
+        public List<String> uploaded() {
+            return uploaded;
+        }
+
+        /**
+         * Returns the relative paths of files and directories deleted from the destination,
+         * because they do not exist in the source or were replaced by a different type of file.
+         * @return list of relative paths
+         */
+        public List<String> deleted() {
+            return deleted;
+        }
+
+        /**
+         * Returns the number of files that were not uploaded because they were unchanged.
+         * @return count of unchanged files
+         */
+        public int unchanged() {
+            return unchanged;
+        }
+
+        @Override
+        public String toString() {
+            return new StringJoiner(", ", Result.class.getSimpleName() + "[", "]")
+                    .add("uploaded=" + uploaded.size())
+                    .add("deleted=" + deleted.size())
+                    .add("unchanged=" + unchanged)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.mike10004.containment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Interface of a service that receives output of a process executed in a container
+ * as it is produced. The chunks of a stream are delivered to its sink in order, one at a time.
+ * Standard output and standard error may be delivered concurrently on different threads,
+ * so a sink that receives both streams must be thread-safe.
+ */
+public interface ExecOutputSink {
+
+    /**
+     * Accepts a chunk of output. The buffer's content is only valid for the duration of the call,
+     * so implementations must copy any bytes they need to retain.
+     * @param chunk buffer whose remaining bytes are the output chunk
+     * @throws IOException on I/O error
+     */
+    void accept(ByteBuffer chunk) throws IOException;
+
+    /**
+     * Notifies this sink that no more output will be produced.
+     * @throws IOException on I/O error
+     */
+    default void complete() throws IOException {
+    }
+
+    /**
+     * Returns a sink that discards all output.
+     * @return a sink
+     */
+    static ExecOutputSink discarding() {
+        return chunk -> chunk.position(chunk.limit());
+    }
+
+    /**
+     * Returns a new sink that captures all output in memory.
+     * @return a new sink
+     */
+    static ByteArrayExecSink byteArray() {
+        return new ByteArrayExecSink();
+    }
+
+    /**
+     * Returns a new sink that captures a bounded amount of output from the beginning
+     * and end of the stream, discarding the middle.
+     * @param headLimit maximum number of bytes retained from the beginning of the stream
+     * @param tailLimit maximum number of bytes retained from the end of the stream
+     * @return a new sink
+     */
+    static HeadTailExecSink headTail(int headLimit, int tailLimit) {
+        return new HeadTailExecSink(headLimit, tailLimit);
+    }
+
+    /**
+     * Returns a new sink that captures output in memory until a threshold is exceeded,
+     * after which all output is written to a temporary file.
+     * @param thresholdBytes maximum number of bytes kept in memory
+     * @param tempDir directory in which the temporary file is created
+     * @return a new sink
+     */
+    static SpillingExecSink spilling(int thresholdBytes, Path tempDir) {
+        return new SpillingExecSink(thresholdBytes, tempDir);
+    }
+}
@@ -0,0 +1,108 @@
+package io.github.mike10004.containment;
+
+import java.nio.ByteBuffer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Implementation of a sink that retains a bounded number of bytes from the beginning
+ * and the end of the output. Memory use does not depend on the length of the output.
+ */
+public class HeadTailExecSink implements ExecOutputSink {
+
+    private final byte[] head;
+    private int headLength;
+    private final byte[] tailRing;
+    private int tailPosition;
+    private long tailLength;
+    private long totalBytes;
+
+    /**
+     * Constructs an instance.
+     * @param headLimit maximum number of bytes retained from the beginning of the stream
+     * @param tailLimit maximum number of bytes retained from the end of the stream
+     */
+    public HeadTailExecSink(int headLimit, int tailLimit) {
+        checkArgument(headLimit >= 0, "headLimit must be nonnegative");
+        checkArgument(tailLimit >= 0, "tailLimit must be nonnegative");
+        head = new byte[headLimit];
+        tailRing = new byte[tailLimit];
+    }
+
+    @Override
+    public synchronized void accept(ByteBuffer chunk) {
+        int length = chunk.remaining();
+        totalBytes += length;
+        int toHead = Math.min(length, head.length - headLength);
+        if (toHead > 0) {
+            chunk.get(head, headLength, toHead);
+            headLength += toHead;
+        }
+        int remaining = chunk.remaining();
+        if (tailRing.length == 0) {
+            chunk.position(chunk.limit());
+            tailLength += remaining;
+            return;
+        }
+        if (remaining > tailRing.length) {
+            // only the last tailRing.length bytes can survive
+            int skip = remaining - tailRing.length;
+            chunk.position(chunk.position() + skip);
+            tailLength += skip;
+            remaining = tailRing.length;
+        }
+        while (remaining > 0) {
+            int n = Math.min(remaining, tailRing.length - tailPosition);
+            chunk.get(tailRing, tailPosition, n);
+            tailPosition = (tailPosition + n) % tailRing.length;
+            tailLength += n;
+            remaining -= n;
+        }
+    }
+
+    /**
+     * Returns the bytes retained from the beginning of the output.
+     * @return a copy of the head bytes
+     */
+    public synchronized byte[] head() {
+        byte[] copy = new byte[headLength];
+        System.arraycopy(head, 0, copy, 0, headLength);
+        return copy;
+    }
+
+    /**
+     * Returns the bytes retained from the end of the output, excluding any bytes
+     * that are part of the head.
+     * @return a copy of the tail bytes
+     */
+    public synchronized byte[] tail() {
+        int length = (int) Math.min(tailLength, tailRing.length);
+        byte[] copy = new byte[length];
+        int start = (tailPosition - length + tailRing.length) % Math.max(1, tailRing.length);
+        int firstPart = Math.min(length, tailRing.length - start);
+        System.arraycopy(tailRing, start, copy, 0, firstPart);
+        System.arraycopy(tailRing, 0, copy, firstPart, length - firstPart);
+        return copy;
+    }
+
+    /**
+     * Returns the total number of bytes of output received.
+     * @return total byte count
+     */
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Returns the number of bytes discarded from the middle of the output.
+     * @return count of bytes neither in the head nor the tail
+     */
+    public synchronized long discardedBytes() {
+        return totalBytes - headLength - Math.min(tailLength, tailRing.length);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HeadTailExecSink{totalBytes=%d,discardedBytes=%d}", totalBytes(), discardedBytes());
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.mike10004.containment;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Implementation of a sink that keeps output in memory up to a threshold and
+ * writes it to a temporary file once the threshold is exceeded. Closing this
+ * sink deletes the temporary file.
+ */
+public class SpillingExecSink implements ExecOutputSink, Closeable {
+
+    private final int thresholdBytes;
+    private final Path tempDir;
+    private ByteArrayOutputStream memory;
+    private Path spillFile;
+    private FileChannel spillChannel;
+    private long size;
+
+    /**
+     * Constructs an instance.
+     * @param thresholdBytes maximum number of bytes kept in memory
+     * @param tempDir directory in which the temporary file is created
+     */
+    public SpillingExecSink(int thresholdBytes, Path tempDir) {
+        checkArgument(thresholdBytes >= 0, "thresholdBytes must be nonnegative");
+        this.thresholdBytes = thresholdBytes;
+        this.tempDir = requireNonNull(tempDir, "tempDir");
+        memory = new ByteArrayOutputStream(Math.min(thresholdBytes, 8192));
+    }
+
+    @Override
+    public synchronized void accept(ByteBuffer chunk) throws IOException {
+        int length = chunk.remaining();
+        if (spillFile == null && size + length > thresholdBytes) {
+            spill();
+        }
+        if (spillChannel != null) {
+            while (chunk.hasRemaining()) {
+                spillChannel.write(chunk);
+            }
+        } else {
+            checkState(spillFile == null, "sink already completed");
+            ByteArrayExecSink.write(memory, chunk);
+        }
+        size += length;
+    }
+
+    private void spill() throws IOException {
+        spillFile = Files.createTempFile(tempDir, "exec-output", ".tmp");
+        spillChannel = FileChannel.open(spillFile, StandardOpenOption.WRITE);
+        ByteBuffer buffered = ByteBuffer.wrap(memory.toByteArray());
+        while (buffered.hasRemaining()) {
+            spillChannel.write(buffered);
+        }
+        memory = null;
+    }
+
+    @Override
+    public synchronized void complete() throws IOException {
+        if (spillChannel != null) {
+            spillChannel.close();
+            spillChannel = null;
+        }
+    }
+
+    /**
+     * Returns the number of bytes of output received.
+     * @return size in bytes
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the output exceeded the threshold and was written to a file.
+     * @return true if output was spilled to a file
+     */
+    public synchronized boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Returns the pathname of the file containing the output, if the output was spilled.
+     * @return optional pathname of the spill file
+     */
+    public synchronized Optional<Path> spillFile() {
+        return Optional.ofNullable(spillFile);
+    }
+
+    /**
+     * Opens a stream that supplies the output captured. Call {@link #complete()}
+     * before opening a stream.
+     * @return a new input stream
+     * @throws IOException on I/O error
+     */
+    public synchronized InputStream openStream() throws IOException {
+        if (spillFile != null) {
+            return Files.newInputStream(spillFile);
+        }
+        return new ByteArrayInputStream(memory.toByteArray());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        complete();
+        if (spillFile != null) {
+            Files.deleteIfExists(spillFile);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SpillingExecSink{size=%d,spillFile=%s}", size(), spillFile);
+    }
+}
@@ -1,5 +1,7 @@
 package io.github.mike10004.containment;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Interface of a startable container that is not yet started but can be started.
  * To close a runnable container is to remove (destroy) it.
@@ -13,6 +15,16 @@ public interface StartableContainer extends ActionableContainer, AutoCloseable {
      */
     StartedContainer start() throws ContainmentException;
 
+    /**
+     * Starts the container without blocking the caller, if the implementation supports that.
+     * The default implementation starts the container on the calling thread and returns a
+     * completed future.
+     * @return a future of the running container instance
+     */
+    default CompletableFuture<StartedContainer> startAsync() {
+        return ContainmentFutures.callNow(this::start);
+    }
+
     /**
      * Removes this container. If the container's auto-remove setting is enabled
      * and the container was started, then this does nothing, because it will be
@@ -20,4 +32,18 @@ public interface StartableContainer extends ActionableContainer, AutoCloseable {
      * @throws ContainmentException
      */
     void close() throws ContainmentException;
+
+    /**
+     * Removes this container without blocking the caller, if the implementation supports that.
+     * The default implementation removes the container on the calling thread and returns a
+     * completed future.
+     * @return a future that completes when the container has been removed
+     * @see #close()
+     */
+    default CompletableFuture<Void> closeAsync() {
+        return ContainmentFutures.callNow(() -> {
+            close();
+            return null;
+        });
+    }
 }
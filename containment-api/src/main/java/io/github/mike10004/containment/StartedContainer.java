@@ -1,5 +1,7 @@
 package io.github.mike10004.containment;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Interface of a container that has been started.
  */
@@ -13,4 +15,18 @@ public interface StartedContainer extends RunningContainer, AutoCloseable {
     @Override
     void close() throws ContainmentException;
 
+    /**
+     * Stops this container without blocking the caller, if the implementation supports that.
+     * The default implementation stops the container on the calling thread and returns a
+     * completed future.
+     * @return a future that completes when the container has been stopped
+     * @see #close()
+     */
+    default CompletableFuture<Void> closeAsync() {
+        return ContainmentFutures.callNow(() -> {
+            close();
+            return null;
+        });
+    }
+
 }
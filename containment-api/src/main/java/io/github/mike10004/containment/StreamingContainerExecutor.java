@@ -0,0 +1,65 @@
+package io.github.mike10004.containment;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Interface of an executor that delivers process output to sinks as it is produced,
+ * instead of buffering all of it. Memory use is determined by the sinks.
+ */
+public interface StreamingContainerExecutor extends ContainerExecutor {
+
+    /**
+     * Executes a process in a container and waits for it to finish. Each sink's
+     * {@link ExecOutputSink#complete()} method is invoked after the process finishes.
+     * @param containerProcessEnvironment environment variables for the process
+     * @param stdoutSink sink of standard output
+     * @param stderrSink sink of standard error
+     * @param executable executable
+     * @param args arguments
+     * @return the process exit code
+     * @throws ContainmentException on error, including an error thrown by a sink
+     */
+    int execute(Map<String, String> containerProcessEnvironment, ExecOutputSink stdoutSink, ExecOutputSink stderrSink, String executable, String... args) throws ContainmentException;
+
+    /**
+     * Executes a process with no additional environment variables.
+     * @see #execute(Map, ExecOutputSink, ExecOutputSink, String, String...)
+     */
+    default int execute(ExecOutputSink stdoutSink, ExecOutputSink stderrSink, String executable, String... args) throws ContainmentException {
+        return execute(Collections.emptyMap(), stdoutSink, stderrSink, executable, args);
+    }
+
+    /**
+     * Executes a process and captures its output as bytes, without decoding.
+     * @param containerProcessEnvironment environment variables for the process
+     * @param executable executable
+     * @param args arguments
+     * @return the process result
+     * @throws ContainmentException on error
+     */
+    default ContainerSubprocessResult<byte[]> executeBinary(Map<String, String> containerProcessEnvironment, String executable, String... args) throws ContainmentException {
+        ByteArrayExecSink stdout = new ByteArrayExecSink(), stderr = new ByteArrayExecSink();
+        int exitCode = execute(containerProcessEnvironment, stdout, stderr, executable, args);
+        return ContainerSubprocessResult.create(exitCode, stdout.toByteArray(), stderr.toByteArray());
+    }
+
+    /**
+     * Executes a process and captures its output as bytes, without decoding.
+     * @see #executeBinary(Map, String, String...)
+     */
+    default ContainerSubprocessResult<byte[]> executeBinary(String executable, String... args) throws ContainmentException {
+        return executeBinary(Collections.emptyMap(), executable, args);
+    }
+
+    /**
+     * Executes a process and decodes its captured output.
+     * @see #executeBinary(Map, String, String...)
+     */
+    @Override
+    default ContainerSubprocessResult<String> execute(Map<String, String> containerProcessEnvironment, Charset processStreamCharset, String executable, String... args) throws ContainmentException {
+        ContainerSubprocessResult<byte[]> result = executeBinary(containerProcessEnvironment, executable, args);
+        return ContainerSubprocessResult.create(result.exitCode(), new String(result.stdout(), processStreamCharset), new String(result.stderr(), processStreamCharset));
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.mike10004.containment;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ContainerLogBufferTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void retainsMostRecentBytes() {
+        ContainerLogBuffer buffer = ContainerLogBuffer.allocate(8);
+        Consumer<byte[]> stdout = buffer.sink(ContainerLogBuffer.Stream.STDOUT);
+        stdout.accept("abcde".getBytes(US_ASCII));
+        assertEquals("abcde", buffer.snapshot(ContainerLogBuffer.Stream.STDOUT, US_ASCII));
+        stdout.accept("fghij".getBytes(US_ASCII));
+        assertEquals("cdefghij", buffer.snapshot(ContainerLogBuffer.Stream.STDOUT, US_ASCII));
+        stdout.accept("0123456789".getBytes(US_ASCII));
+        assertEquals("23456789", buffer.snapshot(ContainerLogBuffer.Stream.STDOUT, US_ASCII));
+        assertEquals("total", 20, buffer.totalBytes(ContainerLogBuffer.Stream.STDOUT));
+        assertEquals("stderr untouched", 0, buffer.snapshot(ContainerLogBuffer.Stream.STDERR).length);
+    }
+
+    @Test
+    public void searchAcrossWrap() {
+        ContainerLogBuffer buffer = ContainerLogBuffer.allocate(8);
+        Consumer<byte[]> stderr = buffer.sink(ContainerLogBuffer.Stream.STDERR);
+        stderr.accept("xxxxxxERR".getBytes(US_ASCII));
+        stderr.accept("OR!".getBytes(US_ASCII));
+        assertEquals("xxERROR!", buffer.snapshot(ContainerLogBuffer.Stream.STDERR, US_ASCII));
+        assertEquals(2, buffer.indexOf(ContainerLogBuffer.Stream.STDERR, "ERROR".getBytes(US_ASCII)));
+        assertTrue(buffer.contains(ContainerLogBuffer.Stream.STDERR, "OR!", US_ASCII));
+        assertFalse(buffer.contains(ContainerLogBuffer.Stream.STDERR, "xxxx", US_ASCII));
+    }
+
+    @Test
+    public void dump() throws Exception {
+        ContainerLogBuffer buffer = ContainerLogBuffer.allocate(4);
+        buffer.sink(ContainerLogBuffer.Stream.STDOUT).accept("abcdef".getBytes(US_ASCII));
+        buffer.sink(ContainerLogBuffer.Stream.STDERR).accept("xy".getBytes(US_ASCII));
+        Path dir = temporaryFolder.getRoot().toPath().resolve("dumps");
+        List<Path> files = buffer.dump(dir, "test");
+        assertEquals(dir.resolve("test-stdout.log"), files.get(0));
+        assertArrayEquals("cdef".getBytes(US_ASCII), Files.readAllBytes(files.get(0)));
+        assertArrayEquals("xy".getBytes(US_ASCII), Files.readAllBytes(files.get(1)));
+    }
+}
@@ -0,0 +1,126 @@
+package io.github.mike10004.containment;
+
+import com.google.common.hash.Hashing;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DirectorySyncTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void parseListing() {
+        String checksum = Hashing.sha256().hashString("abc", UTF_8).toString();
+        String listing = "directory|4096|1600000000|./db\n" +
+                "regular file|3|1600000001|./db/a|b.sql\n" +
+                "regular empty file|0|1600000002|./empty.txt\n" +
+                "symbolic link|5|1600000003|./link\n" +
+                "garbage line\n" +
+                "::checksums::\n" +
+                checksum + "  ./db/a|b.sql\n";
+        Map<String, DirectorySync.RemoteEntry> entries = DirectorySync.parseListing(listing);
+        assertEquals("entries", 4, entries.size());
+        assertEquals(DirectorySync.EntryType.DIRECTORY, entries.get("db").type);
+        DirectorySync.RemoteEntry file = entries.get("db/a|b.sql");
+        assertEquals(DirectorySync.EntryType.FILE, file.type);
+        assertEquals(3, file.size);
+        assertEquals(1600000001L, file.modifiedTime);
+        assertEquals(checksum, file.checksum);
+        assertEquals(DirectorySync.EntryType.FILE, entries.get("empty.txt").type);
+        assertNull(entries.get("empty.txt").checksum);
+        assertEquals(DirectorySync.EntryType.OTHER, entries.get("link").type);
+    }
+
+    @Test
+    public void sync() throws Exception {
+        File source = temporaryFolder.newFolder("source");
+        Path unchanged = write(source, "unchanged.txt", "same");
+        Path changed = write(source, "db/changed.sql", "new content");
+        write(source, "newdir/nested/file.txt", "x");
+        write(source, "replaced", "file where a directory was");
+        long unchangedTime = Files.getLastModifiedTime(unchanged).toMillis() / 1000;
+        long changedTime = Files.getLastModifiedTime(changed).toMillis() / 1000;
+        String listing = String.format("regular file|4|%d|./unchanged.txt\n", unchangedTime) +
+                "directory|4096|1|./db\n" +
+                String.format("regular file|11|%d|./db/changed.sql\n", changedTime - 60) +
+                "regular file|3|1|./db/stale.sql\n" +
+                "directory|4096|1|./replaced\n" +
+                "regular file|3|1|./replaced/child\n" +
+                "directory|4096|1|./old\n" +
+                "regular file|3|1|./old/file\n";
+        RecordingExecutor executor = new RecordingExecutor(listing);
+        List<String> uploaded = new ArrayList<>();
+        DirectorySync.Result result = new DirectorySync(executor).sync(source, "/data", EnumSet.of(ContainerCopier.SyncOption.DELETE_EXTRANEOUS), uploaded::addAll);
+        assertEquals("uploaded", Arrays.asList("db/changed.sql", "newdir", "replaced"), uploaded);
+        assertEquals("deleted", Arrays.asList("replaced", "db/stale.sql", "old"), result.deleted());
+        assertEquals("unchanged", 1, result.unchanged());
+        assertEquals("commands", 2, executor.commands.size());
+        assertEquals("sh", executor.commands.get(0).get(0));
+        assertEquals("/data", executor.commands.get(0).get(4));
+        assertEquals(Arrays.asList("rm", "-rf", "--", "/data/replaced", "/data/db/stale.sql", "/data/old"), executor.commands.get(1));
+    }
+
+    @Test
+    public void sync_checksum() throws Exception {
+        File source = temporaryFolder.newFolder("source");
+        write(source, "same.txt", "abc");
+        write(source, "differs.txt", "abc");
+        String sameChecksum = Hashing.sha256().hashString("abc", UTF_8).toString();
+        String otherChecksum = Hashing.sha256().hashString("xyz", UTF_8).toString();
+        String listing = "regular file|3|1|./same.txt\n" +
+                "regular file|3|1|./differs.txt\n" +
+                "regular file|3|1|./extraneous.txt\n" +
+                "::checksums::\n" +
+                sameChecksum + "  ./same.txt\n" +
+                otherChecksum + "  ./differs.txt\n";
+        RecordingExecutor executor = new RecordingExecutor(listing);
+        List<String> uploaded = new ArrayList<>();
+        DirectorySync.Result result = new DirectorySync(executor).sync(source, "/data/", EnumSet.of(ContainerCopier.SyncOption.CHECKSUM), uploaded::addAll);
+        assertEquals("uploaded", Arrays.asList("differs.txt"), uploaded);
+        assertEquals("deleted", Arrays.asList(), result.deleted());
+        assertEquals("unchanged", 1, result.unchanged());
+        assertEquals("checksum mode", "checksum", executor.commands.get(0).get(5));
+        assertEquals("commands", 1, executor.commands.size());
+    }
+
+    private static Path write(File root, String relativePath, String content) throws Exception {
+        Path file = root.toPath().resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        return Files.write(file, content.getBytes(UTF_8));
+    }
+
+    private static class RecordingExecutor implements ContainerExecutor {
+
+        private final String listing;
+        public final List<List<String>> commands = new ArrayList<>();
+
+        public RecordingExecutor(String listing) {
+            this.listing = listing;
+        }
+
+        @Override
+        public ContainerSubprocessResult<String> execute(Map<String, String> containerProcessEnvironment, Charset processStreamCharset, String executable, String... args) {
+            List<String> command = new ArrayList<>();
+            command.add(executable);
+            command.addAll(Arrays.asList(args));
+            commands.add(command);
+            return ContainerSubprocessResult.create(0, commands.size() == 1 ? listing : "", "");
+        }
+    }
+}
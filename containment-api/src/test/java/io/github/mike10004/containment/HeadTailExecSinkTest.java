@@ -0,0 +1,61 @@
+package io.github.mike10004.containment;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class HeadTailExecSinkTest {
+
+    @Test
+    public void accept_shortOutput() {
+        HeadTailExecSink sink = new HeadTailExecSink(4, 4);
+        feed(sink, "abc");
+        assertEquals("head", "abc", str(sink.head()));
+        assertEquals("tail", "", str(sink.tail()));
+        assertEquals("discarded", 0, sink.discardedBytes());
+    }
+
+    @Test
+    public void accept_longOutputManyChunks() {
+        HeadTailExecSink sink = new HeadTailExecSink(3, 5);
+        feed(sink, "abcd", "efghij", "k", "lmnopqrstu", "vwxyz");
+        assertEquals("head", "abc", str(sink.head()));
+        assertEquals("tail", "vwxyz", str(sink.tail()));
+        assertEquals("total", 26, sink.totalBytes());
+        assertEquals("discarded", 18, sink.discardedBytes());
+    }
+
+    @Test
+    public void accept_wrapsRing() {
+        HeadTailExecSink sink = new HeadTailExecSink(0, 4);
+        feed(sink, "ab", "cd", "e", "fg");
+        assertEquals("tail", "defg", str(sink.tail()));
+    }
+
+    @Test
+    public void accept_zeroTail() {
+        HeadTailExecSink sink = new HeadTailExecSink(2, 0);
+        feed(sink, "abcdef");
+        assertEquals("head", "ab", str(sink.head()));
+        assertEquals("tail", "", str(sink.tail()));
+        assertEquals("discarded", 4, sink.discardedBytes());
+    }
+
+    private static void feed(ExecOutputSink sink, String...chunks) {
+        for (String chunk : chunks) {
+            try {
+                sink.accept(ByteBuffer.wrap(chunk.getBytes(StandardCharsets.US_ASCII)));
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    private static String str(byte[] bytes) {
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.mike10004.containment;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SpillingExecSinkTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void belowThreshold() throws Exception {
+        try (SpillingExecSink sink = new SpillingExecSink(8, temporaryFolder.getRoot().toPath())) {
+            sink.accept(ByteBuffer.wrap("abcd".getBytes(US_ASCII)));
+            sink.complete();
+            assertFalse("spilled", sink.isSpilled());
+            assertArrayEquals("content", "abcd".getBytes(US_ASCII), read(sink));
+        }
+    }
+
+    @Test
+    public void aboveThreshold() throws Exception {
+        Path spillFile;
+        try (SpillingExecSink sink = new SpillingExecSink(8, temporaryFolder.getRoot().toPath())) {
+            sink.accept(ByteBuffer.wrap("abcd".getBytes(US_ASCII)));
+            sink.accept(ByteBuffer.wrap("efghijkl".getBytes(US_ASCII)));
+            sink.accept(ByteBuffer.wrap("mn".getBytes(US_ASCII)));
+            sink.complete();
+            assertTrue("spilled", sink.isSpilled());
+            assertEquals("size", 14, sink.size());
+            spillFile = sink.spillFile().orElseThrow(IllegalStateException::new);
+            assertArrayEquals("content", "abcdefghijklmn".getBytes(US_ASCII), read(sink));
+        }
+        assertFalse("deleted on close", Files.exists(spillFile));
+    }
+
+    private static byte[] read(SpillingExecSink sink) throws IOException {
+        try (InputStream in = sink.openStream()) {
+            return ByteStreams.toByteArray(in);
+        }
+    }
+}
@@ -1,28 +1,34 @@
 package io.github.mike10004.containment.dockerjava;
 
-import com.google.common.primitives.Ints;
 import io.github.mike10004.containment.Durations;
 
 import javax.annotation.Nullable;
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.nio.charset.Charset;
 import java.time.Duration;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
-public class BlockableLogFollower implements Consumer<byte[]> {
+/**
+ * Log consumer that allows a thread to wait until frames satisfying a predicate have been received.
+ * If frames are dropped before the predicate is satisfied, as {@link DjLogStream} does for subscribers
+ * that do not keep up, the awaited content may have been lost, so waiting fails with
+ * {@link FramesDroppedException} instead of continuing until the timeout.
+ */
+public class BlockableLogFollower implements Consumer<byte[]>, DjLogStream.GapListener {
 
     private final Predicate<? super byte[]> examiner;
 
-    private final CountDownLatch latch;
+    private final Object lock = new Object();
+
+    private int remaining;
+
+    private long droppedFrames;
 
     @Nullable
     private final PrintStream echo;
@@ -37,12 +43,46 @@ public class BlockableLogFollower implements Consumer<byte[]> {
 
     public BlockableLogFollower(Predicate<? super byte[]> examiner, int numSuccessesForSignal, @Nullable PrintStream echo) {
         this.examiner = requireNonNull(examiner);
-        latch = new CountDownLatch(numSuccessesForSignal);
+        checkArgument(numSuccessesForSignal >= 0, "numSuccessesForSignal must be nonnegative");
+        remaining = numSuccessesForSignal;
         this.echo = echo;
     }
 
     public int remaining() {
-        return Ints.checkedCast(latch.getCount());
+        synchronized (lock) {
+            return remaining;
+        }
+    }
+
+    /**
+     * Returns the number of frames that were dropped before reaching this follower.
+     * @return number of dropped frames
+     */
+    public long droppedFrames() {
+        synchronized (lock) {
+            return droppedFrames;
+        }
+    }
+
+    @Override
+    public void framesDropped(long count) {
+        synchronized (lock) {
+            droppedFrames += count;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Checks whether frames were dropped while the predicate has not yet been satisfied
+     * the required number of times.
+     * @throws FramesDroppedException if frames were dropped and the predicate is not yet satisfied
+     */
+    public void checkNoFramesDropped() throws FramesDroppedException {
+        synchronized (lock) {
+            if (remaining > 0 && droppedFrames > 0) {
+                throw new FramesDroppedException(droppedFrames);
+            }
+        }
     }
 
     @Override
@@ -55,13 +95,38 @@ public class BlockableLogFollower implements Consumer<byte[]> {
             }
         }
         if (examiner.test(bytes)) {
-            latch.countDown();
+            synchronized (lock) {
+                if (remaining > 0) {
+                    remaining--;
+                }
+                lock.notifyAll();
+            }
         }
     }
 
+    /**
+     * Waits until the predicate has been satisfied the required number of times.
+     * @param timeout maximum time to wait
+     * @return true if the predicate was satisfied, false if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     * @throws FramesDroppedException if frames were dropped before the predicate was satisfied
+     */
     public boolean await(Duration timeout) throws InterruptedException {
-        long millis = Durations.saturatedMilliseconds(timeout);
-        return latch.await(millis, TimeUnit.MILLISECONDS);
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(Durations.saturatedMilliseconds(timeout));
+        long start = System.nanoTime();
+        synchronized (lock) {
+            while (true) {
+                if (remaining == 0) {
+                    return true;
+                }
+                checkNoFramesDropped();
+                long waitMillis = TimeUnit.NANOSECONDS.toMillis(timeoutNanos - (System.nanoTime() - start));
+                if (waitMillis <= 0) {
+                    return false;
+                }
+                lock.wait(waitMillis);
+            }
+        }
     }
 
     public static BlockableLogFollower untilLine(Predicate<? super String> singleLinePredicate, Charset charset) {
@@ -74,31 +139,47 @@ public class BlockableLogFollower implements Consumer<byte[]> {
 
     /**
      * Creates a single line predicate that ignores encoding exceptions.
-     * @param charset
-     * @param evaluator
-     * @return
+     * @param charset charset
+     * @param evaluator line evaluator
+     * @return a new predicate
+     * @see #singleLinePredicate(Charset, Predicate, Consumer)
      */
     public static Predicate<byte[]> singleLinePredicate(Charset charset, Predicate<? super String> evaluator) {
         return singleLinePredicate(charset, evaluator, ignore -> {});
     }
 
+    /**
+     * Creates a predicate that evaluates each line of text in a sequence of byte frames.
+     * The predicate is stateful: lines and multibyte characters that span frames are
+     * assembled before evaluation, so a predicate instance must only be used with a single
+     * stream. A line is evaluated when its terminating line feed arrives, and the incomplete
+     * line at the end of each frame is also evaluated, so that text that is not followed by
+     * a line feed, such as a prompt, can be matched. The predicate returns true for a frame
+     * if any line completed by that frame, or the incomplete line that remains, satisfies
+     * the evaluator.
+     * @param charset charset
+     * @param evaluator line evaluator
+     * @param encodingExceptionListener listener notified of malformed input
+     * @return a new predicate
+     */
     public static Predicate<byte[]> singleLinePredicate(Charset charset, Predicate<? super String> evaluator, Consumer<? super IOException> encodingExceptionListener) {
-        return new Predicate<byte[]>() {
-            @Override
-            public boolean test(byte[] bytes) {
-                ByteArrayInputStream in = new ByteArrayInputStream(bytes);
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, charset))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        if (evaluator.test(line)) {
-                            return true;
-                        }
-                    }
-                } catch (IOException e) {
-                    encodingExceptionListener.accept(e);
-                }
-                return false;
+        requireNonNull(evaluator, "evaluator");
+        LineAssembler assembler = new LineAssembler(charset, LineAssembler.DEFAULT_MAX_LINE_LENGTH, encodingExceptionListener);
+        return bytes -> {
+            synchronized (assembler) {
+                return assembler.feed(bytes, evaluator) > 0 || assembler.testPending(evaluator);
             }
         };
     }
+
+    /**
+     * Exception thrown when frames were dropped before the awaited content appeared,
+     * so that the content may never be seen.
+     */
+    public static class FramesDroppedException extends IllegalStateException {
+
+        public FramesDroppedException(long droppedFrames) {
+            super(droppedFrames + " log frames were dropped before the awaited content appeared");
+        }
+    }
 }
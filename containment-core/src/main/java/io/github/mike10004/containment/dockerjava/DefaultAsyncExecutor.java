@@ -0,0 +1,34 @@
+package io.github.mike10004.containment.dockerjava;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holder of the executor used by default for asynchronous container operations.
+ * Threads are daemon threads and are created on demand, so a burst of container
+ * operations proceeds concurrently instead of queueing behind a fixed pool.
+ */
+final class DefaultAsyncExecutor {
+
+    private DefaultAsyncExecutor() {}
+
+    private static final ExecutorService INSTANCE = Executors.newCachedThreadPool(new DaemonThreadFactory());
+
+    public static ExecutorService getInstance() {
+        return INSTANCE;
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "containment-async-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -3,37 +3,44 @@ package io.github.mike10004.containment.dockerjava;
 import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.model.Image;
 import com.github.dockerjava.core.DockerClientConfig;
-import com.github.dockerjava.transport.DockerHttpClient;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.List;
 
-import com.github.dockerjava.jaxrs.JerseyDockerHttpClient;
-
 import static java.util.Objects.requireNonNull;
 
-public class DefaultDjDockerManager implements DjDockerManager {
+public class DefaultDjDockerManager implements DjDockerManager, Closeable {
 
     private final DockerClientConfig clientConfig;
     private final DjContainerMonitor containerMonitor;
+    private final DjClientRegistry clientRegistry;
+    private DjContainerEvents events;
+    private DjTeardownQueue teardownQueue;
 
     public DefaultDjDockerManager(DockerClientConfig dockerClientConfig, DjContainerMonitor containerMonitor) {
+        this(dockerClientConfig, containerMonitor, DjClientRegistry.getDefault());
+    }
+
+    public DefaultDjDockerManager(DockerClientConfig dockerClientConfig, DjContainerMonitor containerMonitor, DjClientRegistry clientRegistry) {
         this.clientConfig = requireNonNull(dockerClientConfig);
         this.containerMonitor = requireNonNull(containerMonitor);
+        this.clientRegistry = requireNonNull(clientRegistry);
     }
 
     protected static DockerClient buildClient(DockerClientConfig clientConfig) {
         return DockerClientBuilder.getInstance(clientConfig).build();
     }
 
+    /**
+     * Opens a client. The client returned is a lease on a client shared
+     * among all managers with the same client configuration; closing it
+     * releases the lease.
+     * @return a client
+     */
     @Override
     public final DockerClient openClient() {
-        DockerHttpClient httpClient = new JerseyDockerHttpClient.Builder()
-                .dockerHost(clientConfig.getDockerHost())
-                .sslConfig(clientConfig.getSSLConfig())
-                .build();
-        return DockerClientBuilder.getInstance(clientConfig)
-                .withDockerHttpClient(httpClient)
-                .build();
+        return clientRegistry.acquire(clientConfig);
     }
 
     @Override
@@ -45,4 +52,47 @@ public class DefaultDjDockerManager implements DjDockerManager {
     public DjContainerMonitor getContainerMonitor() {
         return containerMonitor;
     }
+
+    /**
+     * Gets the event subscription of this manager. The subscription is created
+     * on first invocation, and holds its own client lease while it is open.
+     * @return the event subscription
+     */
+    @Override
+    public synchronized DjContainerEvents events() {
+        if (events == null) {
+            events = new DjContainerEvents(this::openClient, containerMonitor, DjSession.getId());
+        }
+        return events;
+    }
+
+    /**
+     * Gets the teardown queue of this manager. The queue is created
+     * on first invocation, with settings read from system properties.
+     * @return the teardown queue
+     */
+    @Override
+    public synchronized DjTeardownQueue teardownQueue() {
+        if (teardownQueue == null) {
+            teardownQueue = DjTeardownQueue.fromSystemProperties(this::openClient, containerMonitor);
+        }
+        return teardownQueue;
+    }
+
+    /**
+     * Shuts down this manager, closing its event subscription and releasing
+     * the subscription's client lease. Containers created by creators that use
+     * this manager no longer receive events.
+     * @throws IOException on I/O error
+     */
+    @Override
+    public void close() throws IOException {
+        DjContainerEvents events;
+        synchronized (this) {
+            events = this.events;
+        }
+        if (events != null) {
+            events.close();
+        }
+    }
 }
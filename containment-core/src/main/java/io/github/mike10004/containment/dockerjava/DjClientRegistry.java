@@ -0,0 +1,353 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.core.DockerClientConfig;
+import com.github.dockerjava.jaxrs.JerseyDockerHttpClient;
+import com.github.dockerjava.transport.DockerHttpClient;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Registry of docker clients that are shared among all users of the same client configuration.
+ * Each call to {@link #acquire(DockerClientConfig)} returns a lease on a client; closing the lease
+ * releases it. The underlying client, and its pool of keep-alive connections to the daemon,
+ * is created on first acquisition. When the last lease on it is released, the client is kept
+ * idle for the keep-alive period, so that callers that acquire and release one lease at a time
+ * reuse warm connections, and is closed if no lease is acquired in that time.
+ *
+ * <p>The keep-alive period of the default instance is read from system property
+ * {@value #SYSPROP_KEEP_ALIVE}.</p>
+ */
+public class DjClientRegistry {
+
+    public static final String SYSPROP_MAX_TOTAL_CONNECTIONS = "containment-core.client.maxTotalConnections";
+    public static final String SYSPROP_MAX_PER_ROUTE_CONNECTIONS = "containment-core.client.maxPerRouteConnections";
+    public static final String SYSPROP_CONNECTION_REQUEST_TIMEOUT = "containment-core.client.connectionRequestTimeoutMs";
+    public static final String SYSPROP_KEEP_ALIVE = "containment-core.client.keepAliveMs";
+
+    public static final Duration DEFAULT_KEEP_ALIVE = Duration.ofSeconds(30);
+
+    private static final Logger log = Logger.getLogger(DjClientRegistry.class.getName());
+
+    private static final DjClientRegistry DEFAULT_INSTANCE = new DjClientRegistry(PoolSettings.fromSystemProperties(),
+            Duration.ofMillis(Long.getLong(SYSPROP_KEEP_ALIVE, DEFAULT_KEEP_ALIVE.toMillis())));
+
+    private final PoolSettings poolSettings;
+    private final Duration keepAlive;
+    private final Map<DockerClientConfig, SharedClient> clients;
+
+    public DjClientRegistry(PoolSettings poolSettings) {
+        this(poolSettings, DEFAULT_KEEP_ALIVE);
+    }
+
+    /**
+     * Constructs an instance.
+     * @param poolSettings connection pool settings of each client
+     * @param keepAlive time for which a client without leases is kept before it is closed;
+     *                  zero to close a client as soon as its last lease is released
+     */
+    public DjClientRegistry(PoolSettings poolSettings, Duration keepAlive) {
+        this.poolSettings = requireNonNull(poolSettings, "poolSettings");
+        checkArgument(!keepAlive.isNegative(), "keepAlive must be nonnegative");
+        this.keepAlive = keepAlive;
+        clients = new HashMap<>();
+    }
+
+    /**
+     * Returns the process-wide registry instance.
+     * @return the default registry
+     */
+    public static DjClientRegistry getDefault() {
+        return DEFAULT_INSTANCE;
+    }
+
+    /**
+     * Acquires a lease on the client for the given configuration.
+     * The returned client must be closed to release the lease.
+     * @param clientConfig client configuration
+     * @return a client lease
+     */
+    public DockerClient acquire(DockerClientConfig clientConfig) {
+        requireNonNull(clientConfig, "clientConfig");
+        SharedClient shared;
+        synchronized (clients) {
+            shared = clients.computeIfAbsent(clientConfig, config -> new SharedClient(config, buildClient(config)));
+            shared.references++;
+            if (shared.expiry != null) {
+                shared.expiry.cancel(false);
+                shared.expiry = null;
+            }
+        }
+        return shared.newLease();
+    }
+
+    private void release(SharedClient shared) throws IOException {
+        boolean expired;
+        synchronized (clients) {
+            checkState(shared.references > 0, "client not referenced: %s", shared);
+            shared.references--;
+            if (shared.references > 0) {
+                return;
+            }
+            expired = keepAlive.isZero();
+            if (expired) {
+                clients.remove(shared.clientConfig);
+            } else {
+                shared.expiry = ExpiryScheduler.INSTANCE.schedule(() -> expire(shared), keepAlive.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+        if (expired) {
+            shared.client.close();
+        }
+    }
+
+    private void expire(SharedClient shared) {
+        synchronized (clients) {
+            if (shared.references > 0 || !clients.remove(shared.clientConfig, shared)) {
+                return;
+            }
+            shared.expiry = null;
+        }
+        closeQuietly(shared);
+    }
+
+    /**
+     * Closes the clients that have no outstanding leases, without waiting for their
+     * keep-alive periods to elapse. Clients with outstanding leases are not affected.
+     */
+    public void closeIdleClients() {
+        List<SharedClient> idle = new ArrayList<>();
+        synchronized (clients) {
+            for (Iterator<SharedClient> it = clients.values().iterator(); it.hasNext();) {
+                SharedClient shared = it.next();
+                if (shared.references == 0) {
+                    it.remove();
+                    if (shared.expiry != null) {
+                        shared.expiry.cancel(false);
+                        shared.expiry = null;
+                    }
+                    idle.add(shared);
+                }
+            }
+        }
+        idle.forEach(DjClientRegistry::closeQuietly);
+    }
+
+    private static void closeQuietly(SharedClient shared) {
+        try {
+            shared.client.close();
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.FINE, "failed to close idle client " + shared, e);
+        }
+    }
+
+    /**
+     * Returns the number of leases outstanding on the client for the given configuration.
+     * @param clientConfig client configuration
+     * @return count of unreleased leases
+     */
+    public int countReferences(DockerClientConfig clientConfig) {
+        synchronized (clients) {
+            SharedClient shared = clients.get(clientConfig);
+            return shared == null ? 0 : shared.references;
+        }
+    }
+
+    /**
+     * Builds a new client. Override this method to customize client construction.
+     * @param clientConfig client configuration
+     * @return a new client
+     */
+    protected DockerClient buildClient(DockerClientConfig clientConfig) {
+        DockerHttpClient httpClient = new JerseyDockerHttpClient.Builder()
+                .dockerHost(clientConfig.getDockerHost())
+                .sslConfig(clientConfig.getSSLConfig())
+                .maxTotalConnections(poolSettings.maxTotalConnections)
+                .maxPerRouteConnections(poolSettings.maxPerRouteConnections)
+                .connectionRequestTimeout(poolSettings.connectionRequestTimeoutMs)
+                .build();
+        return DockerClientBuilder.getInstance(clientConfig)
+                .withDockerHttpClient(httpClient)
+                .build();
+    }
+
+    @Override
+    public String toString() {
+        synchronized (clients) {
+            return new StringJoiner(", ", DjClientRegistry.class.getSimpleName() + "[", "]")
+                    .add("poolSettings=" + poolSettings)
+                    .add("keepAlive=" + keepAlive)
+                    .add("clients.size=" + clients.size())
+                    .toString();
+        }
+    }
+
+    private final class SharedClient {
+
+        private final DockerClientConfig clientConfig;
+        private final DockerClient client;
+        private int references;
+        @Nullable
+        private ScheduledFuture<?> expiry;
+
+        private SharedClient(DockerClientConfig clientConfig, DockerClient client) {
+            this.clientConfig = requireNonNull(clientConfig);
+            this.client = requireNonNull(client);
+        }
+
+        public DockerClient newLease() {
+            return (DockerClient) Proxy.newProxyInstance(DockerClient.class.getClassLoader(), new Class<?>[]{DockerClient.class}, new Lease(this));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("SharedClient{dockerHost=%s,references=%d}", clientConfig.getDockerHost(), references);
+        }
+    }
+
+    /**
+     * Invocation handler that delegates to the shared client, except that closing
+     * releases the lease instead of closing the shared client.
+     */
+    private final class Lease implements InvocationHandler {
+
+        private final SharedClient shared;
+        private final AtomicBoolean released;
+
+        private Lease(SharedClient shared) {
+            this.shared = shared;
+            released = new AtomicBoolean(false);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (method.getParameterCount() == 0) {
+                        if (released.compareAndSet(false, true)) {
+                            release(shared);
+                        }
+                        return null;
+                    }
+                    break;
+                case "equals":
+                    if (method.getParameterCount() == 1) {
+                        return proxy == args[0];
+                    }
+                    break;
+                case "hashCode":
+                    if (method.getParameterCount() == 0) {
+                        return System.identityHashCode(proxy);
+                    }
+                    break;
+                case "toString":
+                    if (method.getParameterCount() == 0) {
+                        return String.format("DockerClientLease{%s,released=%s}", shared, released.get());
+                    }
+                    break;
+            }
+            try {
+                return method.invoke(shared.client, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static final class ExpiryScheduler {
+
+        private static final ScheduledExecutorService INSTANCE = create();
+
+        private static ScheduledExecutorService create() {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = new Thread(r, "containment-client-expiry");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            return executor;
+        }
+    }
+
+    /**
+     * Value class that represents settings of the connection pool used by each shared client.
+     */
+    public static final class PoolSettings {
+
+        public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 100;
+        public static final int DEFAULT_MAX_PER_ROUTE_CONNECTIONS = 100;
+        public static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT_MS = 60 * 1000;
+
+        /**
+         * Maximum number of connections kept open, across all routes.
+         */
+        public final int maxTotalConnections;
+
+        /**
+         * Maximum number of concurrent connections to a single route (daemon endpoint).
+         */
+        public final int maxPerRouteConnections;
+
+        /**
+         * Maximum time to wait for a connection to be leased from the pool, in milliseconds.
+         */
+        public final int connectionRequestTimeoutMs;
+
+        public PoolSettings(int maxTotalConnections, int maxPerRouteConnections, int connectionRequestTimeoutMs) {
+            checkArgument(maxTotalConnections > 0, "maxTotalConnections must be positive");
+            checkArgument(maxPerRouteConnections > 0, "maxPerRouteConnections must be positive");
+            checkArgument(connectionRequestTimeoutMs >= 0, "connectionRequestTimeoutMs must be nonnegative");
+            this.maxTotalConnections = maxTotalConnections;
+            this.maxPerRouteConnections = maxPerRouteConnections;
+            this.connectionRequestTimeoutMs = connectionRequestTimeoutMs;
+        }
+
+        public static PoolSettings defaults() {
+            return new PoolSettings(DEFAULT_MAX_TOTAL_CONNECTIONS, DEFAULT_MAX_PER_ROUTE_CONNECTIONS, DEFAULT_CONNECTION_REQUEST_TIMEOUT_MS);
+        }
+
+        /**
+         * Creates an instance whose values are read from system properties,
+         * falling back to defaults for undefined properties.
+         * @return a new instance
+         */
+        public static PoolSettings fromSystemProperties() {
+            return new PoolSettings(
+                    Integer.getInteger(SYSPROP_MAX_TOTAL_CONNECTIONS, DEFAULT_MAX_TOTAL_CONNECTIONS),
+                    Integer.getInteger(SYSPROP_MAX_PER_ROUTE_CONNECTIONS, DEFAULT_MAX_PER_ROUTE_CONNECTIONS),
+                    Integer.getInteger(SYSPROP_CONNECTION_REQUEST_TIMEOUT, DEFAULT_CONNECTION_REQUEST_TIMEOUT_MS));
+        }
+
+        @Override
+        public String toString() {
+            return new StringJoiner(", ", PoolSettings.class.getSimpleName() + "[", "]")
+                    .add("maxTotalConnections=" + maxTotalConnections)
+                    .add("maxPerRouteConnections=" + maxPerRouteConnections)
+                    .add("connectionRequestTimeoutMs=" + connectionRequestTimeoutMs)
+                    .toString();
+        }
+    }
+}
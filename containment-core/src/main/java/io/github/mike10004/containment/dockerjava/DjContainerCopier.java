@@ -2,20 +2,32 @@ package io.github.mike10004.containment.dockerjava;
 
 import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.exception.DockerException;
-import com.google.common.io.ByteStreams;
 import io.github.mike10004.containment.ContainerCopier;
 import io.github.mike10004.containment.ContainerInfo;
 import io.github.mike10004.containment.ContainmentException;
+import io.github.mike10004.containment.DirectorySync;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
 
+import javax.annotation.Nullable;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 
 import static java.util.Objects.requireNonNull;
 
@@ -23,17 +35,34 @@ class DjContainerCopier implements ContainerCopier {
 
     private final DockerClient client;
     private final ContainerInfo containerInfo;
+    private final DjTarExtractor extractor;
 
     public DjContainerCopier(DockerClient client, ContainerInfo containerInfo) {
+        this(client, containerInfo, DjTarExtractor.getDefault());
+    }
+
+    DjContainerCopier(DockerClient client, ContainerInfo containerInfo, DjTarExtractor extractor) {
         this.client = requireNonNull(client);
         this.containerInfo = requireNonNull(containerInfo);
+        this.extractor = requireNonNull(extractor);
     }
 
+    /**
+     * Copies a file or directory to the container. The archive of the source is streamed
+     * to the daemon as it is produced, rather than being staged in a temporary file.
+     */
     @Override
     public void copyToContainer(File srcFile, String destinationPathname) throws IOException, ContainmentException {
-        try {
+        if (!srcFile.exists()) {
+            throw new FileNotFoundException(srcFile.getAbsolutePath());
+        }
+        StreamingTarSource source = StreamingTarSource.builder()
+                .path(srcFile.toPath(), srcFile.getName())
+                .compress(true)
+                .build();
+        try (InputStream tarInput = source.open()) {
             client.copyArchiveToContainerCmd(containerInfo.id())
-                    .withHostResource(srcFile.getAbsolutePath())
+                    .withTarInputStream(tarInput)
                     .withRemotePath(destinationPathname)
                     .withNoOverwriteDirNonDir(true)
                     .exec();
@@ -42,22 +71,148 @@ class DjContainerCopier implements ContainerCopier {
         }
     }
 
+    /**
+     * Copies new and changed files to the container. The remote tree is listed by an exec
+     * process, and the changed files are uploaded in a single streamed archive.
+     */
+    @Override
+    public DirectorySync.Result syncDirectoryToContainer(File sourceDirectory, String destinationDirectory, Set<SyncOption> options) throws IOException, ContainmentException {
+        DirectorySync sync = new DirectorySync(new DjExecExecutor(client, containerInfo.id()));
+        return sync.sync(sourceDirectory, destinationDirectory, options, relativePaths -> {
+            StreamingTarSource.Builder source = StreamingTarSource.builder().compress(true);
+            for (String relativePath : relativePaths) {
+                source.path(sourceDirectory.toPath().resolve(relativePath), relativePath);
+            }
+            unpackTarArchiveToContainer(source.build(), destinationDirectory);
+        });
+    }
+
+    /**
+     * Copies a file or directory from the container. Directories are copied recursively.
+     * Option {@link Option#ARCHIVE} sets the user and group of copied files, which
+     * generally requires privileges, and option {@link Option#FOLLOW_LINK} copies
+     * the target of the source path if the source path is a symbolic link.
+     */
     @Override
     public void copyFromContainer(String path, File destinationFile, Set<Option> options) throws IOException, ContainmentException {
-        if (!options.isEmpty()) {
-            throw new ContainmentException("this copier does not support any options, but these were specified: " + options);
+        try (OpenArchive archive = openArchive(path, options.contains(Option.FOLLOW_LINK))) {
+            if (archive.first == null) {
+                throw new DockerCopyException("archive of " + path + " is empty");
+            }
+            extractor.extract(archive.tarIn, archive.first, destinationFile.toPath(), options.contains(Option.ARCHIVE));
         }
-        try (InputStream in = client.copyArchiveFromContainerCmd(containerInfo.id(), path).exec();
-             TarArchiveInputStream tarIn = new TarArchiveInputStream(in)
-        ) {
-            TarArchiveEntry entry;
-            while ((entry = tarIn.getNextTarEntry()) != null) {
-                if (entry.getName().equals(FilenameUtils.getName(path))) {
-                    try (OutputStream out = new FileOutputStream(destinationFile)) {
-                        ByteStreams.copy(tarIn, out);
-                    }
+    }
+
+    /**
+     * Copies the content of a file from the container to a stream. Symbolic links are followed.
+     * Reading the archive supplied by the daemon stops as soon as the content has been copied.
+     */
+    @Override
+    public void copyFromContainer(String path, OutputStream destination) throws IOException, ContainmentException {
+        try (OpenArchive archive = openArchive(path, true)) {
+            if (!DjTarExtractor.copyFirstFile(archive.tarIn, archive.first, destination)) {
+                throw new DockerCopyException("not a regular file: " + path);
+            }
+        }
+    }
+
+    /**
+     * Copies multiple files or directories from the container concurrently.
+     */
+    @Override
+    public void copyIntoDirectoryFromContainer(Collection<String> paths, File destinationDirectory, Set<Option> options) throws IOException, ContainmentException {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    copyIntoDirectoryFromContainer(path, destinationDirectory, options);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (ContainmentException e) {
+                    throw new CompletionException(e);
                 }
+            }, DefaultAsyncExecutor.getInstance()));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DockerCopyException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof ContainmentException) {
+                throw (ContainmentException) cause;
             }
+            throw new ContainmentException(cause);
+        }
+    }
+
+    private static final int MAX_LINK_HOPS = 8;
+
+    private OpenArchive openArchive(String path, boolean followLink) throws IOException, ContainmentException {
+        String current = path;
+        for (int hops = 0; ; hops++) {
+            InputStream in;
+            try {
+                in = client.copyArchiveFromContainerCmd(containerInfo.id(), current).exec();
+            } catch (DockerException e) {
+                throw new ContainmentException(e);
+            }
+            TarArchiveInputStream tarIn = new TarArchiveInputStream(in);
+            TarArchiveEntry first;
+            try {
+                first = tarIn.getNextTarEntry();
+            } catch (IOException e) {
+                tarIn.close();
+                throw e;
+            }
+            if (followLink && first != null && first.isSymbolicLink()) {
+                tarIn.close();
+                if (hops == MAX_LINK_HOPS) {
+                    throw new DockerCopyException("too many levels of symbolic links: " + path);
+                }
+                current = resolveLinkTarget(current, first.getLinkName());
+                continue;
+            }
+            return new OpenArchive(tarIn, first);
+        }
+    }
+
+    static String resolveLinkTarget(String linkPath, String linkName) {
+        if (linkName.startsWith("/")) {
+            return linkName;
+        }
+        String parent = FilenameUtils.getFullPathNoEndSeparator(StringUtils.removeEnd(linkPath, "/"));
+        Deque<String> segments = new ArrayDeque<>();
+        for (String segment : (parent + "/" + linkName).split("/")) {
+            if ("..".equals(segment)) {
+                // as in the container filesystem, the parent of the root is the root
+                segments.pollLast();
+            } else if (!segment.isEmpty() && !".".equals(segment)) {
+                segments.addLast(segment);
+            }
+        }
+        return "/" + String.join("/", segments);
+    }
+
+    private static final class OpenArchive implements Closeable {
+
+        public final TarArchiveInputStream tarIn;
+
+        @Nullable
+        public final TarArchiveEntry first;
+
+        public OpenArchive(TarArchiveInputStream tarIn, @Nullable TarArchiveEntry first) {
+            this.tarIn = tarIn;
+            this.first = first;
+        }
+
+        @Override
+        public void close() throws IOException {
+            tarIn.close();
         }
     }
 
@@ -9,35 +9,122 @@ import com.github.dockerjava.api.model.HostConfig;
 import com.github.dockerjava.api.model.Mount;
 import com.github.dockerjava.api.model.MountType;
 import com.github.dockerjava.api.model.PortBinding;
+import io.github.mike10004.containment.AsyncContainerCreator;
 import io.github.mike10004.containment.BindMount;
-import io.github.mike10004.containment.ContainerCreator;
 import io.github.mike10004.containment.ContainerInfo;
 import io.github.mike10004.containment.ContainerParametry;
 import io.github.mike10004.containment.ContainmentException;
+import io.github.mike10004.containment.ContainmentFutures;
+import io.github.mike10004.containment.StartableContainer;
 import org.apache.commons.io.FileUtils;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static java.util.Objects.requireNonNull;
 
-public class DjContainerCreator implements ContainerCreator {
+public class DjContainerCreator implements AsyncContainerCreator {
 
     private final DockerClient client;
     private final DjContainerMonitor containerMonitor;
+    private final Executor asyncExecutor;
+    @Nullable
+    private final DjTeardownQueue teardownQueue;
+    @Nullable
+    private final DjContainerEvents events;
+    @Nullable
+    private final DjImagePrefetcher prefetcher;
 
     public DjContainerCreator(DjDockerManager dockerManager) {
-        this(dockerManager.openClient(), dockerManager.getContainerMonitor());
+        this(dockerManager, DefaultAsyncExecutor.getInstance());
+    }
+
+    /**
+     * Constructs an instance whose asynchronous operations are performed on the given executor.
+     * The executor is also used for asynchronous operations on containers created by this instance.
+     * Constructing an instance from a docker manager acquires the {@link DjSession session}
+     * lockfile and starts a one-time background reap of containers left behind by sessions
+     * that were killed; see {@link DjOrphanReaper}. Containers are not created while the
+     * {@link DjImagePrefetcher#getDefault() default prefetcher} is fetching their images. If background
+     * teardown is {@link DjTeardownQueue#isEnabled() enabled} and the manager provides a
+     * {@link DjDockerManager#teardownQueue() teardown queue}, containers are closed by
+     * submitting them to that queue.
+     * Containers created by the instance may subscribe to the manager's
+     * {@link DjDockerManager#events() events}, if the manager provides them.
+     * @param dockerManager docker manager
+     * @param asyncExecutor executor of asynchronous operations
+     */
+    public DjContainerCreator(DjDockerManager dockerManager, Executor asyncExecutor) {
+        this(dockerManager.openClient(), dockerManager.getContainerMonitor(), asyncExecutor,
+                DjTeardownQueue.isEnabled() ? dockerManager.teardownQueue() : null, dockerManager.events(),
+                DjImagePrefetcher.getDefault());
+        DjSession.holdLockfile();
+        DjOrphanReaper.getDefault().reapInBackground(dockerManager::openClient);
     }
 
     public DjContainerCreator(DockerClient client, DjContainerMonitor containerMonitor) {
+        this(client, containerMonitor, DefaultAsyncExecutor.getInstance());
+    }
+
+    public DjContainerCreator(DockerClient client, DjContainerMonitor containerMonitor, Executor asyncExecutor) {
+        this(client, containerMonitor, asyncExecutor, null);
+    }
+
+    /**
+     * Constructs an instance.
+     * @param client client
+     * @param containerMonitor container monitor
+     * @param asyncExecutor executor of asynchronous operations
+     * @param teardownQueue queue to which containers are submitted on close, instead of being
+     *                      stopped and removed synchronously; null to close synchronously
+     */
+    public DjContainerCreator(DockerClient client, DjContainerMonitor containerMonitor, Executor asyncExecutor, @Nullable DjTeardownQueue teardownQueue) {
+        this(client, containerMonitor, asyncExecutor, teardownQueue, null);
+    }
+
+    /**
+     * Constructs an instance. If an event subscription is provided, it is passed to the
+     * containers created by this instance, which subscribe to it only if a
+     * {@link DjStartedContainer#addDeathListener(Consumer) death listener} is added.
+     * @param client client
+     * @param containerMonitor container monitor
+     * @param asyncExecutor executor of asynchronous operations
+     * @param teardownQueue queue to which containers are submitted on close, instead of being
+     *                      stopped and removed synchronously; null to close synchronously
+     * @param events event subscription; null if containers do not listen to events
+     */
+    public DjContainerCreator(DockerClient client, DjContainerMonitor containerMonitor, Executor asyncExecutor, @Nullable DjTeardownQueue teardownQueue, @Nullable DjContainerEvents events) {
+        this(client, containerMonitor, asyncExecutor, teardownQueue, events, null);
+    }
+
+    /**
+     * Constructs an instance. If a prefetcher is provided, creating a container waits
+     * for any fetch of the container's image that the prefetcher has in flight.
+     * @param client client
+     * @param containerMonitor container monitor
+     * @param asyncExecutor executor of asynchronous operations
+     * @param teardownQueue queue to which containers are submitted on close, instead of being
+     *                      stopped and removed synchronously; null to close synchronously
+     * @param events event subscription; null if containers do not listen to events
+     * @param prefetcher prefetcher whose in-flight fetches are awaited; may be null
+     */
+    public DjContainerCreator(DockerClient client, DjContainerMonitor containerMonitor, Executor asyncExecutor, @Nullable DjTeardownQueue teardownQueue, @Nullable DjContainerEvents events, @Nullable DjImagePrefetcher prefetcher) {
         this.client = requireNonNull(client, "client");
         this.containerMonitor = requireNonNull(containerMonitor, "containerMonitor");
+        this.asyncExecutor = requireNonNull(asyncExecutor, "asyncExecutor");
+        this.teardownQueue = teardownQueue;
+        this.events = events;
+        this.prefetcher = prefetcher;
     }
 
     @Override
@@ -88,7 +175,11 @@ public class DjContainerCreator implements ContainerCreator {
         List<String> envDefinitions = parametry.environment().entrySet().stream()
                 .map(entry -> String.format("%s=%s", entry.getKey(), entry.getValue())).collect(Collectors.toList());
         createCmd.withEnv(envDefinitions);
-        createCmd.withLabels(parametry.labels());
+        Map<String, String> labels = new LinkedHashMap<>(parametry.labels());
+        labels.putIfAbsent(DjSession.LABEL_SESSION_ID, DjSession.getId());
+        labels.putIfAbsent(DjSession.LABEL_PID, DjSession.getPid());
+        labels.putIfAbsent(DjSession.LABEL_HOST, DjSession.getHostName());
+        createCmd.withLabels(labels);
         return createCmd;
     }
 
@@ -96,8 +187,16 @@ public class DjContainerCreator implements ContainerCreator {
         return FileUtils.getTempDirectory();
     }
 
+    @Override
+    public DjStartableContainer create(ContainerParametry parametry) throws ContainmentException {
+        return create(parametry, ignore -> {});
+    }
+
     @Override
     public DjStartableContainer create(ContainerParametry parametry, Consumer<? super String> warningListener) throws ContainmentException {
+        if (prefetcher != null) {
+            prefetcher.awaitInFlight(parametry.image());
+        }
         try {
             CreateContainerCmd createCmd = constructCreateCommand(parametry);
             CreateContainerResponse create = createCmd.exec();
@@ -107,12 +206,17 @@ public class DjContainerCreator implements ContainerCreator {
             }
             String containerId = create.getId();
             containerMonitor.created(containerId);
-            return new DjStartableContainer(ContainerInfo.define(containerId, parametry), client, containerMonitor);
+            return new DjStartableContainer(ContainerInfo.define(containerId, parametry), client, containerMonitor, asyncExecutor, teardownQueue, events);
         } catch (DockerException e) {
             throw new ContainmentException(e);
         }
     }
 
+    @Override
+    public CompletableFuture<StartableContainer> createAsync(ContainerParametry parametry, Consumer<? super String> warningListener) {
+        return ContainmentFutures.callAsync(() -> create(parametry, warningListener), asyncExecutor);
+    }
+
     @Override
     public String toString() {
         return new StringJoiner(", ", DjContainerCreator.class.getSimpleName() + "[", "]")
@@ -0,0 +1,149 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.github.dockerjava.api.model.Event;
+import com.github.dockerjava.api.model.EventActor;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.StringJoiner;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Value class that represents a container event reported by the daemon.
+ */
+public class DjContainerEvent {
+
+    /**
+     * Enumeration of the kinds of events that are published.
+     */
+    public enum Kind {
+        DIE("die"),
+        OOM("oom"),
+        DESTROY("destroy"),
+        HEALTH_STATUS("health_status");
+
+        /**
+         * Action name used by the daemon, and in event filters.
+         */
+        public final String action;
+
+        Kind(String action) {
+            this.action = action;
+        }
+
+        @Nullable
+        static Kind fromAction(@Nullable String action) {
+            if (action == null) {
+                return null;
+            }
+            for (Kind kind : values()) {
+                if (action.equals(kind.action) || action.startsWith(kind.action + ":")) {
+                    return kind;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Kind kind;
+    private final String containerId;
+    private final Map<String, String> attributes;
+    @Nullable
+    private final String healthStatus;
+    private final long timeSeconds;
+
+    public DjContainerEvent(Kind kind, String containerId, Map<String, String> attributes, @Nullable String healthStatus, long timeSeconds) {
+        this.kind = requireNonNull(kind, "kind");
+        this.containerId = requireNonNull(containerId, "containerId");
+        this.attributes = Collections.unmodifiableMap(attributes);
+        this.healthStatus = healthStatus;
+        this.timeSeconds = timeSeconds;
+    }
+
+    /**
+     * Creates an instance from an event model object.
+     * @param event the event
+     * @return an instance, or null if the event is not of a published kind
+     */
+    @Nullable
+    static DjContainerEvent from(Event event) {
+        String action = event.getAction() != null ? event.getAction() : event.getStatus();
+        Kind kind = Kind.fromAction(action);
+        EventActor actor = event.getActor();
+        String containerId = actor != null && actor.getId() != null ? actor.getId() : event.getId();
+        if (kind == null || containerId == null) {
+            return null;
+        }
+        Map<String, String> attributes = actor == null || actor.getAttributes() == null ? Collections.emptyMap() : actor.getAttributes();
+        String healthStatus = null;
+        if (kind == Kind.HEALTH_STATUS && action.indexOf(':') >= 0) {
+            healthStatus = action.substring(action.indexOf(':') + 1).trim();
+        }
+        long time = event.getTime() == null ? 0L : event.getTime();
+        return new DjContainerEvent(kind, containerId, attributes, healthStatus, time);
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    public String containerId() {
+        return containerId;
+    }
+
+    /**
+     * Gets the attributes of the event actor, which include the container labels
+     * and, for some events, details such as the exit code.
+     * @return attributes
+     */
+    public Map<String, String> attributes() {
+        return attributes;
+    }
+
+    /**
+     * Gets the exit code of the container, for a {@link Kind#DIE} event.
+     * @return exit code, or null if not reported
+     */
+    @Nullable
+    public Integer exitCode() {
+        String value = attributes.get("exitCode");
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the health status, for a {@link Kind#HEALTH_STATUS} event.
+     * @return health status, such as {@code healthy} or {@code unhealthy}
+     */
+    @Nullable
+    public String healthStatus() {
+        return healthStatus;
+    }
+
+    /**
+     * Gets the time of the event.
+     * @return time in seconds since the epoch
+     */
+    public long timeSeconds() {
+        return timeSeconds;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner j = new StringJoiner(", ", DjContainerEvent.class.getSimpleName() + "[", "]")
+                .add("kind=" + kind)
+                .add("containerId=" + containerId);
+        if (healthStatus != null) {
+            j.add("healthStatus=" + healthStatus);
+        }
+        return j.toString();
+    }
+}
@@ -0,0 +1,293 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallbackTemplate;
+import com.github.dockerjava.api.command.EventsCmd;
+import com.github.dockerjava.api.exception.DockerException;
+import com.github.dockerjava.api.model.Event;
+import com.github.dockerjava.api.model.EventType;
+import io.github.mike10004.containment.ContainmentException;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Subscription to the daemon's stream of events concerning containers of a session.
+ * A single background subscription is maintained while any lease obtained from
+ * {@link #acquire()} is held; it is opened when the first lease is acquired and
+ * closed, along with its client, when the last lease is released. Events update
+ * the state of the container monitor, so that containers that die or are removed
+ * by other means are not stopped or removed again, and are published to listeners.
+ *
+ * <p>If the subscription fails or ends while leases are held, it is
+ * reopened after a delay, starting from the time of the last event received.</p>
+ */
+public class DjContainerEvents implements Closeable {
+
+    private static final Logger log = Logger.getLogger(DjContainerEvents.class.getName());
+
+    private static final long RECONNECT_DELAY_MS = 1000;
+
+    private final Supplier<DockerClient> clientSupplier;
+    private final DjContainerMonitor containerMonitor;
+    private final String sessionId;
+    private final Executor reconnectExecutor;
+    private final List<Consumer<? super DjContainerEvent>> listeners;
+    private final Set<String> deadContainers;
+    private final Object lock = new Object();
+    @Nullable
+    private DockerClient client;
+    @Nullable
+    private EventCallback callback;
+    private volatile long lastEventTimeSeconds;
+    private int leases;
+    private boolean closed;
+
+    public DjContainerEvents(Supplier<DockerClient> clientSupplier, DjContainerMonitor containerMonitor, String sessionId) {
+        this(clientSupplier, containerMonitor, sessionId, DefaultAsyncExecutor.getInstance());
+    }
+
+    public DjContainerEvents(Supplier<DockerClient> clientSupplier, DjContainerMonitor containerMonitor, String sessionId, Executor reconnectExecutor) {
+        this.clientSupplier = requireNonNull(clientSupplier, "clientSupplier");
+        this.containerMonitor = requireNonNull(containerMonitor, "containerMonitor");
+        this.sessionId = requireNonNull(sessionId, "sessionId");
+        this.reconnectExecutor = requireNonNull(reconnectExecutor, "reconnectExecutor");
+        listeners = new CopyOnWriteArrayList<>();
+        deadContainers = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Adds a listener. Listeners receive events only while the subscription is open,
+     * and are notified on the thread that receives events, so they should return quickly.
+     * @param listener the listener
+     */
+    public void addListener(Consumer<? super DjContainerEvent> listener) {
+        listeners.add(requireNonNull(listener, "listener"));
+    }
+
+    public void removeListener(Consumer<? super DjContainerEvent> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Acquires a lease on the subscription, opening the subscription if no other lease is held.
+     * The returned lease must be closed to release it.
+     * @return the lease
+     * @throws ContainmentException if the subscription could not be opened, or if this instance is closed
+     */
+    public Closeable acquire() throws ContainmentException {
+        synchronized (lock) {
+            if (closed) {
+                throw new ContainmentException("event subscription is closed");
+            }
+            if (callback == null) {
+                try {
+                    open();
+                } catch (DockerException e) {
+                    throw new ContainmentException(e);
+                }
+            }
+            leases++;
+        }
+        AtomicBoolean released = new AtomicBoolean(false);
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                release();
+            }
+        };
+    }
+
+    private void release() throws IOException {
+        EventCallback oldCallback;
+        DockerClient oldClient;
+        synchronized (lock) {
+            leases--;
+            if (leases > 0 || closed) {
+                return;
+            }
+            oldCallback = callback;
+            oldClient = client;
+            callback = null;
+            client = null;
+        }
+        closeUpstream(oldCallback, oldClient);
+    }
+
+    private void reopen() throws ContainmentException {
+        synchronized (lock) {
+            if (closed || leases == 0 || callback != null) {
+                return;
+            }
+            try {
+                open();
+            } catch (DockerException e) {
+                throw new ContainmentException(e);
+            }
+        }
+    }
+
+    private void open() {
+        if (client == null) {
+            client = clientSupplier.get();
+        }
+        EventCallback newCallback = new EventCallback();
+        openUpstream(client, newCallback, lastEventTimeSeconds);
+        callback = newCallback;
+    }
+
+    /**
+     * Opens the event stream with the daemon.
+     * @param client client
+     * @param callback callback that receives events
+     * @param sinceSeconds time from which events are requested, or zero for new events only
+     */
+    protected void openUpstream(DockerClient client, ResultCallbackTemplate<?, Event> callback, long sinceSeconds) {
+        String[] actions = Arrays.stream(DjContainerEvent.Kind.values()).map(kind -> kind.action).toArray(String[]::new);
+        EventsCmd cmd = client.eventsCmd()
+                .withEventTypeFilter(EventType.CONTAINER)
+                .withEventFilter(actions)
+                .withLabelFilter(Collections.singletonMap(DjSession.LABEL_SESSION_ID, sessionId));
+        if (sinceSeconds > 0) {
+            cmd.withSince(String.valueOf(sinceSeconds));
+        }
+        cmd.exec(callback);
+    }
+
+    /**
+     * Checks whether an event has reported that a container died or was destroyed.
+     * @param containerId container ID
+     * @return true if the container is known to be dead
+     */
+    public boolean isDead(String containerId) {
+        return deadContainers.contains(containerId);
+    }
+
+    void dispatch(Event event) {
+        DjContainerEvent containerEvent = DjContainerEvent.from(event);
+        if (containerEvent == null) {
+            return;
+        }
+        if (containerEvent.timeSeconds() > lastEventTimeSeconds) {
+            lastEventTimeSeconds = containerEvent.timeSeconds();
+        }
+        String containerId = containerEvent.containerId();
+        switch (containerEvent.kind()) {
+            case DIE:
+                deadContainers.add(containerId);
+                containerMonitor.stopped(containerId);
+                break;
+            case DESTROY:
+                deadContainers.add(containerId);
+                containerMonitor.removed(containerId);
+                break;
+            default:
+                break;
+        }
+        for (Consumer<? super DjContainerEvent> listener : listeners) {
+            try {
+                listener.accept(containerEvent);
+            } catch (RuntimeException e) {
+                log.log(Level.WARNING, "event listener threw exception on " + containerEvent, e);
+            }
+        }
+    }
+
+    private void reconnectLater(EventCallback ended) {
+        synchronized (lock) {
+            if (closed || callback != ended) {
+                return;
+            }
+            callback = null;
+        }
+        reconnectExecutor.execute(() -> {
+            try {
+                Thread.sleep(RECONNECT_DELAY_MS);
+                reopen();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ContainmentException | RuntimeException e) {
+                log.log(Level.WARNING, "failed to reopen event subscription", e);
+            }
+        });
+    }
+
+    /**
+     * Closes the subscription and releases its client, regardless of leases held.
+     * Leases acquired before closing may still be closed, to no effect.
+     * @throws IOException on I/O error
+     */
+    @Override
+    public void close() throws IOException {
+        EventCallback oldCallback;
+        DockerClient oldClient;
+        synchronized (lock) {
+            closed = true;
+            oldCallback = callback;
+            oldClient = client;
+            callback = null;
+            client = null;
+        }
+        closeUpstream(oldCallback, oldClient);
+    }
+
+    private static void closeUpstream(@Nullable EventCallback callback, @Nullable DockerClient client) throws IOException {
+        try {
+            if (callback != null) {
+                callback.close();
+            }
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", DjContainerEvents.class.getSimpleName() + "[", "]")
+                .add("sessionId=" + sessionId)
+                .add("leases=" + leases)
+                .add("listeners=" + listeners.size())
+                .toString();
+    }
+
+    private class EventCallback extends ResultCallbackTemplate<EventCallback, Event> {
+
+        @Override
+        public void onNext(Event event) {
+            dispatch(event);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            log.log(Level.FINE, "event subscription failed", throwable);
+            try {
+                super.onError(throwable);
+            } finally {
+                reconnectLater(this);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            super.onComplete();
+            reconnectLater(this);
+        }
+    }
+}
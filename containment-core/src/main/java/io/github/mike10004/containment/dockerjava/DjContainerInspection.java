@@ -0,0 +1,290 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.github.dockerjava.api.command.HealthState;
+import com.github.dockerjava.api.command.InspectContainerResponse;
+import com.github.dockerjava.api.model.ContainerNetwork;
+import com.github.dockerjava.api.model.ExposedPort;
+import com.github.dockerjava.api.model.HostConfig;
+import com.github.dockerjava.api.model.NetworkSettings;
+import com.github.dockerjava.api.model.Ports;
+import io.github.mike10004.containment.ContainerPort;
+import io.github.mike10004.containment.FullSocketAddress;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Value class that represents the result of inspecting a container.
+ * Only the properties of the daemon's response that are commonly needed are modeled.
+ */
+public class DjContainerInspection {
+
+    private static final String UNSPECIFIED_HOST_IP = "0.0.0.0";
+
+    private final String id;
+    private final String name;
+    private final State state;
+    private final List<ContainerPort> ports;
+    private final Map<String, String> networkIpAddresses;
+    private final List<Mount> mounts;
+    private final Limits limits;
+
+    public DjContainerInspection(String id, String name, State state, List<ContainerPort> ports, Map<String, String> networkIpAddresses, List<Mount> mounts, Limits limits) {
+        this.id = requireNonNull(id, "id");
+        this.name = requireNonNull(name, "name");
+        this.state = requireNonNull(state, "state");
+        this.ports = Collections.unmodifiableList(new ArrayList<>(ports));
+        this.networkIpAddresses = Collections.unmodifiableMap(new LinkedHashMap<>(networkIpAddresses));
+        this.mounts = Collections.unmodifiableList(new ArrayList<>(mounts));
+        this.limits = requireNonNull(limits, "limits");
+    }
+
+    /**
+     * Creates an instance from an inspection response.
+     * @param rsp the response
+     * @return a new instance
+     */
+    public static DjContainerInspection from(InspectContainerResponse rsp) {
+        NetworkSettings networkSettings = rsp.getNetworkSettings();
+        List<ContainerPort> ports = new ArrayList<>();
+        Map<String, String> networkIpAddresses = new LinkedHashMap<>();
+        if (networkSettings != null) {
+            if (networkSettings.getPorts() != null) {
+                ports.addAll(transformPorts(networkSettings.getPorts()));
+            }
+            Map<String, ContainerNetwork> networks = networkSettings.getNetworks();
+            if (networks != null) {
+                networks.forEach((networkName, network) -> {
+                    if (StringUtils.isNotEmpty(network.getIpAddress())) {
+                        networkIpAddresses.put(networkName, network.getIpAddress());
+                    }
+                });
+            }
+        }
+        List<Mount> mounts = new ArrayList<>();
+        if (rsp.getMounts() != null) {
+            for (InspectContainerResponse.Mount m : rsp.getMounts()) {
+                String destination = m.getDestination() == null ? null : m.getDestination().getPath();
+                mounts.add(new Mount(m.getSource(), destination, !Boolean.FALSE.equals(m.getRW())));
+            }
+        }
+        String name = StringUtils.removeStart(StringUtils.defaultString(rsp.getName()), "/");
+        return new DjContainerInspection(rsp.getId(), name, State.from(rsp.getState()), ports, networkIpAddresses, mounts, Limits.from(rsp.getHostConfig()));
+    }
+
+    static List<ContainerPort> transformPorts(Ports ports) {
+        List<ContainerPort> result = new ArrayList<>();
+        Map<ExposedPort, Ports.Binding[]> bindings = ports.getBindings();
+        if (bindings == null) {
+            return result;
+        }
+        bindings.forEach((exposedPort, portBindings) -> {
+            String protocol = exposedPort.getProtocol().toString();
+            int number = exposedPort.getPort();
+            boolean bound = false;
+            if (portBindings != null) {
+                for (Ports.Binding binding : portBindings) {
+                    Integer hostPort = parseHostPort(binding.getHostPortSpec());
+                    if (hostPort != null) {
+                        String hostIp = StringUtils.defaultIfEmpty(binding.getHostIp(), UNSPECIFIED_HOST_IP);
+                        result.add(ContainerPort.bound(number, protocol, FullSocketAddress.define(hostIp, hostPort)));
+                        bound = true;
+                    }
+                }
+            }
+            if (!bound) {
+                result.add(ContainerPort.unbound(number, protocol));
+            }
+        });
+        return result;
+    }
+
+    @Nullable
+    private static Integer parseHostPort(@Nullable String hostPortSpec) {
+        if (hostPortSpec == null) {
+            return null;
+        }
+        try {
+            int port = Integer.parseInt(hostPortSpec.trim());
+            return port > 0 ? port : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public String id() {
+        return id;
+    }
+
+    /**
+     * Gets the container name, without the leading slash.
+     * @return name
+     */
+    public String name() {
+        return name;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    /**
+     * Gets the exposed ports of the container and their host bindings, if any.
+     * A port bound to multiple host addresses appears once for each binding.
+     * @return list of ports
+     */
+    public List<ContainerPort> ports() {
+        return ports;
+    }
+
+    /**
+     * Gets the IP address of the container on each network to which it is connected.
+     * @return map of network name to IP address
+     */
+    public Map<String, String> networkIpAddresses() {
+        return networkIpAddresses;
+    }
+
+    public List<Mount> mounts() {
+        return mounts;
+    }
+
+    public Limits limits() {
+        return limits;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", DjContainerInspection.class.getSimpleName() + "[", "]")
+                .add("id=" + id)
+                .add("name=" + name)
+                .add("state=" + state)
+                .add("ports=" + ports)
+                .add("networkIpAddresses=" + networkIpAddresses)
+                .toString();
+    }
+
+    /**
+     * Value class that represents the state of a container.
+     */
+    public static class State {
+
+        @Nullable
+        public final String status;
+        public final boolean running;
+        public final boolean oomKilled;
+        @Nullable
+        public final Long exitCode;
+
+        /**
+         * Health status, such as {@code healthy}, or null if the container has no health check.
+         */
+        @Nullable
+        public final String health;
+
+        public State(@Nullable String status, boolean running, boolean oomKilled, @Nullable Long exitCode, @Nullable String health) {
+            this.status = status;
+            this.running = running;
+            this.oomKilled = oomKilled;
+            this.exitCode = exitCode;
+            this.health = health;
+        }
+
+        static State from(@Nullable InspectContainerResponse.ContainerState state) {
+            if (state == null) {
+                return new State(null, false, false, null, null);
+            }
+            HealthState health = state.getHealth();
+            return new State(state.getStatus(),
+                    Boolean.TRUE.equals(state.getRunning()),
+                    Boolean.TRUE.equals(state.getOOMKilled()),
+                    state.getExitCodeLong(),
+                    health == null ? null : health.getStatus());
+        }
+
+        @Override
+        public String toString() {
+            return new StringJoiner(", ", State.class.getSimpleName() + "[", "]")
+                    .add("status=" + status)
+                    .add("running=" + running)
+                    .add("exitCode=" + exitCode)
+                    .add("health=" + health)
+                    .toString();
+        }
+    }
+
+    /**
+     * Value class that represents a mount in a container.
+     */
+    public static class Mount {
+
+        @Nullable
+        public final String source;
+        @Nullable
+        public final String destination;
+        public final boolean readWrite;
+
+        public Mount(@Nullable String source, @Nullable String destination, boolean readWrite) {
+            this.source = source;
+            this.destination = destination;
+            this.readWrite = readWrite;
+        }
+
+        @Override
+        public String toString() {
+            return new StringJoiner(", ", Mount.class.getSimpleName() + "[", "]")
+                    .add("source=" + source)
+                    .add("destination=" + destination)
+                    .add("readWrite=" + readWrite)
+                    .toString();
+        }
+    }
+
+    /**
+     * Value class that represents the resource limits of a container.
+     * Null or zero values mean that no limit is set.
+     */
+    public static class Limits {
+
+        @Nullable
+        public final Long memoryBytes;
+        @Nullable
+        public final Long nanoCpus;
+        @Nullable
+        public final Integer cpuShares;
+        @Nullable
+        public final Long pidsLimit;
+
+        public Limits(@Nullable Long memoryBytes, @Nullable Long nanoCpus, @Nullable Integer cpuShares, @Nullable Long pidsLimit) {
+            this.memoryBytes = memoryBytes;
+            this.nanoCpus = nanoCpus;
+            this.cpuShares = cpuShares;
+            this.pidsLimit = pidsLimit;
+        }
+
+        static Limits from(@Nullable HostConfig hostConfig) {
+            if (hostConfig == null) {
+                return new Limits(null, null, null, null);
+            }
+            return new Limits(hostConfig.getMemory(), hostConfig.getNanoCPUs(), hostConfig.getCpuShares(), hostConfig.getPidsLimit());
+        }
+
+        @Override
+        public String toString() {
+            return new StringJoiner(", ", Limits.class.getSimpleName() + "[", "]")
+                    .add("memoryBytes=" + memoryBytes)
+                    .add("nanoCpus=" + nanoCpus)
+                    .add("cpuShares=" + cpuShares)
+                    .add("pidsLimit=" + pidsLimit)
+                    .toString();
+        }
+    }
+}
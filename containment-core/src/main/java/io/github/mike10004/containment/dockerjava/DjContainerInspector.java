@@ -0,0 +1,109 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.exception.DockerException;
+import io.github.mike10004.containment.ContainerInspector;
+import io.github.mike10004.containment.ContainerPort;
+import io.github.mike10004.containment.ContainmentException;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.List;
+import java.util.StringJoiner;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Implementation of an inspector that queries the daemon with {@code inspectContainerCmd}.
+ * The most recent inspection is cached for a limited time, and may also be invalidated
+ * explicitly, for example in response to a container event.
+ */
+public class DjContainerInspector implements ContainerInspector {
+
+    public static final Duration DEFAULT_TTL = Duration.ofSeconds(1);
+
+    private final DockerClient client;
+    private final String containerId;
+    private final long ttlNanos;
+    @Nullable
+    private CachedInspection cached;
+
+    public DjContainerInspector(DockerClient client, String containerId) {
+        this(client, containerId, DEFAULT_TTL);
+    }
+
+    /**
+     * Constructs an instance.
+     * @param client client
+     * @param containerId container ID
+     * @param ttl time for which an inspection result is reused
+     */
+    public DjContainerInspector(DockerClient client, String containerId, Duration ttl) {
+        this.client = requireNonNull(client, "client");
+        this.containerId = requireNonNull(containerId, "containerId");
+        checkArgument(!ttl.isNegative(), "ttl must be nonnegative");
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Inspects the container, or returns the cached result of a recent inspection.
+     * @return the inspection
+     * @throws ContainmentException if inspection fails
+     */
+    public synchronized DjContainerInspection inspect() throws ContainmentException {
+        long now = System.nanoTime();
+        if (cached != null && now - cached.fetchedAt < ttlNanos) {
+            return cached.inspection;
+        }
+        DjContainerInspection inspection;
+        try {
+            inspection = DjContainerInspection.from(client.inspectContainerCmd(containerId).exec());
+        } catch (DockerException e) {
+            throw new ContainmentException(e);
+        }
+        cached = new CachedInspection(inspection, now);
+        return inspection;
+    }
+
+    /**
+     * Discards the cached inspection, so that the next query inspects the container again.
+     */
+    public synchronized void invalidate() {
+        cached = null;
+    }
+
+    /**
+     * Invalidates the cached inspection if an event concerns the inspected container.
+     * This method may be registered as a listener with {@link DjContainerEvents#addListener}.
+     * @param event the event
+     */
+    public void onEvent(DjContainerEvent event) {
+        if (containerId.equals(event.containerId())) {
+            invalidate();
+        }
+    }
+
+    @Override
+    public List<ContainerPort> fetchPorts() throws ContainmentException {
+        return inspect().ports();
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", DjContainerInspector.class.getSimpleName() + "[", "]")
+                .add("containerId=" + containerId)
+                .toString();
+    }
+
+    private static class CachedInspection {
+
+        public final DjContainerInspection inspection;
+        public final long fetchedAt;
+
+        public CachedInspection(DjContainerInspection inspection, long fetchedAt) {
+            this.inspection = inspection;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
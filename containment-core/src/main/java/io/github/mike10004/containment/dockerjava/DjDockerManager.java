@@ -3,6 +3,8 @@ package io.github.mike10004.containment.dockerjava;
 import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.model.Image;
 
+import javax.annotation.Nullable;
+
 import java.io.IOException;
 import java.util.List;
 
@@ -23,4 +25,29 @@ public interface DjDockerManager {
     List<Image> queryImagesByName(DockerClient client, String imageName);
 
     DjContainerMonitor getContainerMonitor();
+
+    /**
+     * Gets the subscription to events concerning containers created in this session.
+     * The subscription is shared by all users of this manager, and is open
+     * while any of them holds a {@link DjContainerEvents#acquire() lease} on it.
+     * The default implementation returns null, meaning the manager has no event source
+     * and containers do not learn of events.
+     * @return the event subscription, or null if not supported
+     */
+    @Nullable
+    default DjContainerEvents events() {
+        return null;
+    }
+
+    /**
+     * Gets the queue used for background teardown of containers created in this session.
+     * Implementations that support background teardown must return the same queue on
+     * every invocation, because each queue runs its own worker thread. The default
+     * implementation returns null, meaning containers are stopped synchronously when closed.
+     * @return the teardown queue, or null if background teardown is not supported
+     */
+    @Nullable
+    default DjTeardownQueue teardownQueue() {
+        return null;
+    }
 }
@@ -0,0 +1,164 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallbackTemplate;
+import com.github.dockerjava.api.command.ExecCreateCmd;
+import com.github.dockerjava.api.command.InspectExecResponse;
+import com.github.dockerjava.api.exception.DockerException;
+import com.github.dockerjava.api.model.Frame;
+import io.github.mike10004.containment.ContainmentException;
+import io.github.mike10004.containment.ExecOutputSink;
+import io.github.mike10004.containment.StreamingContainerExecutor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Implementation of an executor that executes processes in a container through the
+ * Docker Engine API. Unlike {@link io.github.mike10004.containment.subprocess.DockerExecExecutor},
+ * this executor does not launch an external {@code docker} process for each command.
+ */
+public class DjExecExecutor implements StreamingContainerExecutor {
+
+    private static final long EXIT_CODE_TIMEOUT_MS = 5000;
+    private static final long INITIAL_EXIT_CODE_POLL_INTERVAL_MS = 5;
+    private static final long MAX_EXIT_CODE_POLL_INTERVAL_MS = 250;
+
+    private final DockerClient client;
+    private final String containerId;
+
+    public DjExecExecutor(DockerClient client, String containerId) {
+        this.client = requireNonNull(client, "client");
+        this.containerId = requireNonNull(containerId, "containerId");
+    }
+
+    @Override
+    public int execute(Map<String, String> containerProcessEnvironment, ExecOutputSink stdoutSink, ExecOutputSink stderrSink, String executable, String... args) throws ContainmentException {
+        requireNonNull(containerProcessEnvironment, "containerProcessEnvironment");
+        requireNonNull(executable, "executable");
+        SinkCallback callback = new SinkCallback(requireNonNull(stdoutSink, "stdoutSink"), requireNonNull(stderrSink, "stderrSink"));
+        int exitCode;
+        try {
+            String execId = createExec(containerProcessEnvironment, executable, args);
+            client.execStartCmd(execId).exec(callback);
+            callback.awaitCompletion();
+            if (callback.sinkError != null) {
+                throw new ContainmentException("output sink failed", callback.sinkError);
+            }
+            exitCode = fetchExitCode(execId);
+        } catch (DockerException e) {
+            throw new ContainmentException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ContainmentException(e);
+        }
+        try {
+            stdoutSink.complete();
+            stderrSink.complete();
+        } catch (IOException e) {
+            throw new ContainmentException("output sink failed", e);
+        }
+        return exitCode;
+    }
+
+    private String createExec(Map<String, String> containerProcessEnvironment, String executable, String... args) {
+        List<String> cmd = new ArrayList<>(args.length + 1);
+        cmd.add(executable);
+        for (String arg : args) {
+            cmd.add(requireNonNull(arg, "arg"));
+        }
+        ExecCreateCmd createCmd = client.execCreateCmd(containerId)
+                .withAttachStdout(true)
+                .withAttachStderr(true)
+                .withCmd(cmd.toArray(new String[0]));
+        if (!containerProcessEnvironment.isEmpty()) {
+            List<String> envDefinitions = containerProcessEnvironment.entrySet().stream()
+                    .map(entry -> String.format("%s=%s", entry.getKey(), entry.getValue()))
+                    .collect(Collectors.toList());
+            createCmd.withEnv(envDefinitions);
+        }
+        return createCmd.exec().getId();
+    }
+
+    /**
+     * Fetches the exit code of a finished exec instance. The daemon may report the instance
+     * as running for a brief period after its output streams close, and longer if the
+     * daemon is busy, so this polls with increasing intervals until the exit code is
+     * available or a deadline of a few seconds passes.
+     */
+    private int fetchExitCode(String execId) throws InterruptedException, ContainmentException {
+        long start = System.nanoTime();
+        long intervalMs = INITIAL_EXIT_CODE_POLL_INTERVAL_MS;
+        while (true) {
+            InspectExecResponse inspection = client.inspectExecCmd(execId).exec();
+            Long exitCode = inspection.getExitCodeLong();
+            if (exitCode != null && !Boolean.TRUE.equals(inspection.isRunning())) {
+                return exitCode.intValue();
+            }
+            long remainingMs = EXIT_CODE_TIMEOUT_MS - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (remainingMs <= 0) {
+                throw new ContainmentException("exit code of exec " + execId + " not available within " + EXIT_CODE_TIMEOUT_MS + "ms");
+            }
+            Thread.sleep(Math.min(intervalMs, remainingMs));
+            intervalMs = Math.min(intervalMs * 2, MAX_EXIT_CODE_POLL_INTERVAL_MS);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", DjExecExecutor.class.getSimpleName() + "[", "]")
+                .add("containerId=" + containerId)
+                .toString();
+    }
+
+    /**
+     * Callback that demultiplexes frames to sinks. If a sink throws an exception,
+     * the callback stops receiving frames and the exception is retained.
+     */
+    private static class SinkCallback extends ResultCallbackTemplate<SinkCallback, Frame> {
+
+        private final ExecOutputSink stdoutSink;
+        private final ExecOutputSink stderrSink;
+        private volatile IOException sinkError;
+
+        public SinkCallback(ExecOutputSink stdoutSink, ExecOutputSink stderrSink) {
+            this.stdoutSink = stdoutSink;
+            this.stderrSink = stderrSink;
+        }
+
+        @Override
+        public void onNext(Frame frame) {
+            byte[] payload = frame.getPayload();
+            if (payload == null || sinkError != null) {
+                return;
+            }
+            try {
+                switch (frame.getStreamType()) {
+                    case STDERR:
+                        stderrSink.accept(ByteBuffer.wrap(payload));
+                        break;
+                    case STDOUT:
+                    case RAW:
+                        stdoutSink.accept(ByteBuffer.wrap(payload));
+                        break;
+                    default:
+                        break;
+                }
+            } catch (IOException e) {
+                sinkError = e;
+                try {
+                    close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+}
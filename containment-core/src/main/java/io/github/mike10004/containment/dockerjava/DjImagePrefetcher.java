@@ -0,0 +1,209 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.PullImageResultCallback;
+import com.github.dockerjava.api.exception.DockerClientException;
+import com.github.dockerjava.api.exception.DockerException;
+import com.github.dockerjava.api.exception.NotFoundException;
+import io.github.mike10004.containment.ContainmentException;
+import io.github.mike10004.containment.ImageSpecifier;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Service that ensures images are present locally, pulling them if necessary.
+ * Concurrent requests for the same image share a single pull; once that pull
+ * finishes, a later request checks for the image again.
+ */
+public class DjImagePrefetcher {
+
+    public static final String SYSPROP_PULL_TIMEOUT_MS = "containment-core.pull.timeoutMs";
+
+    public static final Duration DEFAULT_PULL_TIMEOUT = Duration.ofMinutes(10);
+
+    private static final DjImagePrefetcher DEFAULT_INSTANCE = new DjImagePrefetcher(DefaultAsyncExecutor.getInstance(),
+            Duration.ofMillis(Long.getLong(SYSPROP_PULL_TIMEOUT_MS, DEFAULT_PULL_TIMEOUT.toMillis())));
+
+    private final Executor executor;
+    private final Duration pullTimeout;
+    private final ConcurrentMap<String, CompletableFuture<Void>> inFlight;
+
+    /**
+     * Constructs an instance.
+     * @param executor executor on which images are fetched
+     * @param pullTimeout time allowed for each pull
+     */
+    public DjImagePrefetcher(Executor executor, Duration pullTimeout) {
+        this.executor = requireNonNull(executor, "executor");
+        this.pullTimeout = requireNonNull(pullTimeout, "pullTimeout");
+        inFlight = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the instance shared by this JVM. Using the shared instance
+     * ensures that an image is not pulled concurrently by multiple callers in this JVM.
+     * @return the default instance
+     */
+    public static DjImagePrefetcher getDefault() {
+        return DEFAULT_INSTANCE;
+    }
+
+    /**
+     * Ensures an image is present in the background. If the image is already being
+     * fetched, the future of that fetch is returned.
+     * @param clientSupplier supplier of a client; the client is closed after the fetch
+     * @param image image
+     * @return a future that completes when the image is present
+     */
+    public CompletableFuture<Void> prefetch(Supplier<DockerClient> clientSupplier, ImageSpecifier image) {
+        requireNonNull(clientSupplier, "clientSupplier");
+        String key = normalize(image);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture<Void> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> {
+                try (DockerClient client = clientSupplier.get()) {
+                    ensurePresent(client, key);
+                    inFlight.remove(key, future);
+                    future.complete(null);
+                } catch (ContainmentException | IOException | RuntimeException e) {
+                    inFlight.remove(key, future);
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Ensures an image is present, waiting for the pull to finish if one is required.
+     * If the image is already being fetched, this method waits for that fetch.
+     * @param client client
+     * @param image image
+     * @throws ContainmentException if the image could not be pulled
+     */
+    public void require(DockerClient client, ImageSpecifier image) throws ContainmentException {
+        String key = normalize(image);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture<Void> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            await(existing, key);
+            return;
+        }
+        try {
+            ensurePresent(client, key);
+            future.complete(null);
+        } catch (ContainmentException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Waits for an in-flight fetch of an image, if there is one. The outcome of
+     * the fetch is ignored; if it failed, the caller will find the image absent.
+     * @param image image
+     * @throws ContainmentException if interrupted while waiting
+     */
+    public void awaitInFlight(ImageSpecifier image) throws ContainmentException {
+        String key = normalize(image);
+        CompletableFuture<Void> existing = inFlight.get(key);
+        if (existing != null) {
+            try {
+                await(existing, key);
+            } catch (ContainmentException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static void await(CompletableFuture<Void> future, String image) throws ContainmentException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ContainmentException("interrupted while waiting for " + image, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ContainmentException) {
+                throw (ContainmentException) e.getCause();
+            }
+            throw new ContainmentException(e.getCause());
+        }
+    }
+
+    private void ensurePresent(DockerClient client, String image) throws ContainmentException {
+        try {
+            if (!isPresent(client, image)) {
+                pull(client, image);
+            }
+        } catch (DockerException | DockerClientException e) {
+            throw new ContainmentException(e);
+        }
+    }
+
+    static String normalize(ImageSpecifier image) {
+        return image.withDefaultTag("latest").toString();
+    }
+
+    /**
+     * Checks whether an image is present locally.
+     * @param client client
+     * @param image image name
+     * @return true if present
+     */
+    protected boolean isPresent(DockerClient client, String image) {
+        try {
+            client.inspectImageCmd(image).exec();
+            return true;
+        } catch (NotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Pulls an image.
+     * @param client client
+     * @param image image name
+     * @throws ContainmentException if the pull does not finish within the timeout or is interrupted
+     */
+    protected void pull(DockerClient client, String image) throws ContainmentException {
+        try (PullImageResultCallback callback = client.pullImageCmd(image).exec(new PullImageResultCallback())) {
+            if (!callback.awaitCompletion(pullTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new ContainmentException("pull timeout exceeded: " + image);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ContainmentException("interrupted while pulling " + image, e);
+        } catch (IOException e) {
+            throw new ContainmentException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", DjImagePrefetcher.class.getSimpleName() + "[", "]")
+                .add("inFlight=" + inFlight.keySet())
+                .toString();
+    }
+}
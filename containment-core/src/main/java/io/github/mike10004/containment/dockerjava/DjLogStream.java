@@ -0,0 +1,366 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallbackTemplate;
+import com.github.dockerjava.api.exception.DockerException;
+import com.github.dockerjava.api.model.Frame;
+import io.github.mike10004.containment.ContainerLogFollower;
+import io.github.mike10004.containment.ContainmentException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Log stream of a container that is shared among any number of subscribers.
+ * A single log subscription is opened with the daemon when the first subscriber
+ * arrives; frames are demultiplexed once and fanned out to the subscribers of
+ * each stream. The most recent frames of each stream are retained in memory,
+ * and a subscriber that arrives late is first given those frames instead of
+ * causing the daemon to replay the log.
+ *
+ * <p>Only the most recent {@link Settings#replayBytes} of each stream are replayed,
+ * 256 KiB by default. A subscriber that arrives late therefore does not see the
+ * beginning of a long log, whereas a subscription of its own with the daemon would
+ * replay the whole log. Set {@link #SYSPROP_REPLAY_BYTES} to retain more.</p>
+ *
+ * <p>Each subscriber has its own bounded queue and is fed on the delivery executor,
+ * so a slow subscriber does not stall the others or the connection to the daemon.
+ * When a subscriber's queue is full, its oldest queued frames are dropped. A subscriber
+ * that implements {@link GapListener} is notified of dropped frames before it receives
+ * the next frame; subscribers that wait for particular content should implement it,
+ * because the content may have been dropped.</p>
+ */
+public class DjLogStream implements ContainerLogFollower, Closeable {
+
+    public static final String SYSPROP_REPLAY_BYTES = "containment-core.logs.replayBytes";
+    public static final String SYSPROP_SUBSCRIBER_QUEUE_BYTES = "containment-core.logs.subscriberQueueBytes";
+
+    private static final Logger log = Logger.getLogger(DjLogStream.class.getName());
+
+    private final DockerClient client;
+    private final String containerId;
+    private final Settings settings;
+    private final Executor deliveryExecutor;
+    private final Object lock = new Object();
+    private final Map<ProcessOutputStreamType, ReplayBuffer> replayBuffers;
+    private final Map<ProcessOutputStreamType, List<Subscriber>> subscribers;
+    private UpstreamCallback upstream;
+    private boolean closed;
+
+    public DjLogStream(DockerClient client, String containerId) {
+        this(client, containerId, Settings.fromSystemProperties(), DefaultAsyncExecutor.getInstance());
+    }
+
+    public DjLogStream(DockerClient client, String containerId, Settings settings, Executor deliveryExecutor) {
+        this.client = requireNonNull(client, "client");
+        this.containerId = requireNonNull(containerId, "containerId");
+        this.settings = requireNonNull(settings, "settings");
+        this.deliveryExecutor = requireNonNull(deliveryExecutor, "deliveryExecutor");
+        replayBuffers = new EnumMap<>(ProcessOutputStreamType.class);
+        subscribers = new EnumMap<>(ProcessOutputStreamType.class);
+        for (ProcessOutputStreamType stream : ProcessOutputStreamType.values()) {
+            replayBuffers.put(stream, new ReplayBuffer(settings.replayBytes));
+            subscribers.put(stream, new ArrayList<>());
+        }
+    }
+
+    @Override
+    public <C extends Consumer<? super byte[]>> C followStdout(C consumer) throws ContainmentException {
+        subscribe(ProcessOutputStreamType.stdout, consumer);
+        return consumer;
+    }
+
+    @Override
+    public <C extends Consumer<? super byte[]>> C followStderr(C consumer) throws ContainmentException {
+        subscribe(ProcessOutputStreamType.stderr, consumer);
+        return consumer;
+    }
+
+    private void subscribe(ProcessOutputStreamType stream, Consumer<? super byte[]> consumer) throws ContainmentException {
+        requireNonNull(consumer, "consumer");
+        synchronized (lock) {
+            if (closed) {
+                throw new ContainmentException("log stream of container " + containerId + " is closed");
+            }
+            Subscriber subscriber = new Subscriber(consumer);
+            replayBuffers.get(stream).replayTo(subscriber);
+            subscribers.get(stream).add(subscriber);
+            if (upstream == null) {
+                upstream = new UpstreamCallback();
+                try {
+                    openUpstream(upstream);
+                } catch (DockerException e) {
+                    upstream = null;
+                    subscribers.get(stream).remove(subscriber);
+                    throw new ContainmentException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Interface of a subscriber that is notified when frames are dropped from its queue
+     * because it did not keep up with the stream.
+     */
+    public interface GapListener {
+
+        /**
+         * Notifies this subscriber that frames were dropped. The dropped frames precede
+         * the frame delivered next. Invoked on the delivery thread.
+         * @param count number of frames dropped since the last frame delivered
+         */
+        void framesDropped(long count);
+
+    }
+
+    /**
+     * Opens the log subscription with the daemon. Both streams are requested,
+     * from the beginning of the log.
+     * @param callback the callback that receives frames
+     */
+    protected void openUpstream(ResultCallbackTemplate<?, Frame> callback) {
+        client.logContainerCmd(containerId)
+                .withFollowStream(true)
+                .withStdOut(true)
+                .withStdErr(true)
+                .withTailAll()
+                .exec(callback);
+    }
+
+    /**
+     * Publishes a frame of output to the replay buffer and subscribers of a stream.
+     * @param stream the stream
+     * @param payload the frame payload
+     */
+    void publish(ProcessOutputStreamType stream, byte[] payload) {
+        synchronized (lock) {
+            replayBuffers.get(stream).add(payload);
+            for (Subscriber subscriber : subscribers.get(stream)) {
+                subscriber.offer(payload);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of frames dropped from subscriber queues because
+     * the subscribers did not keep up.
+     * @return total number of dropped frames
+     */
+    public long countDroppedFrames() {
+        synchronized (lock) {
+            long total = 0;
+            for (List<Subscriber> list : subscribers.values()) {
+                for (Subscriber subscriber : list) {
+                    total += subscriber.droppedFrames();
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Closes the log subscription with the daemon. Frames already queued are still
+     * delivered to subscribers, but no more are received.
+     */
+    @Override
+    public void close() throws IOException {
+        UpstreamCallback callback;
+        synchronized (lock) {
+            closed = true;
+            callback = upstream;
+            upstream = null;
+        }
+        if (callback != null) {
+            callback.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", DjLogStream.class.getSimpleName() + "[", "]")
+                .add("containerId=" + containerId)
+                .add("settings=" + settings)
+                .toString();
+    }
+
+    private class UpstreamCallback extends ResultCallbackTemplate<UpstreamCallback, Frame> {
+
+        @Override
+        public void onNext(Frame frame) {
+            byte[] payload = frame.getPayload();
+            if (payload == null) {
+                return;
+            }
+            switch (frame.getStreamType()) {
+                case STDERR:
+                    publish(ProcessOutputStreamType.stderr, payload);
+                    break;
+                case STDOUT:
+                case RAW:
+                    publish(ProcessOutputStreamType.stdout, payload);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Buffer of the most recent frames of a stream, bounded by total payload size.
+     * Access is guarded by the stream lock.
+     */
+    private static class ReplayBuffer {
+
+        private final int maxBytes;
+        private final ArrayDeque<byte[]> frames;
+        private long size;
+
+        public ReplayBuffer(int maxBytes) {
+            this.maxBytes = maxBytes;
+            frames = new ArrayDeque<>();
+        }
+
+        public void add(byte[] payload) {
+            if (maxBytes == 0) {
+                return;
+            }
+            frames.addLast(payload);
+            size += payload.length;
+            while (size > maxBytes && !frames.isEmpty()) {
+                size -= frames.removeFirst().length;
+            }
+        }
+
+        public void replayTo(Subscriber subscriber) {
+            for (byte[] payload : frames) {
+                subscriber.offer(payload);
+            }
+        }
+    }
+
+    /**
+     * Subscriber with a bounded queue of frames. At most one delivery task per
+     * subscriber is scheduled at a time, so frames are delivered in order.
+     */
+    private class Subscriber implements Runnable {
+
+        private final Consumer<? super byte[]> consumer;
+        private final ArrayDeque<byte[]> queue;
+        private long queuedBytes;
+        private long droppedFrames;
+        private long undeliveredGap;
+        private boolean scheduled;
+
+        public Subscriber(Consumer<? super byte[]> consumer) {
+            this.consumer = consumer;
+            queue = new ArrayDeque<>();
+        }
+
+        public synchronized long droppedFrames() {
+            return droppedFrames;
+        }
+
+        public void offer(byte[] payload) {
+            boolean schedule;
+            synchronized (this) {
+                queue.addLast(payload);
+                queuedBytes += payload.length;
+                while (queuedBytes > settings.subscriberQueueBytes && queue.size() > 1) {
+                    queuedBytes -= queue.removeFirst().length;
+                    droppedFrames++;
+                    undeliveredGap++;
+                }
+                schedule = !scheduled;
+                scheduled = true;
+            }
+            if (schedule) {
+                deliveryExecutor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                byte[] payload;
+                long gap;
+                synchronized (this) {
+                    payload = queue.pollFirst();
+                    if (payload == null) {
+                        scheduled = false;
+                        return;
+                    }
+                    queuedBytes -= payload.length;
+                    gap = undeliveredGap;
+                    undeliveredGap = 0;
+                }
+                try {
+                    if (gap > 0 && consumer instanceof GapListener) {
+                        ((GapListener) consumer).framesDropped(gap);
+                    }
+                    consumer.accept(payload);
+                } catch (RuntimeException e) {
+                    log.log(Level.WARNING, "log subscriber threw exception on container " + containerId, e);
+                }
+            }
+        }
+    }
+
+    public static final class Settings {
+
+        public static final int DEFAULT_REPLAY_BYTES = 256 * 1024;
+        public static final int DEFAULT_SUBSCRIBER_QUEUE_BYTES = 4 * 1024 * 1024;
+
+        /**
+         * Maximum number of bytes of each stream retained for replay to late subscribers.
+         */
+        public final int replayBytes;
+
+        /**
+         * Maximum number of bytes queued for a subscriber before its oldest frames are dropped.
+         */
+        public final int subscriberQueueBytes;
+
+        public Settings(int replayBytes, int subscriberQueueBytes) {
+            checkArgument(replayBytes >= 0, "replayBytes must be nonnegative");
+            checkArgument(subscriberQueueBytes > 0, "subscriberQueueBytes must be positive");
+            this.replayBytes = replayBytes;
+            this.subscriberQueueBytes = subscriberQueueBytes;
+        }
+
+        public static Settings defaults() {
+            return new Settings(DEFAULT_REPLAY_BYTES, DEFAULT_SUBSCRIBER_QUEUE_BYTES);
+        }
+
+        /**
+         * Creates an instance whose values are read from system properties,
+         * falling back to defaults for undefined properties.
+         * @return a new instance
+         */
+        public static Settings fromSystemProperties() {
+            return new Settings(
+                    Integer.getInteger(SYSPROP_REPLAY_BYTES, DEFAULT_REPLAY_BYTES),
+                    Integer.getInteger(SYSPROP_SUBSCRIBER_QUEUE_BYTES, DEFAULT_SUBSCRIBER_QUEUE_BYTES));
+        }
+
+        @Override
+        public String toString() {
+            return new StringJoiner(", ", Settings.class.getSimpleName() + "[", "]")
+                    .add("replayBytes=" + replayBytes)
+                    .add("subscriberQueueBytes=" + subscriberQueueBytes)
+                    .toString();
+        }
+    }
+}
@@ -110,6 +110,27 @@ public class DjManualContainerMonitor implements DjContainerMonitor {
         }
     }
 
+    /**
+     * Removes all tracked containers concurrently. Containers that are confirmed
+     * to be gone are no longer tracked; others remain tracked.
+     * @param client client
+     * @param teardown teardown service
+     * @return report of the outcome for each container
+     */
+    public DjTeardown.Report tearDownAll(DockerClient client, DjTeardown teardown) {
+        Set<String> containerIds = new LinkedHashSet<>();
+        containerIds.addAll(Arrays.asList(this.started.toArray(new String[0])));
+        containerIds.addAll(Arrays.asList(this.created.toArray(new String[0])));
+        DjTeardown.Report report = teardown.tearDown(client, containerIds);
+        for (DjTeardown.Outcome outcome : report.outcomes) {
+            if (outcome.status.isGone()) {
+                started.remove(outcome.containerId);
+                created.remove(outcome.containerId);
+            }
+        }
+        return report;
+    }
+
     @Override
     public void created(String containerId) {
         checkArgument(containerId != null && !containerId.trim().isEmpty());
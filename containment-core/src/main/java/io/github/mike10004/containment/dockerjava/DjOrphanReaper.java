@@ -0,0 +1,192 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.model.Container;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Service that removes containers left behind by sessions whose JVM ended without
+ * running its shutdown hook, for example because it was killed.
+ *
+ * <p>Containers are found with a single query for containers that have a session label.
+ * A session is considered ended only if its lockfile in the session directory exists and
+ * is not locked. A session that exits normally deletes its lockfile, so containers it
+ * deliberately left running are never removed; only the containers of sessions that
+ * were killed or crashed are reaped.</p>
+ *
+ * <p>Only one JVM on a host reaps at a time; others skip reaping while a
+ * reap is in progress.</p>
+ */
+public class DjOrphanReaper {
+
+    public static final String SYSPROP_DISABLED = "containment-core.reaper.disabled";
+
+    private static final String REAPER_LOCKFILE_NAME = "reaper.lock";
+
+    private static final Logger log = Logger.getLogger(DjOrphanReaper.class.getName());
+
+    private static final DjOrphanReaper DEFAULT_INSTANCE = new DjOrphanReaper(DjSession.getSessionDirectory(), DjSession.getId(),
+            new DjTeardown(DjTeardown.DEFAULT_PARALLELISM, Duration.ofMinutes(1)));
+
+    private final Path sessionDirectory;
+    private final String currentSessionId;
+    private final DjTeardown teardown;
+    private final AtomicBoolean backgroundReapStarted;
+
+    public DjOrphanReaper(Path sessionDirectory, String currentSessionId, DjTeardown teardown) {
+        this.sessionDirectory = requireNonNull(sessionDirectory, "sessionDirectory");
+        this.currentSessionId = requireNonNull(currentSessionId, "currentSessionId");
+        this.teardown = requireNonNull(teardown, "teardown");
+        backgroundReapStarted = new AtomicBoolean(false);
+    }
+
+    /**
+     * Gets the instance that reaps on behalf of the current session.
+     * @return the default instance
+     */
+    public static DjOrphanReaper getDefault() {
+        return DEFAULT_INSTANCE;
+    }
+
+    /**
+     * Starts reaping on the default asynchronous executor, unless reaping has already
+     * been started by this instance or is disabled by system property.
+     * @param clientSupplier supplier of a client; the client is closed after reaping
+     */
+    public void reapInBackground(Supplier<DockerClient> clientSupplier) {
+        reapInBackground(clientSupplier, DefaultAsyncExecutor.getInstance());
+    }
+
+    /**
+     * Starts reaping on the given executor, unless reaping has already
+     * been started by this instance or is disabled by system property.
+     * @param clientSupplier supplier of a client; the client is closed after reaping
+     * @param executor executor
+     */
+    public void reapInBackground(Supplier<DockerClient> clientSupplier, Executor executor) {
+        if (Boolean.getBoolean(SYSPROP_DISABLED) || !backgroundReapStarted.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            try (DockerClient client = clientSupplier.get()) {
+                DjTeardown.Report report = reap(client);
+                if (!report.outcomes.isEmpty()) {
+                    log.log(Level.INFO, "reaped orphaned containers: {0}", report);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.log(Level.WARNING, "failed to reap orphaned containers", e);
+            }
+        });
+    }
+
+    /**
+     * Removes containers of ended sessions.
+     * @param client client
+     * @return report of the outcome for each orphaned container
+     * @throws IOException if the reaper lockfile cannot be accessed
+     */
+    public DjTeardown.Report reap(DockerClient client) throws IOException {
+        Files.createDirectories(sessionDirectory);
+        Path reaperLockfile = sessionDirectory.resolve(REAPER_LOCKFILE_NAME);
+        try (FileChannel channel = FileChannel.open(reaperLockfile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = tryLock(channel)) {
+            if (lock == null) {
+                return new DjTeardown.Report(Collections.emptyList(), Duration.ZERO);
+            }
+            List<Container> containers = client.listContainersCmd()
+                    .withShowAll(true)
+                    .withLabelFilter(Collections.singletonList(DjSession.LABEL_SESSION_ID))
+                    .exec();
+            Map<String, Boolean> sessionEnded = new HashMap<>();
+            List<String> orphans = new ArrayList<>();
+            List<String> endedSessions = new ArrayList<>();
+            for (Container container : containers) {
+                Map<String, String> labels = container.getLabels() == null ? Collections.emptyMap() : container.getLabels();
+                String sessionId = labels.get(DjSession.LABEL_SESSION_ID);
+                if (sessionId == null) {
+                    continue;
+                }
+                boolean ended = sessionEnded.computeIfAbsent(sessionId, id -> {
+                    boolean e = isEnded(id);
+                    if (e) {
+                        endedSessions.add(id);
+                    }
+                    return e;
+                });
+                if (ended) {
+                    orphans.add(container.getId());
+                }
+            }
+            DjTeardown.Report report = teardown.tearDown(client, orphans);
+            if (report.unsuccessful().isEmpty()) {
+                for (String sessionId : endedSessions) {
+                    Files.deleteIfExists(DjSession.getLockfile(sessionDirectory, sessionId));
+                }
+            }
+            return report;
+        }
+    }
+
+    @Nullable
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // another thread in this JVM is reaping
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether a session has ended without deleting its lockfile.
+     * @param sessionId session ID
+     * @return true if the session's lockfile exists and is not locked
+     */
+    boolean isEnded(String sessionId) {
+        if (currentSessionId.equals(sessionId)) {
+            return false;
+        }
+        Path lockfile = DjSession.getLockfile(sessionDirectory, sessionId);
+        return Files.exists(lockfile) && !isLocked(lockfile);
+    }
+
+    private static boolean isLocked(Path lockfile) {
+        try (FileChannel channel = FileChannel.open(lockfile, StandardOpenOption.WRITE);
+             FileLock lock = tryLock(channel)) {
+            return lock == null;
+        } catch (IOException e) {
+            // if the lockfile cannot be opened, assume the session is alive
+            return true;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", DjOrphanReaper.class.getSimpleName() + "[", "]")
+                .add("sessionDirectory=" + sessionDirectory)
+                .add("currentSessionId=" + currentSessionId)
+                .toString();
+    }
+}
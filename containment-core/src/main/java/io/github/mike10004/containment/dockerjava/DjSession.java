@@ -0,0 +1,145 @@
+package io.github.mike10004.containment.dockerjava;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Class that identifies the current session, meaning the lifetime of this JVM.
+ * Containers created by this library are labeled with the session ID, so that
+ * the containers of a session can be distinguished from others on the same daemon.
+ *
+ * <p>While a session owns containers, it holds a lock on a file named after the session ID
+ * in the {@link #getSessionDirectory() session directory}. The operating system
+ * releases the lock when the process ends, even if the process is killed, so a lockfile
+ * that can be locked by another process belongs to a session that has ended.</p>
+ */
+public final class DjSession {
+
+    /**
+     * Label whose value is the ID of the session that created a container.
+     */
+    public static final String LABEL_SESSION_ID = "io.github.mike10004.containment.session";
+
+    /**
+     * Label whose value is the process ID of the JVM that created a container.
+     */
+    public static final String LABEL_PID = "io.github.mike10004.containment.pid";
+
+    /**
+     * Label whose value is the name of the host on which the JVM that created a container runs.
+     */
+    public static final String LABEL_HOST = "io.github.mike10004.containment.host";
+
+    public static final String SYSPROP_SESSION_DIRECTORY = "containment-core.session.directory";
+
+    static final String LOCKFILE_SUFFIX = ".lock";
+
+    private static final Logger log = Logger.getLogger(DjSession.class.getName());
+
+    private static final String SESSION_ID = UUID.randomUUID().toString();
+
+    private static final String PID = lookUpPid();
+
+    private static final String HOST_NAME = lookUpHostName();
+
+    private static final Object lockfileLock = new Object();
+
+    @Nullable
+    private static FileLock lockfile;
+
+    private DjSession() {}
+
+    /**
+     * Gets the ID of the current session.
+     * @return session ID
+     */
+    public static String getId() {
+        return SESSION_ID;
+    }
+
+    /**
+     * Gets the process ID of this JVM.
+     * @return process ID, or an empty string if it cannot be determined
+     */
+    public static String getPid() {
+        return PID;
+    }
+
+    /**
+     * Gets the name of this host.
+     * @return host name, or an empty string if it cannot be determined
+     */
+    public static String getHostName() {
+        return HOST_NAME;
+    }
+
+    private static String lookUpPid() {
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        int at = name.indexOf('@');
+        return at > 0 ? name.substring(0, at) : "";
+    }
+
+    private static String lookUpHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Gets the directory where session lockfiles are kept. The directory is shared by all
+     * JVMs on this host that use the same temporary directory.
+     * @return the session directory
+     */
+    public static Path getSessionDirectory() {
+        String dir = System.getProperty(SYSPROP_SESSION_DIRECTORY);
+        if (dir != null) {
+            return Paths.get(dir);
+        }
+        return Paths.get(System.getProperty("java.io.tmpdir"), "containment-sessions");
+    }
+
+    static Path getLockfile(Path sessionDirectory, String sessionId) {
+        return sessionDirectory.resolve(sessionId + LOCKFILE_SUFFIX);
+    }
+
+    /**
+     * Acquires the lock on this session's lockfile, if not already held. The lock is
+     * held until this JVM exits. Failure to acquire the lock is logged and otherwise
+     * ignored; the only consequence is that this session's containers cannot be
+     * identified as orphans if this JVM is killed.
+     */
+    static void holdLockfile() {
+        synchronized (lockfileLock) {
+            if (lockfile != null) {
+                return;
+            }
+            Path file = getLockfile(getSessionDirectory(), SESSION_ID);
+            try {
+                Files.createDirectories(file.getParent());
+                @SuppressWarnings("resource") // held for the lifetime of the JVM
+                FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                lockfile = channel.lock();
+                channel.write(ByteBuffer.wrap(getPid().getBytes(StandardCharsets.US_ASCII)));
+                file.toFile().deleteOnExit();
+            } catch (IOException e) {
+                log.log(Level.FINE, "failed to lock session file " + file, e);
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package io.github.mike10004.containment.dockerjava;
 
 import com.github.dockerjava.api.DockerClient;
+import io.github.mike10004.containment.ContainmentException;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
@@ -12,8 +13,9 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * Implementation of a container monitor that adds a JVM shutdown hook
- * to stop and remove containers. Instantiation of this class should
- * be kept to a minimum
+ * to remove containers. Instantiation of this class should
+ * be kept to a minimum. The hook force-removes all tracked containers
+ * concurrently, within the deadline of its {@link DjTeardown}.
  */
 public class DjShutdownHookContainerMonitor extends DjManualContainerMonitor {
 
@@ -26,10 +28,21 @@ public class DjShutdownHookContainerMonitor extends DjManualContainerMonitor {
     private volatile boolean shutdownHookAdded;
     private static final Object shutdownHookAddLock = new Object();
     private final ContainerActionErrorListener errorListener;
+    private final DjTeardown teardown;
 
     public DjShutdownHookContainerMonitor(Supplier<DockerClient> clientConstructor) {
+        this(clientConstructor, DjTeardown.fromSystemProperties());
+    }
+
+    /**
+     * Constructs an instance.
+     * @param clientConstructor supplier of the client used by the shutdown hook
+     * @param teardown teardown service used by the shutdown hook
+     */
+    public DjShutdownHookContainerMonitor(Supplier<DockerClient> clientConstructor, DjTeardown teardown) {
         super();
         this.clientConstructor = requireNonNull(clientConstructor);
+        this.teardown = requireNonNull(teardown);
         this.shutdownHook = new ShutdownHook();
         errorListener = (containerId, e) -> {
             String message = String.format("failed on action involving container %s", containerId);
@@ -75,8 +88,12 @@ public class DjShutdownHookContainerMonitor extends DjManualContainerMonitor {
         @Override
         public void run() {
             try (DockerClient client = clientConstructor.get()) {
-                stopAll(client, errorListener);
-                removeAll(client, errorListener);
+                DjTeardown.Report teardownReport = tearDownAll(client, teardown);
+                for (DjTeardown.Outcome outcome : teardownReport.unsuccessful()) {
+                    String message = String.format("teardown %s after %s", outcome.status, outcome.elapsed);
+                    errorListener.accept(outcome.containerId, new ContainmentException(message, outcome.exception));
+                }
+                report(teardownReport.toString(), null);
             } catch (IOException e) {
                 report(this + " failed to close DockerClient", e);
             }
@@ -4,11 +4,15 @@ import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.exception.DockerException;
 import io.github.mike10004.containment.ContainerInfo;
 import io.github.mike10004.containment.ContainmentException;
+import io.github.mike10004.containment.ContainmentFutures;
 import io.github.mike10004.containment.ContainerCopier;
 import io.github.mike10004.containment.StartableContainer;
 import io.github.mike10004.containment.StartedContainer;
 
+import javax.annotation.Nullable;
 import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static java.util.Objects.requireNonNull;
@@ -19,11 +23,50 @@ public class DjStartableContainer implements StartableContainer {
     private final DockerClient client;
     private final DjContainerMonitor containerMonitor;
     private final AtomicBoolean started;
+    private final Executor asyncExecutor;
+    @Nullable
+    private final DjTeardownQueue teardownQueue;
+    @Nullable
+    private final DjContainerEvents events;
 
     public DjStartableContainer(ContainerInfo info, DockerClient client, DjContainerMonitor containerMonitor) {
+        this(info, client, containerMonitor, DefaultAsyncExecutor.getInstance());
+    }
+
+    public DjStartableContainer(ContainerInfo info, DockerClient client, DjContainerMonitor containerMonitor, Executor asyncExecutor) {
+        this(info, client, containerMonitor, asyncExecutor, null);
+    }
+
+    /**
+     * Constructs an instance.
+     * @param info container info
+     * @param client client
+     * @param containerMonitor container monitor
+     * @param asyncExecutor executor of asynchronous operations
+     * @param teardownQueue queue to which the container is submitted on close; if null,
+     *                      the container is removed synchronously
+     */
+    public DjStartableContainer(ContainerInfo info, DockerClient client, DjContainerMonitor containerMonitor, Executor asyncExecutor, @Nullable DjTeardownQueue teardownQueue) {
+        this(info, client, containerMonitor, asyncExecutor, teardownQueue, null);
+    }
+
+    /**
+     * Constructs an instance.
+     * @param info container info
+     * @param client client
+     * @param containerMonitor container monitor
+     * @param asyncExecutor executor of asynchronous operations
+     * @param teardownQueue queue to which the container is submitted on close; if null,
+     *                      the container is removed synchronously
+     * @param events event subscription to which the started container listens; may be null
+     */
+    public DjStartableContainer(ContainerInfo info, DockerClient client, DjContainerMonitor containerMonitor, Executor asyncExecutor, @Nullable DjTeardownQueue teardownQueue, @Nullable DjContainerEvents events) {
         this.info = requireNonNull(info, "info");
         this.client = requireNonNull(client);
         this.containerMonitor = requireNonNull(containerMonitor);
+        this.asyncExecutor = requireNonNull(asyncExecutor);
+        this.teardownQueue = teardownQueue;
+        this.events = events;
         started = new AtomicBoolean(false);
     }
 
@@ -37,21 +80,36 @@ public class DjStartableContainer implements StartableContainer {
         return info;
     }
 
+    /**
+     * Removes the container. If this instance has a teardown queue, the container is
+     * submitted to the queue and this method returns without waiting for removal,
+     * and the container monitor is notified when removal completes.
+     * @throws ContainmentException on error
+     */
     @Override
     public synchronized void close() throws ContainmentException {
-        maybeRemove();
+        if (!isRemovalRequired()) {
+            containerMonitor.removed(info.id());
+            return;
+        }
+        if (teardownQueue != null) {
+            teardownQueue.submit(info.id());
+            return;
+        }
+        remove();
         containerMonitor.removed(info.id());
     }
 
-    private void maybeRemove() throws ContainmentException {
+    private boolean isRemovalRequired() {
         boolean hasBeenStarted = started.get();
-        if (hasBeenStarted && info.isAutoRemoveEnabled()) {
-            /*
-             * Then the container will be removed when it stops, so we don't
-             * have to do remove it explicitly.
-             */
-            return;
-        }
+        /*
+         * If auto-remove is enabled, the container will be removed when it stops,
+         * so we don't have to do remove it explicitly.
+         */
+        return !(hasBeenStarted && info.isAutoRemoveEnabled());
+    }
+
+    private void remove() throws ContainmentException {
         String containerId = info.id();
         try {
             client.removeContainerCmd(containerId).withForce(true).exec();
@@ -61,7 +119,12 @@ public class DjStartableContainer implements StartableContainer {
     }
 
     @Override
-    public synchronized StartedContainer start() throws ContainmentException {
+    public CompletableFuture<Void> closeAsync() {
+        return ContainmentFutures.runAsync(this::close, asyncExecutor);
+    }
+
+    @Override
+    public synchronized DjStartedContainer start() throws ContainmentException {
         ContainerInfo info = info();
         try {
             client.startContainerCmd(info.id()).exec();
@@ -70,7 +133,12 @@ public class DjStartableContainer implements StartableContainer {
         } catch (DockerException e) {
             throw new ContainmentException(e);
         }
-        return new DjStartedContainer(client, info, containerMonitor);
+        return new DjStartedContainer(client, info, containerMonitor, asyncExecutor, teardownQueue, events);
+    }
+
+    @Override
+    public CompletableFuture<StartedContainer> startAsync() {
+        return ContainmentFutures.callAsync(this::start, asyncExecutor);
     }
 
 
@@ -1,57 +1,152 @@
 package io.github.mike10004.containment.dockerjava;
 
 import com.github.dockerjava.api.DockerClient;
-import com.github.dockerjava.api.async.ResultCallback;
-import com.github.dockerjava.api.async.ResultCallbackTemplate;
-import com.github.dockerjava.api.command.LogContainerCmd;
-import com.github.dockerjava.api.exception.DockerException;
 import com.github.dockerjava.api.exception.NotFoundException;
-import com.github.dockerjava.api.model.Frame;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import io.github.mike10004.containment.ContainerCopier;
-import io.github.mike10004.containment.ContainerExecutor;
 import io.github.mike10004.containment.ContainerInfo;
-import io.github.mike10004.containment.ContainerInspector;
-import io.github.mike10004.containment.ContainerLogFollower;
-import io.github.mike10004.containment.ContainerPort;
 import io.github.mike10004.containment.ContainmentException;
+import io.github.mike10004.containment.ContainmentFutures;
 import io.github.mike10004.containment.StartedContainer;
-import io.github.mike10004.containment.subprocess.DockerExecExecutor;
-import io.github.mike10004.containment.subprocess.DockerPsContent;
-import io.github.mike10004.containment.subprocess.DockerPsExecutor;
-import io.github.mike10004.containment.subprocess.DockerSubprocessExecutorBase;
+import io.github.mike10004.containment.StreamingContainerExecutor;
 
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.List;
 import java.util.StringJoiner;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import static java.util.Objects.requireNonNull;
 
 public class DjStartedContainer implements StartedContainer {
 
+    private static final Logger log = Logger.getLogger(DjStartedContainer.class.getName());
+
     private final DockerClient client;
     private final ContainerInfo info;
-    private final LoadingCache<Datum, String> cache;
+    private final DjContainerInspector inspector;
     private final DjContainerMonitor containerManager;
+    private final Executor asyncExecutor;
+    private final DjLogStream logStream;
+    @Nullable
+    private final DjTeardownQueue teardownQueue;
+    @Nullable
+    private final DjContainerEvents events;
+    private final List<Consumer<? super DjContainerEvent>> deathListeners;
+    private final Consumer<DjContainerEvent> eventListener;
+    private final Object eventsLock = new Object();
+    @Nullable
+    private Closeable eventsLease;
+    private boolean closed;
 
     public DjStartedContainer(DockerClient client, ContainerInfo info, DjContainerMonitor containerManager) {
+        this(client, info, containerManager, DefaultAsyncExecutor.getInstance());
+    }
+
+    public DjStartedContainer(DockerClient client, ContainerInfo info, DjContainerMonitor containerManager, Executor asyncExecutor) {
+        this(client, info, containerManager, asyncExecutor, null);
+    }
+
+    /**
+     * Constructs an instance.
+     * @param client client
+     * @param info container info
+     * @param containerManager container monitor
+     * @param asyncExecutor executor of asynchronous operations
+     * @param teardownQueue queue to which the container is submitted on close; if null,
+     *                      the container is stopped synchronously
+     */
+    public DjStartedContainer(DockerClient client, ContainerInfo info, DjContainerMonitor containerManager, Executor asyncExecutor, @Nullable DjTeardownQueue teardownQueue) {
+        this(client, info, containerManager, asyncExecutor, teardownQueue, null);
+    }
+
+    /**
+     * Constructs an instance. If an event subscription is provided, this instance subscribes
+     * to it when the first {@link #addDeathListener(Consumer) death listener} is added, and
+     * listens until closed; while subscribed, events concerning this container invalidate the
+     * inspector's cached inspection, and events reporting that the container died or was
+     * destroyed are published to death listeners.
+     * @param client client
+     * @param info container info
+     * @param containerManager container monitor
+     * @param asyncExecutor executor of asynchronous operations
+     * @param teardownQueue queue to which the container is submitted on close; if null,
+     *                      the container is stopped synchronously
+     * @param events event subscription; may be null
+     */
+    public DjStartedContainer(DockerClient client, ContainerInfo info, DjContainerMonitor containerManager, Executor asyncExecutor, @Nullable DjTeardownQueue teardownQueue, @Nullable DjContainerEvents events) {
         this.client = client;
         this.info = info;
         this.containerManager = requireNonNull(containerManager);
-        cache = CacheBuilder.newBuilder().build(new CacheLoader<Datum, String>() {
-            @Override
-            public String load(@SuppressWarnings("NullableProblems") Datum key) throws ContainmentException {
-                return execute(key);
+        this.asyncExecutor = requireNonNull(asyncExecutor);
+        this.logStream = new DjLogStream(client, info.id());
+        this.inspector = new DjContainerInspector(client, info.id());
+        this.teardownQueue = teardownQueue;
+        this.events = events;
+        deathListeners = new CopyOnWriteArrayList<>();
+        eventListener = this::onEvent;
+    }
+
+    private void onEvent(DjContainerEvent event) {
+        if (!info.id().equals(event.containerId())) {
+            return;
+        }
+        inspector.onEvent(event);
+        if (event.kind() == DjContainerEvent.Kind.DIE || event.kind() == DjContainerEvent.Kind.DESTROY) {
+            for (Consumer<? super DjContainerEvent> listener : deathListeners) {
+                listener.accept(event);
+            }
+        }
+    }
+
+    /**
+     * Adds a listener to be notified if the container dies or is destroyed by means other
+     * than closing this instance. Adding the first listener subscribes this instance to events.
+     * Listeners are only notified if this instance was constructed with an event subscription,
+     * and are not notified after this instance is closed. Failure to subscribe is logged and
+     * otherwise ignored; the only consequence is that listeners are not notified.
+     * @param listener the listener
+     */
+    public void addDeathListener(Consumer<? super DjContainerEvent> listener) {
+        deathListeners.add(requireNonNull(listener, "listener"));
+        if (events == null) {
+            return;
+        }
+        synchronized (eventsLock) {
+            if (closed || eventsLease != null) {
+                return;
             }
-        });
+            events.addListener(eventListener);
+            try {
+                eventsLease = events.acquire();
+            } catch (ContainmentException e) {
+                events.removeListener(eventListener);
+                log.log(Level.WARNING, "failed to subscribe to container events", e);
+            }
+        }
+    }
+
+    private void unsubscribe() throws IOException {
+        Closeable lease;
+        synchronized (eventsLock) {
+            closed = true;
+            lease = eventsLease;
+            eventsLease = null;
+        }
+        if (lease != null) {
+            events.removeListener(eventListener);
+            lease.close();
+        }
     }
 
     @Override
-    public ContainerExecutor executor() {
-        return new DockerExecExecutor(info.id());
+    public StreamingContainerExecutor executor() {
+        return new DjExecExecutor(client, info.id());
     }
 
     @Override
@@ -59,66 +154,42 @@ public class DjStartedContainer implements StartedContainer {
         return new DjContainerCopier(client, info);
     }
 
-    private enum Datum {
-        PS,
-        INSPECT
-    }
-
     @Override
     public ContainerInfo info() {
         return info;
     }
 
     @Override
-    public ContainerInspector inspector() {
-        return new Inspector();
+    public DjContainerInspector inspector() {
+        return inspector;
     }
 
     @Override
-    public ContainerLogFollower logs() {
-        return new LogFollower();
-    }
-
-    private class Inspector implements ContainerInspector {
-
-        @Override
-        public List<ContainerPort> fetchPorts() throws ContainmentException {
-            try {
-                String json = cache.get(Datum.PS);
-                return DockerPsContent.of(json).parsePortMappings();
-            } catch (ExecutionException e) {
-                if (e.getCause() instanceof ContainmentException) {
-                    throw (ContainmentException) e.getCause();
-                }
-                throw new ContainmentException(e);
-            }
-        }
-    }
-
-    private String execute(Datum d) throws ContainmentException {
-        switch (d) {
-            case PS:
-                return executePs_(info().id());
-            case INSPECT:
-                throw new UnsupportedOperationException("inspect is not yet implemented");
-            default:
-                throw new IllegalArgumentException(String.valueOf(d));
-        }
-    }
-
-    protected DockerSubprocessExecutorBase.SubprocessConfig getSubprocessConfig() {
-        return DockerSubprocessExecutorBase.emptySubprocessConfig();
-    }
-
-    private String executePs_(final String containerId) throws ContainmentException {
-        return new DockerPsExecutor(getSubprocessConfig()).describeProcess(containerId);
+    public DjLogStream logs() {
+        return logStream;
     }
 
+    /**
+     * Stops the container. If this instance has a teardown queue, the container is
+     * submitted to the queue, which force-removes it, and this method returns without
+     * waiting for the container to stop.
+     * @throws ContainmentException on error
+     */
     @Override
     public void close() throws ContainmentException {
+        try {
+            unsubscribe();
+            logStream.close();
+        } catch (IOException e) {
+            throw new ContainmentException(e);
+        }
         if (!info().isStopRequired()) {
             return;
         }
+        if (teardownQueue != null) {
+            teardownQueue.submit(info().id());
+            return;
+        }
         try {
             String id = info().id();
             try {
@@ -135,44 +206,9 @@ public class DjStartedContainer implements StartedContainer {
         }
     }
 
-    private class LogFollower implements ContainerLogFollower {
-
-        @Override
-        public <C extends Consumer<? super byte[]>> C followStdout(C consumer) throws ContainmentException {
-            return followStream(ProcessOutputStreamType.stdout, consumer);
-        }
-
-        @Override
-        public <C extends Consumer<? super byte[]>> C followStderr(C consumer) throws ContainmentException {
-            return followStream(ProcessOutputStreamType.stderr, consumer);
-        }
-    }
-    private <C extends Consumer<? super byte[]>> C followStream(ProcessOutputStreamType stream, C consumer) throws ContainmentException {
-        LogContainerCmd logStdoutCmd = client.logContainerCmd(info().id())
-                .withFollowStream(true)
-                .withStdOut(stream.isStdout())
-                .withStdErr(stream.isStderr())
-                .withTailAll();
-        try {
-            logStdoutCmd.exec(new LogCallback(consumer));
-            return consumer;
-        } catch (DockerException e) {
-            throw new ContainmentException(e);
-        }
-    }
-
-    private static class LogCallback extends ResultCallbackTemplate<ResultCallback<Frame>, Frame> {
-
-        private final Consumer<? super byte[]> consumer;
-
-        private LogCallback(Consumer<? super byte[]> consumer) {
-            this.consumer = requireNonNull(consumer, "byte consumer");
-        }
-
-        @Override
-        public void onNext(Frame object) {
-            consumer.accept(object.getPayload());
-        }
+    @Override
+    public CompletableFuture<Void> closeAsync() {
+        return ContainmentFutures.runAsync(this::close, asyncExecutor);
     }
 
     @Override
@@ -0,0 +1,360 @@
+package io.github.mike10004.containment.dockerjava;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.io.IOUtils;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Service that extracts tar archives of container filesystem content, as supplied by
+ * the docker daemon, to the local filesystem. Archives are read as a stream and are
+ * never staged in a temporary file. File modes, modification times, and symbolic and
+ * hard links are restored. Small files are buffered and written in parallel, up to a
+ * limit on buffered bytes, so that trees of many files are written quickly; large
+ * files are written on the reading thread as they are read.
+ */
+class DjTarExtractor {
+
+    /**
+     * Files smaller than this are buffered and written in parallel.
+     */
+    static final int PARALLEL_WRITE_THRESHOLD = 1024 * 1024;
+
+    static final int DEFAULT_MAX_BUFFERED_BYTES = 64 * 1024 * 1024;
+
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private static final OpenOption[] WRITE_OPTIONS = {
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, LinkOption.NOFOLLOW_LINKS
+    };
+
+    private static final PosixFilePermission[] PERMISSIONS = PosixFilePermission.values();
+
+    private static final DjTarExtractor DEFAULT_INSTANCE = new DjTarExtractor(
+            Executors.newFixedThreadPool(Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors())), new DaemonThreadFactory()),
+            DEFAULT_MAX_BUFFERED_BYTES);
+
+    private final Executor executor;
+    private final int maxBufferedBytes;
+
+    /**
+     * Constructs an instance.
+     * @param executor executor that writes buffered files
+     * @param maxBufferedBytes maximum number of bytes of file content buffered at once
+     */
+    public DjTarExtractor(Executor executor, int maxBufferedBytes) {
+        checkArgument(maxBufferedBytes >= PARALLEL_WRITE_THRESHOLD, "maxBufferedBytes must be at least %s", PARALLEL_WRITE_THRESHOLD);
+        this.executor = requireNonNull(executor);
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    public static DjTarExtractor getDefault() {
+        return DEFAULT_INSTANCE;
+    }
+
+    /**
+     * Copies the content of the first entry of an archive to a stream and stops reading.
+     * The first entry is the source of the archive, so if it is not a regular file, for example
+     * because the source is a directory, nothing is copied. Symbolic links are not followed;
+     * the caller is expected to request the archive of the link target instead.
+     * @param in archive stream
+     * @param first the entry of the archive that has already been read, or null if none has been read
+     * @param destination destination stream; not closed
+     * @return true if the first entry is a regular file
+     * @throws IOException on I/O error
+     */
+    public static boolean copyFirstFile(TarArchiveInputStream in, @Nullable TarArchiveEntry first, OutputStream destination) throws IOException {
+        TarArchiveEntry entry = first == null ? in.getNextTarEntry() : first;
+        if (entry == null || !entry.isFile()) {
+            return false;
+        }
+        IOUtils.copyLarge(in, destination, 0, entry.getSize());
+        return true;
+    }
+
+    /**
+     * Extracts an archive of a file or directory. The first component of each entry name,
+     * which is the name of the source file or directory, is replaced by the destination,
+     * so that the destination becomes a copy of the source.
+     * @param in archive stream
+     * @param first the entry of the archive that has already been read, or null if none has been read
+     * @param destination destination pathname
+     * @param preserveOwnership true to set the user and group of each extracted file
+     * @throws IOException on I/O error
+     */
+    public void extract(TarArchiveInputStream in, @Nullable TarArchiveEntry first, Path destination, boolean preserveOwnership) throws IOException {
+        new Extraction(destination.toAbsolutePath().normalize(), preserveOwnership).run(in, first == null ? in.getNextTarEntry() : first);
+    }
+
+    private class Extraction {
+
+        private final Path root;
+        private final boolean preserveOwnership;
+        private final Semaphore bufferBudget;
+        private final Phaser pendingWrites;
+        private final AtomicReference<Throwable> failure;
+        private final List<DeferredEntry> directories;
+        private final List<DeferredEntry> hardLinks;
+        @Nullable
+        private Path realRoot;
+        @Nullable
+        private Path lastCheckedParent;
+
+        public Extraction(Path root, boolean preserveOwnership) {
+            this.root = root;
+            this.preserveOwnership = preserveOwnership;
+            bufferBudget = new Semaphore(maxBufferedBytes);
+            pendingWrites = new Phaser(1);
+            failure = new AtomicReference<>();
+            directories = new ArrayList<>();
+            hardLinks = new ArrayList<>();
+        }
+
+        public void run(TarArchiveInputStream in, @Nullable TarArchiveEntry first) throws IOException {
+            Path parent = root.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try {
+                for (TarArchiveEntry entry = first; entry != null; entry = in.getNextTarEntry()) {
+                    checkFailure();
+                    extractEntry(in, entry);
+                }
+            } finally {
+                pendingWrites.arriveAndAwaitAdvance();
+            }
+            checkFailure();
+            for (DeferredEntry link : hardLinks) {
+                Path linkTarget = resolve(link.entry.getLinkName());
+                Files.deleteIfExists(link.target);
+                Files.createLink(link.target, linkTarget);
+            }
+            // deepest first, so that setting a directory's modification time is not undone by its children
+            for (int i = directories.size() - 1; i >= 0; i--) {
+                DeferredEntry directory = directories.get(i);
+                applyAttributes(directory.target, directory.entry);
+            }
+        }
+
+        private void extractEntry(TarArchiveInputStream in, TarArchiveEntry entry) throws IOException {
+            Path target = resolve(entry.getName());
+            if (entry.isDirectory()) {
+                prepareParent(target);
+                Files.createDirectories(target);
+                checkInsideRoot(target, target);
+                directories.add(new DeferredEntry(target, entry));
+            } else if (entry.isSymbolicLink()) {
+                prepareParent(target);
+                Files.deleteIfExists(target);
+                Files.createSymbolicLink(target, Paths.get(entry.getLinkName()));
+                // the link may replace a directory checked earlier, or one of its ancestors
+                lastCheckedParent = null;
+                if (preserveOwnership) {
+                    applyOwnership(target, entry);
+                }
+            } else if (entry.isLink()) {
+                prepareParent(target);
+                hardLinks.add(new DeferredEntry(target, entry));
+            } else if (entry.isFile()) {
+                prepareParent(target);
+                if (Files.isSymbolicLink(target)) {
+                    Files.delete(target);
+                }
+                long size = entry.getSize();
+                if (size < PARALLEL_WRITE_THRESHOLD) {
+                    writeBuffered(in, entry, target, (int) size);
+                } else {
+                    writeStreamed(in, target, size);
+                    applyAttributes(target, entry);
+                }
+            }
+            // other entry types, such as devices and fifos, are not extracted
+        }
+
+        private void writeBuffered(TarArchiveInputStream in, TarArchiveEntry entry, Path target, int size) throws IOException {
+            int permits = Math.max(1, size);
+            try {
+                bufferBudget.acquire(permits);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while extracting archive");
+            }
+            byte[] content;
+            try {
+                content = IOUtils.toByteArray(in, size);
+            } catch (IOException | RuntimeException e) {
+                bufferBudget.release(permits);
+                throw e;
+            }
+            pendingWrites.register();
+            try {
+                executor.execute(() -> {
+                    try {
+                        Files.write(target, content, WRITE_OPTIONS);
+                        applyAttributes(target, entry);
+                    } catch (IOException | RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        bufferBudget.release(permits);
+                        pendingWrites.arriveAndDeregister();
+                    }
+                });
+            } catch (RuntimeException e) {
+                bufferBudget.release(permits);
+                pendingWrites.arriveAndDeregister();
+                throw e;
+            }
+        }
+
+        private void writeStreamed(TarArchiveInputStream in, Path target, long size) throws IOException {
+            // not closed, because closing would close the archive stream
+            ReadableByteChannel source = Channels.newChannel(in);
+            try (FileChannel channel = FileChannel.open(target, WRITE_OPTIONS)) {
+                long position = 0;
+                while (position < size) {
+                    long transferred = channel.transferFrom(source, position, size - position);
+                    if (transferred <= 0) {
+                        throw new IOException("archive ended before content of " + target);
+                    }
+                    position += transferred;
+                }
+            }
+        }
+
+        private void checkFailure() throws IOException {
+            Throwable t = failure.get();
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            }
+            if (t != null) {
+                throw new IOException("failed to extract archive", t);
+            }
+        }
+
+        /**
+         * Maps an entry name to a pathname beneath the root.
+         */
+        private Path resolve(String entryName) throws IOException {
+            String name = entryName;
+            while (name.endsWith("/")) {
+                name = name.substring(0, name.length() - 1);
+            }
+            int slash = name.indexOf('/');
+            if (slash < 0) {
+                return root;
+            }
+            Path target = root.resolve(name.substring(slash + 1)).normalize();
+            if (!target.startsWith(root)) {
+                throw new IOException("archive entry is outside of destination: " + entryName);
+            }
+            return target;
+        }
+
+        /**
+         * Creates the parent directory of a target, and checks that the directory is not outside
+         * of the root by way of a symbolic link extracted earlier.
+         */
+        private void prepareParent(Path target) throws IOException {
+            if (target.equals(root)) {
+                return;
+            }
+            Path parent = target.getParent();
+            if (parent.equals(lastCheckedParent)) {
+                return;
+            }
+            Files.createDirectories(parent);
+            checkInsideRoot(parent, target);
+            lastCheckedParent = parent;
+        }
+
+        /**
+         * Checks that an existing directory is not outside of the root by way of a symbolic link extracted earlier.
+         */
+        private void checkInsideRoot(Path directory, Path target) throws IOException {
+            if (realRoot == null) {
+                realRoot = root.toRealPath();
+            }
+            if (!directory.toRealPath().startsWith(realRoot)) {
+                throw new IOException("archive entry is outside of destination by symbolic link: " + target);
+            }
+        }
+
+        private void applyAttributes(Path target, TarArchiveEntry entry) throws IOException {
+            if (POSIX) {
+                Files.setPosixFilePermissions(target, toPermissions(entry.getMode()));
+            }
+            Files.setLastModifiedTime(target, FileTime.fromMillis(entry.getModTime().getTime()));
+            if (preserveOwnership) {
+                applyOwnership(target, entry);
+            }
+        }
+
+        private void applyOwnership(Path target, TarArchiveEntry entry) throws IOException {
+            Files.setAttribute(target, "unix:uid", (int) entry.getLongUserId(), LinkOption.NOFOLLOW_LINKS);
+            Files.setAttribute(target, "unix:gid", (int) entry.getLongGroupId(), LinkOption.NOFOLLOW_LINKS);
+        }
+    }
+
+    static Set<PosixFilePermission> toPermissions(int mode) {
+        Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        for (int i = 0; i < PERMISSIONS.length; i++) {
+            if ((mode & (0400 >> i)) != 0) {
+                permissions.add(PERMISSIONS[i]);
+            }
+        }
+        return permissions;
+    }
+
+    private static final class DeferredEntry {
+
+        public final Path target;
+        public final TarArchiveEntry entry;
+
+        public DeferredEntry(Path target, TarArchiveEntry entry) {
+            this.target = target;
+            this.entry = entry;
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "containment-extract-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.exception.NotFoundException;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Service that removes containers concurrently under a global deadline.
+ * Each container is force-removed, which kills it if it is running, so no
+ * stop timeout is spent waiting for container processes to exit.
+ */
+public class DjTeardown {
+
+    public static final String SYSPROP_PARALLELISM = "containment-core.teardown.parallelism";
+    public static final String SYSPROP_DEADLINE_MS = "containment-core.teardown.deadlineMs";
+
+    public static final int DEFAULT_PARALLELISM = 8;
+    public static final Duration DEFAULT_DEADLINE = Duration.ofSeconds(30);
+
+    private final int parallelism;
+    private final Duration deadline;
+
+    /**
+     * Constructs an instance.
+     * @param parallelism maximum number of containers removed concurrently
+     * @param deadline time allowed for the whole teardown
+     */
+    public DjTeardown(int parallelism, Duration deadline) {
+        checkArgument(parallelism > 0, "parallelism must be positive");
+        checkArgument(!deadline.isNegative(), "deadline must be nonnegative");
+        this.parallelism = parallelism;
+        this.deadline = deadline;
+    }
+
+    public static DjTeardown defaults() {
+        return new DjTeardown(DEFAULT_PARALLELISM, DEFAULT_DEADLINE);
+    }
+
+    /**
+     * Creates an instance whose settings are read from system properties,
+     * falling back to defaults for undefined properties.
+     * @return a new instance
+     */
+    public static DjTeardown fromSystemProperties() {
+        return new DjTeardown(Integer.getInteger(SYSPROP_PARALLELISM, DEFAULT_PARALLELISM),
+                Duration.ofMillis(Long.getLong(SYSPROP_DEADLINE_MS, DEFAULT_DEADLINE.toMillis())));
+    }
+
+    /**
+     * Removes containers. This method returns when all removals have finished
+     * or the deadline has passed, whichever comes first.
+     * @param client client
+     * @param containerIds IDs of containers to remove
+     * @return report of the outcome for each container
+     */
+    public Report tearDown(DockerClient client, Collection<String> containerIds) {
+        requireNonNull(client, "client");
+        long start = System.nanoTime();
+        if (containerIds.isEmpty()) {
+            return new Report(Collections.emptyList(), Duration.ZERO);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, containerIds.size()), new DaemonThreadFactory());
+        try {
+            Map<String, Future<Outcome>> futures = new LinkedHashMap<>();
+            for (String containerId : containerIds) {
+                futures.put(containerId, executor.submit(() -> remove(client, containerId)));
+            }
+            executor.shutdown();
+            long deadlineNanos = start + deadline.toNanos();
+            List<Outcome> outcomes = new ArrayList<>(futures.size());
+            for (Map.Entry<String, Future<Outcome>> entry : futures.entrySet()) {
+                outcomes.add(await(entry.getKey(), entry.getValue(), start, deadlineNanos));
+            }
+            return new Report(outcomes, Duration.ofNanos(System.nanoTime() - start));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Outcome await(String containerId, Future<Outcome> future, long start, long deadlineNanos) {
+        try {
+            return future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            return new Outcome(containerId, Status.TIMED_OUT, Duration.ofNanos(System.nanoTime() - start), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return new Outcome(containerId, Status.TIMED_OUT, Duration.ofNanos(System.nanoTime() - start), e);
+        } catch (ExecutionException e) {
+            return new Outcome(containerId, Status.FAILED, Duration.ofNanos(System.nanoTime() - start), e.getCause());
+        }
+    }
+
+    /**
+     * Removes a single container.
+     * @param client client
+     * @param containerId container ID
+     * @return outcome
+     */
+    protected Outcome remove(DockerClient client, String containerId) {
+        long start = System.nanoTime();
+        try {
+            client.removeContainerCmd(containerId).withForce(true).exec();
+            return new Outcome(containerId, Status.REMOVED, Duration.ofNanos(System.nanoTime() - start), null);
+        } catch (NotFoundException e) {
+            return new Outcome(containerId, Status.NOT_FOUND, Duration.ofNanos(System.nanoTime() - start), null);
+        } catch (RuntimeException e) {
+            return new Outcome(containerId, Status.FAILED, Duration.ofNanos(System.nanoTime() - start), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", DjTeardown.class.getSimpleName() + "[", "]")
+                .add("parallelism=" + parallelism)
+                .add("deadline=" + deadline)
+                .toString();
+    }
+
+    /**
+     * Enumeration of teardown outcomes for a container.
+     */
+    public enum Status {
+
+        /**
+         * Container was removed.
+         */
+        REMOVED,
+
+        /**
+         * Container did not exist, probably because it was removed by other means.
+         */
+        NOT_FOUND,
+
+        /**
+         * Removal failed.
+         */
+        FAILED,
+
+        /**
+         * Removal did not finish before the deadline.
+         */
+        TIMED_OUT;
+
+        /**
+         * Checks whether this status means the container no longer exists.
+         * @return true if the container is gone
+         */
+        public boolean isGone() {
+            return this == REMOVED || this == NOT_FOUND;
+        }
+    }
+
+    /**
+     * Value class that represents the teardown outcome for a single container.
+     */
+    public static class Outcome {
+
+        public final String containerId;
+        public final Status status;
+
+        /**
+         * Time from the start of the removal to its completion. For a removal that
+         * timed out, this is the time from the start of the teardown.
+         */
+        public final Duration elapsed;
+
+        @Nullable
+        public final Throwable exception;
+
+        public Outcome(String containerId, Status status, Duration elapsed, @Nullable Throwable exception) {
+            this.containerId = requireNonNull(containerId);
+            this.status = requireNonNull(status);
+            this.elapsed = requireNonNull(elapsed);
+            this.exception = exception;
+        }
+
+        @Override
+        public String toString() {
+            return new StringJoiner(", ", Outcome.class.getSimpleName() + "[", "]")
+                    .add("containerId=" + containerId)
+                    .add("status=" + status)
+                    .add("elapsed=" + elapsed)
+                    .toString();
+        }
+    }
+
+    /**
+     * Value class that represents the outcome of a teardown.
+     */
+    public static class Report {
+
+        public final List<Outcome> outcomes;
+        public final Duration elapsed;
+
+        public Report(List<Outcome> outcomes, Duration elapsed) {
+            this.outcomes = Collections.unmodifiableList(new ArrayList<>(outcomes));
+            this.elapsed = requireNonNull(elapsed);
+        }
+
+        /**
+         * Gets the outcomes for containers that may still exist.
+         * @return list of outcomes
+         */
+        public List<Outcome> unsuccessful() {
+            return outcomes.stream().filter(o -> !o.status.isGone()).collect(Collectors.toList());
+        }
+
+        @Override
+        public String toString() {
+            Map<Status, Long> counts = outcomes.stream().collect(Collectors.groupingBy(o -> o.status, () -> new EnumMap<>(Status.class), Collectors.counting()));
+            return new StringJoiner(", ", Report.class.getSimpleName() + "[", "]")
+                    .add("counts=" + counts)
+                    .add("elapsed=" + elapsed)
+                    .toString();
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "containment-teardown-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.github.dockerjava.api.DockerClient;
+import io.github.mike10004.containment.ContainmentException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Queue of containers to be removed in the background. Containers submitted to the
+ * queue are force-removed by a worker thread; all containers pending when the worker
+ * becomes available are removed together as one concurrent {@link DjTeardown}.
+ *
+ * <p>The number of pending teardowns is bounded; submitting a container when the
+ * bound is reached blocks until earlier teardowns finish. The queue is drained
+ * at JVM shutdown, and the containers it removes are reported as stopped and
+ * removed to the container monitor.</p>
+ */
+public class DjTeardownQueue implements Closeable {
+
+    /**
+     * System property that enables background teardown for containers created
+     * by a {@link DjContainerCreator} that is constructed from a docker manager.
+     */
+    public static final String SYSPROP_ENABLED = "containment-core.teardown.background";
+    public static final String SYSPROP_MAX_PENDING = "containment-core.teardown.maxPending";
+
+    public static final int DEFAULT_MAX_PENDING = 64;
+
+    private static final Logger log = Logger.getLogger(DjTeardownQueue.class.getName());
+
+    private final Supplier<DockerClient> clientSupplier;
+    private final DjContainerMonitor containerMonitor;
+    private final DjTeardown teardown;
+    private final Semaphore permits;
+    private final Object lock = new Object();
+    private final Map<String, CompletableFuture<DjTeardown.Outcome>> pending;
+    private final Map<String, CompletableFuture<DjTeardown.Outcome>> inFlight;
+    private boolean closed;
+    private boolean workerStarted;
+
+    /**
+     * Constructs an instance.
+     * @param clientSupplier supplier of clients; one client is used per batch and closed afterwards
+     * @param containerMonitor monitor to be notified of containers that are removed
+     * @param teardown teardown service
+     * @param maxPending maximum number of containers submitted but not yet removed
+     */
+    public DjTeardownQueue(Supplier<DockerClient> clientSupplier, DjContainerMonitor containerMonitor, DjTeardown teardown, int maxPending) {
+        checkArgument(maxPending > 0, "maxPending must be positive");
+        this.clientSupplier = requireNonNull(clientSupplier, "clientSupplier");
+        this.containerMonitor = requireNonNull(containerMonitor, "containerMonitor");
+        this.teardown = requireNonNull(teardown, "teardown");
+        permits = new Semaphore(maxPending);
+        pending = new LinkedHashMap<>();
+        inFlight = new LinkedHashMap<>();
+    }
+
+    /**
+     * Creates an instance whose settings are read from system properties,
+     * falling back to defaults for undefined properties.
+     * @param clientSupplier supplier of clients
+     * @param containerMonitor container monitor
+     * @return a new instance
+     */
+    public static DjTeardownQueue fromSystemProperties(Supplier<DockerClient> clientSupplier, DjContainerMonitor containerMonitor) {
+        return new DjTeardownQueue(clientSupplier, containerMonitor, DjTeardown.fromSystemProperties(), Integer.getInteger(SYSPROP_MAX_PENDING, DEFAULT_MAX_PENDING));
+    }
+
+    /**
+     * Checks whether background teardown is enabled by system property.
+     * @return true if enabled
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(SYSPROP_ENABLED);
+    }
+
+    /**
+     * Submits a container for removal. If the container has already been submitted and
+     * not yet removed, the future of the earlier submission is returned. This method
+     * blocks while the maximum number of teardowns are pending.
+     * @param containerId container ID
+     * @return a future that completes when the container has been removed or removal has failed
+     * @throws ContainmentException if interrupted while waiting, or if this queue is closed
+     */
+    public CompletableFuture<DjTeardown.Outcome> submit(String containerId) throws ContainmentException {
+        requireNonNull(containerId, "containerId");
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ContainmentException("interrupted while waiting to submit " + containerId, e);
+        }
+        synchronized (lock) {
+            CompletableFuture<DjTeardown.Outcome> existing = pending.get(containerId);
+            if (existing == null) {
+                existing = inFlight.get(containerId);
+            }
+            if (existing != null || closed) {
+                permits.release();
+                if (existing != null) {
+                    return existing;
+                }
+                throw new ContainmentException("teardown queue is closed");
+            }
+            CompletableFuture<DjTeardown.Outcome> future = new CompletableFuture<>();
+            pending.put(containerId, future);
+            maybeStartWorker();
+            lock.notifyAll();
+            return future;
+        }
+    }
+
+    private void maybeStartWorker() {
+        if (!workerStarted) {
+            Thread worker = new Thread(this::work, "containment-teardown-queue");
+            worker.setDaemon(true);
+            worker.start();
+            addShutdownHookToRuntime(Runtime.getRuntime(), new Thread(this::close));
+            workerStarted = true;
+        }
+    }
+
+    protected void addShutdownHookToRuntime(Runtime runtime, Thread thread) {
+        runtime.addShutdownHook(thread);
+    }
+
+    private void work() {
+        while (true) {
+            Map<String, CompletableFuture<DjTeardown.Outcome>> batch;
+            synchronized (lock) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        log.log(Level.FINE, "teardown queue worker interrupted", e);
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = new LinkedHashMap<>(pending);
+                pending.clear();
+                inFlight.putAll(batch);
+            }
+            try {
+                process(batch);
+            } finally {
+                synchronized (lock) {
+                    inFlight.keySet().removeAll(batch.keySet());
+                    lock.notifyAll();
+                }
+                permits.release(batch.size());
+            }
+        }
+    }
+
+    private void process(Map<String, CompletableFuture<DjTeardown.Outcome>> batch) {
+        try (DockerClient client = clientSupplier.get()) {
+            DjTeardown.Report report = teardown.tearDown(client, batch.keySet());
+            for (DjTeardown.Outcome outcome : report.outcomes) {
+                if (outcome.status.isGone()) {
+                    containerMonitor.stopped(outcome.containerId);
+                    containerMonitor.removed(outcome.containerId);
+                } else {
+                    log.log(Level.WARNING, "background teardown unsuccessful: {0}", outcome);
+                }
+                batch.get(outcome.containerId).complete(outcome);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.WARNING, "background teardown failed", e);
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Waits until all submitted containers have been processed.
+     * @param timeout maximum time to wait
+     * @return true if the queue was drained before the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitDrained(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (lock) {
+            while (!pending.isEmpty() || !inFlight.isEmpty()) {
+                long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+                if (remainingMillis <= 0) {
+                    return false;
+                }
+                lock.wait(remainingMillis);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stops accepting submissions and waits until submitted containers have been processed.
+     * Each batch is bounded by the deadline of the teardown service, so this method
+     * returns within a bounded time.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+            while (!pending.isEmpty() || !inFlight.isEmpty()) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner j = new StringJoiner(", ", DjTeardownQueue.class.getSimpleName() + "[", "]");
+        synchronized (lock) {
+            j.add("pending=" + pending.size())
+             .add("inFlight=" + inFlight.size())
+             .add("closed=" + closed);
+        }
+        return j.toString();
+    }
+}
@@ -0,0 +1,213 @@
+package io.github.mike10004.containment.dockerjava;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Stateful decoder that assembles lines of text from a sequence of byte chunks.
+ * Lines and multibyte characters may span chunks; incomplete input is carried over
+ * to the next chunk. The decoder and buffers are reused across chunks.
+ *
+ * <p>Lines are terminated by a line feed; a carriage return immediately preceding the
+ * line feed is dropped. A line that grows beyond the maximum line length is emitted
+ * in pieces. Malformed input is reported to the error listener and replaced
+ * with the replacement character. Instances of this class are not thread-safe.</p>
+ */
+public final class LineAssembler {
+
+    public static final int DEFAULT_MAX_LINE_LENGTH = 1024 * 1024;
+
+    private static final int INITIAL_CHAR_BUFFER_SIZE = 1024;
+
+    private final CharsetDecoder decoder;
+    private final int maxLineLength;
+    private final Consumer<? super CharacterCodingException> errorListener;
+    private final StringBuilder line;
+    private CharBuffer chars;
+    private ByteBuffer carry;
+    private ByteBuffer spanning;
+
+    public LineAssembler(Charset charset) {
+        this(charset, DEFAULT_MAX_LINE_LENGTH, ignore -> {});
+    }
+
+    /**
+     * Constructs an instance.
+     * @param charset charset of the input bytes
+     * @param maxLineLength maximum length of a line; longer lines are emitted in pieces
+     * @param errorListener listener notified of malformed or unmappable input
+     */
+    public LineAssembler(Charset charset, int maxLineLength, Consumer<? super CharacterCodingException> errorListener) {
+        checkArgument(maxLineLength > 0, "maxLineLength must be positive");
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        this.maxLineLength = maxLineLength;
+        this.errorListener = requireNonNull(errorListener);
+        line = new StringBuilder(128);
+        chars = CharBuffer.allocate(INITIAL_CHAR_BUFFER_SIZE);
+        carry = ByteBuffer.allocate(16);
+        carry.flip();
+        spanning = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Feeds a chunk of bytes and evaluates each line completed by the chunk.
+     * @param bytes the chunk
+     * @param lineEvaluator predicate applied to each completed line
+     * @return the number of completed lines for which the predicate returned true
+     */
+    public int feed(byte[] bytes, Predicate<? super String> lineEvaluator) {
+        return feed(ByteBuffer.wrap(bytes), lineEvaluator);
+    }
+
+    /**
+     * Feeds a chunk of bytes and evaluates each line completed by the chunk.
+     * The buffer's remaining bytes are consumed.
+     * @param input the chunk
+     * @param lineEvaluator predicate applied to each completed line
+     * @return the number of completed lines for which the predicate returned true
+     */
+    public int feed(ByteBuffer input, Predicate<? super String> lineEvaluator) {
+        requireNonNull(lineEvaluator, "lineEvaluator");
+        ByteBuffer in = input;
+        if (carry.hasRemaining()) {
+            in = prependCarry(input);
+        }
+        int matches = decode(in, false, lineEvaluator);
+        saveCarry(in);
+        return matches;
+    }
+
+    /**
+     * Evaluates the incomplete line assembled so far, if it is not empty. The line is
+     * retained, and is evaluated again when it is completed or when input ends.
+     * Bytes of an incomplete character are not included.
+     * @param lineEvaluator predicate applied to the incomplete line
+     * @return true if the line is not empty and the predicate returned true
+     */
+    public boolean testPending(Predicate<? super String> lineEvaluator) {
+        return line.length() > 0 && lineEvaluator.test(line.toString());
+    }
+
+    /**
+     * Signals the end of input. Any incomplete character is reported as malformed,
+     * and any incomplete line is evaluated.
+     * @param lineEvaluator predicate applied to the final line
+     * @return the number of lines for which the predicate returned true
+     */
+    public int finish(Predicate<? super String> lineEvaluator) {
+        int matches = decode(carry, true, lineEvaluator);
+        carry.clear();
+        carry.flip();
+        CoderResult result;
+        do {
+            chars.clear();
+            result = decoder.flush(chars);
+            chars.flip();
+            matches += scan(chars, lineEvaluator);
+        } while (result.isOverflow());
+        if (line.length() > 0) {
+            matches += emit(lineEvaluator);
+        }
+        decoder.reset();
+        return matches;
+    }
+
+    /**
+     * Copies the carried-over bytes and the input into a reusable buffer. This only
+     * happens when the previous chunk ended with an incomplete character.
+     */
+    private ByteBuffer prependCarry(ByteBuffer input) {
+        int needed = carry.remaining() + input.remaining();
+        if (spanning.capacity() < needed) {
+            spanning = ByteBuffer.allocate(Math.max(needed, spanning.capacity() * 2));
+        }
+        spanning.clear();
+        spanning.put(carry);
+        spanning.put(input);
+        spanning.flip();
+        return spanning;
+    }
+
+    private void saveCarry(ByteBuffer in) {
+        int leftover = in.remaining();
+        if (leftover > carry.capacity()) {
+            carry = ByteBuffer.allocate(leftover);
+        }
+        carry.clear();
+        carry.put(in);
+        carry.flip();
+    }
+
+    private int decode(ByteBuffer in, boolean endOfInput, Predicate<? super String> lineEvaluator) {
+        int matches = 0;
+        while (true) {
+            chars.clear();
+            CoderResult result = decoder.decode(in, chars, endOfInput);
+            chars.flip();
+            matches += scan(chars, lineEvaluator);
+            if (result.isOverflow()) {
+                continue;
+            }
+            if (result.isError()) {
+                try {
+                    result.throwException();
+                } catch (CharacterCodingException e) {
+                    errorListener.accept(e);
+                }
+                in.position(in.position() + result.length());
+                matches += append(decoder.replacement(), lineEvaluator);
+                continue;
+            }
+            return matches;
+        }
+    }
+
+    private int scan(CharBuffer decoded, Predicate<? super String> lineEvaluator) {
+        int matches = 0;
+        char[] array = decoded.array();
+        int start = decoded.arrayOffset() + decoded.position();
+        int end = decoded.arrayOffset() + decoded.limit();
+        int segmentStart = start;
+        for (int i = start; i < end; i++) {
+            if (array[i] == '\n') {
+                line.append(array, segmentStart, i - segmentStart);
+                int len = line.length();
+                if (len > 0 && line.charAt(len - 1) == '\r') {
+                    line.setLength(len - 1);
+                }
+                matches += emit(lineEvaluator);
+                segmentStart = i + 1;
+            } else if (line.length() + (i - segmentStart) >= maxLineLength) {
+                line.append(array, segmentStart, i - segmentStart);
+                matches += emit(lineEvaluator);
+                segmentStart = i;
+            }
+        }
+        line.append(array, segmentStart, end - segmentStart);
+        decoded.position(decoded.limit());
+        return matches;
+    }
+
+    private int append(String text, Predicate<? super String> lineEvaluator) {
+        CharBuffer wrapped = CharBuffer.wrap(text.toCharArray());
+        return scan(wrapped, lineEvaluator);
+    }
+
+    private int emit(Predicate<? super String> lineEvaluator) {
+        String completed = line.toString();
+        line.setLength(0);
+        return lineEvaluator.test(completed) ? 1 : 0;
+    }
+}
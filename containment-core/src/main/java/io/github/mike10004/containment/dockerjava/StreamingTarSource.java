@@ -0,0 +1,268 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.google.common.io.ByteSource;
+import io.github.mike10004.containment.ContainerCopier;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.Executor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Tar source that produces its archive as the archive is read. Each time the source
+ * is opened, a task writes the entries into a pipe from which the returned stream
+ * reads, so the memory used does not depend on the size of the archive, and no
+ * intermediate archive file is created. Directories are walked lazily, as the
+ * archive is written. The archive may be compressed with gzip, which the docker
+ * daemon accepts when unpacking an archive into a container.
+ *
+ * <p>An instance may be opened more than once, provided that the content sources
+ * it was built from can be opened more than once.</p>
+ */
+public class StreamingTarSource implements ContainerCopier.TarSource {
+
+    private final List<EntrySource> entrySources;
+    private final boolean compress;
+    private final Executor executor;
+
+    private StreamingTarSource(Builder builder) {
+        entrySources = Collections.unmodifiableList(new ArrayList<>(builder.entrySources));
+        compress = builder.compress;
+        executor = requireNonNull(builder.executor, "executor");
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Opens a stream of the archive. If writing the archive fails, reading the stream
+     * throws an exception whose cause is the failure. Closing the stream before the
+     * end of the archive stops the writing.
+     * @return the stream
+     * @throws IOException on I/O error
+     */
+    @Override
+    public InputStream open() throws IOException {
+        return TarArchives.pipe(this::writeTo, compress, executor);
+    }
+
+    /**
+     * Writes the uncompressed archive to a stream.
+     * @param out the destination stream; not closed
+     * @throws IOException on I/O error
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        TarArchiveOutputStream tos = new TarArchiveOutputStream(out);
+        tos.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        tos.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+        for (EntrySource entrySource : entrySources) {
+            entrySource.writeTo(tos);
+        }
+        tos.finish();
+    }
+
+    private interface EntrySource {
+        void writeTo(TarArchiveOutputStream tos) throws IOException;
+    }
+
+    private static void putEntry(TarArchiveOutputStream tos, String entryName, long size, int mode, ContentWriter contentWriter) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(entryName);
+        entry.setSize(size);
+        entry.setMode(TarArchiveEntry.DEFAULT_FILE_MODE & ~0777 | mode);
+        tos.putArchiveEntry(entry);
+        contentWriter.write(tos);
+        tos.closeArchiveEntry();
+    }
+
+    private interface ContentWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", StreamingTarSource.class.getSimpleName() + "[", "]")
+                .add("entrySources=" + entrySources.size())
+                .add("compress=" + compress)
+                .toString();
+    }
+
+    public static final class Builder {
+
+        private static final int DEFAULT_FILE_MODE = 0644;
+
+        private final List<EntrySource> entrySources = new ArrayList<>();
+        private boolean compress;
+        private Executor executor = DefaultAsyncExecutor.getInstance();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a file or directory. A directory is added recursively.
+         * @param path file or directory pathname
+         * @param entryName name of the entry in the archive
+         * @return this builder
+         */
+        public Builder path(Path path, String entryName) {
+            return path(path, entryName, TarArchives.EntryFilter.includeAll());
+        }
+
+        /**
+         * Adds a file or directory. A directory is added recursively, and the filter
+         * is applied to paths relative to the directory.
+         * @param path file or directory pathname
+         * @param entryName name of the entry in the archive
+         * @param filter filter of the contents of a directory
+         * @return this builder
+         */
+        public Builder path(Path path, String entryName, TarArchives.EntryFilter filter) {
+            requireNonNull(path, "path");
+            String name = normalizeEntryName(entryName);
+            requireNonNull(filter, "filter");
+            entrySources.add(tos -> {
+                TarArchives.packFile(path, name, tos);
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    TarArchives.packDirectoryContents(path, name + "/", filter, tos);
+                }
+            });
+            return this;
+        }
+
+        /**
+         * Adds the contents of a directory, without an entry for the directory itself.
+         * @param directory directory pathname
+         * @param entryPrefix prefix of entry names, such as {@code "data/"}, or empty for none
+         * @return this builder
+         */
+        public Builder directoryContents(Path directory, String entryPrefix) {
+            requireNonNull(directory, "directory");
+            requireNonNull(entryPrefix, "entryPrefix");
+            entrySources.add(tos -> TarArchives.packDirectoryContents(directory, entryPrefix, TarArchives.EntryFilter.includeAll(), tos));
+            return this;
+        }
+
+        /**
+         * Adds a file whose content is read from a byte source.
+         * @param entryName name of the entry in the archive
+         * @param size number of bytes the source supplies
+         * @param source content source
+         * @return this builder
+         */
+        public Builder stream(String entryName, long size, ByteSource source) {
+            return stream(entryName, size, source, DEFAULT_FILE_MODE);
+        }
+
+        /**
+         * Adds a file whose content is read from a byte source.
+         * @param entryName name of the entry in the archive
+         * @param size number of bytes the source supplies
+         * @param source content source
+         * @param mode permission bits, such as {@code 0755}
+         * @return this builder
+         */
+        public Builder stream(String entryName, long size, ByteSource source, int mode) {
+            String name = normalizeEntryName(entryName);
+            checkArgument(size >= 0, "size must be nonnegative");
+            requireNonNull(source, "source");
+            entrySources.add(tos -> putEntry(tos, name, size, mode, out -> {
+                try (InputStream in = source.openStream()) {
+                    long copied = IOUtils.copyLarge(in, out, 0, size);
+                    if (copied != size) {
+                        throw new IOException(String.format("source of %s supplied %d bytes but %d were expected", name, copied, size));
+                    }
+                }
+            }));
+            return this;
+        }
+
+        /**
+         * Adds a file whose content is the remaining content of a buffer. The buffer's
+         * position is not changed, and the buffer must not be modified while the
+         * source is in use.
+         * @param entryName name of the entry in the archive
+         * @param content content buffer
+         * @return this builder
+         */
+        public Builder buffer(String entryName, ByteBuffer content) {
+            return buffer(entryName, content, DEFAULT_FILE_MODE);
+        }
+
+        /**
+         * Adds a file whose content is the remaining content of a buffer.
+         * @param entryName name of the entry in the archive
+         * @param content content buffer
+         * @param mode permission bits, such as {@code 0755}
+         * @return this builder
+         * @see #buffer(String, ByteBuffer)
+         */
+        public Builder buffer(String entryName, ByteBuffer content, int mode) {
+            String name = normalizeEntryName(entryName);
+            requireNonNull(content, "content");
+            entrySources.add(tos -> {
+                ByteBuffer view = content.duplicate();
+                putEntry(tos, name, view.remaining(), mode, out -> {
+                    // not closed, because closing would close the archive stream
+                    WritableByteChannel channel = Channels.newChannel(out);
+                    while (view.hasRemaining()) {
+                        channel.write(view);
+                    }
+                });
+            });
+            return this;
+        }
+
+        /**
+         * Sets whether the archive is compressed with gzip. By default it is not.
+         * @param compress true to compress
+         * @return this builder
+         */
+        public Builder compress(boolean compress) {
+            this.compress = compress;
+            return this;
+        }
+
+        /**
+         * Sets the executor that runs the task that writes the archive.
+         * @param executor executor
+         * @return this builder
+         */
+        public Builder executor(Executor executor) {
+            this.executor = requireNonNull(executor);
+            return this;
+        }
+
+        public StreamingTarSource build() {
+            return new StreamingTarSource(this);
+        }
+
+        private static String normalizeEntryName(String entryName) {
+            requireNonNull(entryName, "entryName");
+            String name = entryName;
+            while (name.startsWith("/")) {
+                name = name.substring(1);
+            }
+            while (name.endsWith("/")) {
+                name = name.substring(0, name.length() - 1);
+            }
+            checkArgument(!name.isEmpty(), "entry name must not be empty");
+            return name;
+        }
+    }
+}
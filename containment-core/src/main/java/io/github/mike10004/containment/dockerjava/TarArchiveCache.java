@@ -0,0 +1,313 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.google.common.io.BaseEncoding;
+import io.github.mike10004.containment.ContainerCopier;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Cache of tar archives of directories, stored on the host filesystem. An archive is
+ * keyed by a fingerprint of the directory tree, computed from the relative paths, sizes,
+ * modification times, and modes of the files in the tree, and optionally from their
+ * content. An archive is created the first time a tree with a given fingerprint is
+ * requested and is reused until the tree changes. When the total size of cached
+ * archives exceeds a maximum, the least recently used archives are deleted.
+ *
+ * <p>The default instance is configured by system properties {@value #SYSPROP_DIRECTORY},
+ * {@value #SYSPROP_MAX_BYTES}, and {@value #SYSPROP_CONTENT_HASH}.</p>
+ */
+public class TarArchiveCache {
+
+    public static final String SYSPROP_DIRECTORY = "containment-core.tarCache.directory";
+    public static final String SYSPROP_MAX_BYTES = "containment-core.tarCache.maxBytes";
+    public static final String SYSPROP_CONTENT_HASH = "containment-core.tarCache.contentHash";
+
+    public static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+
+    private static final String FINGERPRINT_VERSION = "1";
+    private static final String ARCHIVE_SUFFIX = ".tar";
+    private static final int MAX_OPEN_ATTEMPTS = 3;
+    private static final BaseEncoding HEX = BaseEncoding.base16().lowerCase();
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private static final Logger log = Logger.getLogger(TarArchiveCache.class.getName());
+
+    private static final TarArchiveCache DEFAULT_INSTANCE = fromSystemProperties();
+
+    private final Path directory;
+    private final long maxBytes;
+    private final boolean contentHash;
+    private final Object evictionLock = new Object();
+
+    /**
+     * Constructs an instance.
+     * @param directory directory in which archives are stored
+     * @param maxBytes maximum total size of stored archives
+     * @param contentHash true if file content contributes to fingerprints; otherwise only
+     *                    paths, sizes, modification times, and modes contribute
+     */
+    public TarArchiveCache(Path directory, long maxBytes, boolean contentHash) {
+        checkArgument(maxBytes > 0, "maxBytes must be positive");
+        this.directory = requireNonNull(directory, "directory");
+        this.maxBytes = maxBytes;
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Creates an instance whose settings are read from system properties,
+     * falling back to defaults for undefined properties.
+     * @return a new instance
+     */
+    public static TarArchiveCache fromSystemProperties() {
+        String directory = System.getProperty(SYSPROP_DIRECTORY);
+        Path cacheDir = directory == null
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "containment-tar-cache")
+                : Paths.get(directory);
+        return new TarArchiveCache(cacheDir, Long.getLong(SYSPROP_MAX_BYTES, DEFAULT_MAX_BYTES), Boolean.getBoolean(SYSPROP_CONTENT_HASH));
+    }
+
+    public static TarArchiveCache getDefault() {
+        return DEFAULT_INSTANCE;
+    }
+
+    /**
+     * Gets a tar source whose archive contains the contents of a directory.
+     * Each time the source is opened, the directory is fingerprinted, and the
+     * cached archive is created if necessary.
+     * @param sourceDirectory the directory
+     * @return a tar source
+     */
+    public ContainerCopier.TarSource directorySource(File sourceDirectory) {
+        requireNonNull(sourceDirectory, "sourceDirectory");
+        return () -> Channels.newInputStream(archive(sourceDirectory));
+    }
+
+    /**
+     * Copies the archive of a directory's contents to a channel. The archive is transferred
+     * from the cached file with {@link FileChannel#transferTo(long, long, WritableByteChannel)},
+     * which avoids copying through heap buffers where the platform allows.
+     * @param sourceDirectory the directory
+     * @param target destination channel; not closed
+     * @return number of bytes transferred
+     * @throws IOException on I/O error
+     */
+    public long transferTo(File sourceDirectory, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = archive(sourceDirectory)) {
+            long size = channel.size(), position = 0;
+            while (position < size) {
+                long transferred = channel.transferTo(position, size - position, target);
+                if (transferred <= 0) {
+                    throw new IOException("no bytes transferred from cached archive of " + sourceDirectory + " at position " + position);
+                }
+                position += transferred;
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Opens the cached archive of a directory's contents, creating the archive if no
+     * archive with the directory's current fingerprint exists. The archive is opened here
+     * because another thread or process may evict it at any time; if it is deleted before
+     * it can be opened, it is created again.
+     * @param sourceDirectory the directory
+     * @return a channel from which the archive may be read; the caller must close it
+     * @throws IOException on I/O error
+     */
+    public FileChannel archive(File sourceDirectory) throws IOException {
+        NoSuchFileException evicted = null;
+        for (int i = 0; i < MAX_OPEN_ATTEMPTS; i++) {
+            Path archive = store(sourceDirectory);
+            try {
+                return FileChannel.open(archive, StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                log.log(Level.FINE, "archive evicted before it could be opened: {0}", archive);
+                evicted = e;
+            }
+        }
+        throw evicted;
+    }
+
+    /**
+     * Gets the pathname of the cached archive of a directory's contents, creating the
+     * archive if no archive with the directory's current fingerprint exists. The archive
+     * may be evicted by the time this method returns.
+     * @param sourceDirectory the directory
+     * @return pathname of the archive
+     * @throws IOException on I/O error
+     */
+    Path store(File sourceDirectory) throws IOException {
+        String fingerprint = fingerprint(sourceDirectory.toPath());
+        Path archive = directory.resolve(fingerprint + ARCHIVE_SUFFIX);
+        try {
+            // the modification time of an archive records its last use
+            Files.setLastModifiedTime(archive, FileTime.fromMillis(System.currentTimeMillis()));
+            return archive;
+        } catch (NoSuchFileException ignore) {
+        }
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, fingerprint, ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                TarArchives.packDirectoryInTarArchive(sourceDirectory, out);
+            }
+            try {
+                Files.move(tempFile, archive, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, archive, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        evict(archive);
+        return archive;
+    }
+
+    /**
+     * Deletes the least recently used archives until the total size of archives
+     * does not exceed the maximum. The archive just stored is never deleted.
+     */
+    private void evict(Path retained) throws IOException {
+        synchronized (evictionLock) {
+            List<Path> archives = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + ARCHIVE_SUFFIX)) {
+                stream.forEach(archives::add);
+            }
+            List<CachedArchive> cached = new ArrayList<>(archives.size());
+            long total = 0;
+            for (Path archive : archives) {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(archive, BasicFileAttributes.class);
+                    cached.add(new CachedArchive(archive, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                    total += attrs.size();
+                } catch (NoSuchFileException ignore) {
+                    // deleted by another process
+                }
+            }
+            cached.sort(Comparator.comparingLong(c -> c.lastUsed));
+            for (CachedArchive c : cached) {
+                if (total <= maxBytes) {
+                    break;
+                }
+                if (c.path.equals(retained)) {
+                    continue;
+                }
+                try {
+                    Files.deleteIfExists(c.path);
+                    total -= c.size;
+                } catch (IOException e) {
+                    log.log(Level.FINE, "failed to evict " + c.path, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the fingerprint of a directory tree.
+     * @param root the directory
+     * @return fingerprint as a hex string
+     * @throws IOException on I/O error
+     */
+    String fingerprint(Path root) throws IOException {
+        MessageDigest digest = createDigest();
+        update(digest, "v" + FINGERPRINT_VERSION + (contentHash ? "+content" : "") + "\n");
+        fingerprintContents(root, "", digest);
+        return HEX.encode(digest.digest());
+    }
+
+    private void fingerprintContents(Path dir, String relativeDir, MessageDigest digest) throws IOException {
+        List<Path> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            stream.forEach(children::add);
+        }
+        children.sort(Comparator.comparing(p -> p.getFileName().toString()));
+        for (Path child : children) {
+            String relativePath = relativeDir + child.getFileName().toString();
+            BasicFileAttributes attrs = Files.readAttributes(child, BasicFileAttributes.class);
+            String permissions = POSIX ? PosixFilePermissions.toString(Files.getPosixFilePermissions(child)) : "";
+            update(digest, String.format("%s\0%s\0%d\0%d\0%s\n", relativePath, attrs.isDirectory() ? "d" : "f",
+                    attrs.isDirectory() ? 0 : attrs.size(), attrs.lastModifiedTime().toMillis(), permissions));
+            if (contentHash && attrs.isRegularFile()) {
+                updateContent(digest, child);
+            }
+            if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                fingerprintContents(child, relativePath + "/", digest);
+            }
+        }
+    }
+
+    private static void updateContent(MessageDigest digest, Path file) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int r;
+            while ((r = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, r);
+            }
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class CachedArchive {
+
+        public final Path path;
+        public final long size;
+        public final long lastUsed;
+
+        public CachedArchive(Path path, long size, long lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", TarArchiveCache.class.getSimpleName() + "[", "]")
+                .add("directory=" + directory)
+                .add("maxBytes=" + maxBytes)
+                .add("contentHash=" + contentHash)
+                .toString();
+    }
+}
@@ -6,19 +6,35 @@ import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 
 import javax.annotation.Nullable;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static java.util.Objects.requireNonNull;
 
 /**
  * Static utility methods relating to tar archive data.
@@ -49,26 +65,244 @@ public class TarArchives {
      * @throws IOException on I/O error
      */
     public static void packDirectoryInTarArchive(File directory, OutputStream outputStream) throws IOException {
-        Path root = directory.toPath();
-        List<File> filesInDirectory = java.nio.file.Files.walk(root)
-                .filter(p -> !root.equals(p))
-                .map(p -> {
-                    return root.resolve(p).toFile();
-                }).sorted(Ordering.<String>natural().onResultOf(File::getAbsolutePath))
-                .collect(Collectors.toList());
+        packDirectoryInTarArchive(directory, EntryFilter.includeAll(), outputStream);
+    }
+
+    /**
+     * Interface of a filter of the files and directories that are packed into an archive.
+     * Paths passed to methods of this interface are relative to the directory being packed
+     * and use forward slashes as separators.
+     */
+    public interface EntryFilter {
+
+        /**
+         * Tests whether a file or directory is packed.
+         * @param relativePath relative path
+         * @return true if the file or directory is to be packed
+         */
+        boolean isIncluded(String relativePath);
+
+        /**
+         * Tests whether a directory may contain files that are packed. If this method
+         * returns false, the directory is not traversed.
+         * @param relativePath relative path of a directory
+         * @return true if the directory is to be traversed
+         */
+        default boolean isTraversable(String relativePath) {
+            return true;
+        }
+
+        static EntryFilter includeAll() {
+            return relativePath -> true;
+        }
+    }
+
+    /**
+     * Archives files in the given directory that are accepted by a filter, writing content
+     * to an output stream. The directory tree is walked depth first, with the entries of each
+     * directory sorted by name, and entries are written as they are encountered, so the
+     * memory used does not depend on the number of files.
+     *
+     * @param directory the directory whose contents are to be packed
+     * @param filter filter that determines which files are packed
+     * @param outputStream destination output stream
+     * @throws IOException on I/O error
+     */
+    public static void packDirectoryInTarArchive(File directory, EntryFilter filter, OutputStream outputStream) throws IOException {
+        requireNonNull(filter, "filter");
         try (TarArchiveOutputStream tos = new TarArchiveOutputStream(outputStream)) {
-            for (File file : filesInDirectory) {
-                String entryName = root.relativize(file.toPath()).toString();//.relativize(root).toString();
-                ArchiveEntry entry = tos.createArchiveEntry(file, entryName);
-                tos.putArchiveEntry(entry);
-                if (file.isFile()) {
-                    try (InputStream entryFileInput = java.nio.file.Files.newInputStream(file.toPath())) {
-                        IOUtils.copy(entryFileInput, tos);
-                    }
+            tos.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            tos.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+            packDirectoryContents(directory.toPath(), "", "", filter, tos);
+            tos.finish();
+        }
+    }
+
+    /**
+     * Archives files in the given directory that are accepted by a filter, writing entries to
+     * an archive stream. The filter is applied to paths relative to the directory, and the
+     * entry prefix is prepended to those paths to form entry names.
+     */
+    static void packDirectoryContents(Path dir, String entryPrefix, EntryFilter filter, TarArchiveOutputStream tos) throws IOException {
+        packDirectoryContents(dir, "", entryPrefix, filter, tos);
+    }
+
+    private static void packDirectoryContents(Path dir, String relativeDir, String entryPrefix, EntryFilter filter, TarArchiveOutputStream tos) throws IOException {
+        List<Path> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = java.nio.file.Files.newDirectoryStream(dir)) {
+            stream.forEach(children::add);
+        }
+        children.sort(Ordering.<String>natural().onResultOf(p -> p.getFileName().toString()));
+        for (Path child : children) {
+            String relativePath = relativeDir + child.getFileName().toString();
+            boolean directory = java.nio.file.Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS);
+            if (filter.isIncluded(relativePath)) {
+                packFile(child, entryPrefix + relativePath, tos);
+            }
+            if (directory && filter.isTraversable(relativePath)) {
+                packDirectoryContents(child, relativePath + "/", entryPrefix, filter, tos);
+            }
+        }
+    }
+
+    /**
+     * Writes an entry for a file or directory to an archive stream. The entry
+     * for a directory does not include the directory's contents.
+     */
+    static void packFile(Path file, String entryName, TarArchiveOutputStream tos) throws IOException {
+        TarArchiveEntry entry = (TarArchiveEntry) tos.createArchiveEntry(file.toFile(), entryName);
+        if (POSIX) {
+            int permissions = toMode(java.nio.file.Files.getPosixFilePermissions(file));
+            entry.setMode((entry.getMode() & ~0777) | permissions);
+        }
+        tos.putArchiveEntry(entry);
+        if (entry.isFile()) {
+            writeFileContent(file, entry.getSize(), tos);
+        }
+        tos.closeArchiveEntry();
+    }
+
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private static int toMode(Set<PosixFilePermission> permissions) {
+        int mode = 0;
+        PosixFilePermission[] values = PosixFilePermission.values();
+        for (int i = 0; i < values.length; i++) {
+            if (permissions.contains(values[i])) {
+                mode |= 0400 >> i;
+            }
+        }
+        return mode;
+    }
+
+    /**
+     * Copies the content of a file to an archive stream. The archive stream is not backed
+     * by a channel, so no zero-copy transfer is possible, and the content is copied through
+     * a buffer.
+     */
+    static void writeFileContent(Path file, long size, OutputStream tos) throws IOException {
+        try (InputStream entryFileInput = java.nio.file.Files.newInputStream(file)) {
+            IOUtils.copyLarge(entryFileInput, tos, 0, size);
+        }
+    }
+
+    private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Archives files in the given directory that are accepted by a filter, producing a
+     * gzip-compressed tar archive that is read from the returned stream. The archive is
+     * written by a task submitted to the given executor, through a pipe, so the archive
+     * is never fully staged in memory or on disk. Compression favors speed over size.
+     * If writing the archive fails, reading the returned stream throws an exception
+     * whose cause is the failure. Closing the returned stream before the end of the
+     * archive causes the task to stop.
+     *
+     * @param directory the directory whose contents are to be packed
+     * @param filter filter that determines which files are packed
+     * @param executor executor that runs the task that writes the archive; this must not
+     *                 be the thread that reads the returned stream
+     * @return a stream of compressed archive content
+     * @throws IOException on I/O error
+     */
+    public static InputStream pipeDirectoryInCompressedTarArchive(File directory, EntryFilter filter, Executor executor) throws IOException {
+        requireNonNull(directory, "directory");
+        requireNonNull(filter, "filter");
+        return pipe(out -> packDirectoryInTarArchive(directory, filter, out), true, executor);
+    }
+
+    /**
+     * Interface of a task that writes archive content to a stream.
+     */
+    interface ArchiveWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Runs a task that writes archive content into a pipe, returning the stream from which
+     * the content is read. The stream is closed by this method, not by the task.
+     * @param writer task that writes the archive
+     * @param compress true to compress with gzip
+     * @param executor executor that runs the task
+     * @return the stream
+     * @throws IOException on I/O error
+     */
+    static InputStream pipe(ArchiveWriter writer, boolean compress, Executor executor) throws IOException {
+        PipedInputStream pipeIn = new PipedInputStream(PIPE_BUFFER_SIZE);
+        PipedOutputStream pipeOut = new PipedOutputStream(pipeIn);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        executor.execute(() -> {
+            // the pipe is shielded so that the failure is recorded before the reader sees the end of the pipe
+            OutputStream shielded = new CloseShieldOutputStream(pipeOut);
+            try (OutputStream out = compress ? new FastGZIPOutputStream(shielded, PIPE_BUFFER_SIZE) : shielded) {
+                writer.write(out);
+            } catch (IOException | RuntimeException e) {
+                failure.set(e);
+            } finally {
+                try {
+                    pipeOut.close();
+                } catch (IOException e) {
+                    failure.compareAndSet(null, e);
                 }
-                tos.closeArchiveEntry();
             }
-            tos.finish();
+        });
+        return new ProducerFailureCheckingInputStream(pipeIn, failure);
+    }
+
+    /**
+     * Gzip output stream that favors speed over compression ratio.
+     */
+    private static class FastGZIPOutputStream extends GZIPOutputStream {
+
+        public FastGZIPOutputStream(OutputStream out, int size) throws IOException {
+            super(out, size);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
+
+    private static class ProducerFailureCheckingInputStream extends FilterInputStream {
+
+        private final AtomicReference<Throwable> failure;
+
+        public ProducerFailureCheckingInputStream(InputStream in, AtomicReference<Throwable> failure) {
+            super(in);
+            this.failure = failure;
+        }
+
+        private void checkFailure() throws IOException {
+            Throwable t = failure.get();
+            if (t != null) {
+                throw new IOException("failed to produce archive", t);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b;
+            try {
+                b = super.read();
+            } catch (IOException e) {
+                checkFailure();
+                throw e;
+            }
+            if (b == -1) {
+                checkFailure();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n;
+            try {
+                n = super.read(b, off, len);
+            } catch (IOException e) {
+                checkFailure();
+                throw e;
+            }
+            if (n == -1) {
+                checkFailure();
+            }
+            return n;
         }
     }
 
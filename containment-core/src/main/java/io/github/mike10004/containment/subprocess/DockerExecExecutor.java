@@ -1,8 +1,9 @@
 package io.github.mike10004.containment.subprocess;
 
-import io.github.mike10004.containment.ContainerExecutor;
 import io.github.mike10004.containment.ContainerSubprocessResult;
 import io.github.mike10004.containment.ContainmentException;
+import io.github.mike10004.containment.ExecOutputSink;
+import io.github.mike10004.containment.StreamingContainerExecutor;
 import io.github.mike10004.subprocess.Subprocess;
 
 import java.nio.charset.Charset;
@@ -13,7 +14,7 @@ import static java.util.Objects.requireNonNull;
 /**
  * Implementation of an executor that launches an external {@code docker exec} process.
  */
-public class DockerExecExecutor extends DockerSubprocessExecutorBase implements ContainerExecutor {
+public class DockerExecExecutor extends DockerSubprocessExecutorBase implements StreamingContainerExecutor {
 
     private final String containerId;
 
@@ -28,13 +29,23 @@ public class DockerExecExecutor extends DockerSubprocessExecutorBase implements
 
     @Override
     public ContainerSubprocessResult<String> execute(Map<String, String> containerProcessEnvironment, Charset execOutputCharset, String executable, String... args) throws ContainmentException {
+        Subprocess subprocess = buildExecSubprocess(containerProcessEnvironment, executable, args);
+        return executeDockerSubprocess(subprocess, execOutputCharset);
+    }
+
+    @Override
+    public int execute(Map<String, String> containerProcessEnvironment, ExecOutputSink stdoutSink, ExecOutputSink stderrSink, String executable, String... args) throws ContainmentException {
+        Subprocess subprocess = buildExecSubprocess(containerProcessEnvironment, executable, args);
+        return executeDockerSubprocess(subprocess, stdoutSink, stderrSink);
+    }
+
+    private Subprocess buildExecSubprocess(Map<String, String> containerProcessEnvironment, String executable, String... args) {
         Subprocess.Builder b = buildSubprocessRunningDocker().arg("exec");
         containerProcessEnvironment.forEach((name, value) -> {
             b.arg("--env").arg(String.format("%s=%s", name, value));
         });
-        Subprocess subprocess = b.arg(containerId)
-                                 .args(executable, args).build();
-        return executeDockerSubprocess(subprocess, execOutputCharset);
+        return b.arg(containerId)
+                .args(executable, args).build();
     }
 
 }
@@ -2,27 +2,55 @@ package io.github.mike10004.containment.subprocess;
 
 import io.github.mike10004.containment.ContainerCopier;
 import io.github.mike10004.containment.ContainmentException;
+import io.github.mike10004.containment.DirectorySync;
+import io.github.mike10004.containment.dockerjava.StreamingTarSource;
 import io.github.mike10004.subprocess.ProcessResult;
 import io.github.mike10004.subprocess.ScopedProcessTracker;
 import io.github.mike10004.subprocess.StreamContent;
 import io.github.mike10004.subprocess.Subprocess;
 import io.github.mike10004.subprocess.SubprocessException;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.io.IOUtils;
 
 import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * Copier implementation that launches external {@code docker} subprocesses
- * to execute copy commands.
+ * to execute copy commands. Archives are transferred through the standard input
+ * and output of {@code docker cp} processes, so they are not staged in temporary files.
  */
 public class DockerSubprocessCopier implements ContainerCopier {
 
+    /**
+     * Maximum number of bytes of standard error retained for error messages.
+     */
+    private static final int MAX_STDERR_BYTES = 64 * 1024;
+
+    private static final ExecutorService STDERR_READER = Executors.newCachedThreadPool(new DaemonThreadFactory());
+
+    private final String dockerExecutable;
     private final String containerId;
     private final long timeout;
     private TimeUnit timeoutUnit;
@@ -32,6 +60,11 @@ public class DockerSubprocessCopier implements ContainerCopier {
     }
 
     public DockerSubprocessCopier(String containerId, long timeout, TimeUnit timeoutUnit) {
+        this("docker", containerId, timeout, timeoutUnit);
+    }
+
+    DockerSubprocessCopier(String dockerExecutable, String containerId, long timeout, TimeUnit timeoutUnit) {
+        this.dockerExecutable = requireNonNull(dockerExecutable);
         this.timeout = timeout;
         this.containerId = requireNonNull(containerId);
         this.timeoutUnit = timeoutUnit;
@@ -39,7 +72,7 @@ public class DockerSubprocessCopier implements ContainerCopier {
 
     @Override
     public void copyToContainer(File filepath, String destpath) throws IOException {
-        Subprocess subprocess = Subprocess.running("docker")
+        Subprocess subprocess = Subprocess.running(dockerExecutable)
                 .arg("cp")
                 .arg(filepath.getAbsolutePath())
                 .arg(String.format("%s:%s", containerId, destpath))
@@ -47,6 +80,23 @@ public class DockerSubprocessCopier implements ContainerCopier {
         execute(subprocess);
     }
 
+    /**
+     * Copies new and changed files to the container. The remote tree is listed by a
+     * {@code docker exec} process, and the changed files are uploaded in a single
+     * archive streamed to a {@code docker cp} process.
+     */
+    @Override
+    public DirectorySync.Result syncDirectoryToContainer(File sourceDirectory, String destinationDirectory, Set<SyncOption> options) throws IOException, ContainmentException {
+        DirectorySync sync = new DirectorySync(new DockerExecExecutor(containerId));
+        return sync.sync(sourceDirectory, destinationDirectory, options, relativePaths -> {
+            StreamingTarSource.Builder source = StreamingTarSource.builder().compress(true);
+            for (String relativePath : relativePaths) {
+                source.path(sourceDirectory.toPath().resolve(relativePath), relativePath);
+            }
+            unpackTarArchiveToContainer(source.build(), destinationDirectory);
+        });
+    }
+
     protected void execute(Subprocess subprocess) throws IOException, SubprocessException {
         ProcessResult<?, ?> result;
         try (ScopedProcessTracker processTracker = new ScopedProcessTracker()) {
@@ -67,36 +117,199 @@ public class DockerSubprocessCopier implements ContainerCopier {
         if (path.isEmpty()) {
             throw new DockerCopyException("source path is empty");
         }
-        Subprocess.Builder b = Subprocess.running("docker")
-                .arg("cp");
+        Subprocess subprocess = Subprocess.running(dockerExecutable)
+                .arg("cp")
+                .args(toArgs(options))
+                .arg(String.format("%s:%s", containerId, path))
+                .arg(destinationFile.getAbsolutePath())
+                .build();
+        execute(subprocess);
+    }
+
+    private static List<String> toArgs(Set<Option> options) throws DockerCopyException {
+        List<String> args = new ArrayList<>(options.size());
         for (Option option : options) {
             switch (option) {
                 case ARCHIVE:
-                    b.arg("--archive");
+                    args.add("--archive");
                     break;
                 case FOLLOW_LINK:
-                    b.arg("--follow-link");
+                    args.add("--follow-link");
                     break;
                 default:
                     throw new DockerCopyException("unsupported option: " + option);
             }
         }
-        Subprocess subprocess = b.arg(String.format("%s:%s", containerId, path))
-                .arg(destinationFile.getAbsolutePath())
-                .build();
-        execute(subprocess);
+        return args;
+    }
+
+    /**
+     * Copies the content of a file from the container to a stream. The archive of the file
+     * is read from the standard output of a {@code docker cp} process, and symbolic links
+     * are followed. The source must be a regular file, so only the first entry of the
+     * archive is read.
+     *
+     * <p>The process is destroyed as soon as the content of the entry has been copied,
+     * without waiting for it to exit, and its exit status is ignored; the copy is complete
+     * once the entry has been read in full, and anything the process would write afterward
+     * is the end of the archive.</p>
+     */
+    @Override
+    public void copyFromContainer(String path, OutputStream destination) throws IOException {
+        try (DockerProcess docker = startCopyFromContainer(path, EnumSet.of(Option.FOLLOW_LINK))) {
+            TarArchiveInputStream tarIn = new TarArchiveInputStream(docker.process.getInputStream());
+            TarArchiveEntry first = tarIn.getNextTarEntry();
+            if (first == null) {
+                docker.awaitSuccess();
+                throw new DockerCopyException("archive of " + path + " is empty");
+            }
+            if (!first.isFile()) {
+                throw new DockerCopyException("not a regular file: " + path);
+            }
+            IOUtils.copyLarge(tarIn, destination, 0, first.getSize());
+        }
+    }
+
+    /**
+     * Copies a tar archive of a file or directory in the container to a stream. The archive
+     * is relayed from the standard output of a {@code docker cp} process as it is produced.
+     * @param path the path of the source file or directory within the container filesystem
+     * @param options copy options
+     * @param destination the destination stream; not closed
+     * @throws IOException on I/O error or if the copy fails
+     */
+    public void copyArchiveFromContainer(String path, Set<Option> options, OutputStream destination) throws IOException {
+        try (DockerProcess docker = startCopyFromContainer(path, options)) {
+            IOUtils.copyLarge(docker.process.getInputStream(), destination);
+            docker.awaitSuccess();
+        }
+    }
+
+    private DockerProcess startCopyFromContainer(String path, Set<Option> options) throws IOException {
+        if (path.isEmpty()) {
+            throw new DockerCopyException("source path is empty");
+        }
+        List<String> command = new ArrayList<>();
+        command.add("cp");
+        command.addAll(toArgs(options));
+        command.add(String.format("%s:%s", containerId, path));
+        command.add("-");
+        DockerProcess docker = startDocker(command);
+        docker.process.getOutputStream().close();
+        return docker;
+    }
+
+    /**
+     * Starts a {@code docker} process whose standard input and output are read and written
+     * by the caller. Standard error is read in the background.
+     */
+    private DockerProcess startDocker(List<String> args) throws IOException {
+        List<String> command = new ArrayList<>(args.size() + 1);
+        command.add(dockerExecutable);
+        command.addAll(args);
+        Process process = new ProcessBuilder(command).start();
+        CompletableFuture<String> stderr = CompletableFuture.supplyAsync(() -> readStderr(process.getErrorStream()), STDERR_READER);
+        return new DockerProcess(process, stderr);
+    }
+
+    /**
+     * Reads standard error to the end, retaining only the beginning.
+     */
+    private static String readStderr(InputStream in) {
+        ByteArrayOutputStream retained = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream stream = in) {
+            int r;
+            while ((r = stream.read(buffer)) != -1) {
+                int keep = Math.min(r, MAX_STDERR_BYTES - retained.size());
+                if (keep > 0) {
+                    retained.write(buffer, 0, keep);
+                }
+            }
+        } catch (IOException ignore) {
+            // the stream is closed when the process is destroyed
+        }
+        return new String(retained.toByteArray(), Charset.defaultCharset());
+    }
+
+    private final class DockerProcess implements Closeable {
+
+        public final Process process;
+        private final CompletableFuture<String> stderr;
+
+        public DockerProcess(Process process, CompletableFuture<String> stderr) {
+            this.process = process;
+            this.stderr = stderr;
+        }
+
+        /**
+         * Waits for the process to exit.
+         * @throws IOException if the process does not exit before the timeout or exits with a nonzero code
+         */
+        public void awaitSuccess() throws IOException {
+            int exitCode;
+            try {
+                if (!process.waitFor(timeout, timeoutUnit)) {
+                    throw new DockerCopyException("docker cp did not finish within " + timeout + " " + timeoutUnit);
+                }
+                exitCode = process.exitValue();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DockerCopyException(e);
+            }
+            if (exitCode != 0) {
+                throw new DockerCopyFailedException(exitCode, stderr());
+            }
+        }
+
+        @Nullable
+        private String stderr() throws IOException {
+            try {
+                return stderr.get(timeout, timeoutUnit);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DockerCopyException(e);
+            } catch (ExecutionException | TimeoutException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Stops the process if it is still running.
+         */
+        @Override
+        public void close() throws IOException {
+            if (process.isAlive()) {
+                process.destroy();
+            }
+            process.getInputStream().close();
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "containment-docker-cp-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
     }
 
     private static class DockerCopyFailedException extends DockerCopyException {
         public DockerCopyFailedException(ProcessResult<?, ?> result) {
-            super(createMessage(result));
+            super(createMessage(result.exitCode(), result.content()));
         }
 
-        private static String createMessage(ProcessResult<?, ?> result) {
-            int exitCode = result.exitCode();
+        public DockerCopyFailedException(int exitCode, @Nullable String stderr) {
+            super(createMessage(exitCode, StreamContent.direct(null, stderr)));
+        }
+
+        private static String createMessage(int exitCode, StreamContent<?, ?> content) {
             StringBuilder sb = new StringBuilder(256);
             sb.append("exit code ").append(exitCode);
-            StreamContent<?, ?> content = result.content();
             appendIfNonNull("stdout", content.stdout(), sb);
             appendIfNonNull("stderr", content.stderr(), sb);
             return sb.toString();
@@ -109,8 +322,28 @@ public class DockerSubprocessCopier implements ContainerCopier {
         }
     }
 
+    /**
+     * Unpacks an archive into the container by writing it to the standard input of a
+     * {@code docker cp - container:destination} process. The archive may be compressed.
+     */
     @Override
-    public void unpackTarArchiveToContainer(TarSource source, String destination) throws IOException, ContainmentException {
-        throw new IOException("archive copy is not supported in this copier implementation");
+    public void unpackTarArchiveToContainer(TarSource source, String destination) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add("cp");
+        command.add("-");
+        command.add(String.format("%s:%s", containerId, destination));
+        try (DockerProcess docker = startDocker(command)) {
+            try (InputStream in = source.open();
+                 OutputStream stdin = docker.process.getOutputStream()) {
+                IOUtils.copyLarge(in, stdin);
+            } catch (IOException e) {
+                // writing fails if the process exits early, in which case its error is more informative
+                if (!docker.process.isAlive()) {
+                    docker.awaitSuccess();
+                }
+                throw e;
+            }
+            docker.awaitSuccess();
+        }
     }
 }
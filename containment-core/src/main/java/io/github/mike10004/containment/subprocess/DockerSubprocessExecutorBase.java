@@ -3,12 +3,23 @@ package io.github.mike10004.containment.subprocess;
 import com.google.common.base.MoreObjects;
 import io.github.mike10004.containment.ContainmentException;
 import io.github.mike10004.containment.ContainerSubprocessResult;
+import io.github.mike10004.containment.ExecOutputSink;
 import io.github.mike10004.subprocess.ProcessMonitor;
 import io.github.mike10004.subprocess.ProcessResult;
 import io.github.mike10004.subprocess.ScopedProcessTracker;
+import io.github.mike10004.subprocess.StreamContent;
+import io.github.mike10004.subprocess.StreamContext;
+import io.github.mike10004.subprocess.StreamControl;
 import io.github.mike10004.subprocess.Subprocess;
 
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 
 import static java.util.Objects.requireNonNull;
@@ -44,6 +55,135 @@ public class DockerSubprocessExecutorBase {
         }
     }
 
+    /**
+     * Executes a subprocess, delivering its output to sinks as it is produced.
+     * If a sink throws an exception, later output is discarded so that the process
+     * can finish, and the first such exception is rethrown once it has finished.
+     * @param subprocess the subprocess
+     * @param stdoutSink sink of standard output
+     * @param stderrSink sink of standard error
+     * @return the process exit code
+     * @throws ContainmentException on error
+     */
+    protected int executeDockerSubprocess(Subprocess subprocess, ExecOutputSink stdoutSink, ExecOutputSink stderrSink) throws ContainmentException {
+        SinkStreamContext streamContext = new SinkStreamContext(requireNonNull(stdoutSink), requireNonNull(stderrSink));
+        int exitCode;
+        try (ScopedProcessTracker processTracker = new ScopedProcessTracker()) {
+            ProcessMonitor<Void, Void> monitor = subprocess.launcher(processTracker)
+                    .output(streamContext).launch();
+            exitCode = monitor.await().exitCode();
+        } catch (InterruptedException e) {
+            throw new ContainmentException(e);
+        }
+        Exception sinkFailure = streamContext.sinkFailure();
+        if (sinkFailure != null) {
+            throw new ContainmentException("output sink failed", sinkFailure);
+        }
+        try {
+            stdoutSink.complete();
+            stderrSink.complete();
+        } catch (IOException e) {
+            throw new ContainmentException("output sink failed", e);
+        }
+        return exitCode;
+    }
+
+    private static final class SinkStreamContext implements StreamContext<SinkStreamControl, Void, Void> {
+
+        private final ExecOutputSink stdoutSink;
+        private final ExecOutputSink stderrSink;
+        @Nullable
+        private volatile SinkStreamControl control;
+
+        public SinkStreamContext(ExecOutputSink stdoutSink, ExecOutputSink stderrSink) {
+            this.stdoutSink = stdoutSink;
+            this.stderrSink = stderrSink;
+        }
+
+        @Override
+        public SinkStreamControl produceControl() {
+            SinkStreamControl control = new SinkStreamControl(stdoutSink, stderrSink);
+            this.control = control;
+            return control;
+        }
+
+        @Nullable
+        public Exception sinkFailure() {
+            SinkStreamControl control = this.control;
+            return control == null ? null : control.failure.get();
+        }
+
+        @Override
+        public StreamContent<Void, Void> transform(int exitCode, SinkStreamControl context) {
+            return StreamContent.absent();
+        }
+    }
+
+    private static final class SinkStreamControl implements StreamControl {
+
+        private final ExecOutputSink stdoutSink;
+        private final ExecOutputSink stderrSink;
+        /**
+         * First exception thrown by a sink. Sinks are invoked on the subprocess library's
+         * stream pumping threads, where an exception would be swallowed, so it is
+         * recorded here and rethrown by the thread that awaits the process.
+         */
+        public final AtomicReference<Exception> failure;
+
+        public SinkStreamControl(ExecOutputSink stdoutSink, ExecOutputSink stderrSink) {
+            this.stdoutSink = stdoutSink;
+            this.stderrSink = stderrSink;
+            failure = new AtomicReference<>();
+        }
+
+        @Override
+        public OutputStream openStdoutSink() {
+            return new SinkOutputStream(stdoutSink, failure);
+        }
+
+        @Override
+        public OutputStream openStderrSink() {
+            return new SinkOutputStream(stderrSink, failure);
+        }
+
+        @Override
+        public InputStream openStdinSource() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+    }
+
+    /**
+     * Output stream that relays each write to a sink as a buffer wrapping the written bytes.
+     * Once any sink has failed, writes are discarded.
+     */
+    private static final class SinkOutputStream extends OutputStream {
+
+        private final ExecOutputSink sink;
+        private final AtomicReference<Exception> failure;
+
+        public SinkOutputStream(ExecOutputSink sink, AtomicReference<Exception> failure) {
+            this.sink = sink;
+            this.failure = failure;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (len <= 0 || failure.get() != null) {
+                return;
+            }
+            try {
+                sink.accept(ByteBuffer.wrap(b, off, len));
+            } catch (IOException | RuntimeException e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+    }
+
     /**
      * Interface of a service that provides subprocess configuration settings.
      */
@@ -16,6 +16,9 @@ import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 class PsOutputParser implements DockerPsContent {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
     private final String psOutput;
 
     public PsOutputParser(String psOutput) {
@@ -25,7 +28,7 @@ class PsOutputParser implements DockerPsContent {
     @Override
     public List<ContainerPort> parsePortMappings() {
         try {
-            JsonNode root = new ObjectMapper().readTree(psOutput);
+            JsonNode root = OBJECT_MAPPER.readTree(psOutput);
             String portsContent = root.get("Ports").asText();
             return parsePortsContent(portsContent);
         } catch (IOException e) {
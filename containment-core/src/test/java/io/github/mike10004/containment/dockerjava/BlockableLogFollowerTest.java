@@ -7,6 +7,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.nio.charset.Charset;
 import java.time.Duration;
+import java.util.Arrays;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.*;
@@ -28,4 +29,47 @@ public class BlockableLogFollowerTest {
         assertEquals("content", "foo\nhello\nbar\n", content);
         assertTrue(f.await(Duration.ZERO));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void untilLine_spanningFrames() throws Exception {
+        Charset charset = UTF_8;
+        BlockableLogFollower f = BlockableLogFollower.untilLine("server \u00e9tait ready"::equals, charset);
+        byte[] bytes = "starting\nserver \u00e9tait ready\n".getBytes(charset);
+        int split = "starting\nserver \u00e9".getBytes(charset).length - 1;
+        f.accept(Arrays.copyOfRange(bytes, 0, split));
+        assertEquals("remaining after first frame", 1, f.remaining());
+        f.accept(Arrays.copyOfRange(bytes, split, bytes.length));
+        assertEquals("remaining after second frame", 0, f.remaining());
+    }
+
+    @Test
+    public void untilLine_frameWithoutLineFeed() throws Exception {
+        BlockableLogFollower f = BlockableLogFollower.untilLine("ready> "::equals, UTF_8);
+        f.accept("starting\nrea".getBytes(UTF_8));
+        assertEquals("remaining after partial prompt", 1, f.remaining());
+        f.accept("dy> ".getBytes(UTF_8));
+        assertEquals("remaining after prompt", 0, f.remaining());
+    }
+
+    @Test
+    public void await_framesDroppedAfterSatisfied() throws Exception {
+        BlockableLogFollower f = BlockableLogFollower.untilLine("hello"::equals, UTF_8);
+        f.accept("hello\n".getBytes(UTF_8));
+        f.framesDropped(3);
+        assertTrue(f.await(Duration.ZERO));
+    }
+
+    @Test(expected = BlockableLogFollower.FramesDroppedException.class)
+    public void await_framesDroppedBeforeSatisfied() throws Exception {
+        BlockableLogFollower f = BlockableLogFollower.untilLine("hello"::equals, UTF_8);
+        f.accept("foo\n".getBytes(UTF_8));
+        f.framesDropped(3);
+        f.await(Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void await_timeout() throws Exception {
+        BlockableLogFollower f = BlockableLogFollower.untilLine("hello"::equals, UTF_8);
+        assertFalse(f.await(Duration.ofMillis(10)));
+    }
+}
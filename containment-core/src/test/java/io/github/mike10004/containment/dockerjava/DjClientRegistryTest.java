@@ -0,0 +1,105 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.core.DefaultDockerClientConfig;
+import com.github.dockerjava.core.DockerClientConfig;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class DjClientRegistryTest {
+
+    @Test
+    public void acquire_sharedUntilIdleClientsClosed() throws Exception {
+        UnitTestClientRegistry registry = new UnitTestClientRegistry(Duration.ofHours(1));
+        DockerClientConfig config = DefaultDockerClientConfig.createDefaultConfigBuilder().build();
+        DockerClient lease1 = registry.acquire(config);
+        DockerClient lease2 = registry.acquire(config);
+        assertNotSame("leases", lease1, lease2);
+        assertEquals("clients built", 1, registry.built.size());
+        assertEquals("references", 2, registry.countReferences(config));
+        lease1.close();
+        lease1.close();
+        assertEquals("references after duplicate close", 1, registry.countReferences(config));
+        lease2.close();
+        assertEquals("references", 0, registry.countReferences(config));
+        DockerClient lease3 = registry.acquire(config);
+        assertEquals("idle client reused", 1, registry.built.size());
+        lease3.close();
+        registry.closeIdleClients();
+        EasyMock.verify(registry.built.get(0));
+        DockerClient lease4 = registry.acquire(config);
+        assertEquals("clients built after idle clients closed", 2, registry.built.size());
+        lease4.close();
+        registry.closeIdleClients();
+        EasyMock.verify(registry.built.get(1));
+    }
+
+    @Test
+    public void release_closedAfterKeepAlive() throws Exception {
+        UnitTestClientRegistry registry = new UnitTestClientRegistry(Duration.ofMillis(10));
+        DockerClientConfig config = DefaultDockerClientConfig.createDefaultConfigBuilder().build();
+        registry.acquire(config).close();
+        assertTrue("closed after keep-alive", registry.closed.await(5, TimeUnit.SECONDS));
+        registry.acquire(config).close();
+        assertEquals("clients built after expiry", 2, registry.built.size());
+    }
+
+    @Test
+    public void release_zeroKeepAlive() throws Exception {
+        UnitTestClientRegistry registry = new UnitTestClientRegistry(Duration.ZERO);
+        DockerClientConfig config = DefaultDockerClientConfig.createDefaultConfigBuilder().build();
+        registry.acquire(config).close();
+        EasyMock.verify(registry.built.get(0));
+    }
+
+    @Test
+    public void acquire_distinctConfigs() throws Exception {
+        UnitTestClientRegistry registry = new UnitTestClientRegistry(Duration.ZERO);
+        DockerClientConfig config1 = DefaultDockerClientConfig.createDefaultConfigBuilder().withDockerHost("tcp://localhost:2375").build();
+        DockerClientConfig config2 = DefaultDockerClientConfig.createDefaultConfigBuilder().withDockerHost("tcp://localhost:2376").build();
+        DockerClient lease1 = registry.acquire(config1), lease2 = registry.acquire(config2);
+        assertEquals("clients built", 2, registry.built.size());
+        assertEquals("references", 1, registry.countReferences(config1));
+        lease1.close();
+        lease2.close();
+        registry.built.forEach(EasyMock::verify);
+    }
+
+    private static class UnitTestClientRegistry extends DjClientRegistry {
+
+        public final List<DockerClient> built = new ArrayList<>();
+        public final CountDownLatch closed = new CountDownLatch(1);
+
+        public UnitTestClientRegistry(Duration keepAlive) {
+            super(PoolSettings.defaults(), keepAlive);
+        }
+
+        @Override
+        protected DockerClient buildClient(DockerClientConfig clientConfig) {
+            DockerClient client = EasyMock.createMock(DockerClient.class);
+            try {
+                client.close();
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            EasyMock.expectLastCall().andAnswer(() -> {
+                closed.countDown();
+                return null;
+            }).once();
+            EasyMock.replay(client);
+            built.add(client);
+            return client;
+        }
+    }
+}
@@ -107,4 +107,10 @@ public class DjContainerCopierTest extends DjManagedTestBase {
         assertEquals("text", content, result.stdout().trim());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void resolveLinkTarget() {
+        assertEquals("/var/log/app/current.log", DjContainerCopier.resolveLinkTarget("/var/log/app/latest", "current.log"));
+        assertEquals("/opt/data", DjContainerCopier.resolveLinkTarget("/var/lib/data/", "../../../opt/data"));
+        assertEquals("/etc/alternatives/java", DjContainerCopier.resolveLinkTarget("/usr/bin/java", "/etc/alternatives/java"));
+    }
+}
@@ -33,9 +33,13 @@ import java.sql.Statement;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -271,7 +275,13 @@ public class DjContainerCreatorTest extends DjManagedTestBase  {
     @Test
     public void labels() throws Exception {
         String k1 = "foo", v1 = "bar", k2 = "baz", v2 = "gaw";
-        Map<String, String> expected = ImmutableMap.of(k1, v1, k2, v2);
+        Map<String, String> expected = ImmutableMap.<String, String>builder()
+                .put(k1, v1)
+                .put(k2, v2)
+                .put(DjSession.LABEL_SESSION_ID, DjSession.getId())
+                .put(DjSession.LABEL_PID, DjSession.getPid())
+                .put(DjSession.LABEL_HOST, DjSession.getHostName())
+                .build();
         ContainerParametry parametry = ContainerParametry.builder(Tests.getImageForLabelTest())
                 .commandToWaitIndefinitely()
                 .label(k1, v1)
@@ -290,4 +300,28 @@ public class DjContainerCreatorTest extends DjManagedTestBase  {
         Map<String, String> actual = rsp.getConfig().getLabels();
         assertEquals("labels", expected, actual);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void createAndStartAsync() throws Exception {
+        int numContainers = 4;
+        ContainerParametry parametry = ContainerParametry.builder(Tests.getImageForPrintenvTest())
+                .commandToWaitIndefinitely()
+                .build();
+        try (DjContainerCreator runner = new DjContainerCreator(dockerManager)) {
+            List<CompletableFuture<StartedContainer>> futures = new ArrayList<>();
+            for (int i = 0; i < numContainers; i++) {
+                futures.add(runner.createAsync(parametry).thenCompose(StartableContainer::startAsync));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS);
+            Set<String> ids = new HashSet<>();
+            List<CompletableFuture<Void>> closings = new ArrayList<>();
+            for (CompletableFuture<StartedContainer> future : futures) {
+                StartedContainer container = future.join();
+                ids.add(container.info().id());
+                closings.add(container.closeAsync());
+            }
+            CompletableFuture.allOf(closings.toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS);
+            assertEquals("distinct containers", numContainers, ids.size());
+        }
+    }
+}
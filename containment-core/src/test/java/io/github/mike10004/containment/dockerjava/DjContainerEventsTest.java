@@ -0,0 +1,122 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallbackTemplate;
+import com.github.dockerjava.api.model.Event;
+import com.github.dockerjava.api.model.EventActor;
+import com.github.dockerjava.api.model.EventType;
+import com.google.common.collect.ImmutableMap;
+import io.github.mike10004.containment.ContainerInfo;
+import io.github.mike10004.containment.ContainerParametry;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DjContainerEventsTest {
+
+    @Test
+    public void dispatch() throws Exception {
+        RecordingMonitor monitor = new RecordingMonitor();
+        List<Long> sinceValues = new ArrayList<>();
+        DjContainerEvents events = new DjContainerEvents(() -> EasyMock.createMock(DockerClient.class), monitor, "session1", Runnable::run) {
+            @Override
+            protected void openUpstream(DockerClient client, ResultCallbackTemplate<?, Event> callback, long sinceSeconds) {
+                sinceValues.add(sinceSeconds);
+            }
+        };
+        List<DjContainerEvent> received = new ArrayList<>();
+        events.addListener(received::add);
+        events.addListener(received::add);
+        assertEquals("not opened until leased", Collections.emptyList(), sinceValues);
+        Closeable lease1 = events.acquire(), lease2 = events.acquire();
+        assertEquals("opened once", Collections.singletonList(0L), sinceValues);
+        events.dispatch(event("abc", "health_status: healthy", 100L, Collections.emptyMap()));
+        events.dispatch(event("abc", "oom", 101L, Collections.emptyMap()));
+        events.dispatch(event("abc", "die", 102L, ImmutableMap.of("exitCode", "137")));
+        events.dispatch(event("abc", "destroy", 103L, Collections.emptyMap()));
+        events.dispatch(event("abc", "attach", 104L, Collections.emptyMap()));
+        assertEquals("events received by both listeners", 8, received.size());
+        assertEquals("health status", "healthy", received.get(0).healthStatus());
+        assertEquals(DjContainerEvent.Kind.OOM, received.get(2).kind());
+        assertEquals("exit code", Integer.valueOf(137), received.get(4).exitCode());
+        assertTrue("dead", events.isDead("abc"));
+        assertFalse("dead", events.isDead("def"));
+        assertEquals("monitor stopped", Collections.singletonList("abc"), monitor.stopped);
+        assertEquals("monitor removed", Collections.singletonList("abc"), monitor.removed);
+        lease1.close();
+        lease2.close();
+        lease2.close();
+        Closeable lease3 = events.acquire();
+        assertEquals("reopened from last event", Arrays.asList(0L, 103L), sinceValues);
+        events.close();
+        lease3.close();
+    }
+
+    @Test
+    public void startedContainerSubscribesOnDeathListener() throws Exception {
+        List<Long> sinceValues = new ArrayList<>();
+        DjContainerEvents events = new DjContainerEvents(() -> EasyMock.createMock(DockerClient.class), new RecordingMonitor(), "session1", Runnable::run) {
+            @Override
+            protected void openUpstream(DockerClient client, ResultCallbackTemplate<?, Event> callback, long sinceSeconds) {
+                sinceValues.add(sinceSeconds);
+            }
+        };
+        ContainerInfo info = ContainerInfo.define("abc", ContainerInfo.Stickiness.AUTO_REMOVE_ENABLED, ContainerParametry.CommandType.EXITING_IMMEDIATELY);
+        DjStartedContainer container = new DjStartedContainer(EasyMock.createMock(DockerClient.class), info, new RecordingMonitor(), Runnable::run, null, events);
+        assertEquals("not subscribed without death listeners", Collections.emptyList(), sinceValues);
+        List<DjContainerEvent> deaths = new ArrayList<>();
+        container.addDeathListener(deaths::add);
+        container.addDeathListener(deaths::add);
+        assertEquals("subscribed once", Collections.singletonList(0L), sinceValues);
+        events.dispatch(event("def", "die", 100L, Collections.emptyMap()));
+        events.dispatch(event("abc", "die", 101L, Collections.emptyMap()));
+        assertEquals("deaths", 2, deaths.size());
+        container.close();
+        events.dispatch(event("abc", "destroy", 102L, Collections.emptyMap()));
+        assertEquals("no notifications after close", 2, deaths.size());
+        Closeable lease = events.acquire();
+        assertEquals("subscription was released on close", Arrays.asList(0L, 102L), sinceValues);
+        lease.close();
+    }
+
+    private static Event event(String containerId, String action, long time, Map<String, String> attributes) {
+        return new Event()
+                .withType(EventType.CONTAINER)
+                .withAction(action)
+                .withTime(time)
+                .withEventActor(new EventActor().withId(containerId).withAttributes(attributes));
+    }
+
+    private static class RecordingMonitor implements DjContainerMonitor {
+
+        public final List<String> stopped = new ArrayList<>(), removed = new ArrayList<>();
+
+        @Override
+        public void created(String containerId) {
+        }
+
+        @Override
+        public void started(String containerId) {
+        }
+
+        @Override
+        public void stopped(String containerId) {
+            stopped.add(containerId);
+        }
+
+        @Override
+        public void removed(String containerId) {
+            removed.add(containerId);
+        }
+    }
+}
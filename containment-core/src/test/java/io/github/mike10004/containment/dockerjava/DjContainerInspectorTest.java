@@ -0,0 +1,70 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.InspectContainerCmd;
+import com.github.dockerjava.api.command.InspectContainerResponse;
+import io.github.mike10004.containment.ContainerPort;
+import io.github.mike10004.containment.FullSocketAddress;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DjContainerInspectorTest {
+
+    private static final String INSPECT_JSON = "{" +
+            "\"Id\": \"0123456789ab\"," +
+            "\"Name\": \"/happy_turing\"," +
+            "\"State\": {\"Status\": \"running\", \"Running\": true, \"OOMKilled\": false, \"ExitCode\": 0, \"Health\": {\"Status\": \"healthy\", \"FailingStreak\": 0}}," +
+            "\"HostConfig\": {\"Memory\": 268435456, \"NanoCpus\": 500000000}," +
+            "\"Mounts\": [{\"Source\": \"/tmp/data\", \"Destination\": \"/data\", \"RW\": false}]," +
+            "\"NetworkSettings\": {" +
+            "  \"Ports\": {\"3306/tcp\": [{\"HostIp\": \"0.0.0.0\", \"HostPort\": \"32768\"}], \"33060/tcp\": null}," +
+            "  \"Networks\": {\"bridge\": {\"IPAddress\": \"172.17.0.2\"}}" +
+            "}}";
+
+    private static InspectContainerResponse parse() throws Exception {
+        return new ObjectMapper().readValue(INSPECT_JSON, InspectContainerResponse.class);
+    }
+
+    @Test
+    public void fromResponse() throws Exception {
+        DjContainerInspection inspection = DjContainerInspection.from(parse());
+        assertEquals("name", "happy_turing", inspection.name());
+        assertEquals("ports", new HashSet<>(Arrays.asList(
+                ContainerPort.bound(3306, "tcp", FullSocketAddress.define("0.0.0.0", 32768)),
+                ContainerPort.unbound(33060, "tcp"))), new HashSet<>(inspection.ports()));
+        assertEquals("networks", Collections.singletonMap("bridge", "172.17.0.2"), inspection.networkIpAddresses());
+        assertTrue("running", inspection.state().running);
+        assertEquals("health", "healthy", inspection.state().health);
+        assertEquals("mounts", 1, inspection.mounts().size());
+        assertEquals("mount destination", "/data", inspection.mounts().get(0).destination);
+        assertEquals("memory", Long.valueOf(268435456L), inspection.limits().memoryBytes);
+        assertNull("pids limit", inspection.limits().pidsLimit);
+    }
+
+    @Test
+    public void cached() throws Exception {
+        DockerClient client = EasyMock.createMock(DockerClient.class);
+        InspectContainerCmd cmd = EasyMock.createMock(InspectContainerCmd.class);
+        EasyMock.expect(client.inspectContainerCmd("0123456789ab")).andReturn(cmd).times(2);
+        EasyMock.expect(cmd.exec()).andReturn(parse()).times(2);
+        EasyMock.replay(client, cmd);
+        DjContainerInspector inspector = new DjContainerInspector(client, "0123456789ab", Duration.ofHours(1));
+        DjContainerInspection first = inspector.inspect();
+        assertSame("cached", first, inspector.inspect());
+        assertEquals("host binding", 32768, inspector.fetchHostPortBinding(3306).getPort());
+        inspector.onEvent(new DjContainerEvent(DjContainerEvent.Kind.DIE, "0123456789ab", Collections.emptyMap(), null, 0L));
+        inspector.inspect();
+        EasyMock.verify(client, cmd);
+    }
+}
@@ -0,0 +1,114 @@
+package io.github.mike10004.containment.dockerjava;
+
+import io.github.mike10004.containment.ContainerExecutor;
+import io.github.mike10004.containment.ContainerParametry;
+import io.github.mike10004.containment.ContainerSubprocessResult;
+import io.github.mike10004.containment.ContainmentException;
+import io.github.mike10004.containment.ExecOutputSink;
+import io.github.mike10004.containment.HeadTailExecSink;
+import io.github.mike10004.containment.StartableContainer;
+import io.github.mike10004.containment.StartedContainer;
+import io.github.mike10004.containment.core.DjManagedTestBase;
+import io.github.mike10004.containment.core.Tests;
+import io.github.mike10004.containment.subprocess.DockerExecExecutor;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+public class DjExecExecutorTest extends DjManagedTestBase {
+
+    @Test
+    public void execute_demultiplexed() throws Exception {
+        ContainerParametry parametry = ContainerParametry.builder(Tests.getImageForEchoTest())
+                .commandToWaitIndefinitely()
+                .build();
+        ContainerSubprocessResult<String> result;
+        try (DjContainerCreator runner = new DjContainerCreator(dockerManager);
+             StartableContainer runnable = runner.create(parametry)) {
+            try (StartedContainer container = runnable.start()) {
+                ContainerExecutor executor = container.executor();
+                result = executor.execute(UTF_8, "sh", "-c", "echo hello; echo world >&2; exit 3");
+            }
+        }
+        assertEquals("stdout", "hello", result.stdout().trim());
+        assertEquals("stderr", "world", result.stderr().trim());
+        assertEquals("process exit code", 3, result.exitCode());
+    }
+
+    @Test
+    public void execute_setProcessEnvironmentVariables() throws Exception {
+        ContainerParametry parametry = ContainerParametry.builder(Tests.getImageForPrintenvTest())
+                .commandToWaitIndefinitely()
+                .build();
+        ContainerSubprocessResult<String> result;
+        try (DjContainerCreator runner = new DjContainerCreator(dockerManager);
+             StartableContainer runnable = runner.create(parametry)) {
+            try (StartedContainer container = runnable.start()) {
+                result = container.executor().execute(Collections.singletonMap("FOO", "bar"), UTF_8, "printenv");
+            }
+        }
+        assertEquals("process exit code", 0, result.exitCode());
+        Tests.assertStdoutHasLine(result, "FOO=bar");
+    }
+
+    @Test
+    public void execute_streamingHeadTail() throws Exception {
+        ContainerParametry parametry = ContainerParametry.builder(Tests.getImageForEchoTest())
+                .commandToWaitIndefinitely()
+                .build();
+        HeadTailExecSink stdout = ExecOutputSink.headTail(16, 16);
+        int exitCode;
+        try (DjContainerCreator runner = new DjContainerCreator(dockerManager);
+             DjStartableContainer runnable = runner.create(parametry)) {
+            try (DjStartedContainer container = runnable.start()) {
+                exitCode = container.executor().execute(stdout, ExecOutputSink.discarding(), "sh", "-c", "head -c 1048576 /dev/zero");
+            }
+        }
+        assertEquals("process exit code", 0, exitCode);
+        assertEquals("total bytes", 1048576, stdout.totalBytes());
+        assertEquals("head length", 16, stdout.head().length);
+        assertEquals("tail length", 16, stdout.tail().length);
+    }
+
+    /**
+     * Compares the time taken to execute a trivial command many times with the
+     * API-based executor and with the subprocess-based executor. This is a benchmark,
+     * not a test, so it only runs if setting {@code execComparison.enabled} is true.
+     */
+    @Test
+    public void compareWithSubprocessExecutor() throws Exception {
+        Assume.assumeTrue("assume exec comparison is enabled", Tests.Settings.get("execComparison.enabled", false));
+        int numExecutions = Tests.Settings.getOpt("execComparison.executions").map(Integer::parseInt).orElse(25);
+        ContainerParametry parametry = ContainerParametry.builder(Tests.getImageForEchoTest())
+                .commandToWaitIndefinitely()
+                .build();
+        long apiNanos, subprocessNanos;
+        try (DjContainerCreator runner = new DjContainerCreator(dockerManager);
+             StartableContainer runnable = runner.create(parametry)) {
+            try (StartedContainer container = runnable.start()) {
+                ContainerExecutor apiExecutor = container.executor();
+                ContainerExecutor subprocessExecutor = new DockerExecExecutor(container.info().id());
+                // warm up
+                executeRepeatedly(apiExecutor, 2);
+                executeRepeatedly(subprocessExecutor, 2);
+                apiNanos = executeRepeatedly(apiExecutor, numExecutions);
+                subprocessNanos = executeRepeatedly(subprocessExecutor, numExecutions);
+            }
+        }
+        System.out.format("%d executions: api %.1f ms/exec, subprocess %.1f ms/exec%n", numExecutions,
+                apiNanos / 1e6 / numExecutions, subprocessNanos / 1e6 / numExecutions);
+    }
+
+    private static long executeRepeatedly(ContainerExecutor executor, int numExecutions) throws ContainmentException {
+        long start = System.nanoTime();
+        for (int i = 0; i < numExecutions; i++) {
+            ContainerSubprocessResult<String> result = executor.execute(UTF_8, "true");
+            assertEquals("exit code", 0, result.exitCode());
+        }
+        return System.nanoTime() - start;
+    }
+}
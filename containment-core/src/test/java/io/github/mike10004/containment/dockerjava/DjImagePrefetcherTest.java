@@ -0,0 +1,118 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.github.dockerjava.api.DockerClient;
+import io.github.mike10004.containment.ContainmentException;
+import io.github.mike10004.containment.ImageSpecifier;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DjImagePrefetcherTest {
+
+    private static final Supplier<DockerClient> CLIENT_SUPPLIER = () -> EasyMock.createNiceMock(DockerClient.class);
+
+    @Test
+    public void prefetch_dedup() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        UnitTestPrefetcher prefetcher = new UnitTestPrefetcher(release);
+        CompletableFuture<Void> first = prefetcher.prefetch(CLIENT_SUPPLIER, ImageSpecifier.parseSpecifier("foo"));
+        CompletableFuture<Void> second = prefetcher.prefetch(CLIENT_SUPPLIER, ImageSpecifier.parseSpecifier("foo:latest"));
+        CompletableFuture<Void> other = prefetcher.prefetch(CLIENT_SUPPLIER, ImageSpecifier.parseSpecifier("bar:1.0"));
+        assertSame("in-flight pull shared", first, second);
+        release.countDown();
+        CompletableFuture.allOf(first, other).get(5, TimeUnit.SECONDS);
+        assertEquals("pulls", 2, prefetcher.pulls.size());
+        assertTrue(prefetcher.present.contains("foo:latest"));
+        prefetcher.prefetch(CLIENT_SUPPLIER, ImageSpecifier.parseSpecifier("foo")).get(5, TimeUnit.SECONDS);
+        assertEquals("present image not pulled again", 2, prefetcher.pulls.size());
+    }
+
+    @Test
+    public void require_waitsForInFlight() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        UnitTestPrefetcher prefetcher = new UnitTestPrefetcher(release);
+        ImageSpecifier image = ImageSpecifier.parseSpecifier("foo:latest");
+        CompletableFuture<Void> background = prefetcher.prefetch(CLIENT_SUPPLIER, image);
+        CompletableFuture<Void> required = CompletableFuture.runAsync(() -> {
+            try {
+                prefetcher.require(EasyMock.createNiceMock(DockerClient.class), image);
+            } catch (ContainmentException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse("waiting for in-flight pull", required.isDone());
+        release.countDown();
+        background.get(5, TimeUnit.SECONDS);
+        required.get(5, TimeUnit.SECONDS);
+        assertEquals("pulls", 1, prefetcher.pulls.size());
+    }
+
+    @Test
+    public void prefetch_failureNotCached() throws Exception {
+        UnitTestPrefetcher prefetcher = new UnitTestPrefetcher(new CountDownLatch(0)) {
+            @Override
+            protected void pull(DockerClient client, String image) throws ContainmentException {
+                if (pulls.isEmpty()) {
+                    pulls.add(image);
+                    throw new ContainmentException("purposeful");
+                }
+                super.pull(client, image);
+            }
+        };
+        ImageSpecifier image = ImageSpecifier.parseSpecifier("foo:latest");
+        try {
+            prefetcher.prefetch(CLIENT_SUPPLIER, image).get(5, TimeUnit.SECONDS);
+            fail("should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ContainmentException);
+        }
+        prefetcher.prefetch(CLIENT_SUPPLIER, image).get(5, TimeUnit.SECONDS);
+        assertEquals("pulls", 2, prefetcher.pulls.size());
+    }
+
+    private static class UnitTestPrefetcher extends DjImagePrefetcher {
+
+        public final List<String> pulls = new CopyOnWriteArrayList<>();
+        public final Set<String> present = ConcurrentHashMap.newKeySet();
+        private final CountDownLatch release;
+
+        public UnitTestPrefetcher(CountDownLatch release) {
+            super(Executors.newCachedThreadPool(), Duration.ofSeconds(5));
+            this.release = release;
+        }
+
+        @Override
+        protected boolean isPresent(DockerClient client, String image) {
+            return present.contains(image);
+        }
+
+        @Override
+        protected void pull(DockerClient client, String image) throws ContainmentException {
+            pulls.add(image);
+            try {
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new ContainmentException(e);
+            }
+            present.add(image);
+        }
+    }
+}
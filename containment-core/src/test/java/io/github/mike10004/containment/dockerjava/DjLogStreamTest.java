@@ -0,0 +1,121 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallbackTemplate;
+import com.github.dockerjava.api.model.Frame;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DjLogStreamTest {
+
+    @Test
+    public void lateSubscriberGetsReplayWindow() throws Exception {
+        TestLogStream stream = new TestLogStream(new DjLogStream.Settings(8, 1024), Runnable::run);
+        List<String> early = Collections.synchronizedList(new ArrayList<>());
+        stream.followStdout(bytes -> early.add(new String(bytes, US_ASCII)));
+        for (String frame : Arrays.asList("aaaa", "bbbb", "cccc")) {
+            stream.publish(ProcessOutputStreamType.stdout, frame.getBytes(US_ASCII));
+        }
+        stream.publish(ProcessOutputStreamType.stderr, "eeee".getBytes(US_ASCII));
+        List<String> late = Collections.synchronizedList(new ArrayList<>());
+        stream.followStdout(bytes -> late.add(new String(bytes, US_ASCII)));
+        stream.publish(ProcessOutputStreamType.stdout, "dddd".getBytes(US_ASCII));
+        assertEquals("early", Arrays.asList("aaaa", "bbbb", "cccc", "dddd"), early);
+        assertEquals("late", Arrays.asList("bbbb", "cccc", "dddd"), late);
+        assertEquals("upstream opened once", 1, stream.openCount.get());
+    }
+
+    @Test
+    public void slowSubscriberDoesNotStallOthers() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            TestLogStream stream = new TestLogStream(new DjLogStream.Settings(0, 16), executor);
+            CountDownLatch release = new CountDownLatch(1);
+            List<String> slow = Collections.synchronizedList(new ArrayList<>());
+            stream.followStdout(bytes -> {
+                awaitUninterruptibly(release);
+                slow.add(new String(bytes, US_ASCII));
+            });
+            int numFrames = 100;
+            CountDownLatch fastDone = new CountDownLatch(1);
+            stream.followStdout(bytes -> {
+                if ("0099".equals(new String(bytes, US_ASCII))) {
+                    fastDone.countDown();
+                }
+            });
+            for (int i = 0; i < numFrames; i++) {
+                stream.publish(ProcessOutputStreamType.stdout, String.format("%04d", i).getBytes(US_ASCII));
+            }
+            assertTrue("fast subscriber received last frame while slow subscriber blocked", fastDone.await(5, TimeUnit.SECONDS));
+            assertTrue("frames dropped", stream.countDroppedFrames() > 0);
+            release.countDown();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!slow.contains("0099") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue("slow subscriber received last frame", slow.contains("0099"));
+            assertTrue("slow subscriber queue bounded", slow.size() <= 1 + 16 / 4 + 1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void gapListenerNotifiedOfDroppedFrames() throws Exception {
+        List<Runnable> tasks = new ArrayList<>();
+        TestLogStream stream = new TestLogStream(new DjLogStream.Settings(0, 8), tasks::add);
+        BlockableLogFollower follower = BlockableLogFollower.untilLine("0000"::equals, US_ASCII);
+        stream.followStdout(follower);
+        for (int i = 0; i < 5; i++) {
+            stream.publish(ProcessOutputStreamType.stdout, String.format("%04d%n", i).getBytes(US_ASCII));
+        }
+        assertEquals("one delivery task scheduled", 1, tasks.size());
+        tasks.get(0).run();
+        assertEquals("dropped frames reported", stream.countDroppedFrames(), follower.droppedFrames());
+        assertTrue("frames dropped", follower.droppedFrames() > 0);
+        try {
+            follower.await(Duration.ofSeconds(5));
+            fail("should have thrown");
+        } catch (BlockableLogFollower.FramesDroppedException expected) {
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class TestLogStream extends DjLogStream {
+
+        public final AtomicInteger openCount = new AtomicInteger();
+
+        public TestLogStream(Settings settings, Executor executor) {
+            super(EasyMock.createMock(DockerClient.class), "abcdef0123456789", settings, executor);
+        }
+
+        @Override
+        protected void openUpstream(ResultCallbackTemplate<?, Frame> callback) {
+            openCount.incrementAndGet();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package io.github.mike10004.containment.dockerjava;
 
 import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.command.SyncDockerCmd;
+import com.google.common.collect.ImmutableSet;
 import io.github.mike10004.containment.ContainerParametry;
 import io.github.mike10004.containment.ContainmentException;
 import io.github.mike10004.containment.StartableContainer;
@@ -11,12 +12,19 @@ import org.easymock.EasyMock;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class DjManualContainerMonitorTest {
 
@@ -55,6 +63,48 @@ public class DjManualContainerMonitorTest {
         assertEquals(2, monitor.commandsExecuted.size());
     }
 
+    @Test
+    public void tearDownAll() throws Exception {
+        DockerClient client = EasyMock.createMock(DockerClient.class);
+        UnitTestManualContainerMonitor monitor = new UnitTestManualContainerMonitor();
+        Random random = new Random("ManualContainerMonitorTest.tearDownAll".hashCode());
+        ContainerParametry p = ContainerParametry.builder("oogabooga:latest").build();
+        UnitTestContainerCreator creator = new UnitTestContainerCreator(monitor, random);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            StartableContainer c = creator.create(p);
+            if (i % 2 == 0) {
+                c.start();
+            }
+            ids.add(c.info().id());
+        }
+        String hanging = ids.get(0), failing = ids.get(1);
+        Set<String> attempted = Collections.synchronizedSet(new HashSet<>());
+        DjTeardown teardown = new DjTeardown(ids.size(), Duration.ofMillis(500)) {
+            @Override
+            protected Outcome remove(DockerClient client, String containerId) {
+                attempted.add(containerId);
+                try {
+                    Thread.sleep(containerId.equals(hanging) ? 60000 : 200);
+                } catch (InterruptedException e) {
+                    return new Outcome(containerId, Status.FAILED, Duration.ZERO, e);
+                }
+                Status status = containerId.equals(failing) ? Status.FAILED : Status.REMOVED;
+                return new Outcome(containerId, status, Duration.ofMillis(200), null);
+            }
+        };
+        DjTeardown.Report report = monitor.tearDownAll(client, teardown);
+        assertEquals("attempted", new HashSet<>(ids), attempted);
+        assertTrue("concurrent: " + report.elapsed, report.elapsed.toMillis() < 1000);
+        Map<String, DjTeardown.Status> statuses = report.outcomes.stream().collect(Collectors.toMap(o -> o.containerId, o -> o.status));
+        assertEquals(DjTeardown.Status.TIMED_OUT, statuses.get(hanging));
+        assertEquals(DjTeardown.Status.FAILED, statuses.get(failing));
+        assertEquals("unsuccessful", 2, report.unsuccessful().size());
+        attempted.clear();
+        monitor.tearDownAll(client, teardown);
+        assertEquals("still tracked", ImmutableSet.of(hanging, failing), attempted);
+    }
+
     private static class UnitTestManualContainerMonitor extends DjManualContainerMonitor {
 
         public List<Object> commandsExecuted = new ArrayList<>();
@@ -0,0 +1,96 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.ListContainersCmd;
+import com.github.dockerjava.api.model.Container;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.easymock.EasyMock;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DjOrphanReaperTest {
+
+    private static final String HOST = "thishost";
+    private static final String PID = "1111";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void isEnded() throws Exception {
+        Path dir = temporaryFolder.getRoot().toPath();
+        DjOrphanReaper reaper = new DjOrphanReaper(dir, "current", DjTeardown.defaults());
+        Files.createFile(DjSession.getLockfile(dir, "current"));
+        assertFalse("current session", reaper.isEnded("current"));
+        Files.createFile(DjSession.getLockfile(dir, "unlocked"));
+        assertTrue("unlocked lockfile", reaper.isEnded("unlocked"));
+        Path lockedFile = DjSession.getLockfile(dir, "locked");
+        try (FileChannel channel = FileChannel.open(lockedFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock()) {
+            assertTrue("lock held", lock.isValid());
+            assertFalse("locked lockfile", reaper.isEnded("locked"));
+        }
+        assertFalse("no lockfile, as after a normal exit", reaper.isEnded("exited"));
+    }
+
+    @Test
+    public void reap() throws Exception {
+        Path dir = temporaryFolder.getRoot().toPath();
+        Files.createFile(DjSession.getLockfile(dir, "ended"));
+        Container[] containers = {
+                container("a1", "ended"),
+                container("a2", "ended"),
+                container("b1", "current"),
+                container("c1", "exited"),
+        };
+        DockerClient client = EasyMock.createMock(DockerClient.class);
+        ListContainersCmd cmd = EasyMock.createMock(ListContainersCmd.class);
+        EasyMock.expect(client.listContainersCmd()).andReturn(cmd).once();
+        EasyMock.expect(cmd.withShowAll(true)).andReturn(cmd);
+        EasyMock.expect(cmd.withLabelFilter(Collections.singletonList(DjSession.LABEL_SESSION_ID))).andReturn(cmd);
+        EasyMock.expect(cmd.exec()).andReturn(Arrays.asList(containers));
+        EasyMock.replay(client, cmd);
+        Set<String> removed = Collections.synchronizedSet(new HashSet<>());
+        DjTeardown teardown = new DjTeardown(4, Duration.ofSeconds(5)) {
+            @Override
+            protected Outcome remove(DockerClient client, String containerId) {
+                removed.add(containerId);
+                return new Outcome(containerId, Status.REMOVED, Duration.ZERO, null);
+            }
+        };
+        DjTeardown.Report report = new DjOrphanReaper(dir, "current", teardown).reap(client);
+        EasyMock.verify(client, cmd);
+        assertEquals("removed", ImmutableSet.of("a1", "a2"), removed);
+        assertEquals("outcomes", 2, report.outcomes.size());
+        assertFalse("stale lockfile deleted", Files.exists(DjSession.getLockfile(dir, "ended")));
+    }
+
+    private static Container container(String id, String sessionId) throws IOException {
+        Map<String, Object> json = ImmutableMap.of("Id", id, "Labels", ImmutableMap.of(
+                DjSession.LABEL_SESSION_ID, sessionId,
+                DjSession.LABEL_HOST, HOST,
+                DjSession.LABEL_PID, PID));
+        ObjectMapper mapper = new ObjectMapper();
+        return mapper.readValue(mapper.writeValueAsString(json), Container.class);
+    }
+}
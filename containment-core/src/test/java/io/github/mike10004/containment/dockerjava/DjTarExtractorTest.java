@@ -0,0 +1,200 @@
+package io.github.mike10004.containment.dockerjava;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DjTarExtractorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void extract_directory() throws Exception {
+        byte[] bigContent = new byte[DjTarExtractor.PARALLEL_WRITE_THRESHOLD * 2 + 3];
+        new Random(DjTarExtractorTest.class.getName().hashCode()).nextBytes(bigContent);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tos = new TarArchiveOutputStream(buffer)) {
+            tos.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+            putDirectory(tos, "reports/", 0755);
+            putDirectory(tos, "reports/sub/", 0700);
+            for (int i = 0; i < 50; i++) {
+                putFile(tos, "reports/sub/file" + i + ".txt", ("content " + i).getBytes(UTF_8), 0644);
+            }
+            putFile(tos, "reports/run.sh", "#!/bin/sh".getBytes(UTF_8), 0755);
+            putFile(tos, "reports/heap.hprof", bigContent, 0600);
+            TarArchiveEntry symlink = new TarArchiveEntry("reports/latest", TarArchiveEntry.LF_SYMLINK);
+            symlink.setLinkName("sub/file49.txt");
+            tos.putArchiveEntry(symlink);
+            tos.closeArchiveEntry();
+            TarArchiveEntry hardLink = new TarArchiveEntry("reports/copy.sh", TarArchiveEntry.LF_LINK);
+            hardLink.setLinkName("reports/run.sh");
+            tos.putArchiveEntry(hardLink);
+            tos.closeArchiveEntry();
+        }
+        Path destination = temporaryFolder.getRoot().toPath().resolve("pulled");
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            DjTarExtractor extractor = new DjTarExtractor(executor, DjTarExtractor.PARALLEL_WRITE_THRESHOLD);
+            try (TarArchiveInputStream in = new TarArchiveInputStream(new ByteArrayInputStream(buffer.toByteArray()))) {
+                extractor.extract(in, null, destination, false);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        for (int i = 0; i < 50; i++) {
+            assertEquals("content " + i, new String(Files.readAllBytes(destination.resolve("sub/file" + i + ".txt")), UTF_8));
+        }
+        assertArrayEquals("big file", bigContent, Files.readAllBytes(destination.resolve("heap.hprof")));
+        assertEquals("rwxr-xr-x", PosixFilePermissions.toString(Files.getPosixFilePermissions(destination.resolve("run.sh"))));
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(destination.resolve("sub"))));
+        assertTrue(Files.isSymbolicLink(destination.resolve("latest")));
+        assertEquals(Paths.get("sub/file49.txt"), Files.readSymbolicLink(destination.resolve("latest")));
+        assertEquals("#!/bin/sh", new String(Files.readAllBytes(destination.resolve("copy.sh")), UTF_8));
+    }
+
+    @Test
+    public void extract_singleFile() throws Exception {
+        byte[] archive = archive(tos -> putFile(tos, "db.sqlite", "data".getBytes(UTF_8), 0640));
+        Path destination = temporaryFolder.getRoot().toPath().resolve("a/b/copy.sqlite");
+        try (TarArchiveInputStream in = new TarArchiveInputStream(new ByteArrayInputStream(archive))) {
+            DjTarExtractor.getDefault().extract(in, null, destination, false);
+        }
+        assertEquals("data", new String(Files.readAllBytes(destination), UTF_8));
+    }
+
+    @Test
+    public void extract_rejectsEscape() throws Exception {
+        byte[] archive = archive(tos -> {
+            putDirectory(tos, "dir/", 0755);
+            putFile(tos, "dir/../../escaped.txt", "bad".getBytes(UTF_8), 0644);
+        });
+        Path destination = temporaryFolder.getRoot().toPath().resolve("x/dir");
+        try (TarArchiveInputStream in = new TarArchiveInputStream(new ByteArrayInputStream(archive))) {
+            DjTarExtractor.getDefault().extract(in, null, destination, false);
+            fail("should have thrown");
+        } catch (IOException expected) {
+        }
+        assertFalse(Files.exists(temporaryFolder.getRoot().toPath().resolve("escaped.txt")));
+    }
+
+    @Test
+    public void extract_rejectsEscapeBySymlink() throws Exception {
+        Path outside = temporaryFolder.newFolder("outside").toPath();
+        byte[] archive = archive(tos -> {
+            putDirectory(tos, "dir/", 0755);
+            TarArchiveEntry symlink = new TarArchiveEntry("dir/link", TarArchiveEntry.LF_SYMLINK);
+            symlink.setLinkName(outside.toString());
+            tos.putArchiveEntry(symlink);
+            tos.closeArchiveEntry();
+            putFile(tos, "dir/link/planted.txt", "bad".getBytes(UTF_8), 0644);
+        });
+        Path destination = temporaryFolder.getRoot().toPath().resolve("y/dir");
+        try (TarArchiveInputStream in = new TarArchiveInputStream(new ByteArrayInputStream(archive))) {
+            DjTarExtractor.getDefault().extract(in, null, destination, false);
+            fail("should have thrown");
+        } catch (IOException expected) {
+        }
+        assertFalse(Files.exists(outside.resolve("planted.txt")));
+    }
+
+    @Test
+    public void extract_rejectsDirectoryEscapeBySymlink() throws Exception {
+        Path outside = temporaryFolder.newFolder("elsewhere").toPath();
+        byte[] archive = archive(tos -> {
+            putDirectory(tos, "dir/", 0755);
+            TarArchiveEntry symlink = new TarArchiveEntry("dir/link", TarArchiveEntry.LF_SYMLINK);
+            symlink.setLinkName(outside.toString());
+            tos.putArchiveEntry(symlink);
+            tos.closeArchiveEntry();
+            putDirectory(tos, "dir/link/sub/", 0777);
+        });
+        Path destination = temporaryFolder.getRoot().toPath().resolve("z/dir");
+        try (TarArchiveInputStream in = new TarArchiveInputStream(new ByteArrayInputStream(archive))) {
+            DjTarExtractor.getDefault().extract(in, null, destination, false);
+            fail("should have thrown");
+        } catch (IOException expected) {
+        }
+        assertFalse(Files.exists(outside.resolve("sub")));
+    }
+
+    @Test
+    public void copyFirstFile_directory() throws Exception {
+        byte[] archive = archive(tos -> {
+            putDirectory(tos, "dir/", 0755);
+            putFile(tos, "dir/a.txt", "hello".getBytes(UTF_8), 0644);
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TarArchiveInputStream in = new TarArchiveInputStream(new ByteArrayInputStream(archive))) {
+            assertFalse(DjTarExtractor.copyFirstFile(in, null, out));
+        }
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    public void copyFirstFile() throws Exception {
+        byte[] archive = archive(tos -> {
+            putFile(tos, "a.txt", "hello".getBytes(UTF_8), 0644);
+            putFile(tos, "b.txt", "world".getBytes(UTF_8), 0644);
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TarArchiveInputStream in = new TarArchiveInputStream(new ByteArrayInputStream(archive))) {
+            assertTrue(DjTarExtractor.copyFirstFile(in, null, out));
+        }
+        assertEquals("hello", new String(out.toByteArray(), UTF_8));
+    }
+
+    @Test
+    public void toPermissions() {
+        assertEquals("rwxr-x--x", PosixFilePermissions.toString(DjTarExtractor.toPermissions(0100751)));
+    }
+
+    private interface ArchiveWriter {
+        void write(TarArchiveOutputStream tos) throws IOException;
+    }
+
+    private static byte[] archive(ArchiveWriter writer) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tos = new TarArchiveOutputStream(buffer)) {
+            writer.write(tos);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static void putDirectory(TarArchiveOutputStream tos, String name, int mode) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setMode(TarArchiveEntry.DEFAULT_DIR_MODE & ~0777 | mode);
+        tos.putArchiveEntry(entry);
+        tos.closeArchiveEntry();
+    }
+
+    private static void putFile(TarArchiveOutputStream tos, String name, byte[] content, int mode) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(content.length);
+        entry.setMode(TarArchiveEntry.DEFAULT_FILE_MODE & ~0777 | mode);
+        tos.putArchiveEntry(entry);
+        tos.write(content);
+        tos.closeArchiveEntry();
+    }
+}
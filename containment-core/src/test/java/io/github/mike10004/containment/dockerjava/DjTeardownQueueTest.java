@@ -0,0 +1,131 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.github.dockerjava.api.DockerClient;
+import com.google.common.collect.ImmutableSet;
+import io.github.mike10004.containment.ContainmentException;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DjTeardownQueueTest {
+
+    @Test
+    public void submit() throws Exception {
+        DjManualContainerMonitor monitor = new DjManualContainerMonitor();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String id = "container" + i;
+            monitor.created(id);
+            monitor.started(id);
+            ids.add(id);
+        }
+        CountDownLatch release = new CountDownLatch(1);
+        List<Set<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        DjTeardown teardown = new DjTeardown(4, Duration.ofSeconds(5)) {
+            @Override
+            public Report tearDown(DockerClient client, Collection<String> containerIds) {
+                batches.add(new HashSet<>(containerIds));
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return super.tearDown(client, containerIds);
+            }
+
+            @Override
+            protected Outcome remove(DockerClient client, String containerId) {
+                return new Outcome(containerId, Status.REMOVED, Duration.ZERO, null);
+            }
+        };
+        UnitTestTeardownQueue queue = new UnitTestTeardownQueue(monitor, teardown, 10);
+        CompletableFuture<DjTeardown.Outcome> first = queue.submit(ids.get(0));
+        while (batches.isEmpty()) {
+            Thread.sleep(10);
+        }
+        long start = System.nanoTime();
+        List<CompletableFuture<DjTeardown.Outcome>> futures = new ArrayList<>();
+        for (String id : ids.subList(1, ids.size())) {
+            futures.add(queue.submit(id));
+        }
+        assertTrue("submit is non-blocking", System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertSame("duplicate submission", futures.get(0), queue.submit(ids.get(1)));
+        assertFalse("not yet removed", first.isDone());
+        release.countDown();
+        assertTrue("drained", queue.awaitDrained(Duration.ofSeconds(5)));
+        for (CompletableFuture<DjTeardown.Outcome> future : futures) {
+            assertEquals(DjTeardown.Status.REMOVED, future.get().status);
+        }
+        assertEquals("batches", ImmutableSet.of(ids.get(0)), batches.get(0));
+        assertEquals("batches", ImmutableSet.copyOf(ids.subList(1, ids.size())), batches.get(1));
+        DockerClient client = EasyMock.createNiceMock(DockerClient.class);
+        assertEquals("monitor untracked removed containers", 0, monitor.tearDownAll(client, teardown).outcomes.size());
+        queue.close();
+    }
+
+    @Test
+    public void submit_backpressure() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        DjTeardown teardown = new DjTeardown(2, Duration.ofSeconds(5)) {
+            @Override
+            protected Outcome remove(DockerClient client, String containerId) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    return new Outcome(containerId, Status.FAILED, Duration.ZERO, e);
+                }
+                return new Outcome(containerId, Status.REMOVED, Duration.ZERO, null);
+            }
+        };
+        UnitTestTeardownQueue queue = new UnitTestTeardownQueue(new DjManualContainerMonitor(), teardown, 2);
+        queue.submit("a");
+        queue.submit("b");
+        CompletableFuture<CompletableFuture<DjTeardown.Outcome>> third = CompletableFuture.supplyAsync(() -> {
+            try {
+                return queue.submit("c");
+            } catch (ContainmentException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(250);
+        assertFalse("third submission blocked", third.isDone());
+        release.countDown();
+        DjTeardown.Outcome outcome = third.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        assertEquals(DjTeardown.Status.REMOVED, outcome.status);
+        queue.close();
+    }
+
+    @Test(expected = ContainmentException.class)
+    public void submit_closed() throws Exception {
+        UnitTestTeardownQueue queue = new UnitTestTeardownQueue(new DjManualContainerMonitor(), DjTeardown.defaults(), 1);
+        queue.close();
+        queue.submit("a");
+    }
+
+    private static class UnitTestTeardownQueue extends DjTeardownQueue {
+
+        public UnitTestTeardownQueue(DjContainerMonitor containerMonitor, DjTeardown teardown, int maxPending) {
+            super(() -> EasyMock.createNiceMock(DockerClient.class), containerMonitor, teardown, maxPending);
+        }
+
+        @Override
+        protected void addShutdownHookToRuntime(Runtime runtime, Thread thread) {
+            // no-op
+        }
+    }
+}
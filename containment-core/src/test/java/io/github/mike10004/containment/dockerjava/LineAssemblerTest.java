@@ -0,0 +1,74 @@
+package io.github.mike10004.containment.dockerjava;
+
+import org.junit.Test;
+
+import java.nio.charset.CharacterCodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+public class LineAssemblerTest {
+
+    @Test
+    public void feed_linesSpanningChunks() {
+        LineAssembler assembler = new LineAssembler(UTF_8);
+        List<String> lines = new ArrayList<>();
+        assembler.feed("foo\nba".getBytes(UTF_8), lines::add);
+        assertEquals(Arrays.asList("foo"), lines);
+        assembler.feed("r\r\nbaz".getBytes(UTF_8), lines::add);
+        assertEquals(Arrays.asList("foo", "bar"), lines);
+        assembler.finish(lines::add);
+        assertEquals(Arrays.asList("foo", "bar", "baz"), lines);
+    }
+
+    @Test
+    public void feed_multibyteCharacterSpanningChunks() {
+        byte[] bytes = "héllo ☃\n".getBytes(UTF_8);
+        for (int split = 1; split < bytes.length; split++) {
+            LineAssembler assembler = new LineAssembler(UTF_8);
+            List<String> lines = new ArrayList<>();
+            assembler.feed(Arrays.copyOfRange(bytes, 0, split), lines::add);
+            assembler.feed(Arrays.copyOfRange(bytes, split, bytes.length), lines::add);
+            assertEquals("split at " + split, Arrays.asList("héllo ☃"), lines);
+        }
+    }
+
+    @Test
+    public void feed_byteAtATime() {
+        byte[] bytes = "à la carte\nsecond über\n".getBytes(UTF_8);
+        LineAssembler assembler = new LineAssembler(UTF_8);
+        List<String> lines = new ArrayList<>();
+        for (byte b : bytes) {
+            assembler.feed(new byte[]{b}, lines::add);
+        }
+        assertEquals(Arrays.asList("à la carte", "second über"), lines);
+    }
+
+    @Test
+    public void feed_countsMatches() {
+        LineAssembler assembler = new LineAssembler(UTF_8);
+        int matches = assembler.feed("ok\nnope\nok\n".getBytes(UTF_8), "ok"::equals);
+        assertEquals(2, matches);
+    }
+
+    @Test
+    public void feed_longLineEmittedInPieces() {
+        LineAssembler assembler = new LineAssembler(UTF_8, 4, ignore -> {});
+        List<String> lines = new ArrayList<>();
+        assembler.feed("abcdefghij\n".getBytes(UTF_8), lines::add);
+        assertEquals(Arrays.asList("abcd", "efgh", "ij"), lines);
+    }
+
+    @Test
+    public void feed_malformed() {
+        List<CharacterCodingException> errors = new ArrayList<>();
+        LineAssembler assembler = new LineAssembler(UTF_8, LineAssembler.DEFAULT_MAX_LINE_LENGTH, errors::add);
+        List<String> lines = new ArrayList<>();
+        assembler.feed(new byte[]{'a', (byte) 0xff, 'b', '\n'}, lines::add);
+        assertEquals(Arrays.asList("a�b"), lines);
+        assertEquals("errors", 1, errors.size());
+    }
+}
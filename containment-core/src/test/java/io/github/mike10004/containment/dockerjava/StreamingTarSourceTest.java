@@ -0,0 +1,82 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StreamingTarSourceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void open() throws Exception {
+        Path fixtures = temporaryFolder.newFolder("fixtures").toPath();
+        Files.createDirectories(fixtures.resolve("db"));
+        Files.write(fixtures.resolve("db/schema.sql"), "create table foo;".getBytes(UTF_8));
+        Path script = Files.write(fixtures.resolve("load.sh"), "#!/bin/sh".getBytes(UTF_8));
+        Files.setPosixFilePermissions(script, PosixFilePermissions.fromString("rwxr-x---"));
+        byte[] streamed = new byte[3 * 1024 * 1024];
+        Arrays.fill(streamed, (byte) 'x');
+        ByteBuffer buffer = ByteBuffer.wrap("buffered".getBytes(UTF_8));
+        StreamingTarSource source = StreamingTarSource.builder()
+                .path(fixtures, "fixtures")
+                .stream("/data/big.bin", streamed.length, ByteSource.wrap(streamed))
+                .buffer("data/small.txt", buffer, 0600)
+                .compress(true)
+                .build();
+        for (int i = 0; i < 2; i++) {
+            Map<String, TarArchiveEntry> entries = new LinkedHashMap<>();
+            Map<String, byte[]> contents = new LinkedHashMap<>();
+            try (InputStream in = source.open();
+                 TarArchiveInputStream tin = new TarArchiveInputStream(new GzipCompressorInputStream(in))) {
+                TarArchiveEntry entry;
+                while ((entry = tin.getNextTarEntry()) != null) {
+                    entries.put(entry.getName(), entry);
+                    contents.put(entry.getName(), ByteStreams.toByteArray(tin));
+                }
+            }
+            assertEquals("entries", Arrays.asList("fixtures/", "fixtures/db/", "fixtures/db/schema.sql", "fixtures/load.sh", "data/big.bin", "data/small.txt"), Arrays.asList(entries.keySet().toArray()));
+            assertEquals("create table foo;", new String(contents.get("fixtures/db/schema.sql"), UTF_8));
+            assertEquals("mode", 0750, entries.get("fixtures/load.sh").getMode() & 0777);
+            assertArrayEquals(streamed, contents.get("data/big.bin"));
+            assertEquals("buffered", new String(contents.get("data/small.txt"), UTF_8));
+            assertEquals("mode", 0600, entries.get("data/small.txt").getMode() & 0777);
+        }
+        assertEquals("buffer position unchanged", 0, buffer.position());
+    }
+
+    @Test
+    public void open_sizeMismatch() throws Exception {
+        StreamingTarSource source = StreamingTarSource.builder()
+                .stream("short.bin", 100, ByteSource.wrap(new byte[10]))
+                .build();
+        try (InputStream in = source.open()) {
+            ByteStreams.exhaust(in);
+            fail("should have thrown");
+        } catch (IOException e) {
+            assertTrue("cause " + e.getCause(), e.getCause() instanceof IOException);
+        }
+    }
+}
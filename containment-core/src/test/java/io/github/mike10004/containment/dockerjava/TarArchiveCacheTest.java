@@ -0,0 +1,120 @@
+package io.github.mike10004.containment.dockerjava;
+
+import com.google.common.io.ByteStreams;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TarArchiveCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void directorySource() throws Exception {
+        File fixtures = temporaryFolder.newFolder("fixtures");
+        Files.createDirectories(fixtures.toPath().resolve("db"));
+        Files.write(fixtures.toPath().resolve("db/schema.sql"), "create table foo;".getBytes(UTF_8));
+        TarArchiveCache cache = new TarArchiveCache(temporaryFolder.newFolder("cache").toPath(), 1024 * 1024, false);
+        Map<String, String> contents = new HashMap<>();
+        try (InputStream in = cache.directorySource(fixtures).open();
+             TarArchiveInputStream tin = new TarArchiveInputStream(in)) {
+            TarArchiveEntry entry;
+            while ((entry = tin.getNextTarEntry()) != null) {
+                contents.put(entry.getName(), new String(ByteStreams.toByteArray(tin), UTF_8));
+            }
+        }
+        assertEquals("content", "create table foo;", contents.get("db/schema.sql"));
+    }
+
+    @Test
+    public void archive_hitAndMiss() throws Exception {
+        Path fixtures = temporaryFolder.newFolder("fixtures").toPath();
+        Path file = Files.write(fixtures.resolve("a.txt"), "hello".getBytes(UTF_8));
+        TarArchiveCache cache = new TarArchiveCache(temporaryFolder.newFolder("cache").toPath(), 1024 * 1024, false);
+        Path first = cache.store(fixtures.toFile());
+        FileTime created = Files.getLastModifiedTime(first);
+        Files.setLastModifiedTime(first, FileTime.fromMillis(created.toMillis() - 60000));
+        Path second = cache.store(fixtures.toFile());
+        assertEquals("hit", first, second);
+        assertTrue("last use recorded", Files.getLastModifiedTime(second).toMillis() > created.toMillis() - 60000);
+        Files.write(file, "hello, world".getBytes(UTF_8));
+        Path third = cache.store(fixtures.toFile());
+        assertNotEquals("miss after change", first, third);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long transferred = cache.transferTo(fixtures.toFile(), Channels.newChannel(out));
+        assertEquals("transferred", Files.size(third), transferred);
+        assertArrayEquals("bytes", Files.readAllBytes(third), out.toByteArray());
+    }
+
+    @Test
+    public void archive_recreatedAfterEviction() throws Exception {
+        Path fixtures = temporaryFolder.newFolder("fixtures").toPath();
+        Files.write(fixtures.resolve("a.txt"), "hello".getBytes(UTF_8));
+        TarArchiveCache cache = new TarArchiveCache(temporaryFolder.newFolder("cache").toPath(), 1024 * 1024, false);
+        Path stored = cache.store(fixtures.toFile());
+        byte[] expected = Files.readAllBytes(stored);
+        Files.delete(stored);
+        byte[] actual;
+        try (FileChannel channel = cache.archive(fixtures.toFile())) {
+            actual = ByteStreams.toByteArray(Channels.newInputStream(channel));
+        }
+        assertArrayEquals("bytes", expected, actual);
+        assertTrue("recreated", Files.exists(stored));
+    }
+
+    @Test
+    public void fingerprint_contentHash() throws Exception {
+        Path fixtures = temporaryFolder.newFolder("fixtures").toPath();
+        Path file = Files.write(fixtures.resolve("a.txt"), "abc".getBytes(UTF_8));
+        FileTime mtime = Files.getLastModifiedTime(file);
+        Path cacheDir = temporaryFolder.newFolder("cache").toPath();
+        TarArchiveCache metadataOnly = new TarArchiveCache(cacheDir, 1024, false);
+        TarArchiveCache withContent = new TarArchiveCache(cacheDir, 1024, true);
+        String metadataBefore = metadataOnly.fingerprint(fixtures), contentBefore = withContent.fingerprint(fixtures);
+        Files.write(file, "xyz".getBytes(UTF_8));
+        Files.setLastModifiedTime(file, mtime);
+        assertEquals("metadata-only fingerprint", metadataBefore, metadataOnly.fingerprint(fixtures));
+        assertNotEquals("content fingerprint", contentBefore, withContent.fingerprint(fixtures));
+    }
+
+    @Test
+    public void evict() throws Exception {
+        Path cacheDir = temporaryFolder.newFolder("cache").toPath();
+        Path[] fixtures = new Path[3];
+        for (int i = 0; i < fixtures.length; i++) {
+            fixtures[i] = temporaryFolder.newFolder("fixtures" + i).toPath();
+            Files.write(fixtures[i].resolve("file" + i + ".txt"), ("content " + i).getBytes(UTF_8));
+        }
+        long archiveSize = Files.size(new TarArchiveCache(temporaryFolder.newFolder("probe").toPath(), Long.MAX_VALUE, false).store(fixtures[0].toFile()));
+        TarArchiveCache cache = new TarArchiveCache(cacheDir, archiveSize * 2 + archiveSize / 2, false);
+        Path[] archives = new Path[fixtures.length];
+        for (int i = 0; i < archives.length; i++) {
+            archives[i] = cache.store(fixtures[i].toFile());
+            Files.setLastModifiedTime(archives[i], FileTime.fromMillis(System.currentTimeMillis() - (10 - i) * 1000L));
+        }
+        assertFalse("least recently used evicted", Files.exists(archives[0]));
+        assertTrue(Files.exists(archives[1]));
+        assertTrue(Files.exists(archives[2]));
+    }
+}
@@ -1,7 +1,11 @@
 package io.github.mike10004.containment.dockerjava;
 
+import com.google.common.io.ByteStreams;
 import com.google.common.io.CharSource;
 import io.github.mike10004.subprocess.ProcessResult;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import io.github.mike10004.subprocess.ScopedProcessTracker;
 import io.github.mike10004.subprocess.Subprocess;
 import org.junit.ClassRule;
@@ -11,21 +15,29 @@ import org.junit.rules.TemporaryFolder;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import static java.nio.charset.StandardCharsets.US_ASCII;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class TarArchivesTest {
 
@@ -75,6 +87,60 @@ public class TarArchivesTest {
         assertEntriesEqual(expected, tarFile);
     }
 
+    @Test
+    public void testPipeCompressed() throws Exception {
+        File root = tempdir.newFolder();
+        File bigFile = new File(root, "a/big.bin");
+        com.google.common.io.Files.createParentDirs(bigFile);
+        byte[] bigContent = new byte[3 * 1024 * 1024 + 17];
+        new Random(TarArchivesTest.class.getName().hashCode()).nextBytes(bigContent);
+        java.nio.file.Files.write(bigFile.toPath(), bigContent);
+        java.nio.file.Files.write(new File(root, "a/small.txt").toPath(), "small".getBytes(UTF_8));
+        java.nio.file.Files.write(new File(root, "skip.txt").toPath(), "skip".getBytes(UTF_8));
+        File skippedDir = new File(root, "skipdir");
+        assertTrue(skippedDir.mkdir());
+        java.nio.file.Files.write(new File(skippedDir, "x.txt").toPath(), "x".getBytes(UTF_8));
+        TarArchives.EntryFilter filter = new TarArchives.EntryFilter() {
+            @Override
+            public boolean isIncluded(String relativePath) {
+                return !relativePath.startsWith("skip");
+            }
+
+            @Override
+            public boolean isTraversable(String relativePath) {
+                return !"skipdir".equals(relativePath);
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        try (InputStream in = TarArchives.pipeDirectoryInCompressedTarArchive(root, filter, executor);
+             TarArchiveInputStream tin = new TarArchiveInputStream(new GzipCompressorInputStream(in))) {
+            TarArchiveEntry entry;
+            while ((entry = tin.getNextTarEntry()) != null) {
+                contents.put(entry.getName(), ByteStreams.toByteArray(tin));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals("entries", Arrays.asList("a/", "a/big.bin", "a/small.txt"), new ArrayList<>(contents.keySet()));
+        assertArrayEquals("big content", bigContent, contents.get("a/big.bin"));
+        assertEquals("small", new String(contents.get("a/small.txt"), UTF_8));
+    }
+
+    @Test
+    public void testPipeCompressed_failure() throws Exception {
+        File nonexistent = new File(tempdir.getRoot(), "nonexistent");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (InputStream in = TarArchives.pipeDirectoryInCompressedTarArchive(nonexistent, TarArchives.EntryFilter.includeAll(), executor)) {
+            ByteStreams.exhaust(in);
+            fail("should have thrown");
+        } catch (IOException e) {
+            assertTrue("cause " + e.getCause(), e.getCause() instanceof IOException);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     private static void assertEntriesEqual(File tarFile, String...expected) throws IOException, InterruptedException, TimeoutException {
         assertEntriesEqual(new HashSet<>(Arrays.asList(expected)), tarFile);
     }
@@ -28,7 +28,7 @@ public class DockerExecExecutorTest {
         try (ContainerCreator runner = new DjContainerCreator(TestDockerManager.getInstance());
              StartableContainer runnable = runner.create(parametry)) {
             try (StartedContainer container = runnable.start()) {
-                ContainerExecutor executor = container.executor();
+                ContainerExecutor executor = new DockerExecExecutor(container.info().id());
                 result = executor.execute(UTF_8, "echo", "hello, world");
             }
         }
@@ -49,7 +49,7 @@ public class DockerExecExecutorTest {
             try (StartedContainer container = runnable.start()) {
                 Map<String, String> processEnvironment = new HashMap<>();
                 processEnvironment.put("FOO", "bar");
-                ContainerExecutor executor = container.executor();
+                ContainerExecutor executor = new DockerExecExecutor(container.info().id());
                 result = executor.execute(processEnvironment, UTF_8, "printenv");
             }
         }
@@ -0,0 +1,117 @@
+package io.github.mike10004.containment.subprocess;
+
+import io.github.mike10004.containment.ContainerCopier;
+import io.github.mike10004.containment.dockerjava.TarArchives;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the streaming paths of the copier, with a stub in place of the {@code docker} executable.
+ * The stub stores the archive it reads from standard input, and writes a predefined archive
+ * to standard output, or fails if the source path is {@code /missing}.
+ */
+public class DockerSubprocessCopierTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File uploaded;
+    private File downloadable;
+    private DockerSubprocessCopier copier;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue("requires sh", new File("/bin/sh").canExecute());
+        File dir = temporaryFolder.newFolder();
+        uploaded = new File(dir, "uploaded.tar");
+        downloadable = new File(dir, "downloadable.tar");
+        String script = "#!/bin/sh\n" +
+                "eval last=\\${$#}\n" +
+                "if [ \"$2\" = - ]; then cat > '" + uploaded + "'; exit 0; fi\n" +
+                "case \"$*\" in *:/missing*) echo 'Error: Could not find the file /missing' >&2; exit 1 ;; esac\n" +
+                "[ \"$last\" = - ] && exec cat '" + downloadable + "'\n" +
+                "exit 2\n";
+        Path stub = Files.write(new File(dir, "docker").toPath(), script.getBytes(UTF_8));
+        Files.setPosixFilePermissions(stub, PosixFilePermissions.fromString("rwx------"));
+        copier = new DockerSubprocessCopier(stub.toString(), "abcdef", 10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void unpackTarArchiveToContainer() throws Exception {
+        byte[] archive = createArchive(Collections.singletonMap("data/a.txt", Optional.of("hello".getBytes(UTF_8))));
+        copier.unpackTarArchiveToContainer(() -> new ByteArrayInputStream(archive), "/tmp");
+        assertArrayEquals("archive received on stdin", archive, Files.readAllBytes(uploaded.toPath()));
+    }
+
+    @Test
+    public void copyFromContainer_stream() throws Exception {
+        Files.write(downloadable.toPath(), createArchive(Collections.singletonMap("a.txt", Optional.of("hello".getBytes(UTF_8)))));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        copier.copyFromContainer("/a.txt", out);
+        assertEquals("hello", new String(out.toByteArray(), UTF_8));
+    }
+
+    @Test
+    public void copyFromContainer_directory() throws Exception {
+        Map<String, Optional<byte[]>> entries = new LinkedHashMap<>();
+        entries.put("dir/", Optional.empty());
+        entries.put("dir/first.txt", Optional.of("first".getBytes(UTF_8)));
+        entries.put("dir/second.txt", Optional.of("second".getBytes(UTF_8)));
+        Files.write(downloadable.toPath(), createArchive(entries));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            copier.copyFromContainer("/dir", out);
+            fail("should have thrown");
+        } catch (ContainerCopier.DockerCopyException e) {
+            assertTrue("message: " + e.getMessage(), e.getMessage().contains("not a regular file"));
+        }
+        assertEquals("bytes copied", 0, out.size());
+    }
+
+    @Test
+    public void copyArchiveFromContainer() throws Exception {
+        byte[] archive = createArchive(Collections.singletonMap("a.txt", Optional.of("abc".getBytes(UTF_8))));
+        Files.write(downloadable.toPath(), archive);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        copier.copyArchiveFromContainer("/a.txt", EnumSet.noneOf(ContainerCopier.Option.class), out);
+        assertArrayEquals(archive, out.toByteArray());
+    }
+
+    @Test
+    public void copyFromContainer_missing() throws Exception {
+        try {
+            copier.copyFromContainer("/missing", new ByteArrayOutputStream());
+            fail("should have thrown");
+        } catch (ContainerCopier.DockerCopyException e) {
+            assertTrue("message includes stderr: " + e.getMessage(), e.getMessage().contains("Could not find the file"));
+        }
+    }
+
+    private static byte[] createArchive(Map<String, Optional<byte[]>> entries) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TarArchives.packItemsInArchive(entries, out);
+        return out.toByteArray();
+    }
+}
@@ -2,15 +2,22 @@ package io.github.mike10004.containment.lifecycle;
 
 import io.github.mike10004.containment.ContainerCreator;
 import io.github.mike10004.containment.ContainerParametry;
+import io.github.mike10004.containment.ContainmentException;
 import io.github.mike10004.containment.RunningContainer;
 import io.github.mike10004.containment.StartableContainer;
 import io.github.mike10004.containment.StartedContainer;
+import io.github.mike10004.containment.dockerjava.DjClientRegistry;
 import io.github.mike10004.containment.dockerjava.DjContainerCreator;
 import io.github.mike10004.containment.dockerjava.DjManualContainerMonitor;
+import io.github.mike10004.containment.dockerjava.DjStartedContainer;
 import io.github.mike10004.containment.dockerjava.DjShutdownHookContainerMonitor;
-import io.github.mike10004.containment.dockerjava.DockerClientBuilder;
 
+import javax.annotation.Nullable;
+import java.util.List;
 import java.util.StringJoiner;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static java.util.Objects.requireNonNull;
 
@@ -65,6 +72,63 @@ public class ContainerLifecycles {
         }
     }
 
+    /**
+     * Stage that reports invalidation when the container started by an inner stage dies.
+     * Only containers that publish container events, such as those created by a
+     * {@link DjContainerCreator} constructed from a docker manager, are watched, and only
+     * if an invalidation listener has been added before the stage is commissioned.
+     */
+    private static class DeathWatchingStage<R, P> implements LifecycleStage<R, P>, InvalidationSource {
+
+        private final LifecycleStage<R, P> innerStage;
+        private final Function<? super P, ? extends StartedContainer> containerGetter;
+        private final List<Consumer<? super Throwable>> invalidationListeners;
+        @Nullable
+        private volatile StartedContainer watched;
+
+        public DeathWatchingStage(LifecycleStage<R, P> innerStage, Function<? super P, ? extends StartedContainer> containerGetter) {
+            this.innerStage = requireNonNull(innerStage);
+            this.containerGetter = requireNonNull(containerGetter);
+            invalidationListeners = new CopyOnWriteArrayList<>();
+        }
+
+        @Override
+        public void addInvalidationListener(Consumer<? super Throwable> listener) {
+            invalidationListeners.add(requireNonNull(listener));
+        }
+
+        @Override
+        public P commission(R requirement) throws Exception {
+            P commissioned = innerStage.commission(requirement);
+            StartedContainer container = containerGetter.apply(commissioned);
+            if (!invalidationListeners.isEmpty() && container instanceof DjStartedContainer) {
+                watched = container;
+                ((DjStartedContainer) container).addDeathListener(event -> {
+                    if (watched != container) {
+                        // the death of a container from an earlier commissioning is stale news
+                        return;
+                    }
+                    ContainmentException cause = new ContainmentException("container is no longer running: " + event);
+                    for (Consumer<? super Throwable> listener : invalidationListeners) {
+                        listener.accept(cause);
+                    }
+                });
+            }
+            return commissioned;
+        }
+
+        @Override
+        public void decommission() {
+            watched = null;
+            innerStage.decommission();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("DeathWatchingStage[%s]", innerStage);
+        }
+    }
+
     private static class ActionStageResult<C, T> {
 
         public final C container;
@@ -153,7 +217,7 @@ public class ContainerLifecycles {
      * @return a new builder
      */
     public static PreCreate builder(ContainerCreatorFactory ctor) {
-        return new PreCreateImpl(ctor);
+        return new PreCreateImpl(ctor, null);
     }
 
     /**
@@ -175,7 +239,7 @@ public class ContainerLifecycles {
      */
     public static PreCreate builderOfLifecyclesOfUnmanagedContainers() {
         ContainerCreatorFactory ctor = new GlobalContainerCreatorFactory(DjContainerCreator::new, clientConfig -> new DjManualContainerMonitor());
-        return new PreCreateImpl(ctor);
+        return new PreCreateImpl(ctor, defaultImagePrefetcher());
     }
 
     /**
@@ -186,8 +250,28 @@ public class ContainerLifecycles {
      * @return a pre-create service
      */
     public static PreCreate builderOfLifecyclesOfGloballyManagedContainers() {
-        ContainerCreatorFactory ctor = new LocalContainerCreatorFactory(DjContainerCreator::new, clientConfig -> new DjShutdownHookContainerMonitor(() -> DockerClientBuilder.getInstance(clientConfig).build()));
-        return new PreCreateImpl(ctor);
+        return new PreCreateImpl(globallyManagedContainerCreatorFactory(), defaultImagePrefetcher());
+    }
+
+    @Nullable
+    private static ImagePrefetcher defaultImagePrefetcher() {
+        return ImagePrefetcher.isEnabled() ? ImagePrefetcher.getDefault() : null;
+    }
+
+    static ContainerCreatorFactory globallyManagedContainerCreatorFactory() {
+        return new LocalContainerCreatorFactory(DjContainerCreator::new, clientConfig -> new DjShutdownHookContainerMonitor(() -> DjClientRegistry.getDefault().acquire(clientConfig)));
+    }
+
+    /**
+     * Returns a service that can be used to build lifecycles of containers leased from a pool.
+     * Decommissioning such a lifecycle returns the container to the pool instead of
+     * stopping and removing it.
+     * @param pool container pool
+     * @return a pre-create service
+     * @see ContainerPool
+     */
+    public static PreCreate builderOfLifecyclesOfPooledContainers(ContainerPool pool) {
+        return builder(pool);
     }
 
     /**
@@ -241,12 +325,19 @@ public class ContainerLifecycles {
 
     private static class PreCreateImpl extends BuilderBase<ContainerCreator> implements PreCreate {
 
-        public PreCreateImpl(ContainerCreatorFactory ctor) {
+        @Nullable
+        private final ImagePrefetcher imagePrefetcher;
+
+        public PreCreateImpl(ContainerCreatorFactory ctor, @Nullable ImagePrefetcher imagePrefetcher) {
             super(LifecycleStack.startingAt(new ContainerCreatorStage(ctor::instantiate)));
+            this.imagePrefetcher = imagePrefetcher;
         }
 
         @Override
         public PreStartInitial creating(ContainerParametry containerParametry) {
+            if (imagePrefetcher != null) {
+                imagePrefetcher.register(containerParametry);
+            }
             return new PreStartInitialImpl(stacker.andThen(new StartableContainerStage(containerParametry)));
         }
     }
@@ -268,7 +359,7 @@ public class ContainerLifecycles {
                 }
             };
             DecoupledLifecycleStage.Decommissioner<PostStartResult<T>> tDecommissioner = AutoCloseableDecommissioner.byTransform(postStartResult -> postStartResult.container);
-            return new DecoupledLifecycleStage<>(tCommissioner, tDecommissioner);
+            return new DeathWatchingStage<>(new DecoupledLifecycleStage<>(tCommissioner, tDecommissioner), postStartResult -> postStartResult.container);
         }
 
         protected static LifecycleStage<StartableContainer, PreStartResult<Void>> transitionStartableToPre() {
@@ -338,7 +429,7 @@ public class ContainerLifecycles {
 
         @Override
         public Lifecycle<RunningContainer> finishWithContainer() {
-            return stacker.andThen(new SimpleStartedContainerStage()).toSequence();
+            return stacker.andThen(new DeathWatchingStage<>(new SimpleStartedContainerStage(), StartedContainer.class::cast)).toSequence();
         }
     }
 
@@ -0,0 +1,95 @@
+package io.github.mike10004.containment.lifecycle;
+
+import io.github.mike10004.containment.ContainerLogBuffer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.StringJoiner;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Static utility methods that integrate {@link ContainerLogBuffer} instances with container lifecycles.
+ *
+ * <p>For example, to retain the recent output of a container that lives until JVM
+ * termination, and to dump it if commissioning fails:</p>
+ * <pre>
+ *     ContainerLogBuffer buffer = ContainerLogBuffer.allocate(64 * 1024);
+ *     Lifecycle&lt;RunningContainer&gt; lifecycle = ContainerLifecycles.builderOfLifecyclesOfGloballyManagedContainers()
+ *             .creating(parametry)
+ *             .runPost(ContainerLogBuffering.attaching(buffer))
+ *             .finishWithContainer();
+ *     LifecycledResource&lt;RunningContainer&gt; resource = LifecycledResource.builder()
+ *             .buildResourceDecommissionedOnJvmTermination(
+ *                     ContainerLogBuffering.dumpingOnFailure(lifecycle, buffer, dumpDir));
+ * </pre>
+ */
+public class ContainerLogBuffering {
+
+    private ContainerLogBuffering() {}
+
+    /**
+     * Returns an action that attaches a buffer to the logs of a started container.
+     * @param buffer the buffer
+     * @return a post-start action
+     */
+    public static ContainerPostStartRunnable attaching(ContainerLogBuffer buffer) {
+        requireNonNull(buffer, "buffer");
+        return container -> buffer.attach(container.logs());
+    }
+
+    /**
+     * Returns a lifecycle that dumps the contents of a buffer to a directory if
+     * commissioning the given lifecycle fails. The exception thrown by the
+     * inner lifecycle is rethrown; an exception thrown while dumping is added to
+     * it as a suppressed exception.
+     * @param lifecycle the inner lifecycle
+     * @param buffer the buffer
+     * @param directory directory where log files are written
+     * @param <D> resource type
+     * @return a new lifecycle
+     */
+    public static <D> Lifecycle<D> dumpingOnFailure(Lifecycle<D> lifecycle, ContainerLogBuffer buffer, Path directory) {
+        return new DumpingLifecycle<>(lifecycle, buffer, directory);
+    }
+
+    private static class DumpingLifecycle<D> implements Lifecycle<D> {
+
+        private final Lifecycle<D> inner;
+        private final ContainerLogBuffer buffer;
+        private final Path directory;
+
+        public DumpingLifecycle(Lifecycle<D> inner, ContainerLogBuffer buffer, Path directory) {
+            this.inner = requireNonNull(inner, "inner");
+            this.buffer = requireNonNull(buffer, "buffer");
+            this.directory = requireNonNull(directory, "directory");
+        }
+
+        @Override
+        public D commission() throws Exception {
+            try {
+                return inner.commission();
+            } catch (Exception e) {
+                try {
+                    buffer.dump(directory, String.format("container-logs-%d", System.currentTimeMillis()));
+                } catch (IOException dumpException) {
+                    e.addSuppressed(dumpException);
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public void decommission() {
+            inner.decommission();
+        }
+
+        @Override
+        public String toString() {
+            return new StringJoiner(", ", DumpingLifecycle.class.getSimpleName() + "[", "]")
+                    .add("inner=" + inner)
+                    .add("directory=" + directory)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,753 @@
+package io.github.mike10004.containment.lifecycle;
+
+import io.github.mike10004.containment.BindMount;
+import io.github.mike10004.containment.ContainerCopier;
+import io.github.mike10004.containment.ContainerCreator;
+import io.github.mike10004.containment.ContainerExecutor;
+import io.github.mike10004.containment.ContainerInfo;
+import io.github.mike10004.containment.ContainerInspector;
+import io.github.mike10004.containment.ContainerLogFollower;
+import io.github.mike10004.containment.ContainerParametry;
+import io.github.mike10004.containment.ContainerSubprocessResult;
+import io.github.mike10004.containment.ContainmentException;
+import io.github.mike10004.containment.ImageSpecifier;
+import io.github.mike10004.containment.RunningContainer;
+import io.github.mike10004.containment.StartableContainer;
+import io.github.mike10004.containment.StartedContainer;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Pool of warm containers. The pool keeps a number of created-and-started containers
+ * for each distinct set of container parameters and hands them out as leases.
+ * Because this class implements {@link ContainerCreatorFactory}, a pool can be passed to
+ * {@link ContainerLifecycles#builder(ContainerCreatorFactory)} to build lifecycles of pooled
+ * containers.
+ *
+ * <p>A lease is obtained by creating a container with a creator instantiated by this pool.
+ * The container returned is already running; starting it just hands over the lease.
+ * Closing a leased container returns it to the pool. If a {@link ResetHook} is
+ * defined, the container is reset and kept idle for reuse; otherwise, or if the reset fails,
+ * the container is destroyed and replaced in the background.</p>
+ *
+ * <p>Idle containers are only kept for parameter sets that have been requested at least once
+ * or that were {@link #prime(ContainerParametry) primed}. A background thread tops up each
+ * parameter set's idle containers to the minimum idle count. Closing the pool destroys
+ * all idle containers and closes the underlying container creator.</p>
+ */
+public class ContainerPool implements ContainerCreatorFactory, AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(ContainerPool.class.getName());
+
+    private final ContainerCreatorFactory creatorFactory;
+    private final int minIdle;
+    private final int maxIdle;
+    @Nullable
+    private final ResetHook resetHook;
+    private final Map<ParametryKey, Partition> partitions;
+    private final ScheduledExecutorService refillService;
+    private final AtomicBoolean closed;
+    private final Counters counters;
+    private final Object creatorLock = new Object();
+    @Nullable
+    private volatile ContainerCreator creator;
+
+    private ContainerPool(Builder builder) {
+        this.creatorFactory = requireNonNull(builder.creatorFactory);
+        this.minIdle = builder.minIdle;
+        this.maxIdle = builder.maxIdle;
+        this.resetHook = builder.resetHook;
+        partitions = new ConcurrentHashMap<>();
+        closed = new AtomicBoolean(false);
+        counters = new Counters();
+        refillService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ContainerPool-refill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long refillIntervalMs = builder.refillInterval.toMillis();
+        refillService.scheduleWithFixedDelay(this::refillAll, refillIntervalMs, refillIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new builder of a pool whose containers are created by creators
+     * from the given factory.
+     * @param creatorFactory factory of the creator of pooled containers
+     * @return a new builder
+     */
+    public static Builder builder(ContainerCreatorFactory creatorFactory) {
+        return new Builder(creatorFactory);
+    }
+
+    /**
+     * Creates a new builder of a pool of globally-managed containers. A JVM shutdown hook
+     * cleans up any pooled containers that remain when the JVM terminates.
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return builder(ContainerLifecycles.globallyManagedContainerCreatorFactory());
+    }
+
+    /**
+     * Interface of a service that resets a container's state so that it may be leased again.
+     */
+    public interface ResetHook {
+
+        /**
+         * Resets the container.
+         * @param container the container
+         * @return true if the container may be reused; false if it should be destroyed
+         * @throws Exception on error; the container is destroyed
+         */
+        boolean reset(RunningContainer container) throws Exception;
+
+        /**
+         * Returns a hook that executes a command in the container and deems the reset
+         * successful if the exit code is zero.
+         * @param executable executable
+         * @param args arguments
+         * @return a new hook instance
+         */
+        static ResetHook exec(String executable, String...args) {
+            requireNonNull(executable, "executable");
+            return container -> {
+                ContainerSubprocessResult<String> result = container.executor().execute(executable, args);
+                return result.exitCode() == 0;
+            };
+        }
+    }
+
+    /**
+     * Returns a container creator whose containers are leased from this pool.
+     * Closing the creator does not close the pool.
+     * @return a creator
+     */
+    @Override
+    public ContainerCreator instantiate() {
+        return new PooledContainerCreator();
+    }
+
+    /**
+     * Registers a parameter set with this pool, so that the background thread
+     * starts creating idle containers for it before the first lease is requested.
+     * @param parametry container parameters
+     */
+    public void prime(ContainerParametry parametry) {
+        checkNotClosed();
+        partitionFor(parametry);
+        scheduleRefill(this::refillAll);
+    }
+
+    private Partition partitionFor(ContainerParametry parametry) {
+        return partitions.computeIfAbsent(ParametryKey.of(parametry), key -> new Partition(parametry));
+    }
+
+    private void checkNotClosed() {
+        if (closed.get()) {
+            throw new IllegalStateException("pool is closed");
+        }
+    }
+
+    private ContainerCreator creator() throws ContainmentException {
+        ContainerCreator c = creator;
+        if (c == null) {
+            synchronized (creatorLock) {
+                c = creator;
+                if (c == null) {
+                    c = creatorFactory.instantiate();
+                    creator = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    private PooledItem createItem(Partition partition, Consumer<? super String> warningListener) throws ContainmentException {
+        StartableContainer startable = creator().create(partition.parametry, warningListener);
+        StartedContainer started;
+        try {
+            started = startable.start();
+        } catch (ContainmentException | RuntimeException e) {
+            closeQuietly(startable);
+            throw e;
+        }
+        counters.created.incrementAndGet();
+        return new PooledItem(partition, startable, started);
+    }
+
+    private PooledItem acquire(ContainerParametry parametry, Consumer<? super String> warningListener) throws ContainmentException {
+        checkNotClosed();
+        long start = System.nanoTime();
+        Partition partition = partitionFor(parametry);
+        PooledItem item = partition.idle.pollFirst();
+        try {
+            if (item != null) {
+                counters.hits.incrementAndGet();
+            } else {
+                counters.misses.incrementAndGet();
+                item = createItem(partition, warningListener);
+            }
+        } finally {
+            long waitNanos = System.nanoTime() - start;
+            counters.waitNanos.addAndGet(waitNanos);
+            counters.maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
+        partition.leased.incrementAndGet();
+        scheduleRefill(() -> refill(partition));
+        return item;
+    }
+
+    private void release(PooledItem item) {
+        Partition partition = item.partition;
+        partition.leased.decrementAndGet();
+        if (closed.get() || resetHook == null) {
+            destroy(item);
+            return;
+        }
+        boolean reusable;
+        try {
+            reusable = resetHook.reset(item.started);
+        } catch (Exception e) {
+            log.log(Level.FINE, "reset failed on " + item.info().id(), e);
+            reusable = false;
+        }
+        if (reusable && partition.offerIdle(item, maxIdle, true)) {
+            counters.recycled.incrementAndGet();
+        } else {
+            destroy(item);
+        }
+    }
+
+    private void destroy(PooledItem item) {
+        closeQuietly(item.started);
+        closeQuietly(item.startable);
+        counters.destroyed.incrementAndGet();
+    }
+
+    private static void closeQuietly(AutoCloseable resource) {
+        try {
+            resource.close();
+        } catch (Exception e) {
+            log.log(Level.WARNING, "failed to close " + resource, e);
+        }
+    }
+
+    private void scheduleRefill(Runnable task) {
+        try {
+            refillService.execute(task);
+        } catch (RejectedExecutionException ignore) {
+            // pool was closed concurrently
+        }
+    }
+
+    private void refillAll() {
+        for (Partition partition : partitions.values()) {
+            refill(partition);
+        }
+    }
+
+    private void refill(Partition partition) {
+        while (!closed.get() && partition.idle.size() < minIdle) {
+            PooledItem item;
+            try {
+                item = createItem(partition, ignore -> {});
+            } catch (ContainmentException | RuntimeException e) {
+                counters.refillFailures.incrementAndGet();
+                log.log(Level.WARNING, "failed to create idle container for " + partition.parametry.image(), e);
+                return;
+            }
+            if (closed.get() || !partition.offerIdle(item, maxIdle, false)) {
+                destroy(item);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of this pool's statistics.
+     * @return statistics
+     */
+    public Stats stats() {
+        int idle = 0, leased = 0;
+        for (Partition partition : partitions.values()) {
+            idle += partition.idle.size();
+            leased += partition.leased.get();
+        }
+        return new Stats(counters.hits.get(), counters.misses.get(), counters.waitNanos.get(), counters.maxWaitNanos.get(),
+                counters.created.get(), counters.recycled.get(), counters.destroyed.get(), counters.refillFailures.get(),
+                idle, leased);
+    }
+
+    /**
+     * Closes this pool. Idle containers are destroyed, and containers currently leased are
+     * destroyed when they are returned.
+     * @throws ContainmentException if closing the underlying creator fails
+     */
+    @Override
+    public void close() throws ContainmentException {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        refillService.shutdown();
+        try {
+            refillService.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Partition partition : partitions.values()) {
+            PooledItem item;
+            while ((item = partition.idle.pollFirst()) != null) {
+                destroy(item);
+            }
+        }
+        ContainerCreator c;
+        synchronized (creatorLock) {
+            c = creator;
+            creator = null;
+        }
+        if (c != null) {
+            c.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", ContainerPool.class.getSimpleName() + "[", "]")
+                .add("minIdle=" + minIdle)
+                .add("maxIdle=" + maxIdle)
+                .add("partitions=" + partitions.size())
+                .add("closed=" + closed.get())
+                .toString();
+    }
+
+    /**
+     * Value class that represents a snapshot of pool statistics.
+     */
+    public static final class Stats {
+
+        /**
+         * Number of leases satisfied by an idle container.
+         */
+        public final long hits;
+
+        /**
+         * Number of leases that required a container to be created on demand.
+         */
+        public final long misses;
+
+        /**
+         * Total time spent by callers waiting for leases, in nanoseconds.
+         */
+        public final long totalWaitNanos;
+
+        /**
+         * Maximum time a single caller waited for a lease, in nanoseconds.
+         */
+        public final long maxWaitNanos;
+
+        /**
+         * Number of containers created and started by the pool.
+         */
+        public final long created;
+
+        /**
+         * Number of returned containers that were reset and kept for reuse.
+         */
+        public final long recycled;
+
+        /**
+         * Number of containers destroyed by the pool.
+         */
+        public final long destroyed;
+
+        /**
+         * Number of failed attempts to create an idle container in the background.
+         */
+        public final long refillFailures;
+
+        /**
+         * Number of idle containers at the time of the snapshot.
+         */
+        public final int idle;
+
+        /**
+         * Number of leased containers at the time of the snapshot.
+         */
+        public final int leased;
+
+        private Stats(long hits, long misses, long totalWaitNanos, long maxWaitNanos, long created, long recycled, long destroyed, long refillFailures, int idle, int leased) {
+            this.hits = hits;
+            this.misses = misses;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.created = created;
+            this.recycled = recycled;
+            this.destroyed = destroyed;
+            this.refillFailures = refillFailures;
+            this.idle = idle;
+            this.leased = leased;
+        }
+
+        /**
+         * Returns the fraction of leases satisfied by an idle container.
+         * @return hit rate, or zero if no leases have been requested
+         */
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0d : (double) hits / total;
+        }
+
+        /**
+         * Returns the mean time callers waited for a lease.
+         * @return mean wait time
+         */
+        public Duration meanWait() {
+            long total = hits + misses;
+            return Duration.ofNanos(total == 0 ? 0 : totalWaitNanos / total);
+        }
+
+        @Override
+        public String toString() {
+            return new StringJoiner(", ", Stats.class.getSimpleName() + "[", "]")
+                    .add("hits=" + hits)
+                    .add("misses=" + misses)
+                    .add("hitRate=" + String.format("%.3f", hitRate()))
+                    .add("meanWait=" + meanWait())
+                    .add("maxWait=" + Duration.ofNanos(maxWaitNanos))
+                    .add("created=" + created)
+                    .add("recycled=" + recycled)
+                    .add("destroyed=" + destroyed)
+                    .add("refillFailures=" + refillFailures)
+                    .add("idle=" + idle)
+                    .add("leased=" + leased)
+                    .toString();
+        }
+    }
+
+    /**
+     * Builder of pool instances.
+     */
+    public static final class Builder {
+
+        private final ContainerCreatorFactory creatorFactory;
+        private int minIdle = 1;
+        private int maxIdle = 4;
+        private Duration refillInterval = Duration.ofSeconds(1);
+        @Nullable
+        private ResetHook resetHook;
+
+        private Builder(ContainerCreatorFactory creatorFactory) {
+            this.creatorFactory = requireNonNull(creatorFactory, "creatorFactory");
+        }
+
+        /**
+         * Sets the number of idle containers the background thread maintains for each parameter set.
+         * @param minIdle minimum idle count
+         * @return this builder instance
+         */
+        public Builder minIdle(int minIdle) {
+            checkArgument(minIdle >= 0, "minIdle must be nonnegative");
+            this.minIdle = minIdle;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of idle containers kept for each parameter set.
+         * Containers returned to a partition that is full are destroyed.
+         * @param maxIdle maximum idle count
+         * @return this builder instance
+         */
+        public Builder maxIdle(int maxIdle) {
+            checkArgument(maxIdle >= 0, "maxIdle must be nonnegative");
+            this.maxIdle = maxIdle;
+            return this;
+        }
+
+        /**
+         * Sets the delay between runs of the background refill task.
+         * @param refillInterval interval
+         * @return this builder instance
+         */
+        public Builder refillInterval(Duration refillInterval) {
+            requireNonNull(refillInterval, "refillInterval");
+            checkArgument(!refillInterval.isNegative() && !refillInterval.isZero(), "refillInterval must be positive");
+            this.refillInterval = refillInterval;
+            return this;
+        }
+
+        /**
+         * Sets the hook that resets a returned container so that it can be leased again.
+         * If no hook is set, returned containers are always destroyed.
+         * @param resetHook reset hook
+         * @return this builder instance
+         */
+        public Builder recycleWith(ResetHook resetHook) {
+            this.resetHook = requireNonNull(resetHook, "resetHook");
+            return this;
+        }
+
+        /**
+         * Builds the pool. The pool's background refill thread is started immediately.
+         * @return a new pool
+         */
+        public ContainerPool build() {
+            checkArgument(minIdle <= maxIdle, "minIdle must not exceed maxIdle");
+            return new ContainerPool(this);
+        }
+    }
+
+    private static final class Counters {
+        public final AtomicLong hits = new AtomicLong();
+        public final AtomicLong misses = new AtomicLong();
+        public final AtomicLong waitNanos = new AtomicLong();
+        public final AtomicLong maxWaitNanos = new AtomicLong();
+        public final AtomicLong created = new AtomicLong();
+        public final AtomicLong recycled = new AtomicLong();
+        public final AtomicLong destroyed = new AtomicLong();
+        public final AtomicLong refillFailures = new AtomicLong();
+    }
+
+    private static final class Partition {
+
+        public final ContainerParametry parametry;
+        public final ConcurrentLinkedDeque<PooledItem> idle;
+        public final AtomicInteger leased;
+        private final Object idleLock = new Object();
+
+        private Partition(ContainerParametry parametry) {
+            this.parametry = requireNonNull(parametry);
+            idle = new ConcurrentLinkedDeque<>();
+            leased = new AtomicInteger();
+        }
+
+        /**
+         * Adds an item to the idle deque unless the deque already holds the maximum.
+         * The size check and the addition are atomic with respect to other offers.
+         * @param item the item
+         * @param maxIdle maximum number of idle items
+         * @param first true to add at the head, false to add at the tail
+         * @return true if the item was added
+         */
+        public boolean offerIdle(PooledItem item, int maxIdle, boolean first) {
+            synchronized (idleLock) {
+                if (idle.size() >= maxIdle) {
+                    return false;
+                }
+                if (first) {
+                    idle.offerFirst(item);
+                } else {
+                    idle.offerLast(item);
+                }
+                return true;
+            }
+        }
+    }
+
+    private static final class PooledItem {
+
+        public final Partition partition;
+        public final StartableContainer startable;
+        public final StartedContainer started;
+
+        private PooledItem(Partition partition, StartableContainer startable, StartedContainer started) {
+            this.partition = partition;
+            this.startable = startable;
+            this.started = started;
+        }
+
+        public ContainerInfo info() {
+            return started.info();
+        }
+    }
+
+    /**
+     * Value class that canonicalizes a parameter set, so that parameter sets that
+     * would produce equivalent containers map to the same partition.
+     */
+    static final class ParametryKey {
+
+        private final ImageSpecifier image;
+        private final List<String> command;
+        private final ContainerParametry.CommandType commandType;
+        private final List<String> bindablePorts;
+        private final List<BindMount> bindMounts;
+        private final List<String> tmpfsMounts;
+        private final Map<String, String> labels;
+        private final Map<String, String> environment;
+        private final boolean disableAutoRemoveOnStop;
+
+        private ParametryKey(ContainerParametry parametry) {
+            image = parametry.image();
+            command = new ArrayList<>(parametry.command());
+            commandType = parametry.commandType();
+            bindablePorts = parametry.bindablePorts().stream()
+                    .map(ContainerParametry.PortBinding::toSerialForm)
+                    .sorted()
+                    .collect(Collectors.toList());
+            List<BindMount> mounts = new ArrayList<>(parametry.bindMounts());
+            mounts.sort((a, b) -> a.containerDirectory.compareTo(b.containerDirectory));
+            bindMounts = Collections.unmodifiableList(mounts);
+            tmpfsMounts = parametry.tmpfsMounts().stream().sorted().collect(Collectors.toList());
+            labels = new TreeMap<>(parametry.labels());
+            environment = new TreeMap<>(parametry.environment());
+            disableAutoRemoveOnStop = parametry.disableAutoRemoveOnStop();
+        }
+
+        public static ParametryKey of(ContainerParametry parametry) {
+            return new ParametryKey(requireNonNull(parametry, "parametry"));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ParametryKey)) return false;
+            ParametryKey that = (ParametryKey) o;
+            return disableAutoRemoveOnStop == that.disableAutoRemoveOnStop &&
+                    image.equals(that.image) &&
+                    command.equals(that.command) &&
+                    commandType == that.commandType &&
+                    bindablePorts.equals(that.bindablePorts) &&
+                    bindMounts.equals(that.bindMounts) &&
+                    tmpfsMounts.equals(that.tmpfsMounts) &&
+                    labels.equals(that.labels) &&
+                    environment.equals(that.environment);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(image, command, commandType, bindablePorts, bindMounts, tmpfsMounts, labels, environment, disableAutoRemoveOnStop);
+        }
+    }
+
+    private class PooledContainerCreator implements ContainerCreator {
+
+        @Override
+        public StartableContainer create(ContainerParametry parametry, Consumer<? super String> warningListener) throws ContainmentException {
+            return new LeasedStartableContainer(acquire(parametry, warningListener));
+        }
+
+        @Override
+        public void close() {
+            // pool owns the underlying creator
+        }
+    }
+
+    /**
+     * Container leased from the pool. The underlying container is already running, so
+     * starting this container just transfers ownership of the lease to the started instance.
+     */
+    private class LeasedStartableContainer implements StartableContainer {
+
+        private final PooledItem item;
+        private final AtomicBoolean started;
+        private final AtomicBoolean released;
+
+        public LeasedStartableContainer(PooledItem item) {
+            this.item = requireNonNull(item);
+            started = new AtomicBoolean(false);
+            released = new AtomicBoolean(false);
+        }
+
+        @Override
+        public ContainerInfo info() {
+            return item.info();
+        }
+
+        @Override
+        public ContainerCopier copier() {
+            return item.started.copier();
+        }
+
+        @Override
+        public StartedContainer start() {
+            if (!started.compareAndSet(false, true)) {
+                throw new IllegalStateException("already started");
+            }
+            return new LeasedStartedContainer(this);
+        }
+
+        void releaseOnce() {
+            if (released.compareAndSet(false, true)) {
+                release(item);
+            }
+        }
+
+        @Override
+        public void close() {
+            releaseOnce();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("LeasedStartableContainer{id=%s}", item.info().id());
+        }
+    }
+
+    private static class LeasedStartedContainer implements StartedContainer {
+
+        private final LeasedStartableContainer lease;
+
+        public LeasedStartedContainer(LeasedStartableContainer lease) {
+            this.lease = lease;
+        }
+
+        @Override
+        public ContainerInfo info() {
+            return lease.item.info();
+        }
+
+        @Override
+        public ContainerCopier copier() {
+            return lease.item.started.copier();
+        }
+
+        @Override
+        public ContainerInspector inspector() {
+            return lease.item.started.inspector();
+        }
+
+        @Override
+        public ContainerExecutor executor() {
+            return lease.item.started.executor();
+        }
+
+        @Override
+        public ContainerLogFollower logs() {
+            return lease.item.started.logs();
+        }
+
+        @Override
+        public void close() {
+            lease.releaseOnce();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("LeasedStartedContainer{id=%s}", info().id());
+        }
+    }
+}
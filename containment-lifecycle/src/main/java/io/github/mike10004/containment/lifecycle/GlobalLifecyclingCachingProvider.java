@@ -70,6 +70,25 @@ final class GlobalLifecyclingCachingProvider<D> extends LifecyclingCachingProvid
         }
     }
 
+    @Override
+    protected Provision<D> toInvalidated(Provision<D> provision, Throwable cause) {
+        return GlobalComputation.invalidated(((GlobalComputation<D>) provision).shutdownHook, cause);
+    }
+
+    /**
+     * Decommissions the lifecycle and removes the shutdown hook of the invalidated provision,
+     * because commissioning the lifecycle again adds a new one.
+     * @param invalidated the invalidated provision
+     */
+    @Override
+    protected void discardInvalidated(Provision<D> invalidated) {
+        super.discardInvalidated(invalidated);
+        @Nullable Thread shutdownHook = ((GlobalComputation<D>) invalidated).shutdownHook;
+        if (shutdownHook != null) {
+            addShutdownHookMethod.remove(shutdownHook);
+        }
+    }
+
     private void addRuntimeShutdownHook(Thread thread) {
         notify(LifecycleEvent.Category.NOTICE, "addRuntimeShutdownHook() entered");
         addShutdownHookMethod.add(thread);
@@ -135,6 +154,10 @@ final class GlobalLifecyclingCachingProvider<D> extends LifecyclingCachingProvid
             return new GlobalComputation<>(null, null, t);
         }
 
+        public static <D> Computation<D> invalidated(Thread thread, Throwable t) {
+            return new GlobalComputation<>(null, thread, t);
+        }
+
         @Override
         public String toString() {
             return stringification;
@@ -0,0 +1,125 @@
+package io.github.mike10004.containment.lifecycle;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.core.DefaultDockerClientConfig;
+import io.github.mike10004.containment.ContainerParametry;
+import io.github.mike10004.containment.ImageSpecifier;
+import io.github.mike10004.containment.dockerjava.DjClientRegistry;
+import io.github.mike10004.containment.dockerjava.DjImagePrefetcher;
+
+import java.util.Collection;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Service that fetches the images of container lifecycles in the background as soon
+ * as the lifecycles are declared, so that the images are likely to be present by the
+ * time the containers are created. Images are fetched concurrently, and an image that
+ * is registered more than once is fetched only once. A fetch that fails is logged
+ * and does not prevent a later commission from trying again.
+ *
+ * <p>Lifecycles built with the {@link ContainerLifecycles} methods that use the
+ * default docker configuration register their images with the default instance,
+ * unless disabled by setting system property {@value #SYSPROP_DISABLED} to true.</p>
+ */
+public class ImagePrefetcher {
+
+    public static final String SYSPROP_DISABLED = "containment-lifecycle.prefetch.disabled";
+
+    private static final Logger log = Logger.getLogger(ImagePrefetcher.class.getName());
+
+    private static final ImagePrefetcher DEFAULT_INSTANCE = new ImagePrefetcher(
+            () -> DjClientRegistry.getDefault().acquire(DefaultDockerClientConfig.createDefaultConfigBuilder().build()),
+            DjImagePrefetcher.getDefault());
+
+    private final Supplier<DockerClient> clientSupplier;
+    private final DjImagePrefetcher fetcher;
+    private final ConcurrentMap<ImageSpecifier, CompletableFuture<Void>> registered;
+
+    /**
+     * Constructs an instance.
+     * @param clientSupplier supplier of clients used to fetch images
+     * @param fetcher service that fetches images
+     */
+    public ImagePrefetcher(Supplier<DockerClient> clientSupplier, DjImagePrefetcher fetcher) {
+        this.clientSupplier = requireNonNull(clientSupplier, "clientSupplier");
+        this.fetcher = requireNonNull(fetcher, "fetcher");
+        registered = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the instance that uses the default docker configuration.
+     * @return the default instance
+     */
+    public static ImagePrefetcher getDefault() {
+        return DEFAULT_INSTANCE;
+    }
+
+    /**
+     * Checks whether lifecycles declared with the default docker configuration
+     * should register their images with the default instance.
+     * @return true unless disabled by system property
+     */
+    public static boolean isEnabled() {
+        return !Boolean.getBoolean(SYSPROP_DISABLED);
+    }
+
+    /**
+     * Registers the image of a container to be fetched.
+     * @param parametry container parameters
+     * @return a future that completes when the image is present
+     */
+    public CompletableFuture<Void> register(ContainerParametry parametry) {
+        return register(parametry.image());
+    }
+
+    /**
+     * Registers the images of multiple containers to be fetched.
+     * @param parametrySet container parameters
+     * @return a future that completes when all of the images are present
+     */
+    public CompletableFuture<Void> registerAll(Collection<? extends ContainerParametry> parametrySet) {
+        return CompletableFuture.allOf(parametrySet.stream()
+                .map(this::register)
+                .toArray(CompletableFuture<?>[]::new));
+    }
+
+    /**
+     * Registers an image to be fetched. If the image has already been registered
+     * and its fetch has not failed, the future of the earlier registration is returned.
+     * @param image image
+     * @return a future that completes when the image is present
+     */
+    public CompletableFuture<Void> register(ImageSpecifier image) {
+        requireNonNull(image, "image");
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture<Void> existing = registered.putIfAbsent(image, future);
+        if (existing != null) {
+            return existing;
+        }
+        fetcher.prefetch(clientSupplier, image).whenComplete((ignore, e) -> {
+            if (e == null) {
+                future.complete(null);
+            } else {
+                log.log(Level.INFO, "failed to prefetch " + image, e);
+                registered.remove(image, future);
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", ImagePrefetcher.class.getSimpleName() + "[", "]")
+                .add("registered=" + registered.size())
+                .toString();
+    }
+}
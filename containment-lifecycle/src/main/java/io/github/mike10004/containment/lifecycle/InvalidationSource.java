@@ -0,0 +1,18 @@
+package io.github.mike10004.containment.lifecycle;
+
+import java.util.function.Consumer;
+
+/**
+ * Interface of a lifecycle or stage whose commissioned resource may become unusable
+ * before it is decommissioned, for example because a container it depends on has died.
+ */
+interface InvalidationSource {
+
+    /**
+     * Adds a listener to be notified with the cause when the commissioned resource
+     * becomes unusable.
+     * @param listener the listener
+     */
+    void addInvalidationListener(Consumer<? super Throwable> listener);
+
+}
@@ -0,0 +1,333 @@
+package io.github.mike10004.containment.lifecycle;
+
+import com.google.common.collect.Lists;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Implementation of a lifecycle that is made up of multiple stages, where each
+ * stage declares the stages it depends on. Each stage is provided the resources
+ * commissioned by its dependencies.
+ * To commission a graph is to commission each stage once its dependencies have been
+ * commissioned; stages that do not depend on each other are commissioned concurrently.
+ * To decommission a graph is to decommission each stage once the stages that depend
+ * on it have been decommissioned, again concurrently where possible.
+ *
+ * <p>If commissioning any stage fails, no further stages are started, and the stages
+ * already commissioned are decommissioned before the exception is thrown, in the same
+ * manner as a {@link LifecycleStack}.</p>
+ *
+ * @see LifecycleStack
+ */
+public class LifecycleGraph implements Lifecycle<LifecycleGraph.Resources> {
+
+    private final List<Node<?>> nodes;
+    private final Map<Node<?>, List<Node<?>>> dependents;
+    private final Executor executor;
+    private transient final Map<Node<?>, Object> commissioned;
+    private Node<?> thrower;
+    private Exception throwable;
+
+    private LifecycleGraph(Builder builder) {
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(builder.nodes));
+        this.executor = builder.executor;
+        dependents = new HashMap<>();
+        for (Node<?> node : nodes) {
+            dependents.put(node, new ArrayList<>());
+            for (Node<?> dependency : node.dependencies) {
+                dependents.get(dependency).add(node);
+            }
+        }
+        commissioned = new LinkedHashMap<>();
+    }
+
+    /**
+     * Creates a new builder.
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Commissions each stage in this graph.
+     * If commissioning any stage fails, then
+     * those already commissioned are decommissioned before throwing
+     * the exception that caused the commissioning failure.
+     * @return the commissioned resources
+     * @throws LifecycleStackCommissionException on error
+     */
+    @Override
+    public synchronized Resources commission() throws LifecycleStackCommissionException {
+        checkState(commissioned.isEmpty(), "already commissioned");
+        thrower = null;
+        throwable = null;
+        Map<Node<?>, CompletableFuture<?>> futures = new HashMap<>();
+        for (Node<?> node : nodes) {
+            CompletableFuture<Void> prerequisites = allOf(node.dependencies.stream().map(futures::get));
+            futures.put(node, prerequisites.thenRunAsync(() -> commission(node), executor));
+        }
+        try {
+            allOf(futures.values().stream()).join();
+        } catch (CompletionException ignore) {
+            // the first failure is recorded by commission(Node)
+        }
+        Node<?> thrower;
+        Exception throwable;
+        synchronized (commissioned) {
+            thrower = this.thrower;
+            throwable = this.throwable;
+            if (thrower == null) {
+                return new Resources(commissioned);
+            }
+        }
+        LifecycleStackDecommissionException unwindException = null;
+        try {
+            unwind();
+        } catch (LifecycleStackDecommissionException e) {
+            unwindException = e;
+        }
+        if (unwindException == null) {
+            throw new LifecycleStackCommissionException(throwable);
+        } else {
+            throw new LifecycleStackCommissionUnwindException(thrower.stage, throwable, unwindException);
+        }
+    }
+
+    private <P> void commission(Node<P> node) {
+        Resources requirement;
+        synchronized (commissioned) {
+            if (thrower != null) {
+                return;
+            }
+            Map<Node<?>, Object> dependencies = new HashMap<>();
+            for (Node<?> dependency : node.dependencies) {
+                if (!commissioned.containsKey(dependency)) {
+                    // a dependency was skipped because another stage failed
+                    return;
+                }
+                dependencies.put(dependency, commissioned.get(dependency));
+            }
+            requirement = new Resources(dependencies);
+        }
+        try {
+            P resource = node.stage.commission(requirement);
+            synchronized (commissioned) {
+                commissioned.put(node, resource);
+            }
+        } catch (Exception e) {
+            synchronized (commissioned) {
+                if (thrower == null) {
+                    thrower = node;
+                    throwable = e;
+                } else {
+                    throwable.addSuppressed(e);
+                }
+            }
+        }
+    }
+
+    private void unwind() throws LifecycleStackDecommissionException {
+        Map<Node<?>, CompletableFuture<Void>> futures = new HashMap<>();
+        Map<LifecycleStage<?, ?>, RuntimeException> exceptionsThrown = Collections.synchronizedMap(new LinkedHashMap<>());
+        synchronized (commissioned) {
+            for (Node<?> node : Lists.reverse(nodes)) {
+                if (!commissioned.containsKey(node)) {
+                    continue;
+                }
+                CompletableFuture<Void> prerequisites = allOf(dependents.get(node).stream()
+                        .map(futures::get)
+                        .filter(f -> f != null));
+                futures.put(node, prerequisites.thenRunAsync(() -> {
+                    try {
+                        node.stage.decommission();
+                    } catch (RuntimeException e) {
+                        exceptionsThrown.put(node.stage, e);
+                    }
+                }, executor));
+            }
+            commissioned.clear();
+        }
+        allOf(futures.values().stream()).join();
+        if (!exceptionsThrown.isEmpty()) {
+            throw new LifecycleStackDecommissionException(exceptionsThrown);
+        }
+    }
+
+    private static CompletableFuture<Void> allOf(Stream<? extends CompletableFuture<?>> futures) {
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture<?>[]::new));
+    }
+
+    /**
+     * Decommissions each commissioned stage. A stage is decommissioned after
+     * all stages that depend on it.
+     */
+    @Override
+    public synchronized void decommission() {
+        unwind();
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", LifecycleGraph.class.getSimpleName() + "[", "]")
+                .add("nodes=" + nodes)
+                .toString();
+    }
+
+    /**
+     * Class that represents a stage in a lifecycle graph. A node is used as a handle
+     * to declare dependencies and to obtain the commissioned resource.
+     * @param <P> type of resource produced by the stage
+     */
+    public static final class Node<P> {
+
+        private final Builder owner;
+        private final String name;
+        private final LifecycleStage<? super Resources, P> stage;
+        private final List<Node<?>> dependencies;
+
+        private Node(Builder owner, String name, LifecycleStage<? super Resources, P> stage, List<Node<?>> dependencies) {
+            this.owner = owner;
+            this.name = requireNonNull(name, "name");
+            this.stage = requireNonNull(stage, "stage");
+            this.dependencies = Collections.unmodifiableList(new ArrayList<>(dependencies));
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public List<Node<?>> dependencies() {
+            return dependencies;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Node{%s}", name);
+        }
+    }
+
+    /**
+     * Class that provides access to commissioned resources. The resources provided to
+     * a stage are those of its dependencies; the resources returned by
+     * {@link #commission()} are those of all stages.
+     */
+    public static final class Resources {
+
+        private final Map<Node<?>, Object> resources;
+
+        private Resources(Map<Node<?>, Object> resources) {
+            this.resources = new HashMap<>(resources);
+        }
+
+        /**
+         * Gets the resource commissioned by a stage.
+         * @param node the node
+         * @param <P> resource type
+         * @return the resource
+         * @throws IllegalArgumentException if the node's resource is not available here
+         */
+        public <P> P get(Node<P> node) {
+            checkArgument(resources.containsKey(node), "resource of %s not available", node);
+            // cast is trustworthy because the node's stage produced the value
+            @SuppressWarnings("unchecked")
+            P resource = (P) resources.get(node);
+            return resource;
+        }
+
+        @Override
+        public String toString() {
+            return new StringJoiner(", ", Resources.class.getSimpleName() + "[", "]")
+                    .add("nodes=" + resources.keySet())
+                    .toString();
+        }
+    }
+
+    public static final class Builder {
+
+        private final List<Node<?>> nodes;
+        private Executor executor = SharedExecutor.INSTANCE;
+
+        private Builder() {
+            nodes = new ArrayList<>();
+        }
+
+        /**
+         * Adds a stage that requires nothing but the commissioning of its dependencies.
+         * @param name name of the stage
+         * @param lifecycle the lifecycle
+         * @param dependencies nodes that must be commissioned before this one
+         * @param <P> type of resource produced
+         * @return the new node
+         */
+        public <P> Node<P> add(String name, Lifecycle<P> lifecycle, Node<?>... dependencies) {
+            return addStage(name, new RequirementlessLifecycleStage<>(lifecycle), dependencies);
+        }
+
+        /**
+         * Adds a stage. The stage is provided the resources of its dependencies.
+         * Dependencies must already have been added to this builder, so a graph
+         * cannot contain cycles.
+         * @param name name of the stage
+         * @param stage the stage
+         * @param dependencies nodes that must be commissioned before this one
+         * @param <P> type of resource produced
+         * @return the new node
+         */
+        public <P> Node<P> addStage(String name, LifecycleStage<? super Resources, P> stage, Node<?>... dependencies) {
+            for (Node<?> dependency : dependencies) {
+                checkArgument(dependency.owner == this, "dependency %s was not added to this builder", dependency);
+            }
+            Node<P> node = new Node<>(this, name, stage, Arrays.asList(dependencies));
+            nodes.add(node);
+            return node;
+        }
+
+        /**
+         * Sets the executor on which stages are commissioned and decommissioned.
+         * By default, an executor shared by all instances is used.
+         * @param executor executor
+         * @return this builder instance
+         */
+        public Builder executor(Executor executor) {
+            this.executor = requireNonNull(executor, "executor");
+            return this;
+        }
+
+        public LifecycleGraph build() {
+            return new LifecycleGraph(this);
+        }
+    }
+
+    private static final class SharedExecutor {
+
+        private static final ExecutorService INSTANCE = create();
+
+        private static ExecutorService create() {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "containment-lifecycle-graph-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -9,6 +9,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringJoiner;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 import static java.util.Objects.requireNonNull;
 
@@ -23,14 +25,41 @@ import static java.util.Objects.requireNonNull;
  * @param <T> type of last commissioned element
  * @see ContainerLifecycles
  */
-public class LifecycleStack<T> implements Lifecycle<T> {
+public class LifecycleStack<T> implements Lifecycle<T>, InvalidationSource {
 
     private final List<? extends LifecycleStage<?, ?>> stages;
     private transient final Deque<LifecycleStage<?, ?>> commissioned;
+    private transient final List<Consumer<? super Throwable>> invalidationListeners;
 
     LifecycleStack(List<? extends LifecycleStage<?, ?>> stages) {
         this.stages = Collections.unmodifiableList(requireNonNull(stages));
         commissioned = new ArrayDeque<>();
+        invalidationListeners = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Adds a listener to be notified when the resource commissioned by any stage
+     * of this stack becomes unusable. Stages only watch for invalidation once this
+     * stack has a listener.
+     * @param listener the listener
+     */
+    @Override
+    public synchronized void addInvalidationListener(Consumer<? super Throwable> listener) {
+        requireNonNull(listener, "listener");
+        if (invalidationListeners.isEmpty()) {
+            for (LifecycleStage<?, ?> stage : stages) {
+                if (stage instanceof InvalidationSource) {
+                    ((InvalidationSource) stage).addInvalidationListener(this::invalidated);
+                }
+            }
+        }
+        invalidationListeners.add(listener);
+    }
+
+    private void invalidated(Throwable cause) {
+        for (Consumer<? super Throwable> listener : invalidationListeners) {
+            listener.accept(cause);
+        }
     }
 
     @VisibleForTesting
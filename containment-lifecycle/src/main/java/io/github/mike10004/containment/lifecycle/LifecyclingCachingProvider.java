@@ -6,7 +6,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
-import java.util.function.Supplier;
+import java.util.function.Function;
 
 import static java.util.Objects.requireNonNull;
 
@@ -39,12 +39,17 @@ public class LifecyclingCachingProvider<D> implements CachingProvider<D> {
         concurrentCache = new ConcurrentCache();
         this.eventListener = requireNonNull(eventListener);
         finishInvoked = new AtomicBoolean(false);
+        if (lifecycle instanceof InvalidationSource) {
+            ((InvalidationSource) lifecycle).addInvalidationListener(this::invalidate);
+        }
     }
 
     private static class LifecycleFinishedException extends RuntimeException {}
 
     /**
      * Returns a provision, after computing or recalling the cached computation result.
+     * If the cached provision was {@link #invalidate(Throwable) invalidated}, the lifecycle
+     * is decommissioned and commissioned again.
      * @return the provision
      */
     @Override
@@ -55,12 +60,13 @@ public class LifecyclingCachingProvider<D> implements CachingProvider<D> {
         }
         notify(LifecycleEvent.Category.PROVIDE_STARTED);
         AtomicBoolean computed = new AtomicBoolean(false);
-        Provision<D> invocation = concurrentCache.compute(new Supplier<Provision<D>>(){
-            @Override
-            public Provision<D> get() {
-                computed.set(true);
-                return computeOnce();
+        Provision<D> invocation = concurrentCache.compute(invalidated -> {
+            computed.set(true);
+            if (invalidated != null) {
+                notify(LifecycleEvent.Category.NOTICE, "recommissioning after invalidation");
+                discardInvalidated(invalidated);
             }
+            return computeOnce();
         });
         notify(LifecycleEvent.Category.PROVIDE_COMPLETED, String.format("%s %s", computed.get() ? "computed" : "recalled", invocation));
         return invocation;
@@ -84,6 +90,44 @@ public class LifecyclingCachingProvider<D> implements CachingProvider<D> {
         }
     }
 
+    /**
+     * Replaces a successful cached provision with a failed one, so that the resource is
+     * no longer handed out. The next request decommissions the lifecycle and commissions
+     * it again. This method is invoked when the lifecycle reports that its resource
+     * became unusable, for example because a container died.
+     * @param cause the reason the resource is no longer usable
+     */
+    public void invalidate(Throwable cause) {
+        requireNonNull(cause, "cause");
+        if (concurrentCache.invalidate(cause)) {
+            notify(LifecycleEvent.Category.NOTICE, "invalidated: " + cause);
+        }
+    }
+
+    /**
+     * Creates the failed provision that replaces a successful one on invalidation.
+     * @param provision the successful provision
+     * @param cause the reason the resource is no longer usable
+     * @return a failed provision
+     */
+    protected Provision<D> toInvalidated(Provision<D> provision, Throwable cause) {
+        return Computation.failed(cause);
+    }
+
+    /**
+     * Discards an invalidated provision before the lifecycle is commissioned again.
+     * This implementation decommissions the lifecycle; an exception thrown by the
+     * lifecycle is reported as a notice, because the resource is already unusable.
+     * @param invalidated the invalidated provision
+     */
+    protected void discardInvalidated(Provision<D> invalidated) {
+        try {
+            lifecycle.decommission();
+        } catch (RuntimeException e) {
+            notify(LifecycleEvent.Category.NOTICE, "decommissioning after invalidation failed: " + e);
+        }
+    }
+
     /**
      * Finishes the lifecycle of the cached object.
      */
@@ -109,9 +153,21 @@ public class LifecyclingCachingProvider<D> implements CachingProvider<D> {
 
         private final ConcurrentMap<Object, Provision<D>> concurrencyManager = new ConcurrentHashMap<>(1);
         private transient final Object computeKey = new Object();
-
-        public Provision<D> compute(Supplier<Provision<D>> computer) {
-            return concurrencyManager.computeIfAbsent(computeKey, k -> computer.get());
+        @Nullable
+        private volatile Provision<D> invalidated;
+
+        /**
+         * Returns the cached provision, unless it is absent or invalidated, in which case
+         * the computer is invoked with the invalidated provision, or null if absent.
+         */
+        public Provision<D> compute(Function<? super Provision<D>, Provision<D>> computer) {
+            return concurrencyManager.compute(computeKey, (k, current) -> {
+                if (current != null && current != invalidated) {
+                    return current;
+                }
+                invalidated = null;
+                return computer.apply(current);
+            });
         }
 
         @Override
@@ -119,6 +175,20 @@ public class LifecyclingCachingProvider<D> implements CachingProvider<D> {
             return String.format("ConcurrentCache[size=%d]", concurrencyManager.size());
         }
 
+        public boolean invalidate(Throwable cause) {
+            AtomicBoolean replaced = new AtomicBoolean(false);
+            concurrencyManager.computeIfPresent(computeKey, (k, current) -> {
+                if (!current.isSucceeded()) {
+                    return current;
+                }
+                Provision<D> replacement = toInvalidated(current, cause);
+                invalidated = replacement;
+                replaced.set(true);
+                return replacement;
+            });
+            return replaced.get();
+        }
+
         @Nullable
         public Provision<D> getIfPresent() {
             return concurrencyManager.get(computeKey);
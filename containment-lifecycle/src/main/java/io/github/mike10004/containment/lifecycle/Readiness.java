@@ -0,0 +1,389 @@
+package io.github.mike10004.containment.lifecycle;
+
+import io.github.mike10004.containment.ContainmentException;
+import io.github.mike10004.containment.FullSocketAddress;
+import io.github.mike10004.containment.RunningContainer;
+
+import javax.annotation.Nullable;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Post-start action that waits until a container is ready, as determined by one or more probes.
+ * All probes run concurrently, and the action completes when every probe has reported that
+ * the container is ready. Each probe is retried with exponential backoff and random jitter
+ * until the deadline, at which point the action fails, even if an attempt is still running.
+ * Attempts are timed by a shared scheduler but run on a separate executor, because they block. If any probe fails,
+ * the action fails at once and the other probes are cancelled.
+ *
+ * <p>Instances may be used as initial or subsequent post-start actions of a container lifecycle:</p>
+ * <pre>
+ *     ContainerLifecycles.builderOfLifecyclesOfGloballyManagedContainers()
+ *             .creating(parametry)
+ *             .post(Readiness.of(ReadinessProbe.tcp(8080), ReadinessProbe.logLine(pattern, UTF_8)))
+ *             .finish();
+ * </pre>
+ * @param <T> requirement type, when used as a subsequent action
+ */
+public final class Readiness<T> implements ContainerInitialPostStartAction<Void>, ContainerPostStartAction<T, T> {
+
+    public static final Duration DEFAULT_INITIAL_INTERVAL = Duration.ofMillis(50);
+    public static final Duration DEFAULT_MAX_INTERVAL = Duration.ofSeconds(2);
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(60);
+    public static final double DEFAULT_JITTER = 0.2;
+
+    private static final double BACKOFF_MULTIPLIER = 2.0;
+    private static final int MAX_ATTEMPT_TIMEOUT_MS = 5000;
+
+    private final List<ReadinessProbe> probes;
+    private final Duration initialInterval;
+    private final Duration maxInterval;
+    private final Duration timeout;
+    private final double jitter;
+    private final ScheduledExecutorService scheduler;
+    private final Executor attemptExecutor;
+
+    private Readiness(Builder builder) {
+        probes = Collections.unmodifiableList(new ArrayList<>(builder.probes));
+        initialInterval = builder.initialInterval;
+        maxInterval = builder.maxInterval;
+        timeout = builder.timeout;
+        jitter = builder.jitter;
+        scheduler = builder.scheduler;
+        attemptExecutor = builder.attemptExecutor;
+    }
+
+    /**
+     * Returns an action that waits for all the given probes with default timing.
+     * @param probes the probes
+     * @param <T> requirement type
+     * @return a new action
+     */
+    public static <T> Readiness<T> of(ReadinessProbe... probes) {
+        return builder().probes(probes).build();
+    }
+
+    /**
+     * Returns a new builder.
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public Void perform(RunningContainer container) throws Exception {
+        await(container);
+        return null;
+    }
+
+    @Override
+    public T perform(RunningContainer container, T requirement) throws Exception {
+        await(container);
+        return requirement;
+    }
+
+    /**
+     * Waits until all probes report that the container is ready.
+     * @param container the container
+     * @throws ContainmentException if a probe could not be prepared or the deadline passed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void await(RunningContainer container) throws ContainmentException, InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        List<ProbeRun> runs = new ArrayList<>(probes.size());
+        for (ReadinessProbe probe : probes) {
+            ReadinessProbe.Attempt attempt;
+            try {
+                attempt = probe.prepare(container);
+            } catch (Exception e) {
+                throw new ContainmentException("failed to prepare readiness probe " + probe, e);
+            }
+            runs.add(new ProbeRun(probe, attempt, deadline));
+        }
+        CompletableFuture<Void> allReady = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(runs.size());
+        for (ProbeRun run : runs) {
+            run.result.whenComplete((ignore, t) -> {
+                if (t != null) {
+                    allReady.completeExceptionally(t);
+                } else if (pending.decrementAndGet() == 0) {
+                    allReady.complete(null);
+                }
+            });
+        }
+        if (runs.isEmpty()) {
+            allReady.complete(null);
+        }
+        runs.forEach(ProbeRun::schedule);
+        try {
+            allReady.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ContainmentException) {
+                throw (ContainmentException) cause;
+            }
+            throw new ContainmentException(cause);
+        } finally {
+            runs.forEach(ProbeRun::cancel);
+        }
+    }
+
+    private long nextDelayNanos(int attemptNumber) {
+        double interval = initialInterval.toNanos() * Math.pow(BACKOFF_MULTIPLIER, Math.min(attemptNumber, 30));
+        interval = Math.min(interval, maxInterval.toNanos());
+        double factor = 1.0 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return (long) (interval * factor);
+    }
+
+    /**
+     * Repeated invocations of a single probe. Each invocation schedules the next
+     * until the probe succeeds, the deadline passes, or the run is cancelled.
+     * The scheduler only submits attempts to the attempt executor, and expires the run
+     * at the deadline in case an attempt is still running.
+     */
+    private class ProbeRun implements Runnable {
+
+        private final ReadinessProbe probe;
+        private final ReadinessProbe.Attempt attempt;
+        private final long deadline;
+        private final AtomicInteger attempts;
+        public final CompletableFuture<Void> result;
+        @Nullable
+        private volatile Exception lastException;
+        @Nullable
+        private volatile ScheduledFuture<?> expiry;
+
+        public ProbeRun(ReadinessProbe probe, ReadinessProbe.Attempt attempt, long deadline) {
+            this.probe = probe;
+            this.attempt = attempt;
+            this.deadline = deadline;
+            attempts = new AtomicInteger();
+            result = new CompletableFuture<>();
+        }
+
+        public void schedule() {
+            expiry = scheduler.schedule(this::expire, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            submit();
+        }
+
+        public void cancel() {
+            result.cancel(false);
+            ScheduledFuture<?> expiry = this.expiry;
+            if (expiry != null) {
+                expiry.cancel(false);
+            }
+        }
+
+        private void submit() {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                attemptExecutor.execute(this);
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(new ContainmentException("readiness probe " + probe + " could not be run", e));
+            }
+        }
+
+        private void expire() {
+            String message = String.format("container not ready according to %s after %d attempts in %s", probe, attempts.get(), timeout);
+            result.completeExceptionally(new ContainmentException(message, lastException));
+        }
+
+        @Override
+        public void run() {
+            if (result.isDone()) {
+                return;
+            }
+            int attemptNumber = attempts.getAndIncrement();
+            long remainingNanos = deadline - System.nanoTime();
+            int attemptTimeoutMs = (int) Math.max(1, Math.min(MAX_ATTEMPT_TIMEOUT_MS, TimeUnit.NANOSECONDS.toMillis(remainingNanos)));
+            try {
+                if (attempt.isReady(attemptTimeoutMs)) {
+                    result.complete(null);
+                    return;
+                }
+            } catch (ReadinessProbe.ProbeFailedException e) {
+                result.completeExceptionally(new ContainmentException("readiness probe " + probe + " failed", e));
+                return;
+            } catch (Exception e) {
+                lastException = e;
+            }
+            long delay = nextDelayNanos(attemptNumber);
+            if (System.nanoTime() + delay - deadline > 0) {
+                String message = String.format("container not ready according to %s after %d attempts in %s", probe, attemptNumber + 1, timeout);
+                result.completeExceptionally(new ContainmentException(message, lastException));
+                return;
+            }
+            scheduler.schedule(this::submit, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Resolves the host address bound to a container port. An unspecified host address,
+     * such as {@code 0.0.0.0}, is replaced by the loopback address.
+     */
+    static InetSocketAddress resolveHostBinding(RunningContainer container, int containerPort) throws ContainmentException {
+        FullSocketAddress binding = container.inspector().fetchHostPortBinding(containerPort);
+        if (binding == null) {
+            throw new ContainmentException("container port " + containerPort + " is not bound to a host port");
+        }
+        String host = binding.getHost();
+        if ("0.0.0.0".equals(host) || "::".equals(host)) {
+            host = "127.0.0.1";
+        }
+        return new InetSocketAddress(host, binding.getPort());
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", Readiness.class.getSimpleName() + "[", "]")
+                .add("probes=" + probes.size())
+                .add("timeout=" + timeout)
+                .toString();
+    }
+
+    public static final class Builder {
+
+        private final List<ReadinessProbe> probes;
+        private Duration initialInterval = DEFAULT_INITIAL_INTERVAL;
+        private Duration maxInterval = DEFAULT_MAX_INTERVAL;
+        private Duration timeout = DEFAULT_TIMEOUT;
+        private double jitter = DEFAULT_JITTER;
+        private ScheduledExecutorService scheduler = SharedScheduler.INSTANCE;
+        private Executor attemptExecutor = SharedAttemptExecutor.INSTANCE;
+
+        private Builder() {
+            probes = new ArrayList<>();
+        }
+
+        public Builder probe(ReadinessProbe probe) {
+            probes.add(requireNonNull(probe, "probe"));
+            return this;
+        }
+
+        public Builder probes(ReadinessProbe... probes) {
+            Arrays.stream(probes).forEach(this::probe);
+            return this;
+        }
+
+        /**
+         * Sets the delay before the second attempt of each probe. The delay doubles
+         * after each failed attempt, up to the maximum interval.
+         * @param initialInterval initial interval
+         * @return this builder instance
+         */
+        public Builder initialInterval(Duration initialInterval) {
+            checkArgument(!initialInterval.isNegative() && !initialInterval.isZero(), "initialInterval must be positive");
+            this.initialInterval = initialInterval;
+            return this;
+        }
+
+        public Builder maxInterval(Duration maxInterval) {
+            checkArgument(!maxInterval.isNegative() && !maxInterval.isZero(), "maxInterval must be positive");
+            this.maxInterval = maxInterval;
+            return this;
+        }
+
+        /**
+         * Sets the time allowed for all probes to succeed.
+         * @param timeout timeout
+         * @return this builder instance
+         */
+        public Builder timeout(Duration timeout) {
+            checkArgument(!timeout.isNegative(), "timeout must be nonnegative");
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * Sets the jitter, as a fraction of the interval by which each delay is randomly varied.
+         * @param jitter fraction between 0 and 1
+         * @return this builder instance
+         */
+        public Builder jitter(double jitter) {
+            checkArgument(jitter >= 0 && jitter <= 1, "jitter must be between 0 and 1");
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Sets the scheduler that times probe attempts and deadlines. Attempts do not
+         * run on the scheduler. By default, a scheduler shared by all instances is used.
+         * @param scheduler scheduler
+         * @return this builder instance
+         */
+        public Builder scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = requireNonNull(scheduler, "scheduler");
+            return this;
+        }
+
+        /**
+         * Sets the executor on which probe attempts run. Attempts block, so the executor
+         * should not limit the number of threads to fewer than the number of probes
+         * that may run at once. By default, an unbounded executor shared by all instances is used.
+         * @param attemptExecutor executor
+         * @return this builder instance
+         */
+        public Builder attemptExecutor(Executor attemptExecutor) {
+            this.attemptExecutor = requireNonNull(attemptExecutor, "attemptExecutor");
+            return this;
+        }
+
+        public <T> Readiness<T> build() {
+            checkArgument(!probes.isEmpty(), "at least one probe is required");
+            return new Readiness<>(this);
+        }
+    }
+
+    private static final class SharedScheduler {
+
+        private static final ScheduledExecutorService INSTANCE = create();
+
+        private static ScheduledExecutorService create() {
+            AtomicInteger counter = new AtomicInteger();
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = new Thread(r, "containment-readiness-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            return executor;
+        }
+    }
+
+    private static final class SharedAttemptExecutor {
+
+        private static final ExecutorService INSTANCE = create();
+
+        private static ExecutorService create() {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "containment-readiness-probe-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
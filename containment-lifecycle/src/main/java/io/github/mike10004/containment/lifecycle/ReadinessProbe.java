@@ -0,0 +1,164 @@
+package io.github.mike10004.containment.lifecycle;
+
+import io.github.mike10004.containment.ContainerSubprocessResult;
+import io.github.mike10004.containment.RunningContainer;
+import io.github.mike10004.containment.dockerjava.BlockableLogFollower;
+
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Interface of a probe that checks whether a started container is ready.
+ * A probe is prepared once for a container, and the prepared attempt is then
+ * invoked repeatedly by {@link Readiness} until it reports that the container
+ * is ready or the deadline passes.
+ */
+public interface ReadinessProbe {
+
+    /**
+     * Prepares to probe a container.
+     * @param container the container
+     * @return an attempt that may be invoked repeatedly
+     * @throws Exception on error
+     */
+    Attempt prepare(RunningContainer container) throws Exception;
+
+    /**
+     * Interface of a single probe attempt.
+     */
+    interface Attempt {
+
+        /**
+         * Checks readiness once. An exception thrown by this method is treated as
+         * a negative result, and the attempt is repeated, unless it is a
+         * {@link ProbeFailedException}, which fails the probe immediately.
+         * @param timeoutMs maximum time the check may take, in milliseconds
+         * @return true if the container is ready
+         * @throws Exception on error
+         */
+        boolean isReady(int timeoutMs) throws Exception;
+    }
+
+    /**
+     * Exception thrown by an attempt to indicate that the container will never be
+     * found ready by the probe, so that waiting should stop without further attempts.
+     */
+    class ProbeFailedException extends Exception {
+
+        public ProbeFailedException(String message) {
+            super(message);
+        }
+
+        public ProbeFailedException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Returns a probe that connects to the host port bound to a container port.
+     * @param containerPort the container port
+     * @return a new probe
+     */
+    static ReadinessProbe tcp(int containerPort) {
+        return container -> timeoutMs -> {
+            InetSocketAddress address = Readiness.resolveHostBinding(container, containerPort);
+            try (Socket socket = new Socket()) {
+                socket.connect(address, timeoutMs);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a probe that sends an HTTP GET request to the host port bound to a
+     * container port and tests the response status.
+     * @param containerPort the container port
+     * @param path request path
+     * @param statusPredicate predicate that evaluates the response status code
+     * @return a new probe
+     */
+    static ReadinessProbe http(int containerPort, String path, IntPredicate statusPredicate) {
+        requireNonNull(path, "path");
+        requireNonNull(statusPredicate, "statusPredicate");
+        return container -> timeoutMs -> {
+            InetSocketAddress address = Readiness.resolveHostBinding(container, containerPort);
+            URL url = new URL("http", address.getHostString(), address.getPort(), path.startsWith("/") ? path : "/" + path);
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            try {
+                conn.setConnectTimeout(timeoutMs);
+                conn.setReadTimeout(timeoutMs);
+                conn.setInstanceFollowRedirects(false);
+                return statusPredicate.test(conn.getResponseCode());
+            } finally {
+                conn.disconnect();
+            }
+        };
+    }
+
+    /**
+     * Returns a probe that sends an HTTP GET request and expects a 2xx response status.
+     * @param containerPort the container port
+     * @param path request path
+     * @return a new probe
+     */
+    static ReadinessProbe http(int containerPort, String path) {
+        return http(containerPort, path, status -> status / 100 == 2);
+    }
+
+    /**
+     * Returns a probe that waits for a line matching a pattern to appear
+     * on the container's standard output or standard error stream. The probe fails
+     * if log frames are dropped before the line appears.
+     * @param pattern pattern that must be found in a line
+     * @param charset charset of the container output
+     * @return a new probe
+     */
+    static ReadinessProbe logLine(Pattern pattern, Charset charset) {
+        requireNonNull(pattern, "pattern");
+        requireNonNull(charset, "charset");
+        return container -> {
+            BlockableLogFollower stdout = BlockableLogFollower.untilLine(line -> pattern.matcher(line).find(), charset);
+            BlockableLogFollower stderr = BlockableLogFollower.untilLine(line -> pattern.matcher(line).find(), charset);
+            container.logs().followStdout(stdout);
+            container.logs().followStderr(stderr);
+            return timeoutMs -> {
+                if (stdout.remaining() == 0 || stderr.remaining() == 0) {
+                    return true;
+                }
+                try {
+                    stdout.checkNoFramesDropped();
+                    stderr.checkNoFramesDropped();
+                } catch (BlockableLogFollower.FramesDroppedException e) {
+                    throw new ProbeFailedException("line matching " + pattern + " may have been dropped", e);
+                }
+                return false;
+            };
+        };
+    }
+
+    /**
+     * Returns a probe that executes a process in the container and expects exit code zero.
+     * Container executors do not support a timeout, so an attempt may outlast its timeout;
+     * the readiness deadline still applies, because attempts run apart from the scheduler.
+     * @param executable the executable
+     * @param args arguments
+     * @return a new probe
+     */
+    static ReadinessProbe exec(String executable, String... args) {
+        requireNonNull(executable, "executable");
+        String[] argsCopy = Arrays.copyOf(args, args.length);
+        return container -> timeoutMs -> {
+            ContainerSubprocessResult<String> result = container.executor().execute(UTF_8, executable, argsCopy);
+            return result.exitCode() == 0;
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.mike10004.containment.lifecycle;
+
+import io.github.mike10004.containment.ContainerLogBuffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class ContainerLogBufferingTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void dumpingOnFailure() throws Exception {
+        ContainerLogBuffer buffer = ContainerLogBuffer.allocate(16);
+        buffer.sink(ContainerLogBuffer.Stream.STDERR).accept("fatal error".getBytes(US_ASCII));
+        IllegalStateException failure = new IllegalStateException("commission failed");
+        Lifecycle<String> failing = new Lifecycle<String>() {
+            @Override
+            public String commission() {
+                throw failure;
+            }
+
+            @Override
+            public void decommission() {
+            }
+        };
+        Path dir = temporaryFolder.getRoot().toPath();
+        try {
+            ContainerLogBuffering.dumpingOnFailure(failing, buffer, dir).commission();
+            fail("should have thrown");
+        } catch (IllegalStateException e) {
+            assertSame(failure, e);
+        }
+        File[] stderrFiles = dir.toFile().listFiles((d, name) -> name.endsWith("-stderr.log"));
+        assertNotNull(stderrFiles);
+        assertEquals("num stderr dumps", 1, stderrFiles.length);
+        assertEquals("fatal error", new String(Files.readAllBytes(stderrFiles[0].toPath()), US_ASCII));
+    }
+}
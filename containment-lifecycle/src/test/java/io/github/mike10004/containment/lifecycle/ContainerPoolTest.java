@@ -0,0 +1,134 @@
+package io.github.mike10004.containment.lifecycle;
+
+import io.github.mike10004.containment.ContainerCreator;
+import io.github.mike10004.containment.ContainerParametry;
+import io.github.mike10004.containment.RunningContainer;
+import io.github.mike10004.containment.StartableContainer;
+import io.github.mike10004.containment.StartedContainer;
+import io.github.mike10004.containment.dockerjava.DjContainerMonitor;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ContainerPoolTest {
+
+    private static final Duration LONG_INTERVAL = Duration.ofHours(1);
+
+    @Test
+    public void recycle() throws Exception {
+        CountingMonitor monitor = new CountingMonitor();
+        ContainerParametry parametry = ContainerParametry.builder("oogabooga:latest").build();
+        String firstId;
+        try (ContainerPool pool = ContainerPool.builder(() -> new UnitTestContainerCreator(monitor, new Random(ContainerPoolTest.class.hashCode())))
+                .minIdle(0)
+                .maxIdle(1)
+                .refillInterval(LONG_INTERVAL)
+                .recycleWith(container -> true)
+                .build()) {
+            try (ContainerCreator creator = pool.instantiate()) {
+                StartableContainer startable = creator.create(parametry);
+                StartedContainer started = startable.start();
+                firstId = started.info().id();
+                started.close();
+                startable.close();
+                assertEquals("stopped while pooled", 0, monitor.stopped.size());
+                try (StartableContainer second = creator.create(parametry)) {
+                    assertEquals("same container reused", firstId, second.info().id());
+                }
+            }
+            ContainerPool.Stats stats = pool.stats();
+            assertEquals("hits", 1, stats.hits);
+            assertEquals("misses", 1, stats.misses);
+            assertEquals("recycled", 2, stats.recycled);
+            assertEquals("idle", 1, stats.idle);
+            assertEquals("hit rate", 0.5, stats.hitRate(), 1e-6);
+        }
+        assertEquals("removed on pool close", Collections.singleton(firstId), monitor.removed);
+    }
+
+    @Test
+    public void destroyWithoutResetHook() throws Exception {
+        CountingMonitor monitor = new CountingMonitor();
+        ContainerParametry parametry = ContainerParametry.builder("oogabooga:latest").build();
+        try (ContainerPool pool = ContainerPool.builder(() -> new UnitTestContainerCreator(monitor, new Random(ContainerPoolTest.class.hashCode())))
+                .minIdle(0)
+                .refillInterval(LONG_INTERVAL)
+                .build()) {
+            String firstId;
+            ContainerCreator creator = pool.instantiate();
+            try (StartedContainer container = creator.create(parametry).start()) {
+                firstId = container.info().id();
+            }
+            assertEquals("stopped", Collections.singleton(firstId), monitor.stopped);
+            assertEquals("removed", Collections.singleton(firstId), monitor.removed);
+            try (StartableContainer second = creator.create(parametry)) {
+                assertNotEquals("new container", firstId, second.info().id());
+            }
+        }
+    }
+
+    @Test
+    public void partitionByCanonicalParametry() {
+        ContainerParametry p1 = ContainerParametry.builder("oogabooga:latest").env("A", "1").env("B", "2").label("x", "y").build();
+        ContainerParametry p2 = ContainerParametry.builder("oogabooga:latest").label("x", "y").env("B", "2").env("A", "1").build();
+        ContainerParametry p3 = ContainerParametry.builder("oogabooga:latest").env("A", "1").build();
+        assertEquals(ContainerPool.ParametryKey.of(p1), ContainerPool.ParametryKey.of(p2));
+        assertNotEquals(ContainerPool.ParametryKey.of(p1), ContainerPool.ParametryKey.of(p3));
+    }
+
+    @Test
+    public void lifecycle() throws Exception {
+        CountingMonitor monitor = new CountingMonitor();
+        ContainerParametry parametry = ContainerParametry.builder("oogabooga:latest").build();
+        try (ContainerPool pool = ContainerPool.builder(() -> new UnitTestContainerCreator(monitor, new Random(ContainerPoolTest.class.hashCode())))
+                .minIdle(0)
+                .refillInterval(LONG_INTERVAL)
+                .recycleWith(container -> true)
+                .build()) {
+            Lifecycle<RunningContainer> lifecycle = ContainerLifecycles.builderOfLifecyclesOfPooledContainers(pool)
+                    .creating(parametry)
+                    .finish();
+            RunningContainer container = lifecycle.commission();
+            lifecycle.decommission();
+            assertEquals("idle after decommission", 1, pool.stats().idle);
+            assertTrue("not removed", monitor.removed.isEmpty());
+            assertEquals("created", Collections.singleton(container.info().id()), monitor.created);
+        }
+    }
+
+    private static class CountingMonitor implements DjContainerMonitor {
+
+        public final Set<String> created = Collections.synchronizedSet(new HashSet<>());
+        public final Set<String> started = Collections.synchronizedSet(new HashSet<>());
+        public final Set<String> stopped = Collections.synchronizedSet(new HashSet<>());
+        public final Set<String> removed = Collections.synchronizedSet(new HashSet<>());
+
+        @Override
+        public void created(String containerId) {
+            created.add(containerId);
+        }
+
+        @Override
+        public void started(String containerId) {
+            started.add(containerId);
+        }
+
+        @Override
+        public void stopped(String containerId) {
+            stopped.add(containerId);
+        }
+
+        @Override
+        public void removed(String containerId) {
+            removed.add(containerId);
+        }
+    }
+}
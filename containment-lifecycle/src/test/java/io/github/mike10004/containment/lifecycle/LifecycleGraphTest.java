@@ -0,0 +1,146 @@
+package io.github.mike10004.containment.lifecycle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LifecycleGraphTest {
+
+    @Test
+    public void commission_independentConcurrently() throws Exception {
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch allStarted = new CountDownLatch(3);
+        LifecycleGraph.Builder b = LifecycleGraph.builder();
+        LifecycleGraph.Node<String> db = b.add("db", new RendezvousLifecycle("db", allStarted, events));
+        LifecycleGraph.Node<String> cache = b.add("cache", new RendezvousLifecycle("cache", allStarted, events));
+        LifecycleGraph.Node<String> broker = b.add("broker", new RendezvousLifecycle("broker", allStarted, events));
+        LifecycleGraph.Node<String> app = b.addStage("app", new LifecycleStage<LifecycleGraph.Resources, String>() {
+            @Override
+            public String commission(LifecycleGraph.Resources requirement) {
+                events.add("commission:app");
+                return String.join("+", requirement.get(db), requirement.get(cache), requirement.get(broker));
+            }
+
+            @Override
+            public void decommission() {
+                events.add("decommission:app");
+            }
+        }, db, cache, broker);
+        LifecycleGraph graph = b.build();
+        LifecycleGraph.Resources resources = graph.commission();
+        assertEquals("db+cache+broker", resources.get(app));
+        assertEquals("db", resources.get(db));
+        assertEquals("app commissioned last", "commission:app", events.get(3));
+        events.clear();
+        graph.decommission();
+        assertEquals("decommissioned", 4, events.size());
+        assertEquals("app decommissioned first", "decommission:app", events.get(0));
+        assertEquals(new HashSet<>(Arrays.asList("decommission:db", "decommission:cache", "decommission:broker")), new HashSet<>(events.subList(1, 4)));
+    }
+
+    @Test
+    public void commission_failureUnwindsCommissioned() throws Exception {
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        Exception failure = new Exception("purposeful");
+        LifecycleGraph.Builder b = LifecycleGraph.builder();
+        LifecycleGraph.Node<String> db = b.add("db", new RecordingLifecycle("db", events));
+        LifecycleGraph.Node<String> cache = b.add("cache", new RecordingLifecycle("cache", events) {
+            @Override
+            public String commission() throws Exception {
+                throw failure;
+            }
+        }, db);
+        b.add("app", new RecordingLifecycle("app", events), db, cache);
+        try {
+            b.build().commission();
+            fail("should have thrown");
+        } catch (LifecycleStackCommissionException e) {
+            assertFalse(e instanceof LifecycleStackCommissionUnwindException);
+            assertSame(failure, e.getCause());
+        }
+        assertEquals(Arrays.asList("commission:db", "decommission:db"), events);
+    }
+
+    @Test
+    public void commission_failureWithUnwindException() throws Exception {
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        Exception failure = new Exception("purposeful");
+        LifecycleGraph.Builder b = LifecycleGraph.builder();
+        LifecycleGraph.Node<String> db = b.add("db", new RecordingLifecycle("db", events) {
+            @Override
+            public void decommission() {
+                throw new IllegalStateException("purposeful");
+            }
+        });
+        b.add("cache", new RecordingLifecycle("cache", events) {
+            @Override
+            public String commission() throws Exception {
+                throw failure;
+            }
+        }, db);
+        try {
+            b.build().commission();
+            fail("should have thrown");
+        } catch (LifecycleStackCommissionUnwindException e) {
+            assertSame(failure, e.commissionException);
+            assertEquals(1, e.unwindException.exceptionsThrown.size());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_foreignDependency() {
+        LifecycleGraph.Node<String> foreign = LifecycleGraph.builder().add("x", new RecordingLifecycle("x", new ArrayList<>()));
+        LifecycleGraph.builder().add("y", new RecordingLifecycle("y", new ArrayList<>()), foreign);
+    }
+
+    private static class RecordingLifecycle implements Lifecycle<String> {
+
+        protected final String name;
+        protected final List<String> events;
+
+        public RecordingLifecycle(String name, List<String> events) {
+            this.name = name;
+            this.events = events;
+        }
+
+        @Override
+        public String commission() throws Exception {
+            events.add("commission:" + name);
+            return name;
+        }
+
+        @Override
+        public void decommission() {
+            events.add("decommission:" + name);
+        }
+    }
+
+    private static class RendezvousLifecycle extends RecordingLifecycle {
+
+        private final CountDownLatch allStarted;
+
+        public RendezvousLifecycle(String name, CountDownLatch allStarted, List<String> events) {
+            super(name, events);
+            this.allStarted = allStarted;
+        }
+
+        @Override
+        public String commission() throws Exception {
+            allStarted.countDown();
+            assertTrue("all independent stages commissioned concurrently", allStarted.await(5, TimeUnit.SECONDS));
+            return super.commission();
+        }
+    }
+}
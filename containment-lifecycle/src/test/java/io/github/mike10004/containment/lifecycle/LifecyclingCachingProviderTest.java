@@ -3,6 +3,7 @@ package io.github.mike10004.containment.lifecycle;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.junit.Assert.*;
 
@@ -26,9 +27,59 @@ public class LifecyclingCachingProviderTest {
         assertEquals(Collections.singletonList(value), decommissioner.decommissioned);
     }
 
+    @org.junit.Test
+    public void invalidate() {
+        InvalidatingStage stage = new InvalidatingStage();
+        Lifecycle<Widget> lifecycle = LifecycleStack.startingAt(stage).toSequence();
+        try (CloseableLifecyclingCachingProvider<Widget> dependency = new CloseableLifecyclingCachingProvider<>(lifecycle)) {
+            Widget first = dependency.provide().require();
+            Exception cause = new Exception("container died");
+            stage.invalidate(cause);
+            Provision<Widget> invalidated = dependency.getProvisionIfAvailable();
+            assertNotNull(invalidated);
+            assertFalse("expect failed after invalidation: " + invalidated, invalidated.isSucceeded());
+            assertSame(cause, invalidated.exception());
+            assertEquals("decommissioned before next request", 0, stage.decommissions);
+            Provision<Widget> provision = dependency.provide();
+            assertTrue("expect recommissioned after invalidation: " + provision, provision.isSucceeded());
+            assertNotSame("new resource", first, provision.require());
+            assertEquals("commissioned twice", 2, stage.commissions);
+            assertEquals("decommissioned on recommission", 1, stage.decommissions);
+            assertSame("recalled", provision.require(), dependency.provide().require());
+            assertEquals("commissioned twice", 2, stage.commissions);
+        }
+        assertEquals("decommissioned", 2, stage.decommissions);
+    }
+
     private static final class Widget {
     }
 
+    private static class InvalidatingStage implements LifecycleStage<Void, Widget>, InvalidationSource {
+
+        private final List<Consumer<? super Throwable>> listeners = new ArrayList<>();
+        public int commissions, decommissions;
+
+        @Override
+        public void addInvalidationListener(Consumer<? super Throwable> listener) {
+            listeners.add(listener);
+        }
+
+        public void invalidate(Throwable cause) {
+            listeners.forEach(listener -> listener.accept(cause));
+        }
+
+        @Override
+        public Widget commission(Void requirement) {
+            commissions++;
+            return new Widget();
+        }
+
+        @Override
+        public void decommission() {
+            decommissions++;
+        }
+    }
+
     private static class ObjectCommissioner implements DecoupledLifecycle.Commissioner<Widget> {
 
         public final List<Widget> commissioned = Collections.synchronizedList(new ArrayList<>());
@@ -0,0 +1,155 @@
+package io.github.mike10004.containment.lifecycle;
+
+import io.github.mike10004.containment.ContainerParametry;
+import io.github.mike10004.containment.ContainmentException;
+import io.github.mike10004.containment.RunningContainer;
+import io.github.mike10004.containment.dockerjava.DjManualContainerMonitor;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReadinessTest {
+
+    @Test
+    public void readyAfterSeveralAttempts() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        ReadinessProbe probe = container -> timeoutMs -> attempts.incrementAndGet() >= 3;
+        Readiness.builder()
+                .probe(probe)
+                .initialInterval(Duration.ofMillis(1))
+                .timeout(Duration.ofSeconds(5))
+                .build()
+                .await(null);
+        assertEquals("attempts", 3, attempts.get());
+    }
+
+    @Test
+    public void exceptionTreatedAsNotReady() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        ReadinessProbe probe = container -> timeoutMs -> {
+            if (attempts.incrementAndGet() < 2) {
+                throw new IOException("connection refused");
+            }
+            return true;
+        };
+        Readiness.builder().probe(probe).initialInterval(Duration.ofMillis(1)).build().await(null);
+        assertEquals("attempts", 2, attempts.get());
+    }
+
+    @Test
+    public void deadline() throws Exception {
+        ReadinessProbe probe = container -> timeoutMs -> {
+            throw new IOException("connection refused");
+        };
+        long start = System.nanoTime();
+        try {
+            Readiness.builder()
+                    .probe(probe)
+                    .initialInterval(Duration.ofMillis(10))
+                    .timeout(Duration.ofMillis(200))
+                    .build()
+                    .await(null);
+            fail("should have thrown");
+        } catch (ContainmentException e) {
+            assertNotNull("cause", e.getCause());
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("elapsed " + elapsedMs, elapsedMs < 2000);
+    }
+
+    @Test
+    public void blockedAttemptDoesNotOutlastDeadline() throws Exception {
+        CountDownLatch released = new CountDownLatch(1);
+        ReadinessProbe blocked = container -> timeoutMs -> {
+            released.await();
+            return true;
+        };
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        long start = System.nanoTime();
+        try {
+            Readiness.builder()
+                    .probes(blocked, blocked)
+                    .scheduler(scheduler)
+                    .timeout(Duration.ofMillis(200))
+                    .build()
+                    .await(null);
+            fail("should have thrown");
+        } catch (ContainmentException e) {
+            assertTrue("message " + e.getMessage(), e.getMessage().contains("not ready"));
+        } finally {
+            released.countDown();
+            scheduler.shutdownNow();
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("elapsed " + elapsedMs, elapsedMs < 2000);
+    }
+
+    @Test
+    public void failedProbeFailsWithoutWaitingForOthers() throws Exception {
+        ReadinessProbe failing = container -> timeoutMs -> {
+            throw new ReadinessProbe.ProbeFailedException("never going to be ready");
+        };
+        ReadinessProbe neverReady = container -> timeoutMs -> false;
+        long start = System.nanoTime();
+        try {
+            Readiness.builder()
+                    .probes(neverReady, failing)
+                    .initialInterval(Duration.ofMillis(10))
+                    .timeout(Duration.ofSeconds(30))
+                    .build()
+                    .await(null);
+            fail("should have thrown");
+        } catch (ContainmentException e) {
+            assertTrue("cause", e.getCause() instanceof ReadinessProbe.ProbeFailedException);
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("elapsed " + elapsedMs, elapsedMs < 5000);
+    }
+
+    @Test
+    public void probesRunConcurrently() throws Exception {
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        ReadinessProbe probe = container -> timeoutMs -> {
+            bothRunning.countDown();
+            return bothRunning.await(timeoutMs, TimeUnit.MILLISECONDS);
+        };
+        Readiness.builder()
+                .probes(probe, probe)
+                .timeout(Duration.ofSeconds(5))
+                .build()
+                .await(null);
+        assertEquals(0, bothRunning.getCount());
+    }
+
+    @Test
+    public void postStartAction() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        ReadinessProbe probe = container -> {
+            assertNotNull("container", container.info().id());
+            return timeoutMs -> attempts.incrementAndGet() >= 2;
+        };
+        ContainerParametry parametry = ContainerParametry.builder("oogabooga:latest").build();
+        Lifecycle<RunningContainer> lifecycle = ContainerLifecycles.builder(() -> new UnitTestContainerCreator(new DjManualContainerMonitor(), new Random(ReadinessTest.class.hashCode())))
+                .creating(parametry)
+                .post(Readiness.of(probe))
+                .finishWithContainer();
+        try {
+            lifecycle.commission();
+            assertEquals("attempts", 2, attempts.get());
+        } finally {
+            lifecycle.decommission();
+        }
+    }
+}
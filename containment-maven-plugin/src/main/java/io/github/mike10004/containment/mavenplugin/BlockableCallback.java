@@ -1,8 +1,10 @@
 package io.github.mike10004.containment.mavenplugin;
 
 import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.model.ResponseItem;
 
 import java.time.Duration;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -31,5 +33,16 @@ interface BlockableCallback<T> extends ResultCallback<T> {
     static <T> BlockableCallback<T> createSuccessCheckingCallback(Predicate<? super T> successChecker) {
         return new HandrolledBlockableCallback<>(successChecker);
     }
+
+    /**
+     * Creates a callback whose memory use does not grow with the number of response items.
+     * @param successChecker predicate that tests whether an item indicates success
+     * @param progressListener listener that receives throttled progress messages
+     * @param <T> response item type
+     * @return a new callback
+     */
+    static <T extends ResponseItem> BlockableCallback<T> createStreamingCallback(Predicate<? super T> successChecker, Consumer<String> progressListener) {
+        return new StreamingBlockableCallback<>(successChecker, progressListener);
+    }
 }
 
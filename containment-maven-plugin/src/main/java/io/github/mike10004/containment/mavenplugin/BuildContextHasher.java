@@ -0,0 +1,222 @@
+package io.github.mike10004.containment.mavenplugin;
+
+import com.google.common.io.BaseEncoding;
+import io.github.mike10004.containment.dockerjava.TarArchives;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Service that computes a content hash of a docker build context. Files excluded
+ * by the context's {@code .dockerignore} file do not contribute to the hash. Files
+ * are hashed in parallel, and if a cache directory is specified, the hash of each
+ * file is cached along with its size and modification time, so that unchanged
+ * files are not read again.
+ */
+class BuildContextHasher {
+
+    private static final String ALGORITHM = "SHA-256";
+    private static final BaseEncoding HEX = BaseEncoding.base16().lowerCase();
+
+    @Nullable
+    private final Path cacheDir;
+
+    /**
+     * Constructs an instance.
+     * @param cacheDir directory in which file hashes are cached; null to disable caching
+     */
+    public BuildContextHasher(@Nullable Path cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Computes the hash of a build context.
+     * @param contextDir build context directory
+     * @param buildArgs build arguments, which also contribute to the hash
+     * @return hash as a hex string
+     * @throws IOException on I/O error
+     */
+    public String hash(Path contextDir, Map<String, String> buildArgs) throws IOException {
+        List<Path> files = collectFiles(contextDir);
+        @Nullable Path cacheFile = cacheDir == null ? null : cacheDir.resolve(hexDigest(contextDir.toAbsolutePath().toString()).substring(0, 16) + ".properties");
+        Properties cache = loadCache(cacheFile);
+        List<FileEntry> entries;
+        try {
+            entries = files.parallelStream()
+                    .map(file -> toEntry(contextDir, file, cache))
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (cacheFile != null) {
+            Properties updated = new Properties();
+            entries.forEach(entry -> updated.setProperty(entry.relativePath, entry.toCacheValue()));
+            if (!updated.equals(cache)) {
+                storeCache(cacheFile, updated);
+            }
+        }
+        MessageDigest digest = createDigest();
+        for (FileEntry entry : entries) {
+            digest.update(String.format("%s\0%s\n", entry.relativePath, entry.hash).getBytes(StandardCharsets.UTF_8));
+        }
+        new TreeMap<>(buildArgs).forEach((name, value) -> {
+            digest.update(String.format("arg:%s=%s\n", name, value).getBytes(StandardCharsets.UTF_8));
+        });
+        return HEX.encode(digest.digest());
+    }
+
+    /**
+     * Collects the files of the build context that are not excluded, sorted by relative path.
+     */
+    static List<Path> collectFiles(Path contextDir) throws IOException {
+        TarArchives.EntryFilter filter = DockerIgnore.load(contextDir).toContextFilter();
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(contextDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(contextDir) && !filter.isTraversable(relativize(contextDir, dir))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String relativePath = relativize(contextDir, file);
+                if (!attrs.isDirectory() && filter.isIncluded(relativePath)) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        files.sort((a, b) -> relativize(contextDir, a).compareTo(relativize(contextDir, b)));
+        return files;
+    }
+
+    static String relativize(Path contextDir, Path file) {
+        return contextDir.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+    }
+
+    private static FileEntry toEntry(Path contextDir, Path file, Properties cache) {
+        String relativePath = relativize(contextDir, file);
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            long size = attrs.size(), lastModified = attrs.lastModifiedTime().toMillis();
+            String cached = cache.getProperty(relativePath);
+            if (cached != null) {
+                FileEntry entry = FileEntry.fromCacheValue(relativePath, cached);
+                if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+                    return entry;
+                }
+            }
+            return new FileEntry(relativePath, size, lastModified, hashFile(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String hashFile(Path file) throws IOException {
+        MessageDigest digest = createDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int r;
+            while ((r = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, r);
+            }
+        }
+        return HEX.encode(digest.digest());
+    }
+
+    private static String hexDigest(String value) {
+        return HEX.encode(createDigest().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Properties loadCache(@Nullable Path cacheFile) {
+        Properties cache = new Properties();
+        if (cacheFile != null && Files.isRegularFile(cacheFile)) {
+            try (InputStream in = Files.newInputStream(cacheFile)) {
+                cache.load(in);
+            } catch (IOException | IllegalArgumentException e) {
+                // treat an unreadable cache as empty
+                cache.clear();
+            }
+        }
+        return cache;
+    }
+
+    private static void storeCache(Path cacheFile, Properties cache) throws IOException {
+        Files.createDirectories(cacheFile.getParent());
+        Path tempFile = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                cache.store(out, null);
+            }
+            try {
+                Files.move(tempFile, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static final class FileEntry {
+
+        public final String relativePath;
+        public final long size;
+        public final long lastModified;
+        public final String hash;
+
+        public FileEntry(String relativePath, long size, long lastModified, String hash) {
+            this.relativePath = relativePath;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+
+        public String toCacheValue() {
+            return String.format("%d %d %s", size, lastModified, hash);
+        }
+
+        @Nullable
+        public static FileEntry fromCacheValue(String relativePath, String value) {
+            String[] parts = value.split(" ");
+            if (parts.length != 3) {
+                return null;
+            }
+            try {
+                return new FileEntry(relativePath, Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
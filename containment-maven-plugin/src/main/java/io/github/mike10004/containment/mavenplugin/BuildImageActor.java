@@ -4,22 +4,35 @@ import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.command.BuildImageCmd;
 import com.github.dockerjava.api.exception.DockerException;
 import com.github.dockerjava.api.model.BuildResponseItem;
+import com.github.dockerjava.api.model.Image;
+import io.github.mike10004.containment.dockerjava.TarArchives;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 
 import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 
 class BuildImageActor extends ClientAbsentImageActor {
 
+    /**
+     * Name of the label whose value is the content hash of the build context
+     * from which an image was built.
+     */
+    public static final String LABEL_CONTEXT_HASH = "io.github.mike10004.containment.context-hash";
+
     private final Function<String, String> mavenPropertiesProvider;
 
     public BuildImageActor(Log log, Supplier<DockerClient> clientFactory, Function<String, String> mavenPropertiesProvider) {
@@ -27,8 +40,29 @@ class BuildImageActor extends ClientAbsentImageActor {
         this.mavenPropertiesProvider = requireNonNull(mavenPropertiesProvider);
     }
 
-    protected BuildImageCmd createCommand(DockerClient client, RequireImageParametry parametry, File dockerfileDir) throws IOException {
-        BuildImageCmd buildCmd = client.buildImageCmd(dockerfileDir);
+    /**
+     * Opens a stream of the build context. The context is a gzip-compressed tar archive
+     * that is produced on another thread as the stream is read. Files excluded by the
+     * {@code .dockerignore} file in the directory are omitted.
+     * @param dockerfileDir build context directory
+     * @return a stream of the build context
+     * @throws IOException on I/O error
+     */
+    protected InputStream openContextStream(File dockerfileDir) throws IOException {
+        TarArchives.EntryFilter filter = DockerIgnore.load(dockerfileDir.toPath()).toContextFilter();
+        return TarArchives.pipeDirectoryInCompressedTarArchive(dockerfileDir, filter, runnable -> {
+            Thread thread = new Thread(runnable, "build-context-" + dockerfileDir.getName());
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    protected BuildImageCmd createCommand(DockerClient client, RequireImageParametry parametry, File dockerfileDir, InputStream contextStream) throws IOException {
+        BuildImageCmd buildCmd = client.buildImageCmd(contextStream);
+        File dockerfile = findDockerfile(dockerfileDir);
+        if (dockerfile != null && !"Dockerfile".equals(dockerfile.getName())) {
+            buildCmd.withDockerfilePath(dockerfile.getName());
+        }
         buildCmd.withTags(Collections.singleton(parametry.name));
         buildCmd.withLabels(parametry.labels);
         parametry.buildArgs.forEach(buildCmd::withBuildArg);
@@ -44,25 +78,68 @@ class BuildImageActor extends ClientAbsentImageActor {
             dockerfileDir = new File(directiveParameter);
         }
         try (DockerClient client = clientFactory.get()) {
-            BuildImageCmd buildCmd = createCommand(client, parametry, dockerfileDir);
-            BlockableCallback<BuildResponseItem> callback = BlockableCallback.createSuccessCheckingCallback(BuildResponseItem::isBuildSuccessIndicated);
-            logger().info(String.format("starting build of %s using path %s", parametry.name, dockerfileDir));
-            buildCmd.exec(callback);
-            try {
-                callback.completeOrThrowException(parametry.buildTimeout, () -> new MojoExecutionException("build timeout exceeded"));
-            } catch (InterruptedException e) {
-                throw new MojoExecutionException("interrupted while waiting for build to complete", e);
+            String contextHash = null;
+            if (parametry.rebuildOnContextChange) {
+                contextHash = computeContextHash(parametry, dockerfileDir);
+                if (isBuiltFromContext(client, parametry.name, contextHash)) {
+                    logger().info(String.format("image %s is up to date with build context %s", parametry.name, dockerfileDir));
+                    return;
+                }
             }
-            boolean successful = callback.checkSucceeded();
-            logger().info("image build complete; success: " + successful);
-            if (!successful) {
-                throw new MojoExecutionException("build completed unsuccessfully: " + callback.summarize());
+            try (InputStream contextStream = openContextStream(dockerfileDir)) {
+                BuildImageCmd buildCmd = createCommand(client, parametry, dockerfileDir, contextStream);
+                if (contextHash != null) {
+                    buildCmd.withLabels(withContextHash(parametry.labels, contextHash));
+                }
+                BlockableCallback<BuildResponseItem> callback = BlockableCallback.createStreamingCallback(BuildResponseItem::isBuildSuccessIndicated, message -> logger().info(parametry.name + ": " + message));
+                logger().info(String.format("starting build of %s using path %s", parametry.name, dockerfileDir));
+                buildCmd.exec(callback);
+                try {
+                    callback.completeOrThrowException(parametry.buildTimeout, () -> new MojoExecutionException("build timeout exceeded"));
+                } catch (InterruptedException e) {
+                    throw new MojoExecutionException("interrupted while waiting for build to complete", e);
+                }
+                boolean successful = callback.checkSucceeded();
+                logger().info("image build complete; success: " + successful);
+                if (!successful) {
+                    throw new MojoExecutionException("build completed unsuccessfully: " + callback.summarize());
+                }
             }
         } catch (IOException e) {
             throw new MojoExecutionException("docker client I/O error", e);
         }
     }
 
+    protected String computeContextHash(RequireImageParametry parametry, File dockerfileDir) throws MojoExecutionException {
+        BuildContextHasher hasher = new BuildContextHasher(parametry.contextHashCacheDir == null ? null : parametry.contextHashCacheDir.toPath());
+        try {
+            return hasher.hash(dockerfileDir.toPath(), parametry.buildArgs);
+        } catch (IOException e) {
+            throw new MojoExecutionException("failed to hash build context " + dockerfileDir, e);
+        }
+    }
+
+    /**
+     * Checks whether an image with the given name was built from a context with the given hash.
+     * @param client client
+     * @param imageName image name
+     * @param contextHash content hash of build context
+     * @return true if such an image exists
+     */
+    static boolean isBuiltFromContext(DockerClient client, String imageName, String contextHash) {
+        List<Image> images = client.listImagesCmd()
+                .withImageNameFilter(imageName)
+                .withLabelFilter(Collections.singletonMap(LABEL_CONTEXT_HASH, contextHash))
+                .exec();
+        return !images.isEmpty();
+    }
+
+    private static Map<String, String> withContextHash(Map<String, String> labels, String contextHash) {
+        Map<String, String> labeled = new LinkedHashMap<>(labels);
+        labeled.put(LABEL_CONTEXT_HASH, contextHash);
+        return labeled;
+    }
+
     private static class InvalidDockerfileDirException extends MojoExecutionException {
 
         public InvalidDockerfileDirException(String message) {
@@ -70,22 +147,30 @@ class BuildImageActor extends ClientAbsentImageActor {
         }
     }
 
-    private void checkDockerfileDirOk(File dockerfileDir) throws MojoExecutionException {
-        if (!dockerfileDir.isDirectory()) {
-            throw new InvalidDockerfileDirException("not a directory: " + dockerfileDir);
-        }
+    @Nullable
+    private static File findDockerfile(File dockerfileDir) throws IOException {
         File dockerfile = new File(dockerfileDir, "Dockerfile");
         if (!dockerfile.isFile()) {
-            try {
-                dockerfile = java.nio.file.Files.walk(dockerfileDir.toPath(), 0)
-                        .map(Path::toFile)
+            try (Stream<Path> children = java.nio.file.Files.list(dockerfileDir.toPath())) {
+                dockerfile = children.map(Path::toFile)
                         .filter(f -> f.isFile() && "dockerfile".equalsIgnoreCase(f.getName()))
                         .findFirst()
                         .orElse(null);
-            } catch (IOException e) {
-                throw new MojoExecutionException("failed to find dockerfile", e);
             }
         }
+        return dockerfile;
+    }
+
+    private void checkDockerfileDirOk(File dockerfileDir) throws MojoExecutionException {
+        if (!dockerfileDir.isDirectory()) {
+            throw new InvalidDockerfileDirException("not a directory: " + dockerfileDir);
+        }
+        File dockerfile;
+        try {
+            dockerfile = findDockerfile(dockerfileDir);
+        } catch (IOException e) {
+            throw new MojoExecutionException("failed to find dockerfile", e);
+        }
         if (dockerfile == null) {
             throw new InvalidDockerfileDirException("no dockerfile in directory " + dockerfileDir);
         }
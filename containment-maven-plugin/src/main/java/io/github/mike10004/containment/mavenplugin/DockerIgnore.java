@@ -0,0 +1,210 @@
+package io.github.mike10004.containment.mavenplugin;
+
+import io.github.mike10004.containment.dockerjava.TarArchives;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Value class that represents the exclusion patterns of a {@code .dockerignore} file.
+ * Patterns follow the docker daemon's semantics: {@code *} and {@code ?} do not match
+ * the path separator, {@code **} matches any number of directories, a pattern that
+ * matches a directory excludes everything beneath it, a pattern prefixed with {@code !}
+ * makes an exception, and the last pattern that matches a path wins.
+ */
+class DockerIgnore {
+
+    static final String FILENAME = ".dockerignore";
+
+    private static final DockerIgnore EMPTY = new DockerIgnore(Collections.emptyList());
+
+    private final List<Rule> rules;
+
+    private DockerIgnore(List<Rule> rules) {
+        this.rules = requireNonNull(rules);
+    }
+
+    public static DockerIgnore empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Loads the ignore file of a build context directory.
+     * @param contextDir build context directory
+     * @return the patterns, or an empty instance if the directory has no ignore file
+     * @throws IOException on I/O error
+     */
+    public static DockerIgnore load(Path contextDir) throws IOException {
+        Path file = contextDir.resolve(FILENAME);
+        if (!Files.isRegularFile(file)) {
+            return EMPTY;
+        }
+        return parse(Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    public static DockerIgnore parse(List<String> lines) {
+        List<Rule> rules = new ArrayList<>();
+        for (String line : lines) {
+            String pattern = line.trim();
+            if (pattern.isEmpty() || pattern.startsWith("#")) {
+                continue;
+            }
+            boolean exception = pattern.startsWith("!");
+            if (exception) {
+                pattern = pattern.substring(1).trim();
+            }
+            pattern = clean(pattern);
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            rules.add(new Rule(toRegex(pattern), exception));
+        }
+        return new DockerIgnore(Collections.unmodifiableList(rules));
+    }
+
+    /**
+     * Checks whether a path is excluded from the build context.
+     * @param relativePath slash-separated path relative to the context directory
+     * @return true if excluded
+     */
+    public boolean isExcluded(String relativePath) {
+        if (rules.isEmpty()) {
+            return false;
+        }
+        String path = clean(relativePath);
+        boolean excluded = false;
+        for (Rule rule : rules) {
+            if (rule.exception == excluded && rule.matches(path)) {
+                excluded = !rule.exception;
+            }
+        }
+        return excluded;
+    }
+
+    /**
+     * Checks whether everything beneath a directory is excluded, so that the directory
+     * need not be traversed. This is conservative: if any exception pattern exists, a
+     * file beneath the directory could be included again, so no directory is prunable.
+     * @param relativeDir slash-separated path of a directory relative to the context directory
+     * @return true if the directory can be skipped
+     */
+    public boolean isPrunable(String relativeDir) {
+        return rules.stream().noneMatch(rule -> rule.exception) && isExcluded(relativeDir);
+    }
+
+    /**
+     * Creates a filter of the files of a build context. The dockerfile and the ignore
+     * file are always included, because they affect the build even if excluded.
+     * @return a new filter
+     */
+    public TarArchives.EntryFilter toContextFilter() {
+        return new TarArchives.EntryFilter() {
+            @Override
+            public boolean isIncluded(String relativePath) {
+                return isAlwaysIncluded(relativePath) || !isExcluded(relativePath);
+            }
+
+            @Override
+            public boolean isTraversable(String relativePath) {
+                return !isPrunable(relativePath);
+            }
+        };
+    }
+
+    private static boolean isAlwaysIncluded(String relativePath) {
+        return "Dockerfile".equalsIgnoreCase(relativePath) || FILENAME.equals(relativePath);
+    }
+
+    private static String clean(String path) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || ".".equals(segment)) {
+                continue;
+            }
+            if ("..".equals(segment)) {
+                if (!segments.isEmpty()) {
+                    segments.remove(segments.size() - 1);
+                }
+                continue;
+            }
+            segments.add(segment);
+        }
+        return String.join("/", segments);
+    }
+
+    private static Pattern toRegex(String pattern) {
+        StringBuilder regex = new StringBuilder("^");
+        int n = pattern.length();
+        for (int i = 0; i < n; i++) {
+            char ch = pattern.charAt(i);
+            if (ch == '*') {
+                if (i + 1 < n && pattern.charAt(i + 1) == '*') {
+                    i++;
+                    if (i + 1 < n && pattern.charAt(i + 1) == '/') {
+                        i++;
+                        regex.append("(.*/)?");
+                    } else {
+                        regex.append(".*");
+                    }
+                } else {
+                    regex.append("[^/]*");
+                }
+            } else if (ch == '?') {
+                regex.append("[^/]");
+            } else if (ch == '[') {
+                int end = pattern.indexOf(']', i + 1);
+                if (end < 0) {
+                    regex.append("\\[");
+                } else {
+                    String body = pattern.substring(i + 1, end);
+                    if (body.startsWith("^") || body.startsWith("!")) {
+                        body = "^" + body.substring(1);
+                    }
+                    regex.append('[').append(body).append(']');
+                    i = end;
+                }
+            } else if (ch == '\\' && i + 1 < n) {
+                i++;
+                regex.append(Pattern.quote(String.valueOf(pattern.charAt(i))));
+            } else {
+                regex.append(Pattern.quote(String.valueOf(ch)));
+            }
+        }
+        regex.append('$');
+        return Pattern.compile(regex.toString());
+    }
+
+    private static final class Rule {
+
+        private final Pattern regex;
+        public final boolean exception;
+
+        public Rule(Pattern regex, boolean exception) {
+            this.regex = regex;
+            this.exception = exception;
+        }
+
+        /**
+         * Checks whether this rule matches a path or any of its parent directories.
+         */
+        public boolean matches(String path) {
+            if (regex.matcher(path).matches()) {
+                return true;
+            }
+            for (int slash = path.indexOf('/'); slash >= 0; slash = path.indexOf('/', slash + 1)) {
+                if (regex.matcher(path.substring(0, slash)).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
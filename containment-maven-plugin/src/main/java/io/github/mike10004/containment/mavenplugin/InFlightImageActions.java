@@ -0,0 +1,74 @@
+package io.github.mike10004.containment.mavenplugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Registry of actions in progress that make an image present, such as pulls and builds.
+ * The registry is shared by all mojo executions in this JVM, so that concurrent executions
+ * in a parallel reactor build wait on one action instead of duplicating it.
+ */
+class InFlightImageActions {
+
+    private static final InFlightImageActions INSTANCE = new InFlightImageActions();
+
+    private final ConcurrentMap<String, CompletableFuture<Void>> inFlight;
+
+    InFlightImageActions() {
+        inFlight = new ConcurrentHashMap<>();
+    }
+
+    public static InFlightImageActions getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Interface of an action that makes an image present.
+     */
+    interface ImageAction {
+        void perform() throws MojoExecutionException;
+    }
+
+    /**
+     * Performs an action, unless an action for the same image is already in progress,
+     * in which case this method waits for that action. If the action waited on fails,
+     * the given action is performed.
+     * @param imageName image name
+     * @param action the action
+     * @return true if the given action was performed, false if an action in progress elsewhere succeeded
+     * @throws MojoExecutionException if the given action fails or if interrupted while waiting
+     */
+    public boolean perform(String imageName, ImageAction action) throws MojoExecutionException {
+        requireNonNull(imageName, "imageName");
+        requireNonNull(action, "action");
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture<Void> existing;
+        while ((existing = inFlight.putIfAbsent(imageName, future)) != null) {
+            try {
+                existing.get();
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("interrupted while waiting for action on " + imageName, e);
+            } catch (ExecutionException ignore) {
+                // the other action failed; try again, possibly performing the given action
+            }
+        }
+        try {
+            action.perform();
+            inFlight.remove(imageName, future);
+            future.complete(null);
+            return true;
+        } catch (MojoExecutionException | RuntimeException e) {
+            inFlight.remove(imageName, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+}
@@ -30,7 +30,7 @@ class PullImageActor extends ClientAbsentImageActor {
         try (DockerClient client = clientFactory.get()) {
             ImageSpecifier remoteImageSpec = ImageSpecifier.parseSpecifier(remoteImageName).withDefaultTag("latest");
             PullImageCmd cmd = client.pullImageCmd(remoteImageSpec.toString());
-            BlockableCallback<PullResponseItem> callback = BlockableCallback.createSuccessCheckingCallback(PullResponseItem::isPullSuccessIndicated);
+            BlockableCallback<PullResponseItem> callback = BlockableCallback.createStreamingCallback(PullResponseItem::isPullSuccessIndicated, message -> logger().info(parametry.name + ": " + message));
             cmd.exec(callback);
             try {
                 callback.completeOrThrowException(parametry.pullTimeout, () -> new MojoExecutionException("pull timeout exceeded"));
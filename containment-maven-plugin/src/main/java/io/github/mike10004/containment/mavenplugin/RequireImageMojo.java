@@ -3,12 +3,13 @@ package io.github.mike10004.containment.mavenplugin;
 import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.model.Image;
 import com.github.dockerjava.core.DefaultDockerClientConfig;
-import com.github.dockerjava.core.DockerClientBuilder;
 import com.github.dockerjava.core.DockerClientConfig;
-import com.github.dockerjava.jaxrs.JerseyDockerHttpClient;
-import com.github.dockerjava.transport.DockerHttpClient;
 import com.google.common.annotations.VisibleForTesting;
+import io.github.mike10004.containment.ImageSpecifier;
+import io.github.mike10004.containment.StandardImageSpecifier;
+import io.github.mike10004.containment.dockerjava.DjClientRegistry;
 import io.github.mike10004.nitsick.Durations;
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
@@ -17,29 +18,66 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 
 import javax.annotation.Nullable;
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static java.util.Objects.requireNonNull;
 
 /**
- * Goal which enforces the local existence of a container image.
+ * Goal which enforces the local existence of one or more container images.
+ * All images are checked with a single query, and absent images are acted upon
+ * concurrently. Actions that make an image present are shared across concurrent
+ * executions in the same JVM, so that a parallel reactor build pulls or builds
+ * each image only once.
  */
 @Mojo( name = RequireImageMojo.GOAL, defaultPhase = LifecyclePhase.GENERATE_TEST_RESOURCES )
 public class RequireImageMojo extends AbstractMojo {
 
     static final String GOAL = "require-image";
 
+    static final int DEFAULT_PARALLELISM = 4;
+
     /**
      * Name and optionally a tag in the 'name[:tag]' format.
+     * At least one of this parameter and {@code imageNames} must be specified.
      */
-    @Parameter( required = true )
+    @Parameter
     private String imageName;
 
+    /**
+     * Names of images, each in the same format as {@code imageName}. Use markup like the following:
+     * <pre>
+     *     &lt;imageNames&gt;
+     *       &lt;imageName&gt;foo:1.0&lt;/imageName&gt;
+     *       &lt;imageName&gt;bar:2.0&lt;/imageName&gt;
+     *     &lt;/imageNames&gt;
+     * </pre>
+     */
+    @Parameter
+    private List<String> imageNames;
+
+    /**
+     * Maximum number of absent images acted upon concurrently.
+     */
+    @Parameter(defaultValue = "4")
+    private int parallelism = DEFAULT_PARALLELISM;
+
     /**
      * Action to perform if the image is not present locally. Valid values are
      * <ul>
@@ -104,6 +142,17 @@ public class RequireImageMojo extends AbstractMojo {
     @Parameter
     private String pullTimeout;
 
+    /**
+     * Flag that specifies whether to rebuild an image when the content of its build context
+     * changes. Applies only if the absent image action is {@code build}. If true, the build
+     * context is hashed, honoring its {@code .dockerignore} file, and the image is labeled with
+     * the hash; a present image is rebuilt unless it bears a label with the current hash.
+     * File hashes are cached in the project build directory, so that hashing an unchanged
+     * build context is fast.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean rebuildOnContextChange;
+
     /**
      * Set of flags where if any flag evaluates to true, no action will be executed by this mojo.
      * A flags evaluates to true if its value is truthy, where truthy means it case-insensitively
@@ -163,6 +212,42 @@ public class RequireImageMojo extends AbstractMojo {
         this.imageName = imageName;
     }
 
+    public List<String> getImageNames() {
+        return imageNames;
+    }
+
+    public void setImageNames(List<String> imageNames) {
+        this.imageNames = imageNames;
+    }
+
+    void setRebuildOnContextChange(boolean rebuildOnContextChange) {
+        this.rebuildOnContextChange = rebuildOnContextChange;
+    }
+
+    void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Gets the names of all images required by this execution.
+     * @return list of distinct image names
+     * @throws MojoExecutionException if no image names are specified
+     */
+    List<String> resolveImageNames() throws MojoExecutionException {
+        Set<String> names = new LinkedHashSet<>();
+        if (imageName != null) {
+            names.add(imageName);
+        }
+        if (imageNames != null) {
+            names.addAll(imageNames);
+        }
+        names.removeIf(name -> name == null || name.trim().isEmpty());
+        if (names.isEmpty()) {
+            throw new MojoExecutionException("at least one of imageName and imageNames must be specified");
+        }
+        return new ArrayList<>(names);
+    }
+
     public String getAbsentImageAction() {
         return absentImageAction;
     }
@@ -186,7 +271,7 @@ public class RequireImageMojo extends AbstractMojo {
         };
     }
 
-    private static DockerClientConfig createConfig(MavenProject project, RequireImageParametry parametry) {
+    private static DockerClientConfig createConfig(MavenProject project) {
         // TODO parameterize config builder from maven project and require-image goal configuration
         return DefaultDockerClientConfig.createDefaultConfigBuilder().build();
     }
@@ -195,26 +280,97 @@ public class RequireImageMojo extends AbstractMojo {
     public void execute() throws MojoExecutionException {
         requireNonNull(absentImageAction, "absentImageAction");
         AbsentImageDirective directive = AbsentImageDirective.parse(absentImageAction);
-        RequireImageParametry parametry = buildParametry();
-        DockerClientConfig clientConfig = createConfig(getProject(), parametry);
-        Supplier<DockerClient> clientFactory = () -> {
-            DockerHttpClient httpClient = new JerseyDockerHttpClient.Builder()
-                    .dockerHost(clientConfig.getDockerHost())
-                    .sslConfig(clientConfig.getSSLConfig())
-                    .build();
-            return DockerClientBuilder.getInstance(clientConfig)
-                    .withDockerHttpClient(httpClient)
-                    .build();
-        };
-        boolean existsLocally;
+        List<String> names = resolveImageNames();
+        DockerClientConfig clientConfig = createConfig(getProject());
+        DjClientRegistry clientRegistry = DjClientRegistry.getDefault();
+        Supplier<DockerClient> clientFactory = () -> clientRegistry.acquire(clientConfig);
+        // hold a lease for the duration of the execution so that actors reuse the same pooled client
         try (DockerClient client = clientFactory.get()) {
-            existsLocally = !queryImagesByName(client, parametry.name).isEmpty();
+            // the build actor decides for itself whether present images are up to date
+            List<String> actionable = isRebuildOnContextChange(directive) ? names : findAbsentImages(client, names);
+            if (!actionable.isEmpty()) {
+                AbsentImageActor actor = constructActor(clientFactory, directive);
+                performAll(actor, directive, actionable);
+            }
         } catch (IOException e) {
             throw new MojoExecutionException("docker client I/O error", e);
         }
-        if (!existsLocally) {
-            AbsentImageActor actor = constructActor(clientFactory, directive);
-            actor.perform(parametry, directive.parameter);
+    }
+
+    private boolean isRebuildOnContextChange(AbsentImageDirective directive) {
+        return rebuildOnContextChange && directive.action == AbsentImageAction.build;
+    }
+
+    /**
+     * Finds the images that are not present locally, using a single query of local images.
+     * @param client client
+     * @param imageNames image names
+     * @return names of absent images
+     */
+    static List<String> findAbsentImages(DockerClient client, List<String> imageNames) {
+        Set<String> localReferences = new HashSet<>();
+        for (Image image : client.listImagesCmd().exec()) {
+            localReferences.addAll(Arrays.asList(ArrayUtils.nullToEmpty(image.getRepoTags())));
+            localReferences.addAll(Arrays.asList(ArrayUtils.nullToEmpty(image.getRepoDigests())));
+        }
+        return imageNames.stream()
+                .filter(name -> !isPresent(name, localReferences))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Checks whether an image is among a set of local image references.
+     * As with a name filter, a name without a tag matches any tag.
+     * @param imageName image name
+     * @param localReferences tags and digests of local images
+     * @return true if present
+     */
+    static boolean isPresent(String imageName, Set<String> localReferences) {
+        if (localReferences.contains(imageName)) {
+            return true;
+        }
+        ImageSpecifier spec = ImageSpecifier.parseSpecifier(imageName);
+        if (spec instanceof StandardImageSpecifier && ((StandardImageSpecifier) spec).tag == null) {
+            String prefix = imageName + ":";
+            return localReferences.stream().anyMatch(reference -> reference.startsWith(prefix));
+        }
+        return false;
+    }
+
+    private void performAll(AbsentImageActor actor, AbsentImageDirective directive, List<String> absent) throws MojoExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, absent.size())));
+        try {
+            Map<String, Future<?>> futures = new LinkedHashMap<>();
+            for (String name : absent) {
+                RequireImageParametry parametry = buildParametry(name);
+                futures.put(name, executor.submit(() -> {
+                    InFlightImageActions.getInstance().perform(name, () -> actor.perform(parametry, directive.parameter));
+                    return null;
+                }));
+            }
+            MojoExecutionException failure = null;
+            for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+                try {
+                    entry.getValue().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MojoExecutionException("interrupted while requiring images", e);
+                } catch (ExecutionException e) {
+                    MojoExecutionException cause = e.getCause() instanceof MojoExecutionException
+                            ? (MojoExecutionException) e.getCause()
+                            : new MojoExecutionException("failed to require image " + entry.getKey(), e.getCause());
+                    if (failure == null) {
+                        failure = cause;
+                    } else {
+                        failure.addSuppressed(cause);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            executor.shutdownNow();
         }
     }
 
@@ -223,14 +379,28 @@ public class RequireImageMojo extends AbstractMojo {
     }
 
     protected RequireImageParametry buildParametry() {
+        return buildParametry(imageName);
+    }
+
+    protected RequireImageParametry buildParametry(String imageName) {
         return RequireImageParametry.newBuilder(imageName)
                 .buildTimeout(Durations.parseDuration(buildTimeout, RequireImageParametry.DEFAULT_BUILD_TIMEOUT))
                 .pullTimeout(Durations.parseDuration(pullTimeout, RequireImageParametry.DEFAULT_PULL_TIMEOUT))
                 .buildArgs(supplyIfNull(buildArgs, Collections::emptyMap))
                 .labels(supplyIfNull(buildLabels, Collections::emptyMap))
+                .rebuildOnContextChange(rebuildOnContextChange)
+                .contextHashCacheDir(resolveContextHashCacheDir())
                 .build();
     }
 
+    @Nullable
+    private File resolveContextHashCacheDir() {
+        if (project == null || project.getBuild() == null || project.getBuild().getDirectory() == null) {
+            return null;
+        }
+        return new File(project.getBuild().getDirectory(), "containment/context-hashes");
+    }
+
     ConditionSetEvaluator createConditionSetEvaluator() {
         return new ConditionSetEvaluator();
     }
@@ -1,5 +1,7 @@
 package io.github.mike10004.containment.mavenplugin;
 
+import javax.annotation.Nullable;
+import java.io.File;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -39,12 +41,26 @@ public class RequireImageParametry {
      */
     public final Map<String, String> labels;
 
+    /**
+     * Flag that specifies whether a build is performed when the image is present
+     * but was built from a build context whose content differs.
+     */
+    public final boolean rebuildOnContextChange;
+
+    /**
+     * Directory in which build context file hashes are cached. Null means no caching.
+     */
+    @Nullable
+    public final File contextHashCacheDir;
+
     private RequireImageParametry(Builder builder) {
         name = requireNonNull(builder.name);
         pullTimeout = requireNonNull(builder.pullTimeout);
         buildTimeout = requireNonNull(builder.buildTimeout);
         buildArgs = Collections.unmodifiableMap(new LinkedHashMap<>(requireNonNull(builder.buildArgs)));
         labels = Collections.unmodifiableMap(new LinkedHashMap<>(requireNonNull(builder.labels)));
+        rebuildOnContextChange = builder.rebuildOnContextChange;
+        contextHashCacheDir = builder.contextHashCacheDir;
     }
 
     public static Builder newBuilder(String name) {
@@ -61,6 +77,9 @@ public class RequireImageParametry {
         private final Map<String, String> buildArgs = new LinkedHashMap<>();
         private Duration buildTimeout = DEFAULT_BUILD_TIMEOUT;
         private final Map<String, String> labels = new LinkedHashMap<>();
+        private boolean rebuildOnContextChange;
+        @Nullable
+        private File contextHashCacheDir;
 
         private Builder(String name) {
             this.name = requireNonNull(name, "name");
@@ -100,5 +119,15 @@ public class RequireImageParametry {
             labels.putAll(additive);
             return this;
         }
+
+        public Builder rebuildOnContextChange(boolean val) {
+            rebuildOnContextChange = val;
+            return this;
+        }
+
+        public Builder contextHashCacheDir(@Nullable File val) {
+            contextHashCacheDir = val;
+            return this;
+        }
     }
 }
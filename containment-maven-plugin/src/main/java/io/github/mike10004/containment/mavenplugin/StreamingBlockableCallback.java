@@ -0,0 +1,218 @@
+package io.github.mike10004.containment.mavenplugin;
+
+import com.github.dockerjava.api.model.ResponseItem;
+import com.google.common.base.Joiner;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Implementation of a blockable callback whose memory use does not grow with the number
+ * of response items received. Progress is aggregated per layer, only the most recent
+ * response items are retained for the summary, and progress messages are emitted
+ * no more often than a given interval.
+ * @param <T> response item type
+ */
+class StreamingBlockableCallback<T extends ResponseItem> implements BlockableCallback<T> {
+
+    static final int DEFAULT_RETAINED_ITEMS = 20;
+    static final Duration DEFAULT_PROGRESS_INTERVAL = Duration.ofSeconds(2);
+
+    /**
+     * Maximum number of layers tracked. This exceeds the maximum number
+     * of layers an image may have.
+     */
+    static final int MAX_LAYERS = 256;
+
+    private static final int MAX_RETAINED_ERRORS = 5;
+
+    private final CountDownLatch completionLatch;
+    private final Predicate<? super T> successChecker;
+    private final Consumer<String> progressListener;
+    private final int retainedItemLimit;
+    private final long progressIntervalNanos;
+    private final LongSupplier clock;
+    private final Deque<T> recentItems;
+    private final Deque<Throwable> errors;
+    private final Map<String, LayerProgress> layers;
+    private volatile boolean succeeded;
+    private long itemCount;
+    private long lastProgressNanos;
+    @Nullable
+    private String lastStreamLine;
+
+    public StreamingBlockableCallback(Predicate<? super T> successChecker, Consumer<String> progressListener) {
+        this(successChecker, progressListener, DEFAULT_RETAINED_ITEMS, DEFAULT_PROGRESS_INTERVAL, System::nanoTime);
+    }
+
+    StreamingBlockableCallback(Predicate<? super T> successChecker, Consumer<String> progressListener, int retainedItemLimit, Duration progressInterval, LongSupplier clock) {
+        checkArgument(retainedItemLimit >= 0, "retainedItemLimit must be nonnegative");
+        this.successChecker = requireNonNull(successChecker);
+        this.progressListener = requireNonNull(progressListener);
+        this.retainedItemLimit = retainedItemLimit;
+        this.progressIntervalNanos = progressInterval.toNanos();
+        this.clock = requireNonNull(clock);
+        completionLatch = new CountDownLatch(1);
+        recentItems = new ArrayDeque<>(retainedItemLimit);
+        errors = new ArrayDeque<>(MAX_RETAINED_ERRORS);
+        layers = new LinkedHashMap<>();
+        lastProgressNanos = clock.getAsLong();
+    }
+
+    @Override
+    public void onStart(Closeable closeable) {
+    }
+
+    @Override
+    public void onNext(T object) {
+        if (!succeeded && successChecker.test(object)) {
+            succeeded = true;
+        }
+        String message;
+        synchronized (this) {
+            itemCount++;
+            retain(recentItems, object, retainedItemLimit);
+            aggregate(object);
+            message = maybeDescribeProgress();
+        }
+        if (message != null) {
+            progressListener.accept(message);
+        }
+    }
+
+    private static <E> void retain(Deque<E> deque, E element, int limit) {
+        if (limit == 0) {
+            return;
+        }
+        if (deque.size() == limit) {
+            deque.removeFirst();
+        }
+        deque.addLast(element);
+    }
+
+    private void aggregate(T item) {
+        String stream = StringUtils.trimToNull(item.getStream());
+        if (stream != null) {
+            lastStreamLine = stream;
+        }
+        String id = item.getId();
+        if (id == null || item.getStatus() == null) {
+            return;
+        }
+        LayerProgress layer = layers.get(id);
+        if (layer == null) {
+            if (layers.size() >= MAX_LAYERS) {
+                return;
+            }
+            layer = new LayerProgress();
+            layers.put(id, layer);
+        }
+        layer.update(item);
+    }
+
+    @Nullable
+    private String maybeDescribeProgress() {
+        long now = clock.getAsLong();
+        if (now - lastProgressNanos < progressIntervalNanos) {
+            return null;
+        }
+        lastProgressNanos = now;
+        return describeProgress();
+    }
+
+    private String describeProgress() {
+        if (layers.isEmpty()) {
+            return lastStreamLine == null ? String.format("%d response items received", itemCount) : lastStreamLine;
+        }
+        long current = 0, total = 0;
+        int complete = 0;
+        for (LayerProgress layer : layers.values()) {
+            current += layer.current;
+            total += layer.total;
+            if (layer.complete) {
+                complete++;
+            }
+        }
+        return String.format("%d of %d layers complete; %s of %s downloaded", complete, layers.size(), formatBytes(current), formatBytes(total));
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    @Override
+    public synchronized void onError(Throwable throwable) {
+        retain(errors, throwable, MAX_RETAINED_ERRORS);
+    }
+
+    @Override
+    public void onComplete() {
+        completionLatch.countDown();
+    }
+
+    @Override
+    public void close() {
+        completionLatch.countDown();
+    }
+
+    @Override
+    public boolean doAwaitCompletion(Duration timeout) throws InterruptedException {
+        return completionLatch.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean checkSucceeded() {
+        return succeeded;
+    }
+
+    @Override
+    public synchronized String summarize() {
+        Joiner j = Joiner.on(System.lineSeparator());
+        return String.format("CallbackSummary: %d response items received; %s%n%nmost recent:%n%s%n%n%s%n",
+                itemCount, describeProgress(),
+                recentItems.isEmpty() ? "(no response items received)" : j.join(recentItems),
+                errors.isEmpty() ? "(no exceptions thrown)" : j.join(errors));
+    }
+
+    private static final class LayerProgress {
+
+        public long current;
+        public long total;
+        public boolean complete;
+
+        public void update(ResponseItem item) {
+            String status = item.getStatus();
+            ResponseItem.ProgressDetail detail = item.getProgressDetail();
+            if ("Downloading".equals(status) && detail != null) {
+                if (detail.getCurrent() != null) {
+                    current = detail.getCurrent();
+                }
+                if (detail.getTotal() != null && detail.getTotal() > 0) {
+                    total = detail.getTotal();
+                }
+            } else if ("Download complete".equals(status)) {
+                current = total;
+            } else if ("Pull complete".equals(status) || "Already exists".equals(status)) {
+                current = total;
+                complete = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.mike10004.containment.mavenplugin;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BuildContextHasherTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void hash() throws Exception {
+        Path contextDir = temporaryFolder.newFolder().toPath();
+        write(contextDir, "Dockerfile", "FROM alpine\nCOPY app.sh /\n");
+        write(contextDir, ".dockerignore", "Dockerfile\n*.log\nscratch\n");
+        write(contextDir, "app.sh", "echo hello\n");
+        write(contextDir, "debug.log", "foo");
+        write(contextDir, "scratch/junk.bin", "bar");
+        List<String> collected = BuildContextHasher.collectFiles(contextDir).stream()
+                .map(file -> BuildContextHasher.relativize(contextDir, file))
+                .collect(Collectors.toList());
+        assertEquals("collected", Arrays.asList(".dockerignore", "Dockerfile", "app.sh"), collected);
+        File cacheDir = temporaryFolder.newFolder();
+        BuildContextHasher hasher = new BuildContextHasher(cacheDir.toPath());
+        String original = hasher.hash(contextDir, Collections.emptyMap());
+        assertEquals("cached", original, hasher.hash(contextDir, Collections.emptyMap()));
+        assertTrue("cache file written", cacheDir.list().length > 0);
+        write(contextDir, "debug.log", "baz");
+        write(contextDir, "scratch/junk.bin", "gaw");
+        assertEquals("ignored files do not contribute", original, hasher.hash(contextDir, Collections.emptyMap()));
+        assertNotEquals("build args contribute", original, hasher.hash(contextDir, ImmutableMap.of("foo", "bar")));
+        Path appScript = contextDir.resolve("app.sh");
+        FileTime lastModified = Files.getLastModifiedTime(appScript);
+        write(contextDir, "app.sh", "echo howdy\n");
+        Files.setLastModifiedTime(appScript, FileTime.fromMillis(lastModified.toMillis() + 1000));
+        String changed = hasher.hash(contextDir, Collections.emptyMap());
+        assertNotEquals("content change detected", original, changed);
+        assertEquals("without cache", changed, new BuildContextHasher(null).hash(contextDir, Collections.emptyMap()));
+    }
+
+    private static void write(Path contextDir, String relativePath, String content) throws Exception {
+        Path file = contextDir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.mike10004.containment.mavenplugin;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DockerIgnoreTest {
+
+    @Test
+    public void isExcluded() {
+        DockerIgnore ignore = DockerIgnore.parse(Arrays.asList(
+                "# comment",
+                "",
+                "*.log",
+                "/build",
+                "**/node_modules",
+                "docs/*.md",
+                "!docs/README.md",
+                "temp?"));
+        assertTrue(ignore.isExcluded("app.log"));
+        assertFalse("star does not match separator", ignore.isExcluded("logs/app.log"));
+        assertTrue("contents of excluded dir", ignore.isExcluded("build/classes/Foo.class"));
+        assertTrue(ignore.isExcluded("node_modules/x/index.js"));
+        assertTrue(ignore.isExcluded("web/app/node_modules/x/index.js"));
+        assertTrue(ignore.isExcluded("docs/guide.md"));
+        assertFalse("exception", ignore.isExcluded("docs/README.md"));
+        assertTrue(ignore.isExcluded("temp1"));
+        assertFalse(ignore.isExcluded("temp12"));
+        assertFalse(ignore.isExcluded("src/Main.java"));
+        assertFalse("prunable with exceptions", ignore.isPrunable("build"));
+    }
+
+    @Test
+    public void isPrunable() {
+        DockerIgnore ignore = DockerIgnore.parse(Arrays.asList("target", "**/*.tmp"));
+        assertTrue(ignore.isPrunable("target"));
+        assertFalse(ignore.isPrunable("src"));
+    }
+
+    @Test
+    public void lastMatchWins() {
+        DockerIgnore ignore = DockerIgnore.parse(Arrays.asList("*.txt", "!keep*.txt", "keep-not.txt"));
+        assertTrue(ignore.isExcluded("a.txt"));
+        assertFalse(ignore.isExcluded("keep.txt"));
+        assertTrue(ignore.isExcluded("keep-not.txt"));
+    }
+
+    @Test
+    public void empty() {
+        assertEquals(false, DockerIgnore.empty().isExcluded("anything"));
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.mike10004.containment.mavenplugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InFlightImageActionsTest {
+
+    @Test
+    public void perform_concurrentWaitsOnOne() throws Exception {
+        InFlightImageActions registry = new InFlightImageActions();
+        CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+        AtomicInteger performed = new AtomicInteger();
+        InFlightImageActions.ImageAction action = () -> {
+            performed.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new MojoExecutionException("interrupted", e);
+            }
+        };
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> perform(registry, "foo:1.0", action));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> perform(registry, "foo:1.0", action));
+        Thread.sleep(100);
+        assertFalse("second waits", second.isDone());
+        release.countDown();
+        assertTrue("first performed", first.get(5, TimeUnit.SECONDS));
+        assertFalse("second waited", second.get(5, TimeUnit.SECONDS));
+        assertEquals("performed", 1, performed.get());
+        assertTrue("later action performed anew", registry.perform("foo:1.0", () -> {}));
+    }
+
+    @Test
+    public void perform_failureNotShared() throws Exception {
+        InFlightImageActions registry = new InFlightImageActions();
+        try {
+            registry.perform("foo:1.0", () -> {
+                throw new MojoExecutionException("purposeful");
+            });
+            fail("should have thrown");
+        } catch (MojoExecutionException ignore) {
+        }
+        assertTrue(registry.perform("foo:1.0", () -> {}));
+    }
+
+    private static boolean perform(InFlightImageActions registry, String imageName, InFlightImageActions.ImageAction action) {
+        try {
+            return registry.perform(imageName, action);
+        } catch (MojoExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
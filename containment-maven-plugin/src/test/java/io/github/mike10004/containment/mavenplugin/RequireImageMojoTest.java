@@ -6,8 +6,11 @@ import org.junit.Test;
 
 import java.io.File;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 
@@ -97,6 +100,28 @@ public class RequireImageMojoTest {
         assertEquals("labels", toMap("foo", "bar", "baz", "gaw"), p.labels);
     }
 
+    @Test
+    public void test_multipleImages_resolveImageNames() throws Exception {
+        File pom = new File( getClass().getResource("/test-projects/multiple-images/pom.xml" ).toURI()).getParentFile();
+        RequireImageMojo mojo = (RequireImageMojo) rule.lookupConfiguredMojo(pom, RequireImageMojo.GOAL);
+        assertNotNull("mojo", mojo);
+        assertEquals("parallelism", 2, rule.getVariableValueFromObject(mojo, "parallelism"));
+        assertEquals(Arrays.asList("oogabooga/not-a-real-docker-image:latest", "oogabooga/another-fake-image:1.0"), mojo.resolveImageNames());
+        assertEquals("name", "oogabooga/another-fake-image:1.0", mojo.buildParametry("oogabooga/another-fake-image:1.0").name);
+    }
+
+    @Test
+    public void isPresent() {
+        Set<String> local = new HashSet<>(Arrays.asList("foo:1.0", "bar:latest", "baz@sha256:0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef"));
+        assertTrue(RequireImageMojo.isPresent("foo:1.0", local));
+        assertTrue("untagged matches any tag", RequireImageMojo.isPresent("foo", local));
+        assertFalse(RequireImageMojo.isPresent("foo:2.0", local));
+        assertTrue(RequireImageMojo.isPresent("bar:latest", local));
+        assertFalse(RequireImageMojo.isPresent("fo", local));
+        assertTrue(RequireImageMojo.isPresent("baz@sha256:0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef", local));
+        assertFalse(RequireImageMojo.isPresent("gaw", local));
+    }
+
     private static Map<String, String> toMap(String...namesAndValues) {
         Map<String, String> m = new LinkedHashMap<>();
         for (int i = 0; i < namesAndValues.length; i+=2) {
@@ -0,0 +1,61 @@
+package io.github.mike10004.containment.mavenplugin;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dockerjava.api.model.PullResponseItem;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingBlockableCallbackTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void progressAggregatedAndThrottled() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        List<String> messages = new ArrayList<>();
+        StreamingBlockableCallback<PullResponseItem> callback = new StreamingBlockableCallback<>(
+                PullResponseItem::isPullSuccessIndicated, messages::add, 3, Duration.ofSeconds(1), clock::get);
+        for (int i = 1; i <= 100; i++) {
+            callback.onNext(item("{\"status\":\"Downloading\",\"id\":\"a\",\"progressDetail\":{\"current\":" + (i * 1024) + ",\"total\":102400}}"));
+            callback.onNext(item("{\"status\":\"Downloading\",\"id\":\"b\",\"progressDetail\":{\"current\":" + (i * 512) + ",\"total\":51200}}"));
+            clock.addAndGet(Duration.ofMillis(100).toNanos());
+        }
+        assertTrue("throttled: " + messages.size(), messages.size() <= 10);
+        assertFalse(messages.isEmpty());
+        callback.onNext(item("{\"status\":\"Pull complete\",\"id\":\"a\"}"));
+        callback.onNext(item("{\"status\":\"Status: Downloaded newer image for foo:latest\"}"));
+        callback.onComplete();
+        assertTrue(callback.doAwaitCompletion(Duration.ofSeconds(1)));
+        assertTrue("succeeded", callback.checkSucceeded());
+        String summary = callback.summarize();
+        assertTrue(summary, summary.contains("202 response items received"));
+        assertTrue(summary, summary.contains("1 of 2 layers complete"));
+        assertEquals("retained items", 3, summary.split("status=", -1).length - 1);
+    }
+
+    @Test
+    public void layersCapped() throws Exception {
+        StreamingBlockableCallback<PullResponseItem> callback = new StreamingBlockableCallback<>(
+                PullResponseItem::isPullSuccessIndicated, message -> {}, 0, Duration.ofDays(1), System::nanoTime);
+        for (int i = 0; i < StreamingBlockableCallback.MAX_LAYERS * 2; i++) {
+            callback.onNext(item("{\"status\":\"Pull complete\",\"id\":\"layer" + i + "\"}"));
+        }
+        String summary = callback.summarize();
+        int max = StreamingBlockableCallback.MAX_LAYERS;
+        assertTrue(summary, summary.contains(max + " of " + max + " layers complete"));
+        assertFalse("succeeded", callback.checkSucceeded());
+    }
+
+    private static PullResponseItem item(String json) throws IOException {
+        return MAPPER.readValue(json, PullResponseItem.class);
+    }
+}